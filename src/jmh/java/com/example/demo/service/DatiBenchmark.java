@@ -0,0 +1,90 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.PuntoRilevazioneDTO;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.StubRepository;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Dataset sintetici e deterministici (seed fisso) condivisi dai benchmark.
+ */
+final class DatiBenchmark {
+
+    private static final LocalDateTime INIZIO = LocalDateTime.of(2025, 6, 1, 0, 0);
+
+    private DatiBenchmark() {}
+
+    /**
+     * Crea {@code numeroCampi} campi attivi, ciascuno con un sensore per ogni tipologia.
+     * Gli ID dei sensori sono progressivi a partire da 1.
+     */
+    static Map<Campo, List<Sensore>> flotta(int numeroCampi) {
+        Map<Campo, List<Sensore>> flotta = new LinkedHashMap<>();
+        long sensoreId = 1;
+        for (long c = 1; c <= numeroCampi; c++) {
+            Campo campo = new Campo(c, "Campo " + c, TipoCampo.PIENO, 10.0, StatoCampo.ATTIVO, 120.0, 40.0, 95.0);
+            List<Sensore> sensori = new ArrayList<>();
+            for (TipoSensore tipo : TipoSensore.values()) {
+                Sensore sensore = new Sensore();
+                sensore.setId(sensoreId);
+                sensore.setCodice("B-" + sensoreId++);
+                sensore.setTipo(tipo);
+                sensore.setCampo(campo);
+                sensori.add(sensore);
+            }
+            flotta.put(campo, sensori);
+        }
+        return flotta;
+    }
+
+    /**
+     * Repository delle rilevazioni che restituisce, per ogni sensore, {@code n} righe a 15 minuti
+     * dalla più recente alla più vecchia, come la query reale.
+     */
+    static RilevazioneRepository rilevazioni(int n) {
+        Random caso = new Random(42);
+        List<PuntoRilevazioneDTO> righe = new ArrayList<>(n);
+        for (int i = n - 1; i >= 0; i--) {
+            righe.add(new PuntoRilevazioneDTO(INIZIO.plusMinutes(15L * i), 20 + caso.nextGaussian() * 3, QualitaDato.VALIDO));
+        }
+        return StubRepository.di(RilevazioneRepository.class,
+                Map.of("findPuntiRecenti", argomenti -> righe.subList(0, Math.min(n, ((Limit) argomenti[1]).max()))));
+    }
+
+    /**
+     * Repository dei sensori che risponde a {@code findByCampoIdAndAttivoTrue} e {@code findAll}.
+     */
+    static SensoreRepository sensori(Map<Campo, List<Sensore>> flotta) {
+        Map<Long, List<Sensore>> perCampo = new HashMap<>();
+        List<Sensore> tutti = new ArrayList<>();
+        flotta.forEach((campo, sensori) -> {
+            perCampo.put(campo.getId(), sensori);
+            tutti.addAll(sensori);
+        });
+        Function<Object[], Object> perCampoAttivi = argomenti -> perCampo.getOrDefault((Long) argomenti[0], List.of());
+        return StubRepository.di(SensoreRepository.class,
+                Map.of("findByCampoIdAndAttivoTrue", perCampoAttivi, "findAll", argomenti -> tutti));
+    }
+
+    /**
+     * Cache delle finestre già riscaldata per tutti i sensori della flotta.
+     */
+    static FinestreSensoriServizio finestre(SensoreRepository sensoreRepo, int puntiPerSensore) {
+        FinestreSensoriServizio finestre = new FinestreSensoriServizio(sensoreRepo, rilevazioni(puntiPerSensore),
+                new EsecutoreParallelo(false, 1), puntiPerSensore);
+        finestre.precarica();
+        return finestre;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.dto.DashboardDTO;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.repository.TotaleEconomicoCampoRepository;
+import com.example.demo.shard.InstradamentoShard;
+import com.example.demo.supporto.StubRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark dell'overview della dashboard su flotte di dimensione crescente,
+ * in esecuzione sequenziale e con fan-out su virtual thread.
+ * I repository sono stub in memoria: si misura il costo del servizio, non quello del DB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverviewBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int numeroCampi;
+
+    @Param({"false", "true"})
+    public boolean parallelo;
+
+    private DashboardServizio servizio;
+    private EsecutoreParallelo esecutore;
+
+    @Setup
+    public void prepara() {
+        Map<Campo, List<Sensore>> flotta = DatiBenchmark.flotta(numeroCampi);
+        List<Campo> campi = new ArrayList<>(flotta.keySet());
+        CampoRepository campoRepo = StubRepository.di(CampoRepository.class, Map.of("findAll", argomenti -> campi));
+        SensoreRepository sensoreRepo = DatiBenchmark.sensori(flotta);
+
+        TotaleEconomicoCampoRepository totaleRepo = StubRepository.di(TotaleEconomicoCampoRepository.class,
+                Map.of("findAllById", argomenti -> List.of()));
+        RegistroEconomicoServizio registro = new RegistroEconomicoServizio(null, totaleRepo, null, null, null, null);
+
+        esecutore = new EsecutoreParallelo(parallelo, 8);
+        AnagraficaServizio anagrafica = new AnagraficaServizio(campoRepo, sensoreRepo, new SimpleMeterRegistry(), 1024, 20000);
+        servizio = new DashboardServizio(anagrafica, DatiBenchmark.finestre(sensoreRepo, 96), esecutore, registro,
+                new InstradamentoShard(new StandardEnvironment(), anagrafica));
+    }
+
+    @TearDown
+    public void chiudi() {
+        esecutore.chiudi();
+    }
+
+    @Benchmark
+    public DashboardDTO overview() {
+        return servizio.overview();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark di un tick della ruota temporale con 100.000 sensori pianificati a frequenze miste.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuotaTemporaleBenchmark {
+
+    // Periodi in tick da 1 secondo: 1, 15 e 60 minuti
+    private static final long[] PERIODI = {60, 900, 3600};
+
+    @Param({"100000"})
+    private int sensori;
+
+    private RuotaTemporale ruota;
+    private long tick;
+
+    @Setup
+    public void prepara() {
+        Random random = new Random(42);
+        ruota = new RuotaTemporale(4096, 0);
+        for (int i = 0; i < sensori; i++) {
+            long periodo = PERIODI[i % PERIODI.length];
+            ruota.pianifica(i, periodo, 1 + random.nextLong(periodo));
+        }
+    }
+
+    @Benchmark
+    public void avanzaUnTick(Blackhole bh) {
+        ruota.avanza(++tick, bh::consume);
+    }
+}
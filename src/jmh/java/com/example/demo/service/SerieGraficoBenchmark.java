@@ -0,0 +1,45 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.SensoreRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del grafico 24h: pivot delle serie di temperatura e umidità aria,
+ * formattazione delle etichette orarie e boxing dei valori per Chart.js.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerieGraficoBenchmark {
+
+    // Punti per serie: 24h, 10 giorni e 100 giorni a 15 minuti
+    @Param({"96", "960", "9600"})
+    public int puntiPerSerie;
+
+    private RilevazioneServizio servizio;
+
+    @Setup
+    public void prepara() {
+        Map<Campo, List<Sensore>> flotta = DatiBenchmark.flotta(1);
+        SensoreRepository sensoreRepo = DatiBenchmark.sensori(flotta);
+        AnagraficaServizio anagrafica = new AnagraficaServizio(null, sensoreRepo, new SimpleMeterRegistry(), 1024, 20000);
+        servizio = new RilevazioneServizio(anagrafica, DatiBenchmark.finestre(sensoreRepo, puntiPerSerie),
+                null, new EsecutoreParallelo(false, 1));
+    }
+
+    @Benchmark
+    public Map<String, Object> seriesTempUmiditaByCampo() {
+        return servizio.seriesTempUmiditaByCampo(1L);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.service;
+
+import com.example.demo.enums.TipoSensore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark della generazione stocastica dei valori simulati, un ciclo su tutte le tipologie.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatoreBenchmark {
+
+    private static final TipoSensore[] TIPI = TipoSensore.values();
+
+    private SimulatoreServizio simulatore;
+
+    @Setup
+    public void prepara() {
+        simulatore = new SimulatoreServizio(null, null, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public void generaValoreSimulato(Blackhole bh) {
+        for (TipoSensore tipo : TIPI) {
+            bh.consume(simulatore.generaValoreSimulato(tipo));
+        }
+    }
+}
@@ -4,12 +4,17 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.util.Map;
+
 @SpringBootApplication
 @EnableScheduling
 public class CollinaMonitoringApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(CollinaMonitoringApplication.class, args);
+		SpringApplication applicazione = new SpringApplication(CollinaMonitoringApplication.class);
+		// Virtual thread per richieste web e job pianificati, salvo diversa configurazione
+		applicazione.setDefaultProperties(Map.of("spring.threads.virtual.enabled", "true"));
+		applicazione.run(args);
 	}
 
 }
@@ -0,0 +1,258 @@
+package com.example.demo.allerta;
+
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.AllertaDTO;
+import com.example.demo.entity.EventoAllerta;
+import com.example.demo.entity.RegolaAllerta;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Confronto;
+import com.example.demo.enums.TipoRegola;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.enums.TransizioneAllerta;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import com.example.demo.repository.EventoAllertaRepository;
+import com.example.demo.repository.RegolaAllertaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Motore delle regole di allerta sul flusso delle rilevazioni (Streaming).
+ * <p>
+ * Ogni lettura confermata viene valutata contro le regole del proprio sensore e della propria
+ * tipologia, recuperate da indici in memoria; lo stato di ogni coppia regola/sensore è incrementale
+ * ({@link StatoRegola}), quindi la valutazione costa O(1) per regola e non richiede query.
+ * Vengono salvate solo le transizioni (apertura e rientro), non le singole valutazioni.
+ * <p>
+ * Le regole sono caricate a contesto pronto, prima degli altri listener di avvio, quindi anche le letture
+ * riversate dal giornale vengono valutate; chi crea o modifica regole chiama {@link #ricarica()} dopo il salvataggio.
+ */
+@Service
+public class MotoreAllerteServizio {
+
+    private static final Logger log = LoggerFactory.getLogger(MotoreAllerteServizio.class);
+
+    private final RegolaAllertaRepository regolaRepo;
+    private final EventoAllertaRepository eventoRepo;
+    private final TransactionTemplate nuovaTransazione;
+
+    // Indici delle regole attive, sostituiti in blocco a ogni ricarica
+    private volatile Map<Long, List<RegolaAllerta>> regolePerSensore = Map.of();
+    private volatile Map<TipoSensore, List<RegolaAllerta>> regolePerTipo = Map.of();
+
+    private final Map<ChiaveStato, StatoRegola> stati = new ConcurrentHashMap<>();
+
+    private record ChiaveStato(long regolaId, long sensoreId) {}
+
+    public MotoreAllerteServizio(RegolaAllertaRepository regolaRepo, EventoAllertaRepository eventoRepo,
+                                 PlatformTransactionManager transactionManager) {
+        this.regolaRepo = regolaRepo;
+        this.eventoRepo = eventoRepo;
+
+        // I listener AFTER_COMMIT non possono scrivere nella transazione appena confermata
+        this.nuovaTransazione = new TransactionTemplate(transactionManager);
+        this.nuovaTransazione.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Caricamento iniziale, dopo i CommandLineRunner di bootstrap che creano le regole predefinite.
+     * Precede il riversamento del giornale, anch'esso avviato su ApplicationReadyEvent.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void avvia() {
+        ricarica();
+    }
+
+    /**
+     * Carica le regole attive e ripristina le allerte rimaste aperte.
+     * Eseguito all'avvio e dopo ogni scrittura delle regole; lo stato delle regole eliminate o disattivate viene scartato.
+     */
+    public void ricarica() {
+        Map<Long, List<RegolaAllerta>> perSensore = new HashMap<>();
+        Map<TipoSensore, List<RegolaAllerta>> perTipo = new EnumMap<>(TipoSensore.class);
+        Set<Long> attive = new HashSet<>();
+
+        for (RegolaAllerta regola : regolaRepo.findByAttivaTrue()) {
+            if (regola.getSensoreId() != null) {
+                perSensore.computeIfAbsent(regola.getSensoreId(), k -> new ArrayList<>()).add(regola);
+            } else if (regola.getTipoSensore() != null) {
+                perTipo.computeIfAbsent(regola.getTipoSensore(), k -> new ArrayList<>()).add(regola);
+            } else {
+                continue;
+            }
+            attive.add(regola.getId());
+        }
+        regolePerSensore = perSensore;
+        regolePerTipo = perTipo;
+        stati.keySet().removeIf(chiave -> !attive.contains(chiave.regolaId()));
+
+        for (EventoAllerta aperta : eventoRepo.findAperte()) {
+            if (!attive.contains(aperta.getRegolaId())) {
+                continue;
+            }
+            StatoRegola stato = stati.computeIfAbsent(new ChiaveStato(aperta.getRegolaId(), aperta.getSensoreId()),
+                    k -> new StatoRegola());
+            synchronized (stato) {
+                stato.attiva = true;
+                stato.apertura = aperta;
+            }
+        }
+
+        log.info("{} regole di allerta attive caricate", attive.size());
+    }
+
+    /**
+     * Valuta le rilevazioni appena confermate e salva le eventuali transizioni in una nuova transazione.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void suNuoveRilevazioni(NuoveRilevazioniEvento evento) {
+        List<EventoAllerta> transizioni = new ArrayList<>();
+
+        for (Rilevazione ril : evento.rilevazioni()) {
+            if (ril.getValore() == null) {
+                continue;
+            }
+            Sensore sensore = ril.getSensore();
+            long ts = FinestreSensoriServizio.aEpochMillis(ril.getTimestamp());
+            valuta(sensore, ts, ril.getValore(), regolePerSensore.getOrDefault(sensore.getId(), List.of()), transizioni);
+            valuta(sensore, ts, ril.getValore(), regolePerTipo.getOrDefault(sensore.getTipo(), List.of()), transizioni);
+        }
+
+        if (!transizioni.isEmpty()) {
+            nuovaTransazione.executeWithoutResult(stato -> eventoRepo.saveAll(transizioni));
+        }
+    }
+
+    /**
+     * Feed delle transizioni, dalla più recente.
+     *
+     * @param campoId Il campo da filtrare, oppure null per tutti.
+     * @param limite Il numero massimo di voci.
+     */
+    public List<AllertaDTO> feed(Long campoId, int limite) {
+        List<EventoAllerta> eventi = campoId == null
+                ? eventoRepo.findByOrderByTimestampDescIdDesc(Limit.of(limite))
+                : eventoRepo.findByCampoIdOrderByTimestampDescIdDesc(campoId, Limit.of(limite));
+        return eventi.stream().map(this::aDto).toList();
+    }
+
+    /**
+     * Allerte attualmente aperte, lette dallo stato in memoria.
+     *
+     * @param campoId Il campo da filtrare, oppure null per tutti.
+     */
+    public List<AllertaDTO> attive(Long campoId) {
+        List<AllertaDTO> attive = new ArrayList<>();
+        for (StatoRegola stato : stati.values()) {
+            EventoAllerta apertura;
+            synchronized (stato) {
+                apertura = stato.attiva ? stato.apertura : null;
+            }
+            if (apertura != null && (campoId == null || campoId.equals(apertura.getCampoId()))) {
+                attive.add(aDto(apertura));
+            }
+        }
+        attive.sort(Comparator.comparing(AllertaDTO::livello).reversed().thenComparing(AllertaDTO::timestamp));
+        return attive;
+    }
+
+    private void valuta(Sensore sensore, long ts, double valore, List<RegolaAllerta> regole,
+                        List<EventoAllerta> transizioni) {
+        for (RegolaAllerta regola : regole) {
+            StatoRegola stato = stati.computeIfAbsent(new ChiaveStato(regola.getId(), sensore.getId()),
+                    k -> new StatoRegola());
+
+            synchronized (stato) {
+                // Le letture arrivate in ritardo (o duplicate) non modificano lo stato
+                if (stato.ultimoTimestamp != StatoRegola.NESSUNO && ts <= stato.ultimoTimestamp) {
+                    continue;
+                }
+
+                boolean precedente = stato.ultimoTimestamp != StatoRegola.NESSUNO;
+                double misura = valore;
+                if (regola.getTipo() == TipoRegola.VARIAZIONE) {
+                    if (!precedente) {
+                        registraLettura(stato, ts, valore);
+                        continue;
+                    }
+                    // Variazione oraria rispetto alla lettura precedente
+                    misura = (valore - stato.ultimoValore) / ((ts - stato.ultimoTimestamp) / 3_600_000.0);
+                }
+
+                boolean allerta = oltre(regola, stato.attiva, misura);
+                if (regola.getTipo() == TipoRegola.PERSISTENZA) {
+                    if (!allerta) {
+                        stato.inizioCondizione = StatoRegola.NESSUNO;
+                    } else {
+                        if (stato.inizioCondizione == StatoRegola.NESSUNO) {
+                            stato.inizioCondizione = ts;
+                        }
+                        long durataMs = regola.getDurataMinuti() == null ? 0 : regola.getDurataMinuti() * 60_000L;
+                        allerta = stato.attiva || ts - stato.inizioCondizione >= durataMs;
+                    }
+                }
+
+                if (allerta != stato.attiva) {
+                    EventoAllerta transizione = transizione(regola, sensore, ts, misura, allerta);
+                    stato.attiva = allerta;
+                    stato.apertura = allerta ? transizione : null;
+                    transizioni.add(transizione);
+                }
+                registraLettura(stato, ts, valore);
+            }
+        }
+    }
+
+    private static void registraLettura(StatoRegola stato, long ts, double valore) {
+        stato.ultimoTimestamp = ts;
+        stato.ultimoValore = valore;
+    }
+
+    // Confronto con isteresi: un'allerta già aperta rientra solo oltre il margine configurato
+    private static boolean oltre(RegolaAllerta regola, boolean attiva, double misura) {
+        double margine = attiva && regola.getIsteresi() != null ? regola.getIsteresi() : 0.0;
+        return regola.getConfronto() == Confronto.SOPRA
+                ? misura > regola.getSoglia() - margine
+                : misura < regola.getSoglia() + margine;
+    }
+
+    private EventoAllerta transizione(RegolaAllerta regola, Sensore sensore, long ts, double misura, boolean apertura) {
+        EventoAllerta evento = new EventoAllerta();
+        evento.setRegolaId(regola.getId());
+        evento.setNomeRegola(regola.getNome());
+        evento.setLivello(regola.getLivello());
+        evento.setTransizione(apertura ? TransizioneAllerta.APERTA : TransizioneAllerta.RIENTRATA);
+        evento.setSensoreId(sensore.getId());
+        evento.setCampoId(sensore.getCampo().getId());
+        evento.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(ts), ZoneId.systemDefault()));
+        evento.setValore(misura);
+        evento.setMessaggio(String.format(Locale.ROOT, "%s %s su %s: %.2f%s (soglia %s %.2f)",
+                regola.getNome(), apertura ? "aperta" : "rientrata", sensore.getCodice(), misura,
+                regola.getTipo() == TipoRegola.VARIAZIONE ? " " + sensore.getTipo().getUnita() + "/h" : "",
+                regola.getConfronto().name().toLowerCase(Locale.ROOT), regola.getSoglia()));
+        return evento;
+    }
+
+    private AllertaDTO aDto(EventoAllerta evento) {
+        return new AllertaDTO(evento.getId(), evento.getRegolaId(), evento.getNomeRegola(), evento.getLivello(),
+                evento.getTransizione(), evento.getSensoreId(), evento.getCampoId(), evento.getTimestamp(),
+                evento.getValore(), evento.getMessaggio());
+    }
+}
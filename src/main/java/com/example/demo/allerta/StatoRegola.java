@@ -0,0 +1,26 @@
+package com.example.demo.allerta;
+
+import com.example.demo.entity.EventoAllerta;
+
+/**
+ * Stato incrementale di una regola per un singolo sensore.
+ * Occupa memoria costante e viene aggiornato in O(1) a ogni lettura:
+ * l'ultima lettura serve alla VARIAZIONE, l'inizio del superamento continuo alla PERSISTENZA.
+ * L'accesso è sincronizzato sull'istanza dal motore.
+ */
+final class StatoRegola {
+
+    static final long NESSUNO = Long.MIN_VALUE;
+
+    boolean attiva;
+
+    // Ultima lettura valutata (epoch millis e valore)
+    long ultimoTimestamp = NESSUNO;
+    double ultimoValore;
+
+    // Istante da cui la condizione è ininterrottamente soddisfatta
+    long inizioCondizione = NESSUNO;
+
+    // Transizione di apertura corrente, null se l'allerta non è attiva
+    EventoAllerta apertura;
+}
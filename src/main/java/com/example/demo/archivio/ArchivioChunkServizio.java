@@ -0,0 +1,271 @@
+package com.example.demo.archivio;
+
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.PuntoSerieDTO;
+import com.example.demo.dto.SerieTemporaleDTO;
+import com.example.demo.entity.ChunkRilevazioni;
+import com.example.demo.entity.GiornoDaRisigillare;
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.ChunkRilevazioniRepository;
+import com.example.demo.repository.GiornoDaRisigillareRepository;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.shard.ContestoShard;
+import com.example.demo.shard.InstradamentoShard;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Motore di archiviazione compressa per i periodi sigillati.
+ * <p>
+ * Ogni notte impacchetta le rilevazioni dei giorni ormai consolidati in un blocco per sensore
+ * e per giorno (vedi {@link CodecGorilla}), salvato come BLOB. Opzionalmente elimina poi
+ * le righe grezze corrispondenti. Le letture sui giorni sigillati decodificano i blocchi
+ * in modo sequenziale, senza allocare un oggetto per punto.
+ * <p>
+ * Le rilevazioni che arrivano per un giorno già sigillato vengono segnalate dal job degli aggregati
+ * ({@link #segnaDaRisigillare}): il job notturno ricostruisce il blocco di quei giorni, unendo ai punti
+ * già archiviati le nuove righe grezze quando le precedenti sono state eliminate.
+ */
+@Service
+public class ArchivioChunkServizio {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivioChunkServizio.class);
+
+    // Limite inferiore usato per cercare la prima rilevazione di un sensore mai sigillato
+    private static final LocalDateTime INIZIO_STORICO = LocalDateTime.of(1900, 1, 1, 0, 0);
+
+    // Segnaposto per "nessun giorno sigillato" (ConcurrentHashMap non ammette valori null)
+    private static final LocalDate NESSUNO = LocalDate.MIN;
+
+    private final SensoreRepository sensoreRepo;
+    private final RilevazioneRepository rilevazioneRepo;
+    private final ChunkRilevazioniRepository chunkRepo;
+    private final GiornoDaRisigillareRepository risigillareRepo;
+    private final TransactionTemplate transazione;
+    private final InstradamentoShard instradamento;
+
+    // Età minima (in giorni) di un giorno prima di essere sigillato
+    private final int giorniPrimaDiSigillare;
+    // Se true, le righe grezze vengono eliminate dopo la creazione del blocco
+    private final boolean eliminaGrezze;
+
+    // Ultimo giorno sigillato per sensore
+    private final Map<Long, LocalDate> ultimoSigillato = new ConcurrentHashMap<>();
+
+    public ArchivioChunkServizio(SensoreRepository sensoreRepo, RilevazioneRepository rilevazioneRepo,
+                                 ChunkRilevazioniRepository chunkRepo, GiornoDaRisigillareRepository risigillareRepo,
+                                 TransactionTemplate transazione, InstradamentoShard instradamento,
+                                 @Value("${collina.archivio.giorni-prima-di-sigillare:7}") int giorniPrimaDiSigillare,
+                                 @Value("${collina.archivio.elimina-grezze:false}") boolean eliminaGrezze) {
+        this.sensoreRepo = sensoreRepo;
+        this.rilevazioneRepo = rilevazioneRepo;
+        this.chunkRepo = chunkRepo;
+        this.risigillareRepo = risigillareRepo;
+        this.transazione = transazione;
+        this.instradamento = instradamento;
+        this.giorniPrimaDiSigillare = giorniPrimaDiSigillare;
+        this.eliminaGrezze = eliminaGrezze;
+    }
+
+    /**
+     * Job notturno: ricostruisce i giorni sigillati che hanno ricevuto nuove rilevazioni, poi sigilla,
+     * per ogni sensore, tutti i giorni completi più vecchi della soglia non ancora archiviati.
+     * Ogni giorno è una transazione breve e indipendente, sullo shard del sensore.
+     */
+    @Scheduled(cron = "${collina.archivio.cron:0 30 2 * * *}")
+    @Timed(value = "collina.job.archivio")
+    public void sigilla() {
+        LocalDate limite = LocalDate.now().minusDays(giorniPrimaDiSigillare);
+        int blocchi = 0;
+
+        for (int shard = 0; shard < instradamento.numeroShard(); shard++) {
+            blocchi += ContestoShard.su(shard, this::risigilla);
+        }
+
+        for (Sensore sensore : sensoreRepo.findAll()) {
+            Long sensoreId = sensore.getId();
+            blocchi += ContestoShard.su(instradamento.shardDelSensore(sensoreId), () -> sigillaSensore(sensoreId, limite));
+        }
+
+        if (blocchi > 0) {
+            log.info("Sigillati {} blocchi giornalieri", blocchi);
+        }
+    }
+
+    // Ricostruisce i blocchi dei giorni segnalati sullo shard corrente, una transazione per giorno
+    private int risigilla() {
+        Map<Long, Map<LocalDate, List<Long>>> segnalati = new HashMap<>();
+        for (GiornoDaRisigillare voce : risigillareRepo.findAll()) {
+            segnalati.computeIfAbsent(voce.getSensoreId(), k -> new TreeMap<>())
+                    .computeIfAbsent(voce.getGiorno(), k -> new ArrayList<>())
+                    .add(voce.getId());
+        }
+
+        int blocchi = 0;
+        for (Map.Entry<Long, Map<LocalDate, List<Long>>> sensore : segnalati.entrySet()) {
+            for (Map.Entry<LocalDate, List<Long>> giorno : sensore.getValue().entrySet()) {
+                transazione.executeWithoutResult(stato -> {
+                    sigillaGiorno(sensore.getKey(), giorno.getKey());
+                    risigillareRepo.deleteElaborate(giorno.getValue());
+                });
+                blocchi++;
+            }
+        }
+        return blocchi;
+    }
+
+    private int sigillaSensore(Long sensoreId, LocalDate limite) {
+        int blocchi = 0;
+        LocalDate ultimo = ultimoGiornoSigillato(sensoreId);
+        LocalDateTime cerca = ultimo == null ? INIZIO_STORICO : ultimo.plusDays(1).atStartOfDay();
+
+        // Salta direttamente al prossimo giorno con dati, ignorando i buchi
+        LocalDateTime primo;
+        while ((primo = rilevazioneRepo.findPrimoTimestampDa(sensoreId, cerca)) != null
+                && primo.toLocalDate().isBefore(limite)) {
+            LocalDate giorno = primo.toLocalDate();
+            transazione.executeWithoutResult(stato -> sigillaGiorno(sensoreId, giorno));
+            ultimoSigillato.put(sensoreId, giorno);
+            blocchi++;
+            cerca = giorno.plusDays(1).atStartOfDay();
+        }
+        return blocchi;
+    }
+
+    /**
+     * @return L'istante a partire dal quale le rilevazioni del sensore vanno lette dalla tabella
+     * grezza; prima di esso si leggono i blocchi compressi. Null se nessun giorno è sigillato.
+     */
+    public LocalDateTime limiteSigillato(Long sensoreId) {
+        LocalDate ultimo = ultimoGiornoSigillato(sensoreId);
+        return ultimo == null ? null : ultimo.plusDays(1).atStartOfDay();
+    }
+
+    /**
+     * Segnala che un giorno già sigillato del sensore ha ricevuto nuove rilevazioni: il suo blocco
+     * verrà ricostruito alla prossima esecuzione del job. Da invocare all'interno di una transazione
+     * sullo shard del sensore.
+     */
+    public void segnaDaRisigillare(Long sensoreId, LocalDate giorno) {
+        risigillareRepo.save(new GiornoDaRisigillare(sensoreId, giorno));
+    }
+
+    /**
+     * Elimina i blocchi del sensore precedenti a {@code limite} (politica di conservazione)
+     * e riallinea l'ultimo giorno sigillato in memoria.
+     *
+     * @return Il numero di blocchi eliminati.
+     */
+    public int eliminaPrimaDi(Long sensoreId, LocalDate limite) {
+        Integer eliminati = transazione.execute(stato -> chunkRepo.deletePrimaDi(sensoreId, limite));
+        if (eliminati != null && eliminati > 0) {
+            ultimoSigillato.remove(sensoreId);
+        }
+        return eliminati == null ? 0 : eliminati;
+    }
+
+    /**
+     * @return true se le righe grezze dei giorni sigillati vengono eliminate: in quel caso
+     * i blocchi compressi sono l'unica copia dei dati (solo punti VALIDO) prima di {@link #limiteSigillato}.
+     */
+    public boolean grezzeEliminate() {
+        return eliminaGrezze;
+    }
+
+    /**
+     * Decodifica i blocchi del sensore che coprono [da, a), consegnando in ordine cronologico
+     * i soli punti interni all'intervallo.
+     */
+    public void leggi(Long sensoreId, LocalDateTime da, LocalDateTime a, ConsumatorePunto consumatore) {
+        long daMillis = FinestreSensoriServizio.aEpochMillis(da);
+        long aMillis = FinestreSensoriServizio.aEpochMillis(a);
+
+        for (ChunkRilevazioni chunk : chunkRepo.findIntervallo(sensoreId, da.toLocalDate(), a.toLocalDate())) {
+            CodecGorilla.decodifica(chunk.getDati(), (ts, valore) -> {
+                if (ts >= daMillis && ts < aMillis) {
+                    consumatore.accetta(ts, valore);
+                }
+            });
+        }
+    }
+
+    // Crea o ricostruisce il blocco del giorno
+    private void sigillaGiorno(Long sensoreId, LocalDate giorno) {
+        LocalDateTime inizio = giorno.atStartOfDay();
+        LocalDateTime fine = giorno.plusDays(1).atStartOfDay();
+        ChunkRilevazioni chunk = chunkRepo.findBySensoreIdAndGiorno(sensoreId, giorno).orElse(null);
+
+        // Il blocco contiene solo i punti validi: i dubbi e gli invalidi restano nella sola tabella grezza
+        CollettoreSerie grezze = new CollettoreSerie(256);
+        for (PuntoSerieDTO punto : rilevazioneRepo.findPuntiValidi(sensoreId, inizio, fine)) {
+            if (punto.valore() != null) {
+                grezze.accetta(FinestreSensoriServizio.aEpochMillis(punto.timestamp()), punto.valore());
+            }
+        }
+
+        SerieTemporaleDTO punti = grezze.serie();
+        if (chunk == null) {
+            chunk = new ChunkRilevazioni();
+            chunk.setSensoreId(sensoreId);
+            chunk.setGiorno(giorno);
+        } else if (eliminaGrezze) {
+            // Le righe già archiviate sono state eliminate: il blocco esistente ne è l'unica copia
+            CollettoreSerie archiviate = new CollettoreSerie(chunk.getConteggio() != null ? chunk.getConteggio() : 256);
+            CodecGorilla.decodifica(chunk.getDati(), archiviate);
+            punti = unisci(archiviate.serie(), punti);
+        }
+        chunk.setConteggio(punti.dimensione());
+        chunk.setDati(CodecGorilla.codifica(punti.timestamp(), punti.valori(), punti.dimensione()));
+        chunkRepo.save(chunk);
+
+        if (eliminaGrezze) {
+            rilevazioneRepo.deleteIntervallo(sensoreId, inizio, fine);
+        }
+    }
+
+    /**
+     * Fonde due serie ordinate in una sola serie ordinata; a parità di istante il punto di {@code a} precede.
+     */
+    static SerieTemporaleDTO unisci(SerieTemporaleDTO a, SerieTemporaleDTO b) {
+        int n = a.dimensione() + b.dimensione();
+        long[] t = new long[n];
+        double[] v = new double[n];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < n; k++) {
+            if (j >= b.dimensione() || (i < a.dimensione() && a.timestamp()[i] <= b.timestamp()[j])) {
+                t[k] = a.timestamp()[i];
+                v[k] = a.valori()[i++];
+            } else {
+                t[k] = b.timestamp()[j];
+                v[k] = b.valori()[j++];
+            }
+        }
+        return new SerieTemporaleDTO(t, v);
+    }
+
+    // La query avviene fuori dalla mappa concorrente, non sotto il lock di computeIfAbsent
+    private LocalDate ultimoGiornoSigillato(Long sensoreId) {
+        LocalDate ultimo = ultimoSigillato.get(sensoreId);
+        if (ultimo == null) {
+            LocalDate dalDb = chunkRepo.findUltimoGiorno(sensoreId);
+            ultimo = dalDb == null ? NESSUNO : dalDb;
+            LocalDate presente = ultimoSigillato.putIfAbsent(sensoreId, ultimo);
+            if (presente != null) {
+                ultimo = presente;
+            }
+        }
+        return ultimo == NESSUNO ? null : ultimo;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.archivio;
+
+/**
+ * Codifica compressa di una serie temporale secondo lo schema di Facebook Gorilla (VLDB 2015).
+ * <p>
+ * Timestamp: il primo in chiaro (64 bit), poi il "delta del delta" con prefissi a lunghezza
+ * variabile. Con campionamento regolare il delta del delta vale 0 e costa un solo bit.
+ * <p>
+ * Valori: il primo in chiaro, poi lo XOR con il precedente. Se lo XOR è nullo costa un bit,
+ * altrimenti si scrivono solo i bit significativi, riusando quando possibile la finestra
+ * di zeri iniziali/finali del valore precedente.
+ * <p>
+ * Formato: [numero punti: 32 bit][t0: 64 bit][v0: 64 bit][punti successivi...]
+ */
+public final class CodecGorilla {
+
+    private CodecGorilla() {
+    }
+
+    /**
+     * Codifica i primi {@code n} punti (in ordine cronologico) degli array indicati.
+     */
+    public static byte[] codifica(long[] timestamp, double[] valori, int n) {
+        // Stima: circa 2 byte per punto con campionamento regolare
+        ScrittoreBit out = new ScrittoreBit(20 + n * 2);
+        out.scrivi(n, 32);
+        if (n == 0) {
+            return out.comeArray();
+        }
+
+        out.scrivi(timestamp[0], 64);
+        long bitPrec = Double.doubleToRawLongBits(valori[0]);
+        out.scrivi(bitPrec, 64);
+
+        long tPrec = timestamp[0];
+        long deltaPrec = 0;
+        int zeriInizialiPrec = -1;
+        int zeriFinaliPrec = 0;
+
+        for (int i = 1; i < n; i++) {
+            // 1. Timestamp: delta del delta
+            long delta = timestamp[i] - tPrec;
+            long dod = delta - deltaPrec;
+            if (dod == 0) {
+                out.scriviBit(false);
+            } else if (dod >= -63 && dod <= 64) {
+                out.scrivi(0b10, 2);
+                out.scrivi(dod + 63, 7);
+            } else if (dod >= -255 && dod <= 256) {
+                out.scrivi(0b110, 3);
+                out.scrivi(dod + 255, 9);
+            } else if (dod >= -2047 && dod <= 2048) {
+                out.scrivi(0b1110, 4);
+                out.scrivi(dod + 2047, 12);
+            } else {
+                out.scrivi(0b1111, 4);
+                out.scrivi(dod, 64);
+            }
+            tPrec = timestamp[i];
+            deltaPrec = delta;
+
+            // 2. Valore: XOR con il precedente
+            long bit = Double.doubleToRawLongBits(valori[i]);
+            long xor = bit ^ bitPrec;
+            if (xor == 0) {
+                out.scriviBit(false);
+            } else {
+                out.scriviBit(true);
+                int zeriIniziali = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int zeriFinali = Long.numberOfTrailingZeros(xor);
+
+                if (zeriInizialiPrec >= 0 && zeriIniziali >= zeriInizialiPrec && zeriFinali >= zeriFinaliPrec) {
+                    // I bit significativi rientrano nella finestra precedente
+                    out.scriviBit(false);
+                    out.scrivi(xor >>> zeriFinaliPrec, 64 - zeriInizialiPrec - zeriFinaliPrec);
+                } else {
+                    int significativi = 64 - zeriIniziali - zeriFinali;
+                    out.scriviBit(true);
+                    out.scrivi(zeriIniziali, 5);
+                    out.scrivi(significativi - 1, 6);
+                    out.scrivi(xor >>> zeriFinali, significativi);
+                    zeriInizialiPrec = zeriIniziali;
+                    zeriFinaliPrec = zeriFinali;
+                }
+            }
+            bitPrec = bit;
+        }
+        return out.comeArray();
+    }
+
+    /**
+     * Decodifica sequenzialmente il blocco, consegnando ogni punto al consumatore.
+     *
+     * @return Il numero di punti decodificati.
+     */
+    public static int decodifica(byte[] dati, ConsumatorePunto consumatore) {
+        LettoreBit in = new LettoreBit(dati);
+        int n = (int) in.leggi(32);
+        if (n == 0) {
+            return 0;
+        }
+
+        long t = in.leggi(64);
+        long bit = in.leggi(64);
+        consumatore.accetta(t, Double.longBitsToDouble(bit));
+
+        long delta = 0;
+        int zeriIniziali = 0;
+        int significativi = 0;
+
+        for (int i = 1; i < n; i++) {
+            long dod;
+            if (!in.leggiBit()) {
+                dod = 0;
+            } else if (!in.leggiBit()) {
+                dod = in.leggi(7) - 63;
+            } else if (!in.leggiBit()) {
+                dod = in.leggi(9) - 255;
+            } else if (!in.leggiBit()) {
+                dod = in.leggi(12) - 2047;
+            } else {
+                dod = in.leggi(64);
+            }
+            delta += dod;
+            t += delta;
+
+            if (in.leggiBit()) {
+                if (in.leggiBit()) {
+                    zeriIniziali = (int) in.leggi(5);
+                    significativi = (int) in.leggi(6) + 1;
+                }
+                int zeriFinali = 64 - zeriIniziali - significativi;
+                bit ^= in.leggi(significativi) << zeriFinali;
+            }
+            consumatore.accetta(t, Double.longBitsToDouble(bit));
+        }
+        return n;
+    }
+}
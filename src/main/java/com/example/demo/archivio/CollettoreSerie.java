@@ -0,0 +1,40 @@
+package com.example.demo.archivio;
+
+import com.example.demo.dto.SerieTemporaleDTO;
+
+import java.util.Arrays;
+
+/**
+ * Accumula punti in array primitivi a crescita geometrica e li restituisce come serie colonnare.
+ */
+public class CollettoreSerie implements ConsumatorePunto {
+
+    private long[] timestamp;
+    private double[] valori;
+    private int dimensione;
+
+    public CollettoreSerie(int capacitaIniziale) {
+        int capacita = Math.max(capacitaIniziale, 16);
+        this.timestamp = new long[capacita];
+        this.valori = new double[capacita];
+    }
+
+    @Override
+    public void accetta(long ts, double valore) {
+        if (dimensione == timestamp.length) {
+            int nuova = timestamp.length * 2;
+            timestamp = Arrays.copyOf(timestamp, nuova);
+            valori = Arrays.copyOf(valori, nuova);
+        }
+        timestamp[dimensione] = ts;
+        valori[dimensione++] = valore;
+    }
+
+    public int dimensione() {
+        return dimensione;
+    }
+
+    public SerieTemporaleDTO serie() {
+        return new SerieTemporaleDTO(Arrays.copyOf(timestamp, dimensione), Arrays.copyOf(valori, dimensione));
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.demo.archivio;
+
+/**
+ * Callback invocata per ogni punto decodificato di una serie.
+ * Riceve tipi primitivi, così la lettura sequenziale non alloca un oggetto per punto.
+ */
+@FunctionalInterface
+public interface ConsumatorePunto {
+    void accetta(long timestamp, double valore);
+}
@@ -0,0 +1,28 @@
+package com.example.demo.archivio;
+
+/**
+ * Lettura sequenziale di campi di lunghezza arbitraria (1-64 bit) da un buffer di byte.
+ */
+class LettoreBit {
+
+    private final byte[] buffer;
+    private long posizione;
+
+    LettoreBit(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    boolean leggiBit() {
+        boolean bit = (buffer[(int) (posizione >>> 3)] & (0x80 >>> (posizione & 7))) != 0;
+        posizione++;
+        return bit;
+    }
+
+    long leggi(int numBit) {
+        long valore = 0;
+        for (int i = 0; i < numBit; i++) {
+            valore = (valore << 1) | (leggiBit() ? 1L : 0L);
+        }
+        return valore;
+    }
+}
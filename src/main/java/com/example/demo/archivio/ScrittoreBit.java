@@ -0,0 +1,49 @@
+package com.example.demo.archivio;
+
+import java.util.Arrays;
+
+/**
+ * Scrittura sequenziale di campi di lunghezza arbitraria (1-64 bit) in un buffer di byte.
+ */
+class ScrittoreBit {
+
+    private byte[] buffer;
+    // Numero totale di bit scritti
+    private long posizione;
+
+    ScrittoreBit(int capacitaByte) {
+        this.buffer = new byte[Math.max(capacitaByte, 16)];
+    }
+
+    void scriviBit(boolean bit) {
+        assicuraSpazio(1);
+        if (bit) {
+            buffer[(int) (posizione >>> 3)] |= (byte) (0x80 >>> (posizione & 7));
+        }
+        posizione++;
+    }
+
+    /**
+     * Scrive i {@code numBit} bit meno significativi di {@code valore}, dal più significativo.
+     */
+    void scrivi(long valore, int numBit) {
+        assicuraSpazio(numBit);
+        for (int i = numBit - 1; i >= 0; i--) {
+            if (((valore >>> i) & 1L) != 0) {
+                buffer[(int) (posizione >>> 3)] |= (byte) (0x80 >>> (posizione & 7));
+            }
+            posizione++;
+        }
+    }
+
+    byte[] comeArray() {
+        return Arrays.copyOf(buffer, (int) ((posizione + 7) >>> 3));
+    }
+
+    private void assicuraSpazio(int numBit) {
+        long necessari = (posizione + numBit + 7) >>> 3;
+        if (necessari > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.max(necessari, buffer.length * 2L));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache dei dati di anagrafica (Reference Data): campi e sensori.
+ * <p>
+ * L'anagrafica cambia poche volte l'anno, mentre dashboard, grafici, simulatore e ingestione
+ * la consultano a ogni richiesta. Gli indici disponibili sono:
+ * - elenco completo dei campi e campo per ID (poche decine di righe, tenute per intero);
+ * - sensori attivi per campo, sensore per codice e sensore per ID, in cache LRU a dimensione limitata.
+ * Anche i codici sconosciuti vengono memorizzati, così un gateway mal configurato non genera una query per lettura.
+ * <p>
+ * Le entità restituite sono distaccate e vanno trattate in sola lettura. L'invalidazione avviene
+ * alla scrittura tramite {@link InvalidazioneAnagraficaListener}, sia subito sia al termine
+ * della transazione, per scartare eventuali ricaricamenti avvenuti prima del commit.
+ * <p>
+ * Metriche: caricamenti dal DB per indice (collina.anagrafica.caricamenti{indice}) e
+ * voci presenti nelle cache dei sensori (collina.anagrafica.voci{indice}).
+ */
+@Service
+public class AnagraficaServizio {
+
+    private static final String TUTTI = "tutti";
+
+    private final CampoRepository campoRepo;
+    private final SensoreRepository sensoreRepo;
+
+    private final CacheLimitata<String, ElencoCampi> campi = new CacheLimitata<>(1);
+    private final CacheLimitata<Long, List<Sensore>> sensoriPerCampo;
+    private final CacheLimitata<String, Optional<Sensore>> sensoriPerCodice;
+    private final CacheLimitata<Long, Optional<Sensore>> sensoriPerId;
+
+    // Incrementata a ogni invalidazione dei sensori, per chi mantiene strutture derivate dall'anagrafica
+    private final AtomicLong versioneSensori = new AtomicLong();
+
+    private final Counter caricamentiCampi;
+    private final Counter caricamentiPerCampo;
+    private final Counter caricamentiPerCodice;
+    private final Counter caricamentiPerId;
+
+    private record ElencoCampi(List<Campo> elenco, Map<Long, Campo> perId) {}
+
+    public AnagraficaServizio(CampoRepository campoRepo, SensoreRepository sensoreRepo, MeterRegistry metriche,
+                              @Value("${collina.anagrafica.max-campi:1024}") int maxCampi,
+                              @Value("${collina.anagrafica.max-sensori:20000}") int maxSensori) {
+        this.campoRepo = campoRepo;
+        this.sensoreRepo = sensoreRepo;
+        this.sensoriPerCampo = new CacheLimitata<>(maxCampi);
+        this.sensoriPerCodice = new CacheLimitata<>(maxSensori);
+        this.sensoriPerId = new CacheLimitata<>(maxSensori);
+
+        this.caricamentiCampi = caricamenti(metriche, "campi");
+        this.caricamentiPerCampo = caricamenti(metriche, "sensori-per-campo");
+        this.caricamentiPerCodice = caricamenti(metriche, "sensori-per-codice");
+        this.caricamentiPerId = caricamenti(metriche, "sensori-per-id");
+        Gauge.builder("collina.anagrafica.voci", sensoriPerCampo, CacheLimitata::dimensione)
+                .tag("indice", "sensori-per-campo").register(metriche);
+        Gauge.builder("collina.anagrafica.voci", sensoriPerCodice, CacheLimitata::dimensione)
+                .tag("indice", "sensori-per-codice").register(metriche);
+        Gauge.builder("collina.anagrafica.voci", sensoriPerId, CacheLimitata::dimensione)
+                .tag("indice", "sensori-per-id").register(metriche);
+    }
+
+    /**
+     * @return Tutti i campi, in ordine di ID.
+     */
+    public List<Campo> campi() {
+        return elencoCampi().elenco();
+    }
+
+    /**
+     * @return Il campo con l'ID indicato, se esiste.
+     */
+    public Optional<Campo> campo(Long campoId) {
+        return Optional.ofNullable(elencoCampi().perId().get(campoId));
+    }
+
+    /**
+     * @return I sensori attivi del campo (lista vuota se il campo non esiste o non ha sensori attivi).
+     */
+    public List<Sensore> sensoriAttivi(Long campoId) {
+        return sensoriPerCampo.ottieni(campoId, id -> {
+            caricamentiPerCampo.increment();
+            return List.copyOf(sensoreRepo.findByCampoIdAndAttivoTrue(id));
+        });
+    }
+
+    /**
+     * @return Il sensore con il codice indicato, attivo o meno, se esiste.
+     */
+    public Optional<Sensore> sensorePerCodice(String codice) {
+        return sensoriPerCodice.ottieni(codice, c -> {
+            caricamentiPerCodice.increment();
+            return sensoreRepo.findByCodice(c);
+        });
+    }
+
+    /**
+     * @return Il sensore con l'ID indicato, attivo o meno, se esiste.
+     */
+    public Optional<Sensore> sensore(Long sensoreId) {
+        return sensoriPerId.ottieni(sensoreId, id -> {
+            caricamentiPerId.increment();
+            return sensoreRepo.findById(id);
+        });
+    }
+
+    /**
+     * Invalida gli indici interessati dalla scrittura di un'entità di anagrafica.
+     * Se è attiva una transazione, l'invalidazione viene ripetuta al suo termine.
+     *
+     * @param entita L'entità scritta (Campo o Sensore).
+     */
+    public void invalida(Object entita) {
+        Runnable svuota = entita instanceof Campo ? campi::svuota : this::svuotaSensori;
+        svuota.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int stato) {
+                    svuota.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Un contatore che cambia a ogni modifica dei sensori: se è diverso dall'ultimo letto,
+     * le informazioni derivate dai sensori vanno ricaricate.
+     */
+    public long versioneSensori() {
+        return versioneSensori.get();
+    }
+
+    private void svuotaSensori() {
+        versioneSensori.incrementAndGet();
+        sensoriPerCampo.svuota();
+        sensoriPerCodice.svuota();
+        sensoriPerId.svuota();
+    }
+
+    private ElencoCampi elencoCampi() {
+        return campi.ottieni(TUTTI, k -> {
+            caricamentiCampi.increment();
+            List<Campo> elenco = List.copyOf(campoRepo.findAll(Sort.by("id")));
+            Map<Long, Campo> perId = new HashMap<>();
+            for (Campo campo : elenco) {
+                perId.put(campo.getId(), campo);
+            }
+            return new ElencoCampi(elenco, perId);
+        });
+    }
+
+    private static Counter caricamenti(MeterRegistry metriche, String indice) {
+        return Counter.builder("collina.anagrafica.caricamenti")
+                .description("Letture dell'anagrafica eseguite sul DB per mancanza in cache")
+                .tag("indice", indice)
+                .register(metriche);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache LRU thread-safe a dimensione limitata.
+ * <p>
+ * Oltre la capacità viene rimossa la voce usata meno di recente. Il caricamento di una voce
+ * mancante avviene fuori dal lock; un contatore di generazione impedisce che un caricamento
+ * iniziato prima di {@link #svuota()} reinserisca un valore ormai superato.
+ * I valori non possono essere null: per memorizzare un'assenza si usa {@link java.util.Optional}.
+ */
+public class CacheLimitata<K, V> {
+
+    private final Map<K, V> voci;
+    private long generazione;
+
+    public CacheLimitata(int capacita) {
+        this.voci = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> piuVecchia) {
+                return size() > capacita;
+            }
+        };
+    }
+
+    /**
+     * @return Il valore in cache, oppure quello prodotto dal caricatore (che viene memorizzato).
+     */
+    public V ottieni(K chiave, Function<? super K, ? extends V> caricatore) {
+        long generazioneLettura;
+        synchronized (this) {
+            V valore = voci.get(chiave);
+            if (valore != null) {
+                return valore;
+            }
+            generazioneLettura = generazione;
+        }
+
+        V caricato = caricatore.apply(chiave);
+        synchronized (this) {
+            if (generazioneLettura == generazione) {
+                voci.put(chiave, caricato);
+            }
+        }
+        return caricato;
+    }
+
+    /**
+     * Invalida tutte le voci, compresi i caricamenti ancora in corso.
+     */
+    public synchronized void svuota() {
+        voci.clear();
+        generazione++;
+    }
+
+    public synchronized int dimensione() {
+        return voci.size();
+    }
+}
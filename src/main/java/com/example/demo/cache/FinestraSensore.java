@@ -0,0 +1,153 @@
+package com.example.demo.cache;
+
+import com.example.demo.dto.SerieTemporaleDTO;
+
+/**
+ * Buffer circolare (Ring Buffer) specializzato su tipi primitivi che mantiene
+ * le ultime N rilevazioni di un singolo sensore.
+ * <p>
+ * Timestamp (epoch millis) e valori sono memorizzati in due array paralleli:
+ * nessun oggetto viene allocato per punto, e l'inserimento di una nuova
+ * rilevazione sovrascrive la più vecchia in O(1).
+ * <p>
+ * Una bitmap parallela marca i punti con qualità VALIDO, così le letture possono
+ * escludere i punti dubbi o invalidi senza interrogare il database.
+ * <p>
+ * Gli accessi sono sincronizzati sull'istanza: le scritture sono rare (una per
+ * campionamento) e le letture copiano al massimo N elementi.
+ */
+public class FinestraSensore {
+
+    private final long[] timestamp;
+    private final double[] valori;
+    // Bit i = 1 se il punto nella posizione fisica i è valido
+    private final long[] validi;
+
+    // Indice della prossima posizione da scrivere e numero di elementi validi
+    private int testa;
+    private int dimensione;
+
+    public FinestraSensore(int capacita) {
+        if (capacita <= 0) {
+            throw new IllegalArgumentException("La capacità della finestra deve essere positiva: " + capacita);
+        }
+        this.timestamp = new long[capacita];
+        this.valori = new double[capacita];
+        this.validi = new long[(capacita + 63) >>> 6];
+    }
+
+    /**
+     * Aggiunge una rilevazione mantenendo l'ordine cronologico.
+     * Il caso normale (rilevazione più recente dell'ultima) costa O(1);
+     * una rilevazione arrivata in ritardo viene inserita nella posizione corretta,
+     * oppure scartata se più vecchia dell'intera finestra piena.
+     */
+    public synchronized void aggiungi(long ts, double valore, boolean valido) {
+        int capacita = timestamp.length;
+
+        if (dimensione == 0 || ts >= timestamp[indice(dimensione - 1)]) {
+            timestamp[testa] = ts;
+            valori[testa] = valore;
+            impostaValido(testa, valido);
+            testa = (testa + 1) % capacita;
+            if (dimensione < capacita) {
+                dimensione++;
+            }
+            return;
+        }
+
+        if (dimensione == capacita && ts < timestamp[indice(0)]) {
+            return;
+        }
+
+        // Inserimento ordinato: scorre verso destra gli elementi più recenti
+        int pos = dimensione == capacita ? dimensione - 1 : dimensione;
+        if (dimensione == capacita) {
+            // La finestra è piena: il più vecchio viene scartato spostando l'origine
+            testa = (testa + 1) % capacita;
+        } else {
+            testa = (testa + 1) % capacita;
+            dimensione++;
+        }
+        while (pos > 0 && timestamp[indice(pos - 1)] > ts) {
+            timestamp[indice(pos)] = timestamp[indice(pos - 1)];
+            valori[indice(pos)] = valori[indice(pos - 1)];
+            impostaValido(indice(pos), valido(indice(pos - 1)));
+            pos--;
+        }
+        timestamp[indice(pos)] = ts;
+        valori[indice(pos)] = valore;
+        impostaValido(indice(pos), valido);
+    }
+
+    /**
+     * @return L'ultimo valore valido registrato, oppure null se la finestra non ne contiene.
+     */
+    public synchronized Double ultimoValore() {
+        for (int i = dimensione - 1; i >= 0; i--) {
+            int idx = indice(i);
+            if (valido(idx)) {
+                return valori[idx];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return L'istante dell'ultima rilevazione in epoch millis, oppure 0 se la finestra è vuota.
+     */
+    public synchronized long ultimoTimestamp() {
+        return dimensione == 0 ? 0L : timestamp[indice(dimensione - 1)];
+    }
+
+    /**
+     * Copia il contenuto della finestra in ordine cronologico (dal più vecchio al più recente).
+     */
+    public SerieTemporaleDTO istantanea() {
+        return istantanea(false);
+    }
+
+    /**
+     * Copia il contenuto della finestra in ordine cronologico.
+     *
+     * @param mascheraNonValidi Se true, i valori dei punti non validi sono sostituiti da NaN:
+     *                          l'asse temporale resta allineato con le altre serie.
+     */
+    public synchronized SerieTemporaleDTO istantanea(boolean mascheraNonValidi) {
+        long[] t = new long[dimensione];
+        double[] v = new double[dimensione];
+        for (int i = 0; i < dimensione; i++) {
+            int idx = indice(i);
+            t[i] = timestamp[idx];
+            v[i] = mascheraNonValidi && !valido(idx) ? Double.NaN : valori[idx];
+        }
+        return new SerieTemporaleDTO(t, v);
+    }
+
+    public synchronized int dimensione() {
+        return dimensione;
+    }
+
+    public int capacita() {
+        return timestamp.length;
+    }
+
+    private boolean valido(int idx) {
+        return (validi[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    private void impostaValido(int idx, boolean valido) {
+        if (valido) {
+            validi[idx >>> 6] |= 1L << idx;
+        } else {
+            validi[idx >>> 6] &= ~(1L << idx);
+        }
+    }
+
+    // Converte una posizione logica (0 = più vecchio) nell'indice fisico dell'array
+    private int indice(int posizioneLogica) {
+        int capacita = timestamp.length;
+        int origine = dimensione == capacita ? testa : (testa - dimensione + capacita) % capacita;
+        return (origine + posizioneLogica) % capacita;
+    }
+}
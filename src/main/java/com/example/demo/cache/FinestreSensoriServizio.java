@@ -0,0 +1,140 @@
+package com.example.demo.cache;
+
+import com.example.demo.dto.PuntoRilevazioneDTO;
+import com.example.demo.dto.SerieTemporaleDTO;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.service.EsecutoreParallelo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache in memoria delle ultime rilevazioni di ogni sensore (finestra mobile di 24 ore).
+ * <p>
+ * Mantiene una {@link FinestraSensore} per sensore, precaricata dal DB all'avvio
+ * e aggiornata a ogni nuova rilevazione confermata. Dashboard e API dei grafici
+ * leggono da qui senza eseguire query né istanziare entità.
+ */
+@Service
+public class FinestreSensoriServizio {
+
+    private static final Logger log = LoggerFactory.getLogger(FinestreSensoriServizio.class);
+
+    private final SensoreRepository sensoreRepo;
+    private final RilevazioneRepository rilevazioneRepo;
+    private final EsecutoreParallelo parallelo;
+
+    // Numero di slot per sensore: 96 = 24 ore a 15 minuti
+    private final int capacita;
+
+    private final Map<Long, FinestraSensore> finestre = new ConcurrentHashMap<>();
+
+    public FinestreSensoriServizio(SensoreRepository sensoreRepo, RilevazioneRepository rilevazioneRepo,
+                                   EsecutoreParallelo parallelo,
+                                   @Value("${collina.finestra.dimensione:96}") int capacita) {
+        this.sensoreRepo = sensoreRepo;
+        this.rilevazioneRepo = rilevazioneRepo;
+        this.parallelo = parallelo;
+        this.capacita = capacita;
+    }
+
+    /**
+     * Preriscaldamento (Warm-up): carica la finestra di ogni sensore all'avvio,
+     * dopo l'esecuzione dei CommandLineRunner di bootstrap. Le query dei sensori sono eseguite in parallelo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precarica() {
+        List<Long> sensoreIds = sensoreRepo.findAll().stream().map(Sensore::getId).toList();
+        parallelo.mappa(sensoreIds, this::finestra);
+        log.info("Finestre precaricate per {} sensori", finestre.size());
+    }
+
+    /**
+     * Accoda alla finestra di ciascun sensore le rilevazioni appena confermate.
+     * L'esecuzione avviene solo dopo il commit, così la cache non espone mai dati annullati.
+     * Ha la precedenza sugli altri listener, che leggono la cache già aggiornata.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void suNuoveRilevazioni(NuoveRilevazioniEvento evento) {
+        for (Rilevazione ril : evento.rilevazioni()) {
+            finestra(ril.getSensore().getId()).aggiungi(aEpochMillis(ril.getTimestamp()), ril.getValore(), valida(ril.getQualita()));
+        }
+    }
+
+    /**
+     * @return L'ultimo valore noto del sensore, oppure null se non ci sono dati.
+     */
+    public Double ultimoValore(Long sensoreId) {
+        return finestra(sensoreId).ultimoValore();
+    }
+
+    /**
+     * @return Le rilevazioni della finestra in ordine cronologico.
+     */
+    public SerieTemporaleDTO serie(Long sensoreId) {
+        return finestra(sensoreId).istantanea();
+    }
+
+    /**
+     * @return Le rilevazioni della finestra in ordine cronologico, con NaN al posto dei valori non validi.
+     */
+    public SerieTemporaleDTO serieMascherata(Long sensoreId) {
+        return finestra(sensoreId).istantanea(true);
+    }
+
+    /**
+     * Restituisce la finestra del sensore, caricandola dal DB al primo accesso
+     * (ad esempio per un sensore registrato dopo l'avvio).
+     * La query viene eseguita fuori dalla mappa, così non blocca i bin di altri sensori:
+     * se due thread caricano lo stesso sensore, resta la prima finestra inserita.
+     */
+    private FinestraSensore finestra(Long sensoreId) {
+        FinestraSensore finestra = finestre.get(sensoreId);
+        if (finestra != null) {
+            return finestra;
+        }
+        FinestraSensore caricata = caricaDalDb(sensoreId);
+        FinestraSensore esistente = finestre.putIfAbsent(sensoreId, caricata);
+        return esistente != null ? esistente : caricata;
+    }
+
+    private FinestraSensore caricaDalDb(Long sensoreId) {
+        FinestraSensore finestra = new FinestraSensore(capacita);
+        List<PuntoRilevazioneDTO> recenti = rilevazioneRepo.findPuntiRecenti(sensoreId, Limit.of(capacita));
+
+        // La query restituisce dal più recente al più vecchio: si inserisce al contrario
+        for (int i = recenti.size() - 1; i >= 0; i--) {
+            PuntoRilevazioneDTO punto = recenti.get(i);
+            finestra.aggiungi(aEpochMillis(punto.timestamp()), punto.valore(), valida(punto.qualita()));
+        }
+        return finestra;
+    }
+
+    // Le righe precedenti alla classificazione di qualità (qualita null) sono considerate valide
+    private static boolean valida(QualitaDato qualita) {
+        return qualita == null || qualita == QualitaDato.VALIDO;
+    }
+
+    public static long aEpochMillis(LocalDateTime ts) {
+        return ts.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo.cache;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Listener JPA registrato su Campo e Sensore: a ogni scrittura invalida la cache dell'anagrafica.
+ * <p>
+ * Viene istanziato da Hibernate tramite il contenitore di bean di Spring durante la creazione
+ * dell'EntityManagerFactory; per questo il servizio è risolto in modo differito con un ObjectProvider.
+ */
+public class InvalidazioneAnagraficaListener {
+
+    private final ObjectProvider<AnagraficaServizio> anagrafica;
+
+    public InvalidazioneAnagraficaListener(ObjectProvider<AnagraficaServizio> anagrafica) {
+        this.anagrafica = anagrafica;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void modificata(Object entita) {
+        anagrafica.ifAvailable(servizio -> servizio.invalida(entita));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.configurazione;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Configurazione dell'avvio con inizializzazione differita dei bean (profilo "avvio-rapido").
+ * <p>
+ * Con {@code spring.main.lazy-initialization=true} un bean viene creato solo al primo utilizzo:
+ * controller, servizi di analisi ed esportazione non rallentano più l'avvio. Restano invece
+ * immediati i componenti che devono partire da soli: i job {@code @Scheduled} (pianificati solo
+ * alla creazione del bean) e i CommandLineRunner di bootstrap. I listener di eventi, compresi
+ * quelli su ApplicationReadyEvent, creano il proprio bean alla prima notifica.
+ */
+@Configuration(proxyBeanMethods = false)
+public class AvvioConfigurazione {
+
+    @Bean
+    static LazyInitializationExcludeFilter componentiImmediati() {
+        return (nome, definizione, tipo) -> tipo != null
+                && (CommandLineRunner.class.isAssignableFrom(tipo) || pianificato(tipo));
+    }
+
+    private static boolean pianificato(Class<?> tipo) {
+        return !MethodIntrospector.selectMethods(tipo, (MethodIntrospector.MetadataLookup<Scheduled>) m ->
+                AnnotatedElementUtils.findMergedAnnotation(m, Scheduled.class)).isEmpty();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.controller;
+
+import com.example.demo.allerta.MotoreAllerteServizio;
+import com.example.demo.dto.AllertaDTO;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/allerte")
+public class AllerteApiController {
+
+    private static final int MAX_VOCI_FEED = 500;
+
+    private final MotoreAllerteServizio motoreAllerte;
+
+    public AllerteApiController(MotoreAllerteServizio motoreAllerte) {
+        this.motoreAllerte = motoreAllerte;
+    }
+
+    /**
+     * Feed delle transizioni di allerta (aperture e rientri), dalla più recente.
+     * @param campoId Il campo da filtrare (opzionale).
+     * @param limit Numero massimo di voci (default 50).
+     * @return Le transizioni.
+     */
+    @GetMapping
+    public List<AllertaDTO> getFeed(@RequestParam(required = false) Long campoId,
+                                    @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > MAX_VOCI_FEED) {
+            throw new IllegalArgumentException("limit deve essere compreso tra 1 e " + MAX_VOCI_FEED);
+        }
+        return motoreAllerte.feed(campoId, limit);
+    }
+
+    /**
+     * Allerte attualmente aperte, dalla più grave.
+     * @param campoId Il campo da filtrare (opzionale).
+     * @return Le aperture ancora in corso.
+     */
+    @GetMapping("/attive")
+    public List<AllertaDTO> getAttive(@RequestParam(required = false) Long campoId) {
+        return motoreAllerte.attive(campoId);
+    }
+}
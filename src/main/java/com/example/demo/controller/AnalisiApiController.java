@@ -0,0 +1,45 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.ConfrontoCampiDTO;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.service.ConfrontoCampiServizio;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/analisi")
+public class AnalisiApiController {
+
+    // Ampiezza massima dell'intervallo confrontabile (un anno e un giorno)
+    private static final Duration MAX_INTERVALLO = Duration.ofDays(366);
+
+    private final ConfrontoCampiServizio confrontoCampi;
+
+    public AnalisiApiController(ConfrontoCampiServizio confrontoCampi) {
+        this.confrontoCampi = confrontoCampi;
+    }
+
+    /**
+     * Confronto tra tutti i campi per una tipologia di sensore: statistiche per campo
+     * (media, minimo, massimo, deviazione standard, percentili) e correlazioni tra campi.
+     * @param tipo La tipologia di sensore (es. SOIL_MOISTURE, TEMP_SOIL, NDVI_SAT).
+     * @param from Inizio dell'intervallo (incluso), formato ISO.
+     * @param to Fine dell'intervallo (escluso).
+     * @return Il confronto tra i campi.
+     */
+    @GetMapping("/confronto")
+    public ConfrontoCampiDTO getConfronto(@RequestParam TipoSensore tipo,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (Duration.between(from, to).compareTo(MAX_INTERVALLO) > 0) {
+            throw new IllegalArgumentException("L'intervallo non può superare " + MAX_INTERVALLO.toDays() + " giorni");
+        }
+        return confrontoCampi.confronta(tipo, from, to);
+    }
+}
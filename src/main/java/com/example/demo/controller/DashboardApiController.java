@@ -1,10 +1,15 @@
 package com.example.demo.controller;
 
 import com.example.demo.service.RilevazioneServizio; //
+import com.example.demo.service.VersioneDatiServizio;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.Map;
 
@@ -13,20 +18,33 @@ import java.util.Map;
 public class DashboardApiController {
 
     private final RilevazioneServizio rilevazioneServizio;
+    private final VersioneDatiServizio versioneDati;
 
-    public DashboardApiController(RilevazioneServizio rilevazioneServizio) {
+    public DashboardApiController(RilevazioneServizio rilevazioneServizio, VersioneDatiServizio versioneDati) {
         this.rilevazioneServizio = rilevazioneServizio;
+        this.versioneDati = versioneDati;
     }
 
     /**
      * Endpoint API chiamato via AJAX dalla dashboard per popolare il grafico dinamico.
+     * Supporta le richieste condizionali: se i dati non sono cambiati risponde 304 Not Modified.
      * @param campoId L'ID del campo selezionato (proveniente dal frontend).
      * @return Dati formattati per Chart.js (Labels, Datasets).
      */
     @GetMapping("/temp-umidita")
-    public Map<String, Object> getChartData(@RequestParam Long campoId) {
+    public ResponseEntity<Map<String, Object>> getChartData(@RequestParam Long campoId, WebRequest request) {
+        VersioneDatiServizio.Versione versione = versioneDati.corrente();
+        String etag = versione.etag(campoId);
+        if (request.checkNotModified(etag, versione.ultimaModifica())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
         // Chiama il nuovo servizio per ottenere i dati aggregati e formattati
-        return rilevazioneServizio.seriesTempUmiditaByCampo(campoId);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .lastModified(versione.ultimaModifica())
+                .body(rilevazioneServizio.seriesTempUmiditaByCampo(campoId));
     }
 }
 
@@ -1,9 +1,14 @@
 package com.example.demo.controller;
 
+import com.example.demo.service.VersioneDatiServizio;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.ui.Model;
 import com.example.demo.service.DashboardServizio;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Controller dedicato alla gestione delle richieste HTTP per la visualizzazione
@@ -19,27 +24,44 @@ public class DashboardController {
      */
     private final DashboardServizio dashboardServizio;
 
+    /**
+     * Versione corrente dei dati, usata per le richieste condizionali (ETag / Last-Modified).
+     */
+    private final VersioneDatiServizio versioneDati;
+
     /**
      * Costruttore per l'iniezione delle dipendenze (Dependency Injection).
      * Spring Boot (tramite lo "Stereotype Controller") riconosce automaticamente
      * il costruttore e inietta l'istanza di DashboardServizio.
      * * @param dashboardServizio L'istanza del servizio di Dashboard.
+     * @param versioneDati Il contatore di versione dei dati.
      */
-    public DashboardController(DashboardServizio dashboardServizio) {
+    public DashboardController(DashboardServizio dashboardServizio, VersioneDatiServizio versioneDati) {
         this.dashboardServizio = dashboardServizio;
+        this.versioneDati = versioneDati;
     }
 
     /**
      * Gestisce la richiesta GET sulla root dell'applicazione ("http://localhost:8080/").
      *
-     * 1. Recupera il DashboardDTO contenente i dati aggregati tramite DashboardServizio.
-     * 2. Aggiunge questi dati all'oggetto Model per renderli accessibili al template.
+     * 1. Se il client possiede già la versione corrente (If-None-Match / If-Modified-Since),
+     *    risponde 304 Not Modified senza interpellare i servizi.
+     * 2. Recupera il DashboardDTO contenente i dati aggregati tramite DashboardServizio.
+     * 3. Aggiunge questi dati all'oggetto Model per renderli accessibili al template.
      * * @param model L'oggetto Model per il trasferimento dei dati alla vista.
      * @return Il nome del template Thymeleaf da renderizzare (risolve in
-     * src/main/resources/templates/dashboard.html).
+     * src/main/resources/templates/dashboard.html), oppure null in caso di 304.
      */
     @GetMapping("/")
-    public String overview(Model model) {
+    public String overview(Model model, WebRequest request, HttpServletResponse response) {
+        // Obbliga browser e reverse proxy a rivalidare la pagina a ogni richiesta
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+
+        VersioneDatiServizio.Versione versione = versioneDati.corrente();
+        if (request.checkNotModified(versione.etag(null), versione.ultimaModifica())) {
+            return null;
+        }
+
         // Il dato recuperato sarà disponibile nel template come variabile 'data'
         model.addAttribute("data", dashboardServizio.overview());
         return "dashboard";
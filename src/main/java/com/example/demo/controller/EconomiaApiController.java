@@ -0,0 +1,50 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.BilancioCampoDTO;
+import com.example.demo.dto.CostoManualeDTO;
+import com.example.demo.enums.Granularita;
+import com.example.demo.service.RegistroEconomicoServizio;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/economia")
+public class EconomiaApiController {
+
+    private final RegistroEconomicoServizio registroEconomico;
+
+    public EconomiaApiController(RegistroEconomicoServizio registroEconomico) {
+        this.registroEconomico = registroEconomico;
+    }
+
+    /**
+     * Andamento del bilancio di un campo su un intervallo, calcolato dai saldi orari materializzati.
+     * @param campoId L'ID del campo.
+     * @param from Inizio dell'intervallo (incluso), formato ISO.
+     * @param to Fine dell'intervallo (escluso).
+     * @param granularita Ampiezza dei punti: ORA (default) o GIORNO.
+     * @return Totali del periodo e serie cumulata del bilancio.
+     */
+    @GetMapping("/campi/{campoId}")
+    public BilancioCampoDTO getBilancio(@PathVariable Long campoId,
+                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                        @RequestParam(defaultValue = "ORA") Granularita granularita) {
+        return registroEconomico.bilancio(campoId, from, to, granularita);
+    }
+
+    /**
+     * Registra un costo manuale sul campo.
+     * @param campoId L'ID del campo.
+     * @param costo Importo e causale.
+     */
+    @PostMapping("/campi/{campoId}/costi")
+    public ResponseEntity<Void> registraCosto(@PathVariable Long campoId, @RequestBody CostoManualeDTO costo) {
+        registroEconomico.registraCostoManuale(campoId, costo);
+        return ResponseEntity.status(HttpStatus.CREATED).build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.exception.RisorsaNonTrovataEccezione;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.service.EsportazioneCsvServizio;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RestController
+@RequestMapping("/api/esportazioni")
+public class EsportazioneApiController {
+
+    private static final DateTimeFormatter FORMATO_NOME = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final EsportazioneCsvServizio esportazione;
+    private final SensoreRepository sensoreRepo;
+
+    public EsportazioneApiController(EsportazioneCsvServizio esportazione, SensoreRepository sensoreRepo) {
+        this.esportazione = esportazione;
+        this.sensoreRepo = sensoreRepo;
+    }
+
+    /**
+     * Esportazione CSV delle rilevazioni di un campo o di un singolo sensore, in streaming.
+     * Include anche i sensori disattivati e tutte le rilevazioni, con il loro esito di qualità.
+     * @param campoId Il campo da esportare (alternativo a sensoreId).
+     * @param sensoreId Il sensore da esportare (alternativo a campoId).
+     * @param from Inizio dell'intervallo (incluso), formato ISO.
+     * @param to Fine dell'intervallo (escluso).
+     * @param sensorTypes Tipologie di sensore da includere (default: tutte).
+     * @param gzip Se true (default) il file è compresso gzip.
+     * @param richiesta La richiesta corrente, per rilasciare lo slot di esportazione anche in caso di
+     *                  timeout o errore della risposta asincrona (quando il corpo non viene mai eseguito).
+     * @return Il file CSV, scritto riga per riga durante la lettura dal DB.
+     */
+    @GetMapping("/rilevazioni")
+    public ResponseEntity<StreamingResponseBody> esportaRilevazioni(
+            @RequestParam(required = false) Long campoId,
+            @RequestParam(required = false) Long sensoreId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) List<TipoSensore> sensorTypes,
+            @RequestParam(defaultValue = "true") boolean gzip,
+            NativeWebRequest richiesta) {
+        if ((campoId == null) == (sensoreId == null)) {
+            throw new IllegalArgumentException("Indicare uno solo tra campoId e sensoreId");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Intervallo non valido: 'from' deve precedere 'to'");
+        }
+
+        List<Sensore> sensori = campoId != null
+                ? sensoreRepo.findByCampoIdOrderById(campoId)
+                : sensoreRepo.findById(sensoreId).map(List::of).orElse(List.of());
+        if (sensori.isEmpty()) {
+            throw campoId != null
+                    ? new RisorsaNonTrovataEccezione("Campo", campoId)
+                    : new RisorsaNonTrovataEccezione("Sensore", sensoreId);
+        }
+        List<Sensore> selezionati = sensori.stream()
+                .filter(s -> sensorTypes == null || sensorTypes.isEmpty() || sensorTypes.contains(s.getTipo()))
+                .toList();
+
+        if (!esportazione.prenota()) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Troppe esportazioni in corso, riprovare più tardi");
+        }
+        // Rilasciato una sola volta: al termine della scrittura oppure al completamento della richiesta asincrona
+        AtomicBoolean rilasciato = new AtomicBoolean();
+        Runnable rilascia = () -> {
+            if (rilasciato.compareAndSet(false, true)) {
+                esportazione.rilascia();
+            }
+        };
+        WebAsyncUtils.getAsyncManager(richiesta).registerCallableInterceptor(EsportazioneApiController.class,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                        rilascia.run();
+                    }
+                });
+        StreamingResponseBody corpo = uscita -> {
+            try {
+                esportazione.scrivi(selezionati, from, to, gzip, uscita);
+            } finally {
+                rilascia.run();
+            }
+        };
+
+        String nome = (campoId != null ? "campo-" + campoId : "sensore-" + sensoreId)
+                + "_" + from.format(FORMATO_NOME) + "-" + to.format(FORMATO_NOME) + (gzip ? ".csv.gz" : ".csv");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : new MediaType("text", "csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(nome).build().toString())
+                .body(corpo);
+    }
+}
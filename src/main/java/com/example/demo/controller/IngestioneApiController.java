@@ -0,0 +1,36 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.EsitoIngestioneDTO;
+import com.example.demo.dto.RilevazioneInDTO;
+import com.example.demo.service.IngestioneServizio;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/rilevazioni")
+public class IngestioneApiController {
+
+    private final IngestioneServizio ingestioneServizio;
+
+    public IngestioneApiController(IngestioneServizio ingestioneServizio) {
+        this.ingestioneServizio = ingestioneServizio;
+    }
+
+    /**
+     * Endpoint di ingestione massiva chiamato dai gateway di campo a ogni flush.
+     * Accetta migliaia di rilevazioni per richiesta.
+     * @param rilevazioni Le rilevazioni da salvare (codice sensore, timestamp, valore).
+     * @return L'esito con il conteggio delle righe salvate e scartate (201 Created).
+     */
+    @PostMapping
+    public ResponseEntity<EsitoIngestioneDTO> ingerisci(@RequestBody List<RilevazioneInDTO> rilevazioni) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ingestioneServizio.ingerisci(rilevazioni));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.FlussoLiveServizio;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/live")
+public class LiveApiController {
+
+    private final FlussoLiveServizio flussoLive;
+
+    public LiveApiController(FlussoLiveServizio flussoLive) {
+        this.flussoLive = flussoLive;
+    }
+
+    /**
+     * Endpoint Server-Sent Events a cui la dashboard si collega con EventSource.
+     * Eventi inviati: "rilevazione" (nuova lettura) e "campo" (delta delle statistiche di ogni campo).
+     * @param campoId Il campo di cui ricevere le rilevazioni; se assente, tutti i campi.
+     * @param rilevazioni Se false (es. nessun campo selezionato) arrivano solo i delta dei campi.
+     * @return Lo stream SSE.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter iscrivi(@RequestParam(required = false) Long campoId,
+                              @RequestParam(defaultValue = "true") boolean rilevazioni) {
+        return flussoLive.iscrivi(campoId, rilevazioni);
+    }
+}
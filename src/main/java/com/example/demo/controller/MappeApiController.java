@@ -0,0 +1,99 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.MappaInterpolataDTO;
+import com.example.demo.dto.PoligonoDTO;
+import com.example.demo.dto.PosizioneSensoreDTO;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.spaziale.IndiceSensoriServizio;
+import com.example.demo.spaziale.MappaInterpolataServizio;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/mappe")
+public class MappeApiController {
+
+    // Raggio massimo delle ricerche spaziali (50 km)
+    private static final double MAX_RAGGIO_METRI = 50_000;
+
+    // Vertici massimi di un poligono di ricerca
+    private static final int MAX_VERTICI = 1000;
+
+    private final MappaInterpolataServizio mappaInterpolata;
+    private final IndiceSensoriServizio indiceSensori;
+
+    public MappeApiController(MappaInterpolataServizio mappaInterpolata, IndiceSensoriServizio indiceSensori) {
+        this.mappaInterpolata = mappaInterpolata;
+        this.indiceSensori = indiceSensori;
+    }
+
+    /**
+     * Mappa interpolata (IDW) di una tipologia di sensore su un campo, dagli ultimi valori dei sensori.
+     * @param campoId L'ID del campo.
+     * @param tipo La tipologia di sensore (es. SOIL_MOISTURE, TEMP_SOIL).
+     * @param celle Numero di celle sul lato più lungo del campo (default 64).
+     * @param raggio Raggio di influenza dei sensori in metri (default: tutti i sensori del campo).
+     * @return La griglia dei valori, per riga da sud-ovest.
+     */
+    @GetMapping("/campi/{campoId}")
+    public MappaInterpolataDTO getMappaCampo(@PathVariable Long campoId,
+                                             @RequestParam TipoSensore tipo,
+                                             @RequestParam(defaultValue = "64") int celle,
+                                             @RequestParam(required = false) Double raggio) {
+        if (raggio != null) {
+            verificaRaggio(raggio);
+        }
+        return mappaInterpolata.mappa(campoId, tipo, celle, raggio);
+    }
+
+    /**
+     * Sensori attivi entro un raggio da un punto, dal più vicino.
+     * @param lat Latitudine del centro (gradi decimali).
+     * @param lon Longitudine del centro.
+     * @param raggio Raggio in metri.
+     * @param tipo Tipologia di sensore (default: tutte).
+     * @return Le posizioni dei sensori con la distanza dal centro.
+     */
+    @GetMapping("/sensori/raggio")
+    public List<PosizioneSensoreDTO> getSensoriEntroRaggio(@RequestParam double lat, @RequestParam double lon,
+                                                           @RequestParam double raggio,
+                                                           @RequestParam(required = false) TipoSensore tipo) {
+        verificaPunto(lat, lon);
+        verificaRaggio(raggio);
+        return indiceSensori.entroRaggio(lat, lon, raggio, tipo);
+    }
+
+    /**
+     * Sensori attivi interni a un poligono (ad esempio un appezzamento disegnato sulla mappa).
+     * @param poligono Vertici del poligono e tipologia di sensore facoltativa.
+     * @return Le posizioni dei sensori, in ordine di ID.
+     */
+    @PostMapping("/sensori/poligono")
+    public List<PosizioneSensoreDTO> cercaSensoriNelPoligono(@RequestBody PoligonoDTO poligono) {
+        double[] lat = poligono.latitudini();
+        double[] lon = poligono.longitudini();
+        if (lat == null || lon == null || lat.length != lon.length) {
+            throw new IllegalArgumentException("Latitudini e longitudini dei vertici devono avere la stessa lunghezza");
+        }
+        if (lat.length < 3 || lat.length > MAX_VERTICI) {
+            throw new IllegalArgumentException("Il poligono deve avere tra 3 e " + MAX_VERTICI + " vertici");
+        }
+        for (int i = 0; i < lat.length; i++) {
+            verificaPunto(lat[i], lon[i]);
+        }
+        return indiceSensori.entroPoligono(lat, lon, poligono.tipo());
+    }
+
+    private static void verificaPunto(double lat, double lon) {
+        if (!(lat >= -90 && lat <= 90) || !(lon >= -180 && lon <= 180)) {
+            throw new IllegalArgumentException("Coordinate non valide: " + lat + ", " + lon);
+        }
+    }
+
+    private static void verificaRaggio(double raggio) {
+        if (!(raggio > 0) || raggio > MAX_RAGGIO_METRI) {
+            throw new IllegalArgumentException("Il raggio deve essere compreso tra 0 e " + (long) MAX_RAGGIO_METRI + " metri");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.SerieCampoDTO;
+import com.example.demo.dto.SerieTemporaleDTO;
+import com.example.demo.dto.StoricoSensoreDTO;
+import com.example.demo.enums.Risoluzione;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.service.RilevazioneServizio;
+import com.example.demo.service.SerieStoricaServizio;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/storico")
+public class StoricoApiController {
+
+    // Limite superiore ai punti per serie richiedibili dal client
+    private static final int MAX_PUNTI_CONSENTITI = 5000;
+
+    private final SerieStoricaServizio serieStorica;
+    private final RilevazioneServizio rilevazioneServizio;
+
+    public StoricoApiController(SerieStoricaServizio serieStorica, RilevazioneServizio rilevazioneServizio) {
+        this.serieStorica = serieStorica;
+        this.rilevazioneServizio = rilevazioneServizio;
+    }
+
+    /**
+     * Endpoint per lo storico di un singolo sensore su un intervallo arbitrario.
+     * La risoluzione (grezza, oraria, giornaliera) è scelta in base all'ampiezza dell'intervallo.
+     * @param sensoreId L'ID del sensore.
+     * @param from Inizio dell'intervallo (incluso), formato ISO (es. 2025-06-01T00:00).
+     * @param to Fine dell'intervallo (escluso).
+     * @return La serie in formato colonnare.
+     */
+    @GetMapping("/sensori/{sensoreId}")
+    public StoricoSensoreDTO getStoricoSensore(@PathVariable Long sensoreId,
+                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        Risoluzione risoluzione = serieStorica.risoluzionePer(from, to);
+        SerieTemporaleDTO serie = serieStorica.serie(sensoreId, from, to, risoluzione);
+        return new StoricoSensoreDTO(sensoreId, risoluzione, serie.timestamp(), serie.valori());
+    }
+
+    /**
+     * Endpoint dei grafici su intervallo per un campo: una serie per sensore,
+     * ridotta lato server con LTTB e restituita in formato colonnare.
+     * @param campoId L'ID del campo.
+     * @param from Inizio dell'intervallo (incluso).
+     * @param to Fine dell'intervallo (escluso).
+     * @param sensorTypes Tipologie di sensore da includere (default: tutte).
+     * @param maxPoints Numero massimo di punti per serie (default 500).
+     * @return Le serie del campo.
+     */
+    @GetMapping("/campi/{campoId}")
+    public SerieCampoDTO getSerieCampo(@PathVariable Long campoId,
+                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                       @RequestParam(required = false) List<TipoSensore> sensorTypes,
+                                       @RequestParam(defaultValue = "500") int maxPoints) {
+        if (maxPoints < 3 || maxPoints > MAX_PUNTI_CONSENTITI) {
+            throw new IllegalArgumentException("maxPoints deve essere compreso tra 3 e " + MAX_PUNTI_CONSENTITI);
+        }
+        Set<TipoSensore> tipi = sensorTypes == null || sensorTypes.isEmpty()
+                ? EnumSet.noneOf(TipoSensore.class)
+                : EnumSet.copyOf(sensorTypes);
+        return rilevazioneServizio.serieCampo(campoId, from, to, tipi, maxPoints);
+    }
+}
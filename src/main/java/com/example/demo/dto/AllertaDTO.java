@@ -0,0 +1,33 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.LivelloAlert;
+import com.example.demo.enums.TransizioneAllerta;
+
+import java.time.LocalDateTime;
+
+/**
+ * Voce del feed delle allerte.
+ *
+ * @param id L'ID della transizione.
+ * @param regolaId La regola che l'ha generata.
+ * @param regola Il nome della regola.
+ * @param livello Il livello di gravità.
+ * @param transizione APERTA o RIENTRATA.
+ * @param sensoreId Il sensore interessato.
+ * @param campoId Il campo del sensore.
+ * @param timestamp L'istante della rilevazione che ha causato la transizione.
+ * @param valore Il valore valutato (lettura o variazione oraria).
+ * @param messaggio Descrizione leggibile.
+ */
+public record AllertaDTO(
+        Long id,
+        Long regolaId,
+        String regola,
+        LivelloAlert livello,
+        TransizioneAllerta transizione,
+        Long sensoreId,
+        Long campoId,
+        LocalDateTime timestamp,
+        Double valore,
+        String messaggio
+) {}
@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.Granularita;
+
+/**
+ * Andamento economico di un campo su un intervallo, in formato colonnare.
+ *
+ * @param campoId L'ID del campo.
+ * @param granularita L'ampiezza dei punti della serie (ora o giorno).
+ * @param produzioneKg La produzione del periodo.
+ * @param costi I costi del periodo.
+ * @param ricavi I ricavi del periodo.
+ * @param timestamp L'inizio di ogni intervallo, in epoch millis.
+ * @param bilancio Il bilancio cumulato (ricavi - costi dall'apertura) alla fine di ogni intervallo.
+ */
+public record BilancioCampoDTO(
+        Long campoId,
+        Granularita granularita,
+        double produzioneKg,
+        double costi,
+        double ricavi,
+        long[] timestamp,
+        double[] bilancio
+) {}
@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Evento del flusso live: variazione delle statistiche di un campo (vedi {@link CampoStatsDTO}).
+ * Contiene solo i campi cambiati; quelli null non vengono serializzati.
+ *
+ * @param campoId Il campo interessato.
+ * @param temperaturaAriaRecente La nuova temperatura dell'aria, se cambiata.
+ * @param produzioneKg La nuova produzione, se cambiata.
+ * @param bilancioEconomico Il nuovo bilancio economico, se cambiato.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CampoDeltaDTO(
+        Long campoId,
+        Double temperaturaAriaRecente,
+        Double produzioneKg,
+        Double bilancioEconomico
+) {}
@@ -7,11 +7,13 @@ import com.example.demo.enums.StatoCampo;
  * le statistiche riassuntive di un singolo campo.
  * Usato per popolare le "Card" nella pagina principale.
  *
+ * @param campoId L'identificativo del campo (usato dal frontend per grafici e aggiornamenti live).
  * @param nomeCampo Il nome visuale del campo.
  * @param stato Lo stato operativo (es. ATTIVO, RIPOSO).
  * @param temperaturaAriaRecente L'ultima temperatura registrata (KPI principale), può essere null.
  */
 public record CampoStatsDTO(
+        Long campoId,
         String nomeCampo,
         StatoCampo stato,
         Double temperaturaAriaRecente,
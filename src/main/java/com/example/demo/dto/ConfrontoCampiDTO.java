@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.Risoluzione;
+import com.example.demo.enums.TipoSensore;
+
+import java.util.List;
+
+/**
+ * Risposta dell'API di confronto tra campi per una tipologia di sensore.
+ *
+ * @param tipo La tipologia di sensore confrontata.
+ * @param unita L'unità di misura dei valori.
+ * @param risoluzione L'ampiezza dei bucket su cui sono allineate le serie (ORARIA o GIORNALIERA).
+ * @param campi Le statistiche per campo, in ordine di ID.
+ * @param correlazioni Matrice simmetrica dei coefficienti di Pearson tra i campi, nello stesso ordine;
+ *                     null dove i bucket in comune sono insufficienti.
+ */
+public record ConfrontoCampiDTO(
+        TipoSensore tipo,
+        String unita,
+        Risoluzione risoluzione,
+        List<StatisticheCampoDTO> campi,
+        Double[][] correlazioni
+) {}
@@ -0,0 +1,12 @@
+package com.example.demo.dto;
+
+/**
+ * Registrazione manuale di un costo su un campo.
+ *
+ * @param importo L'importo in euro (positivo).
+ * @param causale La descrizione del costo.
+ */
+public record CostoManualeDTO(
+        Double importo,
+        String causale
+) {}
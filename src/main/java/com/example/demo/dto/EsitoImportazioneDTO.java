@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+/**
+ * DTO immutabile (Record) che riassume l'esito di un'importazione storica da file CSV.
+ * Se l'importazione è stata ripresa, i conteggi comprendono anche le esecuzioni precedenti.
+ *
+ * @param file Percorso assoluto del file importato.
+ * @param porzioni Numero di porzioni in cui è stato suddiviso il file.
+ * @param righeImportate Rilevazioni inserite.
+ * @param righeScartate Righe malformate o con codice sensore sconosciuto (compresa l'eventuale intestazione).
+ * @param millisecondi Durata dell'esecuzione corrente.
+ */
+public record EsitoImportazioneDTO(
+        String file,
+        int porzioni,
+        long righeImportate,
+        long righeScartate,
+        long millisecondi
+) {}
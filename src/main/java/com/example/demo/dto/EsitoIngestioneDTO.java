@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import java.util.Set;
+
+/**
+ * DTO immutabile (Record) che riassume l'esito di una richiesta di ingestione.
+ *
+ * @param ricevute Numero di rilevazioni presenti nella richiesta.
+ * @param salvate Numero di rilevazioni effettivamente persistite.
+ * @param scartate Numero di rilevazioni scartate (sensore sconosciuto o valore mancante).
+ * @param codiciSconosciuti Codici sensore non presenti in anagrafica.
+ */
+public record EsitoIngestioneDTO(
+        int ricevute,
+        int salvate,
+        int scartate,
+        Set<String> codiciSconosciuti
+) {}
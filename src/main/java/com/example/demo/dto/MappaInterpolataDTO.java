@@ -0,0 +1,37 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.TipoSensore;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mappa interpolata di una grandezza su un campo, come griglia regolare di celle.
+ * La cella (r, c) ha centro in latitudineMin + (r + 0.5) * passoLatitudine, longitudineMin + (c + 0.5) * passoLongitudine.
+ *
+ * @param campoId L'identificativo del campo.
+ * @param tipo La tipologia di sensore interpolata.
+ * @param unita L'unità di misura dei valori.
+ * @param righe Il numero di righe (da sud a nord).
+ * @param colonne Il numero di colonne (da ovest a est).
+ * @param latitudineMin Il bordo sud della griglia.
+ * @param longitudineMin Il bordo ovest della griglia.
+ * @param passoLatitudine L'altezza di una cella in gradi.
+ * @param passoLongitudine La larghezza di una cella in gradi.
+ * @param valori I valori per riga (righe * colonne); null dove nessun sensore contribuisce.
+ * @param sensori Il numero di sensori con un valore recente usati per l'interpolazione.
+ * @param calcolata L'istante del calcolo (la mappa resta in cache finché non arrivano nuove rilevazioni).
+ */
+public record MappaInterpolataDTO(
+        Long campoId,
+        TipoSensore tipo,
+        String unita,
+        int righe,
+        int colonne,
+        double latitudineMin,
+        double longitudineMin,
+        double passoLatitudine,
+        double passoLongitudine,
+        Double[] valori,
+        int sensori,
+        LocalDateTime calcolata
+) {}
@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.TipoSensore;
+
+/**
+ * Ricerca dei sensori interni a un poligono.
+ *
+ * @param latitudini Le latitudini dei vertici, nell'ordine di percorrenza (almeno tre).
+ * @param longitudini Le longitudini dei vertici, nello stesso ordine.
+ * @param tipo La tipologia di sensore da cercare; null per tutte.
+ */
+public record PoligonoDTO(
+        double[] latitudini,
+        double[] longitudini,
+        TipoSensore tipo
+) {}
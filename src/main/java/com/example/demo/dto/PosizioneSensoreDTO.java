@@ -0,0 +1,26 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.TipoSensore;
+
+/**
+ * Posizione di un sensore restituita dalle ricerche spaziali.
+ *
+ * @param sensoreId L'identificativo del sensore.
+ * @param codice Il codice del sensore.
+ * @param campoId Il campo a cui appartiene.
+ * @param tipo La tipologia del sensore.
+ * @param latitudine La latitudine (gradi decimali, WGS84).
+ * @param longitudine La longitudine (gradi decimali, WGS84).
+ * @param profondita La profondità di installazione, se nota.
+ * @param distanzaMetri La distanza dal centro della ricerca per raggio; null nelle ricerche per poligono.
+ */
+public record PosizioneSensoreDTO(
+        Long sensoreId,
+        String codice,
+        Long campoId,
+        TipoSensore tipo,
+        double latitudine,
+        double longitudine,
+        Double profondita,
+        Double distanzaMetri
+) {}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.QualitaDato;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proiezione di una rilevazione con il suo esito di qualità, usata per ricostruire
+ * le finestre in memoria dei sensori.
+ *
+ * @param timestamp L'istante della rilevazione.
+ * @param valore Il valore misurato.
+ * @param qualita L'esito della classificazione (null per le righe precedenti alla classificazione).
+ */
+public record PuntoRilevazioneDTO(LocalDateTime timestamp, Double valore, QualitaDato qualita) {}
@@ -0,0 +1,12 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proiezione minima di una rilevazione per le serie dei grafici: solo istante e valore,
+ * senza idratare l'entità né le associazioni con sensore e campo.
+ *
+ * @param timestamp L'istante della rilevazione.
+ * @param valore Il valore misurato.
+ */
+public record PuntoSerieDTO(LocalDateTime timestamp, Double valore) {}
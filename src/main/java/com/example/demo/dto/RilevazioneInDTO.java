@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO immutabile (Record) che rappresenta una singola rilevazione inviata
+ * da un gateway di campo tramite l'API di ingestione.
+ *
+ * @param codiceSensore Il codice univoco del sensore (es. "A-T10").
+ * @param timestamp L'istante di campionamento; se null viene usato l'istante di ricezione.
+ * @param valore Il valore misurato.
+ */
+public record RilevazioneInDTO(
+        String codiceSensore,
+        LocalDateTime timestamp,
+        Double valore
+) {}
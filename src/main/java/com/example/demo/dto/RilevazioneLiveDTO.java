@@ -0,0 +1,25 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.enums.TipoSensore;
+
+/**
+ * Evento del flusso live: una nuova rilevazione appena confermata.
+ *
+ * @param campoId Il campo di appartenenza del sensore.
+ * @param sensoreId L'ID del sensore.
+ * @param codice Il codice del sensore.
+ * @param tipo La tipologia del sensore.
+ * @param timestamp L'istante di campionamento in epoch millis.
+ * @param valore Il valore misurato.
+ * @param qualita L'esito della classificazione di qualità.
+ */
+public record RilevazioneLiveDTO(
+        Long campoId,
+        Long sensoreId,
+        String codice,
+        TipoSensore tipo,
+        long timestamp,
+        double valore,
+        QualitaDato qualita
+) {}
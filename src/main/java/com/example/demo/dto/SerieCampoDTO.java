@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.Risoluzione;
+
+import java.util.List;
+
+/**
+ * Risposta dell'API dei grafici su intervallo: una serie colonnare per ogni sensore del campo.
+ *
+ * @param campoId Il campo interrogato.
+ * @param risoluzione La sorgente usata (righe grezze, aggregati orari o giornalieri).
+ * @param serie Le serie dei sensori richiesti, già ridotte al numero massimo di punti.
+ */
+public record SerieCampoDTO(
+        Long campoId,
+        Risoluzione risoluzione,
+        List<SerieSensoreDTO> serie
+) {}
@@ -0,0 +1,23 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.TipoSensore;
+
+/**
+ * Serie di un singolo sensore in formato colonnare, pronta per Chart.js
+ * (asse X in epoch millis, asse Y come array di double).
+ *
+ * @param sensoreId L'ID del sensore.
+ * @param codice Il codice del sensore.
+ * @param tipo La tipologia del sensore.
+ * @param unita L'unità di misura dei valori.
+ * @param timestamp Istanti in epoch millis.
+ * @param valori Valori allineati per indice con i timestamp.
+ */
+public record SerieSensoreDTO(
+        Long sensoreId,
+        String codice,
+        TipoSensore tipo,
+        String unita,
+        long[] timestamp,
+        double[] valori
+) {}
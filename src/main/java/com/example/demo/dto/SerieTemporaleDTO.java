@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+/**
+ * Serie temporale in formato colonnare: due array primitivi paralleli,
+ * ordinati cronologicamente, senza un oggetto per punto.
+ *
+ * @param timestamp Istanti di campionamento in epoch millis.
+ * @param valori Valori misurati, allineati per indice con i timestamp.
+ */
+public record SerieTemporaleDTO(long[] timestamp, double[] valori) {
+
+    public static final SerieTemporaleDTO VUOTA = new SerieTemporaleDTO(new long[0], new double[0]);
+
+    public int dimensione() {
+        return timestamp.length;
+    }
+}
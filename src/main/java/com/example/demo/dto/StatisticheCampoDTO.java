@@ -0,0 +1,34 @@
+package com.example.demo.dto;
+
+/**
+ * Statistiche descrittive di un campo per una tipologia di sensore su un intervallo.
+ * Media, deviazione standard e percentili sono calcolati sulla serie del campo: per ogni bucket
+ * (ora o giorno) la media delle medie dei suoi sensori. Minimo e massimo sono invece le letture
+ * estreme dell'intervallo, su tutti i sensori del campo.
+ * I valori sono null se il campo non ha dati nell'intervallo.
+ *
+ * @param campoId L'identificativo del campo.
+ * @param nomeCampo Il nome visuale del campo.
+ * @param sensori Il numero di sensori della tipologia che hanno contribuito.
+ * @param campioni Il numero di bucket con almeno un dato.
+ * @param media La media dei bucket.
+ * @param minimo La lettura più bassa.
+ * @param massimo La lettura più alta.
+ * @param deviazioneStandard La deviazione standard (di popolazione) delle medie dei bucket.
+ * @param p10 Il 10° percentile delle medie dei bucket.
+ * @param p50 La mediana delle medie dei bucket.
+ * @param p90 Il 90° percentile delle medie dei bucket.
+ */
+public record StatisticheCampoDTO(
+        Long campoId,
+        String nomeCampo,
+        int sensori,
+        int campioni,
+        Double media,
+        Double minimo,
+        Double massimo,
+        Double deviazioneStandard,
+        Double p10,
+        Double p50,
+        Double p90
+) {}
@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import com.example.demo.enums.Risoluzione;
+
+/**
+ * Risposta colonnare dello storico di un sensore.
+ *
+ * @param sensoreId Il sensore interrogato.
+ * @param risoluzione La sorgente scelta (righe grezze, aggregati orari o giornalieri).
+ * @param timestamp Istanti in epoch millis.
+ * @param valori Valori (o medie del bucket), allineati per indice con i timestamp.
+ */
+public record StoricoSensoreDTO(
+        Long sensoreId,
+        Risoluzione risoluzione,
+        long[] timestamp,
+        double[] valori
+) {}
@@ -0,0 +1,10 @@
+package com.example.demo.dto;
+
+/**
+ * Somme di produzione, costi e ricavi su un periodo.
+ */
+public record TotaliEconomiciDTO(
+        double produzioneKg,
+        double costi,
+        double ricavi
+) {}
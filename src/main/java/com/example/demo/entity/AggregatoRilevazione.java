@@ -0,0 +1,44 @@
+package com.example.demo.entity;
+
+import com.example.demo.enums.Granularita;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Aggregato (Rollup) delle rilevazioni di un sensore su un intervallo orario o giornaliero.
+ * Mantenuto incrementalmente da AggregazioneServizio; le interrogazioni su periodi lunghi
+ * leggono da qui invece di scansionare le righe grezze di Rilevazione.
+ * <p>
+ * Il sensore è referenziato per ID (senza associazione JPA) perché l'aggregato
+ * non ha bisogno di caricare l'anagrafica.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_aggr_sens_gran_inizio",
+        columnNames = {"sensore_id", "granularita", "inizio"}))
+public class AggregatoRilevazione {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @Column(name = "sensore_id", nullable = false) private Long sensoreId;
+    @Enumerated(EnumType.STRING) @Column(nullable = false) private Granularita granularita;
+    // Inizio dell'intervallo (ora o giorno troncati)
+    @Column(nullable = false) private LocalDateTime inizio;
+    private Double minimo;
+    private Double massimo;
+    private Double somma;
+    private Long conteggio;
+    // Valore e istante dell'ultima rilevazione dell'intervallo
+    private Double ultimo;
+    private LocalDateTime ultimoTimestamp;
+
+    public Double getMedia() {
+        return conteggio == null || conteggio == 0 ? null : somma / conteggio;
+    }
+}
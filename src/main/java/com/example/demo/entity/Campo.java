@@ -1,5 +1,6 @@
 package com.example.demo.entity;
 
+import com.example.demo.cache.InvalidazioneAnagraficaListener;
 import com.example.demo.enums.StatoCampo;
 import com.example.demo.enums.TipoCampo;
 import jakarta.persistence.*;
@@ -13,6 +14,7 @@ import lombok.Setter;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
+@EntityListeners(InvalidazioneAnagraficaListener.class)
 public class Campo {
 
     @Id
@@ -29,6 +31,8 @@ public class Campo {
     @Enumerated(EnumType.STRING)
     private StatoCampo stato; // ATTIVO, RIPOSO
 
+    // Valori economici iniziali: riportati una sola volta nel saldo di apertura del registro economico,
+    // i totali correnti sono in TotaleEconomicoCampo
     private Double produzioneKg = 0.0;
 
     private Double costiAccumulati = 0.0;
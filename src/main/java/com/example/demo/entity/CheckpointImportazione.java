@@ -0,0 +1,60 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Punto di ripresa (Checkpoint) di un'importazione storica: una riga per ogni porzione del file.
+ * <p>
+ * La porzione copre i byte [inizio, fine) del file, già allineati a inizio riga. {@code prossimo}
+ * è il primo byte non ancora importato e viene aggiornato nella stessa transazione delle righe
+ * inserite, così dopo un riavvio l'importazione riprende esattamente da dove si era fermata.
+ * Dimensione e data di modifica identificano la versione del file a cui si riferiscono i confini.
+ * <p>
+ * Il vincolo di unicità usa l'impronta SHA-256 del percorso ({@link #impronta(String)}), di lunghezza fissa:
+ * un indice sul percorso completo supererebbe il limite di 3072 byte delle chiavi InnoDB con utf8mb4.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_checkpoint_file_porzione",
+        columnNames = {"impronta_file", "porzione"}))
+public class CheckpointImportazione {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @Column(nullable = false, length = 1024) private String file;
+    @Column(nullable = false, length = 64) private String improntaFile;
+    @Column(nullable = false) private Integer porzione;
+    private Long dimensioneFile;
+    private Long ultimaModificaFile;
+    private Long inizio;
+    private Long fine;
+    private Long prossimo;
+    private Long righeImportate = 0L;
+    private Long righeScartate = 0L;
+
+    public boolean isCompletata() {
+        return prossimo >= fine;
+    }
+
+    /**
+     * @return L'impronta SHA-256 del percorso, in esadecimale (64 caratteri).
+     */
+    public static String impronta(String file) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(file.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Blocco compresso (Chunk) delle rilevazioni di un sensore per un giorno ormai sigillato.
+ * I punti sono codificati con CodecGorilla: delta-of-delta sui timestamp e XOR sui valori.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_chunk_sens_giorno", columnNames = {"sensore_id", "giorno"}))
+public class ChunkRilevazioni {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @Column(name = "sensore_id", nullable = false) private Long sensoreId;
+    @Column(nullable = false) private LocalDate giorno;
+    private Integer conteggio;
+    @Lob @Column(nullable = false) private byte[] dati;
+}
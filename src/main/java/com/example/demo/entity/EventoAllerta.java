@@ -0,0 +1,35 @@
+package com.example.demo.entity;
+
+import com.example.demo.enums.LivelloAlert;
+import com.example.demo.enums.TransizioneAllerta;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transizione di stato di un'allerta (apertura o rientro) per una coppia regola/sensore.
+ * Si salvano solo i cambi di stato, non le singole valutazioni.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(indexes = @Index(name = "idx_allerta_campo_ts", columnList = "campo_id,timestamp"))
+public class EventoAllerta {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @Column(nullable = false) private Long regolaId;
+    private String nomeRegola;
+    @Enumerated(EnumType.STRING) @Column(nullable = false) private LivelloAlert livello;
+    @Enumerated(EnumType.STRING) @Column(nullable = false) private TransizioneAllerta transizione;
+    @Column(nullable = false) private Long sensoreId;
+    @Column(name = "campo_id") private Long campoId;
+    // Istante della rilevazione che ha causato la transizione
+    @Column(nullable = false) private LocalDateTime timestamp;
+    private Double valore;
+    private String messaggio;
+}
@@ -0,0 +1,30 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Giorno già sigillato di un sensore che ha ricevuto rilevazioni dopo la sigillatura (letture in ritardo,
+ * riversamenti del giornale, importazioni storiche). Accodato dal job degli aggregati e consumato dal job
+ * dell'archivio, che ricostruisce il blocco compresso del giorno.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+public class GiornoDaRisigillare {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @Column(name = "sensore_id", nullable = false) private Long sensoreId;
+    @Column(nullable = false) private LocalDate giorno;
+
+    public GiornoDaRisigillare(Long sensoreId, LocalDate giorno) {
+        this.sensoreId = sensoreId;
+        this.giorno = giorno;
+    }
+}
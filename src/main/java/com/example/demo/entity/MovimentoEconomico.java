@@ -0,0 +1,35 @@
+package com.example.demo.entity;
+
+import com.example.demo.enums.TipoMovimento;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Movimento del registro economico (Ledger) di un campo: una variazione di produzione,
+ * costi e ricavi. Il registro è in sola aggiunta: i movimenti non vengono mai modificati
+ * né eliminati, e i totali si ottengono dalle tabelle materializzate
+ * {@link TotaleEconomicoCampo} e {@link SaldoEconomicoOrario}.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(indexes = @Index(name = "idx_mov_campo_ts", columnList = "campo_id,timestamp"))
+public class MovimentoEconomico {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimento_seq")
+    @SequenceGenerator(name = "movimento_seq", sequenceName = "movimento_seq", allocationSize = 50)
+    private Long id;
+    @Column(name = "campo_id", nullable = false) private Long campoId;
+    @Enumerated(EnumType.STRING) @Column(nullable = false) private TipoMovimento tipo;
+    @Column(nullable = false) private LocalDateTime timestamp;
+    // Variazioni (delta) introdotte dal movimento
+    private double produzioneKg;
+    private double costi;
+    private double ricavi;
+    private String causale;
+}
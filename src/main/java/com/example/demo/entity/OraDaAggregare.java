@@ -0,0 +1,35 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ora di un sensore da (ri)aggregare: coda di lavoro del job degli aggregati.
+ * <p>
+ * Ogni scrittura di rilevazioni inserisce, nella propria transazione, una voce per ogni coppia
+ * (sensore, ora) toccata: la voce diventa visibile al job insieme alle righe, qualunque sia l'ordine
+ * di commit delle transazioni concorrenti. Le voci duplicate sono ammesse (nessun vincolo di unicità,
+ * quindi nessun conflitto tra scrittori) e vengono accorpate dal job, che le elimina dopo il ricalcolo.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+public class OraDaAggregare {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ora_da_aggregare_seq")
+    @SequenceGenerator(name = "ora_da_aggregare_seq", sequenceName = "ora_da_aggregare_seq", allocationSize = 500)
+    private Long id;
+    @Column(name = "sensore_id", nullable = false) private Long sensoreId;
+    // Inizio dell'ora (troncata)
+    @Column(nullable = false) private LocalDateTime ora;
+
+    public OraDaAggregare(Long sensoreId, LocalDateTime ora) {
+        this.sensoreId = sensoreId;
+        this.ora = ora;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Posizione di riversamento del giornale di ingestione di un nodo: la sequenza dell'ultima voce già salvata.
+ * Viene aggiornata nella stessa transazione delle rilevazioni riversate.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PosizioneGiornale {
+
+    @Id
+    private String nodo;
+
+    private Long sequenza;
+}
@@ -0,0 +1,39 @@
+package com.example.demo.entity;
+
+import com.example.demo.enums.Confronto;
+import com.example.demo.enums.LivelloAlert;
+import com.example.demo.enums.TipoRegola;
+import com.example.demo.enums.TipoSensore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Regola di allerta valutata su ogni rilevazione in arrivo.
+ * Si applica a un singolo sensore ({@code sensoreId}) oppure a tutti i sensori di una
+ * tipologia ({@code tipoSensore}).
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+public class RegolaAllerta {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String nome;
+    @Enumerated(EnumType.STRING) @Column(nullable = false) private TipoRegola tipo;
+    @Enumerated(EnumType.STRING) @Column(nullable = false) private Confronto confronto;
+    @Enumerated(EnumType.STRING) @Column(nullable = false) private LivelloAlert livello;
+    // Ambito: sensore specifico oppure tipologia di sensore
+    private Long sensoreId;
+    @Enumerated(EnumType.STRING) private TipoSensore tipoSensore;
+    // Soglia sul valore (SOGLIA, PERSISTENZA) o sulla variazione oraria (VARIAZIONE)
+    private Double soglia;
+    // Margine di rientro, evita aperture e chiusure ripetute attorno alla soglia
+    private Double isteresi = 0.0;
+    // Durata minima della condizione (solo PERSISTENZA)
+    private Integer durataMinuti;
+    private Boolean attiva = true;
+}
@@ -12,12 +12,31 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(indexes = @Index(name="idx_sens_ts", columnList="sensore_id,timestamp"))
+@Table(indexes = {
+        @Index(name="idx_sens_ts", columnList="sensore_id,timestamp"),
+        @Index(name="idx_sens_qual_ts", columnList="sensore_id,qualita,timestamp")
+})
 public class Rilevazione {
+
+    public static final String FK_SENSORE = "fk_rilevazione_sensore";
+
+    /**
+     * Identificativo generato da sequenza con ottimizzatore "pooled":
+     * Hibernate riserva blocchi di 500 ID per ogni accesso alla sequenza,
+     * evitando un round-trip verso il DB per ogni riga inserita in blocco.
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rilevazione_seq")
+    @SequenceGenerator(name = "rilevazione_seq", sequenceName = "rilevazione_seq", allocationSize = 500)
     private Long id;
-    @ManyToOne(optional=false) private Sensore sensore;
+    /**
+     * Chiave esterna con nome fisso: con lo sharding per campo le rilevazioni stanno anche su DB
+     * diversi da quello dell'anagrafica, dove la tabella dei sensori è vuota, e il vincolo
+     * va rimosso sugli shard aggiuntivi (vedi {@code ShardConfigurazione}).
+     */
+    @ManyToOne(fetch = FetchType.LAZY, optional=false)
+    @JoinColumn(foreignKey = @ForeignKey(name = Rilevazione.FK_SENSORE))
+    private Sensore sensore;
     private LocalDateTime timestamp;
     private Double valore;
     private String unita;
@@ -0,0 +1,29 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Somma (materializzata) dei movimenti economici di un campo in un'ora.
+ * Le serie del bilancio su qualsiasi periodo si ricavano da queste righe senza rileggere il registro.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_saldo_campo_ora", columnNames = {"campo_id", "ora"}))
+public class SaldoEconomicoOrario {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @Column(name = "campo_id", nullable = false) private Long campoId;
+    // Inizio dell'ora (troncato)
+    @Column(nullable = false) private LocalDateTime ora;
+    private double produzioneKg;
+    private double costi;
+    private double ricavi;
+}
@@ -0,0 +1,34 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Totali progressivi (materializzati) del registro economico di un campo.
+ * Aggiornati con incrementi atomici in SQL a ogni movimento, mai ricalcolati dal registro.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TotaleEconomicoCampo {
+
+    @Id
+    private Long campoId;
+
+    private double produzioneKg;
+    private double costi;
+    private double ricavi;
+    private LocalDateTime aggiornato;
+
+    public double getBilancio() {
+        return ricavi - costi;
+    }
+}
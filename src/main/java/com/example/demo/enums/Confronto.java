@@ -0,0 +1,6 @@
+package com.example.demo.enums;
+
+public enum Confronto {
+    SOPRA,
+    SOTTO
+}
@@ -0,0 +1,7 @@
+package com.example.demo.enums;
+
+public enum Risoluzione {
+    GREZZA,
+    ORARIA,
+    GIORNALIERA
+}
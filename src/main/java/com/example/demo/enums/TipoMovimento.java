@@ -0,0 +1,9 @@
+package com.example.demo.enums;
+
+public enum TipoMovimento {
+    APERTURA,
+    PRODUZIONE,
+    COSTO_OPERATIVO,
+    MANUTENZIONE,
+    COSTO_MANUALE
+}
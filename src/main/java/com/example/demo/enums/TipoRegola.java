@@ -0,0 +1,13 @@
+package com.example.demo.enums;
+
+/**
+ * Tipologie di regola di allerta valutate sul flusso delle rilevazioni.
+ * SOGLIA: il valore supera la soglia.
+ * VARIAZIONE: la velocità di variazione (unità/ora) rispetto alla lettura precedente supera la soglia.
+ * PERSISTENZA: il valore resta oltre la soglia per almeno la durata configurata.
+ */
+public enum TipoRegola {
+    SOGLIA,
+    VARIAZIONE,
+    PERSISTENZA
+}
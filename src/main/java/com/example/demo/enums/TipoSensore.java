@@ -1,9 +1,30 @@
 package com.example.demo.enums;
 
 public enum TipoSensore {
-    TEMP_AIR,
-    TEMP_SOIL,
-    HUMID_AIR,
-    SOIL_MOISTURE,
-    NDVI_SAT
+    TEMP_AIR("°C", -50.0, 60.0),
+    TEMP_SOIL("°C", -30.0, 60.0),
+    HUMID_AIR("%", 0.0, 100.0),
+    SOIL_MOISTURE("%", 0.0, 100.0),
+    NDVI_SAT("Index", -1.0, 1.0);
+
+    // Unità di misura standard associata alla tipologia di sensore
+    private final String unita;
+
+    // Intervallo fisicamente plausibile: i valori esterni sono classificati INVALIDO
+    private final double minimo;
+    private final double massimo;
+
+    TipoSensore(String unita, double minimo, double massimo) {
+        this.unita = unita;
+        this.minimo = minimo;
+        this.massimo = massimo;
+    }
+
+    public String getUnita() {
+        return unita;
+    }
+
+    public boolean plausibile(double valore) {
+        return valore >= minimo && valore <= massimo;
+    }
 }
@@ -0,0 +1,11 @@
+package com.example.demo.evento;
+
+import java.util.List;
+
+/**
+ * Evento applicativo pubblicato quando i KPI economici e produttivi dei campi
+ * (produzione, costi, ricavi) vengono aggiornati.
+ *
+ * @param campoIds Gli identificativi dei campi modificati.
+ */
+public record EconomiaAggiornataEvento(List<Long> campoIds) {}
@@ -0,0 +1,14 @@
+package com.example.demo.evento;
+
+import com.example.demo.entity.Rilevazione;
+
+import java.util.List;
+
+/**
+ * Evento applicativo pubblicato dal percorso di ingestione dopo la persistenza
+ * di un blocco di rilevazioni. I listener lo ricevono a transazione confermata
+ * (AFTER_COMMIT) e aggiornano le proprie strutture in memoria.
+ *
+ * @param rilevazioni Le rilevazioni appena salvate (entità già staccate dal Persistence Context).
+ */
+public record NuoveRilevazioniEvento(List<Rilevazione> rilevazioni) {}
@@ -4,6 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import jakarta.servlet.http.HttpServletRequest;
 
 import java.util.Map;
 
@@ -17,20 +18,41 @@ public class GestioneGlobaleEccezioni {
     /**
      * Cattura l'eccezione RisorsaNonTrovataEccezione e la mappa a una risposta HTTP 404 Not Found.
      * * @param ex L'eccezione lanciata.
+     * @param request La richiesta HTTP, usata per riportare il percorso.
      * @return ResponseEntity con lo stato 404 e un corpo JSON descrittivo.
      */
     @ExceptionHandler(RisorsaNonTrovataEccezione.class)
-    public ResponseEntity<Map<String, Object>> gestisciRisorsaNonTrovata(RisorsaNonTrovataEccezione ex) {
+    public ResponseEntity<Map<String, Object>> gestisciRisorsaNonTrovata(RisorsaNonTrovataEccezione ex,
+                                                                        HttpServletRequest request) {
 
         // Struttura JSON per la risposta 404
         Map<String, Object> body = Map.of(
                 "status", HttpStatus.NOT_FOUND.value(),
                 "error", "Not Found",
                 "message", ex.getMessage(), // Il messaggio creato nel costruttore dell'eccezione
-                "path", "/api/dashboard/temp-umidita"
+                "path", request.getRequestURI()
         );
 
         // Ritorna la risposta con lo stato 404
         return new ResponseEntity<>(body, HttpStatus.NOT_FOUND);
     }
+
+    /**
+     * Cattura gli argomenti non validi (es. intervallo temporale invertito) e li mappa a 400 Bad Request.
+     * @param ex L'eccezione lanciata.
+     * @param request La richiesta HTTP, usata per riportare il percorso.
+     * @return ResponseEntity con lo stato 400 e un corpo JSON descrittivo.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> gestisciArgomentoNonValido(IllegalArgumentException ex,
+                                                                         HttpServletRequest request) {
+        Map<String, Object> body = Map.of(
+                "status", HttpStatus.BAD_REQUEST.value(),
+                "error", "Bad Request",
+                "message", ex.getMessage(),
+                "path", request.getRequestURI()
+        );
+
+        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
 }
@@ -0,0 +1,350 @@
+package com.example.demo.giornale;
+
+import com.example.demo.entity.PosizioneGiornale;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.repository.PosizioneGiornaleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Giornale locale delle rilevazioni in ingresso (Write-Ahead Log), per disaccoppiare l'ingestione dalla latenza del DB.
+ * <p>
+ * Le rilevazioni vengono accodate in segmenti mappati in memoria ({@link SegmentoGiornale}) e confermate
+ * al chiamante solo dopo che sono state forzate su disco. La sincronizzazione è a gruppi (Group Commit):
+ * un unico thread esegue il force per tutte le scritture accumulate nel frattempo, quindi con molti
+ * chiamanti concorrenti il costo di un fsync è condiviso tra tutti. {@link RiversamentoGiornaleServizio}
+ * riversa poi le voci nel DB a blocchi e ne registra la posizione; i segmenti già riversati vengono eliminati.
+ * Le voci che il DB rifiuta in modo permanente vengono accodate al file {@value #FILE_SCARTATE} nella
+ * directory del giornale, una riga CSV per voce, da cui possono essere esaminate e reinserite a mano.
+ * <p>
+ * Metriche: durata di ogni fsync (collina.giornale.sincronizzazione),
+ * voci durevoli non ancora riversate nel DB (collina.giornale.arretrato) e voci scartate (collina.giornale.scartate).
+ */
+@Service
+public class GiornaleIngestione {
+
+    private static final Logger log = LoggerFactory.getLogger(GiornaleIngestione.class);
+
+    static final String FILE_SCARTATE = "scartate.csv";
+
+    private final boolean abilitato;
+    private final Path directory;
+    private final int vociPerSegmento;
+    private final String nodo;
+
+    private final ConcurrentSkipListMap<Long, SegmentoGiornale> segmenti = new ConcurrentSkipListMap<>();
+    private final ReentrantLock scrittura = new ReentrantLock();
+    private SegmentoGiornale corrente;
+
+    // Monitor del Group Commit: sequenza più alta richiesta dagli scrittori e sequenza già durevole
+    private final Object durabilita = new Object();
+    private long richiesta;
+    private long durevole;
+    private volatile long riversata;
+    private volatile boolean attivo = true;
+
+    private final Timer tempoSincronizzazione;
+    private final Counter scartate;
+
+    public GiornaleIngestione(PosizioneGiornaleRepository posizioneRepo, MeterRegistry metriche,
+                              @Value("${collina.giornale.abilitato:false}") boolean abilitato,
+                              @Value("${collina.giornale.directory:dati/giornale}") String directory,
+                              @Value("${collina.giornale.dimensione-segmento-mb:64}") int segmentoMb,
+                              @Value("${collina.giornale.nodo:locale}") String nodo) {
+        this.abilitato = abilitato;
+        this.directory = Path.of(directory);
+        this.vociPerSegmento = (int) (segmentoMb * 1024L * 1024L / SegmentoGiornale.DIMENSIONE_VOCE);
+        this.nodo = nodo;
+
+        this.tempoSincronizzazione = Timer.builder("collina.giornale.sincronizzazione")
+                .description("Durata del force su disco di un gruppo di scritture del giornale")
+                .publishPercentileHistogram()
+                .register(metriche);
+        Gauge.builder("collina.giornale.arretrato", this, GiornaleIngestione::arretrato)
+                .description("Voci del giornale non ancora riversate nel DB")
+                .register(metriche);
+        this.scartate = Counter.builder("collina.giornale.scartate")
+                .description("Voci del giornale rifiutate dal DB e spostate nel file delle voci scartate")
+                .register(metriche);
+
+        if (abilitato) {
+            long posizione = posizioneRepo.findById(nodo).map(PosizioneGiornale::getSequenza).orElse(0L);
+            recupera(posizione);
+            Thread t = new Thread(this::sincronizza, "giornale-sincronizzazione");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    public boolean abilitato() {
+        return abilitato;
+    }
+
+    /** @return L'identificativo del nodo, chiave della posizione di riversamento nel DB. */
+    public String nodo() {
+        return nodo;
+    }
+
+    /**
+     * Accoda le rilevazioni al giornale e attende che siano durevoli su disco.
+     * Sensore, timestamp e valore devono essere valorizzati; unità e qualità vengono ricavate al riversamento.
+     *
+     * @param rilevazioni Le rilevazioni da registrare, in ordine.
+     */
+    public void appendi(List<Rilevazione> rilevazioni) {
+        if (rilevazioni.isEmpty()) {
+            return;
+        }
+        long ultima;
+        scrittura.lock();
+        try {
+            for (Rilevazione ril : rilevazioni) {
+                if (corrente.pieno()) {
+                    ruota();
+                }
+                corrente.scrivi(ril.getSensore().getId(), ril.getTimestamp(), ril.getValore());
+            }
+            ultima = corrente.prossimaSequenza() - 1;
+        } finally {
+            scrittura.unlock();
+        }
+
+        synchronized (durabilita) {
+            richiesta = Math.max(richiesta, ultima);
+            durabilita.notifyAll();
+            while (durevole < ultima) {
+                if (!attivo) {
+                    throw new IllegalStateException("Giornale di ingestione chiuso");
+                }
+                try {
+                    durabilita.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Attesa della scrittura su disco interrotta", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Legge in ordine le voci durevoli successive alla sequenza indicata.
+     *
+     * @param dopo Sequenza dell'ultima voce già riversata.
+     * @param massimo Numero massimo di voci da restituire.
+     * @return Le voci lette, eventualmente nessuna.
+     */
+    public List<VoceGiornale> leggi(long dopo, int massimo) {
+        long limite;
+        synchronized (durabilita) {
+            limite = durevole;
+        }
+        List<VoceGiornale> voci = new ArrayList<>((int) Math.min(massimo, Math.max(0, limite - dopo)));
+        long sequenza = dopo + 1;
+        while (sequenza <= limite && voci.size() < massimo) {
+            Map.Entry<Long, SegmentoGiornale> voce = segmenti.floorEntry(sequenza);
+            if (voce == null) {
+                break;
+            }
+            SegmentoGiornale segmento = voce.getValue();
+            long fineSegmento = Math.min(limite, segmento.ultimaSequenza());
+            for (; sequenza <= fineSegmento && voci.size() < massimo; sequenza++) {
+                voci.add(segmento.leggi(sequenza));
+            }
+        }
+        return voci;
+    }
+
+    /**
+     * Attende che diventino durevoli voci successive alla sequenza indicata, al più per il tempo dato.
+     */
+    public void attendiNuove(long dopo, long millisecondi) throws InterruptedException {
+        synchronized (durabilita) {
+            if (durevole <= dopo && attivo) {
+                durabilita.wait(millisecondi);
+            }
+        }
+    }
+
+    /**
+     * Registra la posizione di riversamento ed elimina i segmenti interamente riversati.
+     *
+     * @param sequenza Sequenza dell'ultima voce salvata nel DB.
+     */
+    public void riversato(long sequenza) {
+        riversata = sequenza;
+        scrittura.lock();
+        try {
+            Map.Entry<Long, SegmentoGiornale> primo;
+            while ((primo = segmenti.firstEntry()) != null && primo.getValue() != corrente
+                    && primo.getValue().prossimaSequenza() - 1 <= sequenza) {
+                segmenti.remove(primo.getKey());
+                primo.getValue().elimina();
+            }
+        } catch (IOException e) {
+            log.warn("Impossibile eliminare un segmento riversato del giornale", e);
+        } finally {
+            scrittura.unlock();
+        }
+    }
+
+    /**
+     * Accoda una voce non salvabile al file delle voci scartate e lo forza su disco,
+     * prima che la posizione di riversamento la superi.
+     *
+     * @param voce La voce rifiutata dal DB.
+     * @param errore L'errore del salvataggio, riportato nell'ultima colonna.
+     */
+    public void scarta(VoceGiornale voce, Exception errore) {
+        String motivo = String.valueOf(errore.getMessage()).replaceAll("[\\r\\n,]+", " ");
+        String riga = voce.sequenza() + "," + voce.sensoreId() + "," + voce.timestamp() + "," + voce.valore()
+                + "," + motivo + "\n";
+        try (FileChannel canale = FileChannel.open(directory.resolve(FILE_SCARTATE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            canale.write(ByteBuffer.wrap(riga.getBytes(StandardCharsets.UTF_8)));
+            canale.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile registrare la voce scartata " + voce.sequenza(), e);
+        }
+        scartate.increment();
+        log.error("Voce {} del giornale scartata (sensore {}, {})", voce.sequenza(), voce.sensoreId(), voce.timestamp(),
+                errore);
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        attivo = false;
+        synchronized (durabilita) {
+            durabilita.notifyAll();
+        }
+    }
+
+    /**
+     * Riapre i segmenti presenti su disco: le voci già scritte ma non ancora riversate verranno riversate.
+     * Senza segmenti, la numerazione riparte dopo l'ultima posizione salvata nel DB.
+     */
+    private void recupera(long posizione) {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    long prima = SegmentoGiornale.primaSequenza(file);
+                    if (prima > 0) {
+                        segmenti.put(prima, SegmentoGiornale.apri(directory, prima, vociPerSegmento));
+                    }
+                }
+            }
+            if (segmenti.isEmpty() || segmenti.lastEntry().getValue().prossimaSequenza() <= posizione) {
+                corrente = SegmentoGiornale.apri(directory, posizione + 1, vociPerSegmento);
+                segmenti.put(corrente.primaSequenza(), corrente);
+            } else {
+                corrente = segmenti.lastEntry().getValue();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Giornale di ingestione non accessibile: " + directory, e);
+        }
+
+        durevole = corrente.prossimaSequenza() - 1;
+        richiesta = durevole;
+        riversata = posizione;
+        log.info("Giornale aperto in {}: {} voci da riversare", directory.toAbsolutePath(),
+                Math.max(0, durevole - posizione));
+        riversato(posizione);
+    }
+
+    // Chiamato sotto il lock di scrittura quando il segmento corrente è pieno
+    private void ruota() {
+        try {
+            corrente = SegmentoGiornale.apri(directory, corrente.prossimaSequenza(), vociPerSegmento);
+            segmenti.put(corrente.primaSequenza(), corrente);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile creare un nuovo segmento del giornale", e);
+        }
+    }
+
+    /**
+     * Ciclo del thread di sincronizzazione: a ogni giro rende durevole tutto ciò che è stato scritto
+     * fino a quel momento (anche più segmenti, dopo una rotazione) e sveglia gli scrittori in attesa.
+     */
+    private void sincronizza() {
+        while (attivo) {
+            synchronized (durabilita) {
+                while (richiesta <= durevole && attivo) {
+                    try {
+                        durabilita.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+            long obiettivo;
+            List<SegmentoGiornale> daForzare = new ArrayList<>(2);
+            List<Integer> voci = new ArrayList<>(2);
+            scrittura.lock();
+            try {
+                obiettivo = corrente.prossimaSequenza() - 1;
+                Long primo = segmenti.floorKey(durevoleCorrente() + 1);
+                for (SegmentoGiornale segmento : (primo == null ? segmenti : segmenti.tailMap(primo, true)).values()) {
+                    daForzare.add(segmento);
+                    voci.add(segmento.voci());
+                }
+            } finally {
+                scrittura.unlock();
+            }
+
+            try {
+                tempoSincronizzazione.record(() -> {
+                    for (int i = 0; i < daForzare.size(); i++) {
+                        daForzare.get(i).forza(voci.get(i));
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // Disco non scrivibile: gli scrittori restano in attesa finché il force non riesce
+                log.error("Errore di sincronizzazione su disco del giornale, nuovo tentativo tra 1 s", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                continue;
+            }
+
+            synchronized (durabilita) {
+                durevole = obiettivo;
+                durabilita.notifyAll();
+            }
+        }
+    }
+
+    private long durevoleCorrente() {
+        synchronized (durabilita) {
+            return durevole;
+        }
+    }
+
+    private double arretrato() {
+        return abilitato ? Math.max(0, durevoleCorrente() - riversata) : 0;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.demo.giornale;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.entity.PosizioneGiornale;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.PosizioneGiornaleRepository;
+import com.example.demo.service.IngestioneServizio;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Riversamento (Drain) del giornale di ingestione nella tabella delle rilevazioni.
+ * <p>
+ * Un thread dedicato legge le voci durevoli a blocchi e le salva con {@link IngestioneServizio#salvaInBlocchi},
+ * quindi con classificazione di qualità, batch JDBC ed evento per aggregati, allerte e flusso live.
+ * La posizione raggiunta viene salvata nella stessa transazione delle righe: dopo un riavvio il
+ * riversamento riprende esattamente dalla prima voce non salvata, senza perdite né duplicati.
+ * Con lo sharding per campo le righe di ogni shard sono confermate prima della posizione, che resta
+ * sullo shard principale: un arresto tra i due commit fa riversare di nuovo l'ultimo blocco (almeno una volta).
+ * Se il DB non risponde, il blocco viene ritentato con attesa crescente mentre il giornale continua ad accettare scritture.
+ * Un errore permanente (vincolo violato, valore non accettato dal DB) non si risolve ritentando: il blocco
+ * viene diviso a metà fino a isolare le voci responsabili, che sono scartate nel file delle voci scartate
+ * del giornale ({@link GiornaleIngestione#scarta}), e il riversamento prosegue oltre.
+ */
+@Service
+public class RiversamentoGiornaleServizio {
+
+    private static final Logger log = LoggerFactory.getLogger(RiversamentoGiornaleServizio.class);
+
+    private static final long ATTESA_MIN_MS = 500;
+    private static final long ATTESA_MAX_MS = 30_000;
+
+    private final GiornaleIngestione giornale;
+    private final IngestioneServizio ingestione;
+    private final AnagraficaServizio anagrafica;
+    private final PosizioneGiornaleRepository posizioneRepo;
+    private final TransactionTemplate transazione;
+
+    // Voci riversate per transazione
+    private final int dimensioneBlocco;
+    private final Counter riversate;
+
+    // Sequenza dell'ultima voce salvata nel DB o scartata (usata solo dal thread di riversamento)
+    private long posizione;
+
+    private volatile boolean attivo = true;
+
+    public RiversamentoGiornaleServizio(GiornaleIngestione giornale, IngestioneServizio ingestione,
+                                        AnagraficaServizio anagrafica, PosizioneGiornaleRepository posizioneRepo,
+                                        TransactionTemplate transazione, MeterRegistry metriche,
+                                        @Value("${collina.giornale.dimensione-riversamento:5000}") int dimensioneBlocco) {
+        this.giornale = giornale;
+        this.ingestione = ingestione;
+        this.anagrafica = anagrafica;
+        this.posizioneRepo = posizioneRepo;
+        this.transazione = transazione;
+        this.dimensioneBlocco = dimensioneBlocco;
+        this.riversate = Counter.builder("collina.giornale.riversate")
+                .description("Voci del giornale salvate nel DB")
+                .register(metriche);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void avvia() {
+        if (!giornale.abilitato()) {
+            return;
+        }
+        Thread t = new Thread(this::riversa, "giornale-riversamento");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @PreDestroy
+    public void ferma() {
+        attivo = false;
+    }
+
+    private void riversa() {
+        posizione = posizioneRepo.findById(giornale.nodo()).map(PosizioneGiornale::getSequenza).orElse(0L);
+        long attesa = ATTESA_MIN_MS;
+
+        while (attivo) {
+            try {
+                List<VoceGiornale> voci = giornale.leggi(posizione, dimensioneBlocco);
+                if (voci.isEmpty()) {
+                    giornale.attendiNuove(posizione, ATTESA_MAX_MS);
+                    continue;
+                }
+                salvaDividendo(voci, this::salva, this::scarta);
+                attesa = ATTESA_MIN_MS;
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // Errore transitorio (DB non raggiungibile, timeout): si riprova dalla posizione raggiunta
+                log.warn("Riversamento del giornale non riuscito, nuovo tentativo tra {} ms", attesa, e);
+                try {
+                    Thread.sleep(attesa);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                attesa = Math.min(attesa * 2, ATTESA_MAX_MS);
+            }
+        }
+    }
+
+    /**
+     * Salva un blocco di voci; se il salvataggio fallisce per un errore permanente divide il blocco a metà
+     * e salva le due parti separatamente, fino a scartare le singole voci che continuano a fallire.
+     * Gli errori transitori vengono rilanciati senza dividere il blocco.
+     *
+     * @param voci Le voci da salvare, in ordine di sequenza.
+     * @param salva Salva un blocco di voci e la posizione della sua ultima voce.
+     * @param scarta Scarta una voce non salvabile e ne registra la posizione.
+     */
+    static void salvaDividendo(List<VoceGiornale> voci, Consumer<List<VoceGiornale>> salva,
+                               BiConsumer<VoceGiornale, RuntimeException> scarta) {
+        try {
+            salva.accept(voci);
+        } catch (RuntimeException e) {
+            if (!permanente(e)) {
+                throw e;
+            }
+            if (voci.size() == 1) {
+                scarta.accept(voci.getFirst(), e);
+                return;
+            }
+            int meta = voci.size() / 2;
+            salvaDividendo(voci.subList(0, meta), salva, scarta);
+            salvaDividendo(voci.subList(meta, voci.size()), salva, scarta);
+        }
+    }
+
+    /**
+     * @return true se l'errore dipende dai dati e non si risolve ritentando: violazione di un vincolo
+     * (SQLState di classe 23) o valore non accettato (classe 22).
+     */
+    static boolean permanente(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof DataIntegrityViolationException) {
+                return true;
+            }
+            if (causa instanceof SQLException sql && sql.getSQLState() != null
+                    && (sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Le entità sono ricreate a ogni tentativo: quelle di un tentativo annullato hanno già un ID assegnato
+    private void salva(List<VoceGiornale> voci) {
+        long ultima = voci.getLast().sequenza();
+        List<Rilevazione> rilevazioni = rilevazioni(voci);
+        transazione.executeWithoutResult(stato -> {
+            ingestione.salvaInBlocchi(rilevazioni);
+            posizioneRepo.save(new PosizioneGiornale(giornale.nodo(), ultima));
+        });
+        avanza(ultima, voci.size());
+    }
+
+    private void scarta(VoceGiornale voce, RuntimeException errore) {
+        giornale.scarta(voce, errore);
+        transazione.executeWithoutResult(stato -> posizioneRepo.save(new PosizioneGiornale(giornale.nodo(), voce.sequenza())));
+        avanza(voce.sequenza(), 0);
+    }
+
+    private void avanza(long sequenza, int salvate) {
+        posizione = sequenza;
+        giornale.riversato(sequenza);
+        riversate.increment(salvate);
+    }
+
+    // Le voci di sensori eliminati nel frattempo vengono saltate
+    private List<Rilevazione> rilevazioni(List<VoceGiornale> voci) {
+        List<Rilevazione> rilevazioni = new ArrayList<>(voci.size());
+        for (VoceGiornale voce : voci) {
+            Sensore sensore = anagrafica.sensore(voce.sensoreId()).orElse(null);
+            if (sensore == null) {
+                continue;
+            }
+            Rilevazione ril = new Rilevazione();
+            ril.setSensore(sensore);
+            ril.setTimestamp(voce.timestamp());
+            ril.setValore(voce.valore());
+            ril.setUnita(sensore.getTipo().getUnita());
+            rilevazioni.add(ril);
+        }
+        return rilevazioni;
+    }
+}
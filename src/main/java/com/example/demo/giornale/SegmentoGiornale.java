@@ -0,0 +1,175 @@
+package com.example.demo.giornale;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmento del giornale: file di dimensione fissa mappato in memoria, con voci di {@value #DIMENSIONE_VOCE} byte.
+ * <p>
+ * Formato di una voce: sequenza (long), sensore (long), secondi del timestamp locale (long),
+ * valore (double), nanosecondi (int), CRC32C dei 36 byte precedenti (int). Il nome del file contiene
+ * la sequenza della prima voce, quindi la voce n si trova all'offset {@code (n - prima) * DIMENSIONE_VOCE}.
+ * La fine logica del segmento è la prima voce con sequenza inattesa o CRC errato (scrittura incompleta).
+ * <p>
+ * Le scritture avvengono sotto il lock del giornale; le letture usano indici assoluti e possono
+ * procedere in parallelo sulle voci già scritte.
+ */
+final class SegmentoGiornale {
+
+    static final int DIMENSIONE_VOCE = 40;
+    private static final int DATI_VOCE = 36;
+    private static final String PREFISSO = "giornale-";
+    private static final String SUFFISSO = ".log";
+
+    private final Path file;
+    private final long primaSequenza;
+    private final int capacita;
+    private final MappedByteBuffer dati;
+
+    // Voci scritte e voci già forzate su disco
+    private int voci;
+    private int sincronizzate;
+
+    private SegmentoGiornale(Path file, long primaSequenza, int capacita, MappedByteBuffer dati) {
+        this.file = file;
+        this.primaSequenza = primaSequenza;
+        this.capacita = capacita;
+        this.dati = dati;
+    }
+
+    /**
+     * Apre (o crea) il segmento che inizia con la sequenza indicata e ne ricostruisce la fine logica.
+     * Lo spazio oltre l'ultima voce valida viene azzerato, così una scrittura incompleta non può riemergere.
+     */
+    static SegmentoGiornale apri(Path directory, long primaSequenza, int capacita) throws IOException {
+        Path file = directory.resolve(PREFISSO + String.format("%020d", primaSequenza) + SUFFISSO);
+        MappedByteBuffer dati;
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long dimensione = Math.max(canale.size(), (long) capacita * DIMENSIONE_VOCE);
+            dati = canale.map(FileChannel.MapMode.READ_WRITE, 0, dimensione);
+        }
+        SegmentoGiornale segmento = new SegmentoGiornale(file, primaSequenza,
+                dati.capacity() / DIMENSIONE_VOCE, dati);
+        segmento.recupera();
+        return segmento;
+    }
+
+    /**
+     * @return La sequenza della prima voce del segmento, ricavata dal nome del file, oppure -1 se il file non è un segmento.
+     */
+    static long primaSequenza(Path file) {
+        String nome = file.getFileName().toString();
+        if (!nome.startsWith(PREFISSO) || !nome.endsWith(SUFFISSO)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(nome.substring(PREFISSO.length(), nome.length() - SUFFISSO.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void recupera() {
+        while (voci < capacita && valida(voci)) {
+            voci++;
+        }
+        sincronizzate = voci;
+        int inizio = voci * DIMENSIONE_VOCE;
+        int fine = capacita * DIMENSIONE_VOCE;
+        boolean sporco = false;
+        for (int i = inizio; i < fine; i++) {
+            if (dati.get(i) != 0) {
+                dati.put(i, (byte) 0);
+                sporco = true;
+            }
+        }
+        if (sporco) {
+            dati.force(inizio, fine - inizio);
+        }
+    }
+
+    private boolean valida(int indice) {
+        int offset = indice * DIMENSIONE_VOCE;
+        return dati.getLong(offset) == primaSequenza + indice
+                && dati.getInt(offset + DATI_VOCE) == crc(offset);
+    }
+
+    private int crc(int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(dati.slice(offset, DATI_VOCE));
+        return (int) crc.getValue();
+    }
+
+    boolean pieno() {
+        return voci == capacita;
+    }
+
+    /** @return La sequenza che avrà la prossima voce scritta nel segmento. */
+    long prossimaSequenza() {
+        return primaSequenza + voci;
+    }
+
+    long primaSequenza() {
+        return primaSequenza;
+    }
+
+    /** @return La sequenza dell'ultima voce che il segmento può contenere. */
+    long ultimaSequenza() {
+        return primaSequenza + capacita - 1;
+    }
+
+    /**
+     * Aggiunge una voce in coda; la sequenza è quella restituita da {@link #prossimaSequenza()}.
+     */
+    void scrivi(long sensoreId, LocalDateTime timestamp, double valore) {
+        int offset = voci * DIMENSIONE_VOCE;
+        dati.putLong(offset, primaSequenza + voci);
+        dati.putLong(offset + 8, sensoreId);
+        dati.putLong(offset + 16, timestamp.toEpochSecond(ZoneOffset.UTC));
+        dati.putDouble(offset + 24, valore);
+        dati.putInt(offset + 32, timestamp.getNano());
+        dati.putInt(offset + DATI_VOCE, crc(offset));
+        voci++;
+    }
+
+    /**
+     * Forza su disco le voci scritte dall'ultima sincronizzazione.
+     * Va chiamato da un solo thread alla volta (il thread di sincronizzazione o chi ruota il segmento).
+     *
+     * @param finoA Numero di voci da rendere durevoli, letto sotto il lock di scrittura.
+     */
+    void forza(int finoA) {
+        if (finoA > sincronizzate) {
+            dati.force(sincronizzate * DIMENSIONE_VOCE, (finoA - sincronizzate) * DIMENSIONE_VOCE);
+            sincronizzate = finoA;
+        }
+    }
+
+    int voci() {
+        return voci;
+    }
+
+    /**
+     * @return La voce con la sequenza indicata, che deve essere già stata scritta in questo segmento.
+     */
+    VoceGiornale leggi(long sequenza) {
+        int offset = (int) (sequenza - primaSequenza) * DIMENSIONE_VOCE;
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(dati.getLong(offset + 16),
+                dati.getInt(offset + 32), ZoneOffset.UTC);
+        return new VoceGiornale(sequenza, dati.getLong(offset + 8), timestamp, dati.getDouble(offset + 24));
+    }
+
+    void elimina() throws IOException {
+        // La mappatura viene rilasciata dal GC; su Linux il file può essere rimosso anche se ancora mappato
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.demo.giornale;
+
+import java.time.LocalDateTime;
+
+/**
+ * Una rilevazione registrata nel giornale di ingestione, identificata dalla sua sequenza.
+ */
+public record VoceGiornale(long sequenza, long sensoreId, LocalDateTime timestamp, double valore) {}
@@ -0,0 +1,90 @@
+package com.example.demo.importazione;
+
+import com.example.demo.entity.Sensore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Tabella dei codici sensore indicizzata direttamente sui byte del file (open addressing).
+ * <p>
+ * La ricerca confronta i byte del buffer con le chiavi memorizzate, senza creare una String per riga:
+ * la String del codice viene costruita una sola volta, al primo incontro, per risolverlo.
+ * Anche i codici sconosciuti vengono memorizzati (con sensore null). Non è thread-safe: una tabella per porzione.
+ */
+final class CodiciSensore {
+
+    private final Function<String, Sensore> risolutore;
+    private byte[][] chiavi = new byte[64][];
+    private Sensore[] sensori = new Sensore[64];
+    private int dimensione;
+
+    CodiciSensore(Function<String, Sensore> risolutore) {
+        this.risolutore = risolutore;
+    }
+
+    /**
+     * @return Il sensore con il codice contenuto nei byte [da, a) del buffer, oppure null se sconosciuto.
+     */
+    Sensore trova(ByteBuffer dati, int da, int a) {
+        int maschera = chiavi.length - 1;
+        int i = hash(dati, da, a) & maschera;
+        while (chiavi[i] != null) {
+            if (uguali(chiavi[i], dati, da, a)) {
+                return sensori[i];
+            }
+            i = (i + 1) & maschera;
+        }
+
+        byte[] chiave = new byte[a - da];
+        dati.get(da, chiave);
+        Sensore sensore = risolutore.apply(new String(chiave, StandardCharsets.UTF_8));
+        chiavi[i] = chiave;
+        sensori[i] = sensore;
+        if (++dimensione * 2 > chiavi.length) {
+            raddoppia();
+        }
+        return sensore;
+    }
+
+    private void raddoppia() {
+        byte[][] vecchieChiavi = chiavi;
+        Sensore[] vecchiSensori = sensori;
+        chiavi = new byte[vecchieChiavi.length * 2][];
+        sensori = new Sensore[vecchieChiavi.length * 2];
+        int maschera = chiavi.length - 1;
+        for (int j = 0; j < vecchieChiavi.length; j++) {
+            if (vecchieChiavi[j] != null) {
+                int i = Arrays.hashCode(vecchieChiavi[j]) & maschera;
+                while (chiavi[i] != null) {
+                    i = (i + 1) & maschera;
+                }
+                chiavi[i] = vecchieChiavi[j];
+                sensori[i] = vecchiSensori[j];
+            }
+        }
+    }
+
+    // Stesso risultato di Arrays.hashCode sulla sequenza di byte
+    private static int hash(ByteBuffer dati, int da, int a) {
+        int h = 1;
+        for (int i = da; i < a; i++) {
+            h = 31 * h + dati.get(i);
+        }
+        return h;
+    }
+
+    private static boolean uguali(byte[] chiave, ByteBuffer dati, int da, int a) {
+        if (chiave.length != a - da) {
+            return false;
+        }
+        for (int i = 0; i < chiave.length; i++) {
+            if (chiave[i] != dati.get(da + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
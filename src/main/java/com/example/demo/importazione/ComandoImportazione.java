@@ -0,0 +1,55 @@
+package com.example.demo.importazione;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Avvia l'importazione storica dei file indicati in {@code collina.backfill.file} (separati da virgola).
+ * <p>
+ * I file vengono importati uno dopo l'altro su un thread dedicato, così l'applicazione resta
+ * disponibile durante il caricamento. Un file già importato viene saltato dai suoi checkpoint;
+ * uno interrotto riprende dall'ultimo blocco confermato.
+ */
+@Component
+@ConditionalOnProperty("collina.backfill.file")
+public class ComandoImportazione {
+
+    private static final Logger log = LoggerFactory.getLogger(ComandoImportazione.class);
+
+    private final ImportazioneStoricaServizio importazione;
+    private final String[] file;
+
+    public ComandoImportazione(ImportazioneStoricaServizio importazione,
+                               @Value("${collina.backfill.file}") String[] file) {
+        this.importazione = importazione;
+        this.file = file;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void avvia() {
+        Thread t = new Thread(this::importaTutti, "backfill-comando");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void importaTutti() {
+        for (String nome : file) {
+            if (nome.isBlank()) {
+                continue;
+            }
+            try {
+                importazione.importa(Path.of(nome.trim()));
+            } catch (RuntimeException e) {
+                // Gli altri file vengono comunque importati; il file fallito riprende al prossimo avvio
+                log.error("Importazione storica di {} non completata", nome.trim(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.demo.importazione;
+
+import com.example.demo.dto.EsitoImportazioneDTO;
+import com.example.demo.entity.CheckpointImportazione;
+import com.example.demo.entity.OraDaAggregare;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.repository.CheckpointImportazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Importazione massiva (Backfill) dello storico da file CSV {@code codice,timestamp,valore}
+ * esportati dai logger di campo, anche di decine di GB.
+ * <p>
+ * Il file viene diviso in porzioni allineate a inizio riga ed elaborato in parallelo, una porzione per thread:
+ * - ogni porzione è mappata in memoria e letta da {@link LettoreCsvMappato}, senza String per campo;
+ * - i codici sensore sono risolti una sola volta per importazione, con una query per codice distinto;
+ * - gli INSERT passano da una StatelessSession (niente Persistence Context) raggruppati in batch JDBC,
+ *   con gli ID della sequenza "pooled" di {@link Rilevazione}.
+ * Ogni transazione conferma insieme un blocco di righe, le ore toccate da riaggregare ({@link OraDaAggregare})
+ * e il {@link CheckpointImportazione} della porzione: dopo un'interruzione, rilanciando l'importazione sullo
+ * stesso file si riprende dal primo byte non confermato.
+ * <p>
+ * La qualità è classificata solo con l'intervallo di plausibilità del tipo: i controlli statistici di
+ * {@code QualitaDatiServizio} presuppongono letture in ordine cronologico e non si applicano allo storico.
+ * Non vengono pubblicati eventi: allerte e flusso live riguardano i dati in tempo reale, mentre gli aggregati
+ * delle ore importate sono ricalcolati dal job a partire dalla coda.
+ * Con lo sharding per campo l'importazione non è disponibile: righe e checkpoint di una transazione
+ * finirebbero su DB diversi e la ripresa non sarebbe più esatta.
+ * <p>
+ * Metriche: righe elaborate per esito (collina.backfill.righe{esito}).
+ */
+@Service
+public class ImportazioneStoricaServizio {
+
+    // Byte letti a ogni passo nella ricerca del primo inizio riga dopo un confine di porzione
+    private static final int FINESTRA_CONFINE = 64 * 1024;
+
+    private final SensoreRepository sensoreRepo;
+    private final CheckpointImportazioneRepository checkpointRepo;
+    private final SessionFactory sessionFactory;
+
+    private final long dimensionePorzione;
+    private final int thread;
+    private final int dimensioneBatch;
+    private final int righePerTransazione;
+    private final boolean sharding;
+
+    private final Counter importate;
+    private final Counter scartate;
+
+    public ImportazioneStoricaServizio(SensoreRepository sensoreRepo, CheckpointImportazioneRepository checkpointRepo,
+                                       EntityManagerFactory entityManagerFactory, MeterRegistry metriche,
+                                       @Value("${collina.backfill.dimensione-porzione-mb:256}") int porzioneMb,
+                                       @Value("${collina.backfill.thread:4}") int thread,
+                                       @Value("${collina.backfill.dimensione-batch:500}") int dimensioneBatch,
+                                       @Value("${collina.backfill.righe-per-transazione:50000}") int righePerTransazione,
+                                       @Value("${collina.shard.abilitato:false}") boolean sharding) {
+        // Una porzione mappata è indicizzata con un int
+        if (porzioneMb <= 0 || porzioneMb >= 2048) {
+            throw new IllegalArgumentException("collina.backfill.dimensione-porzione-mb deve essere tra 1 e 2047");
+        }
+        this.sensoreRepo = sensoreRepo;
+        this.checkpointRepo = checkpointRepo;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.dimensionePorzione = porzioneMb * 1024L * 1024L;
+        this.thread = Math.max(1, thread);
+        this.dimensioneBatch = dimensioneBatch;
+        this.righePerTransazione = Math.max(1, righePerTransazione);
+        this.sharding = sharding;
+
+        this.importate = righe(metriche, "importate");
+        this.scartate = righe(metriche, "scartate");
+    }
+
+    /**
+     * Importa (o riprende) il file indicato. Le porzioni già completate non vengono rilette.
+     *
+     * @param percorso Il file CSV da importare.
+     * @return Il riepilogo dell'importazione.
+     * @throws IllegalStateException se il file è cambiato rispetto a un'importazione precedente
+     *                               o se una porzione non è stata completata, oppure con lo sharding attivo.
+     */
+    public EsitoImportazioneDTO importa(Path percorso) {
+        if (sharding) {
+            throw new IllegalStateException("L'importazione storica non è supportata con collina.shard.abilitato=true");
+        }
+        long inizioMs = System.currentTimeMillis();
+        Path file = percorso.toAbsolutePath().normalize();
+        List<CheckpointImportazione> porzioni = porzioni(file);
+
+        List<CheckpointImportazione> daImportare = porzioni.stream().filter(p -> !p.isCompletata()).toList();
+
+        // Codici risolti una sola volta per tutta l'importazione, condivisi tra le porzioni
+        Map<String, Optional<Sensore>> codici = new ConcurrentHashMap<>();
+        ExecutorService esecutore = Executors.newFixedThreadPool(Math.min(thread, Math.max(1, daImportare.size())), r -> {
+            Thread t = new Thread(r, "backfill");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futuri = new ArrayList<>();
+            for (CheckpointImportazione porzione : daImportare) {
+                futuri.add(esecutore.submit(() -> importaPorzione(file, porzione, codici)));
+            }
+            attendi(futuri);
+        } finally {
+            esecutore.shutdownNow();
+        }
+
+        long righeImportate = porzioni.stream().mapToLong(CheckpointImportazione::getRigheImportate).sum();
+        long righeScartate = porzioni.stream().mapToLong(CheckpointImportazione::getRigheScartate).sum();
+        long durata = System.currentTimeMillis() - inizioMs;
+        return new EsitoImportazioneDTO(file.toString(), porzioni.size(), righeImportate, righeScartate, durata);
+    }
+
+    /**
+     * Checkpoint esistenti del file oppure, alla prima importazione, nuovo piano di porzioni.
+     */
+    private List<CheckpointImportazione> porzioni(Path file) {
+        long dimensione;
+        long ultimaModifica;
+        try {
+            dimensione = Files.size(file);
+            ultimaModifica = Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException("File non leggibile: " + file, e);
+        }
+
+        String impronta = CheckpointImportazione.impronta(file.toString());
+        List<CheckpointImportazione> esistenti = checkpointRepo.findByImprontaFileOrderByPorzione(impronta);
+        if (!esistenti.isEmpty()) {
+            CheckpointImportazione primo = esistenti.getFirst();
+            if (primo.getDimensioneFile() != dimensione || primo.getUltimaModificaFile() != ultimaModifica) {
+                throw new IllegalStateException("Il file " + file + " è cambiato dall'importazione precedente: "
+                        + "eliminare i checkpoint per reimportarlo da capo");
+            }
+            return esistenti;
+        }
+
+        List<Long> confini = confini(file, dimensione);
+        List<CheckpointImportazione> piano = new ArrayList<>();
+        for (int i = 0; i + 1 < confini.size(); i++) {
+            CheckpointImportazione porzione = new CheckpointImportazione();
+            porzione.setFile(file.toString());
+            porzione.setImprontaFile(impronta);
+            porzione.setPorzione(i);
+            porzione.setDimensioneFile(dimensione);
+            porzione.setUltimaModificaFile(ultimaModifica);
+            porzione.setInizio(confini.get(i));
+            porzione.setFine(confini.get(i + 1));
+            porzione.setProssimo(confini.get(i));
+            piano.add(porzione);
+        }
+        return checkpointRepo.saveAll(piano);
+    }
+
+    // Confini delle porzioni: ogni confine nominale è spostato al primo inizio riga successivo
+    private List<Long> confini(Path file, long dimensione) {
+        List<Long> confini = new ArrayList<>();
+        confini.add(0L);
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer finestra = ByteBuffer.allocate(FINESTRA_CONFINE);
+            long nominale = dimensionePorzione;
+            while (nominale < dimensione) {
+                long confine = inizioRiga(canale, nominale, dimensione, finestra);
+                if (confine >= dimensione) {
+                    break;
+                }
+                confini.add(confine);
+                nominale = confine + dimensionePorzione;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("File non leggibile: " + file, e);
+        }
+        confini.add(dimensione);
+        return confini;
+    }
+
+    // Primo byte >= posizione che inizia una riga (il byte precedente è '\n')
+    private static long inizioRiga(FileChannel canale, long posizione, long dimensione, ByteBuffer finestra)
+            throws IOException {
+        long cursore = posizione - 1;
+        while (cursore < dimensione) {
+            finestra.clear();
+            int letti = canale.read(finestra, cursore);
+            if (letti <= 0) {
+                break;
+            }
+            for (int i = 0; i < letti; i++) {
+                if (finestra.get(i) == '\n') {
+                    return cursore + i + 1;
+                }
+            }
+            cursore += letti;
+        }
+        return dimensione;
+    }
+
+    private void importaPorzione(Path file, CheckpointImportazione porzione, Map<String, Optional<Sensore>> codici) {
+        long base = porzione.getProssimo();
+        MappedByteBuffer dati;
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+            // La mappatura resta valida anche dopo la chiusura del canale
+            dati = canale.map(FileChannel.MapMode.READ_ONLY, base, porzione.getFine() - base);
+        } catch (IOException e) {
+            throw new UncheckedIOException("File non leggibile: " + file, e);
+        }
+
+        LettoreCsvMappato lettore = new LettoreCsvMappato(dati);
+        CodiciSensore sensori = new CodiciSensore(codice -> risolvi(codici, codice));
+
+        try (StatelessSession sessione = sessionFactory.openStatelessSession()) {
+            sessione.setJdbcBatchSize(dimensioneBatch);
+            boolean altre = true;
+            while (altre) {
+                long righeImportate = 0;
+                long righeScartate = 0;
+                Map<Long, Set<LocalDateTime>> oreToccate = new HashMap<>();
+                Transaction transazione = sessione.beginTransaction();
+                try {
+                    while (righeImportate + righeScartate < righePerTransazione && (altre = lettore.prossima())) {
+                        if (lettore.vuota()) {
+                            continue;
+                        }
+                        Sensore sensore = lettore.valida()
+                                ? sensori.trova(dati, lettore.inizioCodice(), lettore.fineCodice())
+                                : null;
+                        if (sensore == null) {
+                            righeScartate++;
+                            continue;
+                        }
+                        Rilevazione rilevazione = rilevazione(sensore, lettore);
+                        sessione.insert(rilevazione);
+                        oreToccate.computeIfAbsent(sensore.getId(), k -> new HashSet<>())
+                                .add(rilevazione.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+                        righeImportate++;
+                    }
+
+                    for (Map.Entry<Long, Set<LocalDateTime>> ore : oreToccate.entrySet()) {
+                        for (LocalDateTime ora : ore.getValue()) {
+                            sessione.insert(new OraDaAggregare(ore.getKey(), ora));
+                        }
+                    }
+
+                    porzione.setProssimo(base + lettore.posizione());
+                    porzione.setRigheImportate(porzione.getRigheImportate() + righeImportate);
+                    porzione.setRigheScartate(porzione.getRigheScartate() + righeScartate);
+                    sessione.update(porzione);
+                    transazione.commit();
+                } catch (RuntimeException e) {
+                    transazione.rollback();
+                    throw e;
+                }
+                importate.increment(righeImportate);
+                scartate.increment(righeScartate);
+            }
+        }
+    }
+
+    /**
+     * Sensore di un codice, condiviso tra le porzioni. La query avviene fuori dalla mappa concorrente
+     * (non sotto il lock di computeIfAbsent): due porzioni possono risolvere lo stesso codice, resta il primo.
+     */
+    private Sensore risolvi(Map<String, Optional<Sensore>> codici, String codice) {
+        Optional<Sensore> sensore = codici.get(codice);
+        if (sensore == null) {
+            Optional<Sensore> trovato = sensoreRepo.findByCodice(codice);
+            sensore = codici.putIfAbsent(codice, trovato);
+            if (sensore == null) {
+                sensore = trovato;
+            }
+        }
+        return sensore.orElse(null);
+    }
+
+    private static Rilevazione rilevazione(Sensore sensore, LettoreCsvMappato lettore) {
+        double valore = lettore.valore();
+        Rilevazione r = new Rilevazione();
+        r.setSensore(sensore);
+        r.setTimestamp(lettore.timestamp());
+        r.setValore(valore);
+        r.setUnita(sensore.getTipo().getUnita());
+        r.setQualita(sensore.getTipo().plausibile(valore) ? QualitaDato.VALIDO : QualitaDato.INVALIDO);
+        return r;
+    }
+
+    private static void attendi(List<Future<?>> futuri) {
+        try {
+            for (Future<?> futuro : futuri) {
+                futuro.get();
+            }
+        } catch (InterruptedException e) {
+            futuri.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Importazione interrotta", e);
+        } catch (ExecutionException e) {
+            futuri.forEach(f -> f.cancel(true));
+            // I checkpoint confermati restano validi: rilanciando l'importazione si riprende da lì
+            throw new IllegalStateException("Importazione non completata: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static Counter righe(MeterRegistry metriche, String esito) {
+        return Counter.builder("collina.backfill.righe")
+                .description("Righe elaborate dall'importazione storica")
+                .tag("esito", esito)
+                .register(metriche);
+    }
+}
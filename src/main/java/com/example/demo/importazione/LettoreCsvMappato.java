@@ -0,0 +1,261 @@
+package com.example.demo.importazione;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * Lettore sequenziale di righe CSV {@code codice,timestamp,valore} direttamente dai byte
+ * di un buffer (tipicamente una porzione di file mappata in memoria).
+ * <p>
+ * I campi non vengono convertiti in String: il codice resta un intervallo di byte del buffer,
+ * il timestamp è letto cifra per cifra e il valore numerico con un parser dedicato.
+ * Sono accettati come separatori sia ',' sia ';' e timestamp nel formato
+ * {@code yyyy-MM-dd[T| ]HH:mm[:ss[.SSS...]]}. Le righe terminano con '\n' o "\r\n", anche l'ultima
+ * può esserne priva. I campi possono essere racchiusi tra doppi apici, purché senza separatori all'interno.
+ * <p>
+ * Non è thread-safe: ogni porzione del file ha il proprio lettore.
+ */
+final class LettoreCsvMappato {
+
+    // Potenze di 10 rappresentabili esattamente in double
+    private static final double[] POTENZE_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ByteBuffer dati;
+    private final int limite;
+    private int posizione;
+
+    // Campi dell'ultima riga letta
+    private boolean vuota;
+    private boolean valida;
+    private int inizioCodice;
+    private int fineCodice;
+    private int anno, mese, giorno, ora, minuto, secondo, nano;
+    private double valore;
+
+    LettoreCsvMappato(ByteBuffer dati) {
+        this.dati = dati;
+        this.limite = dati.limit();
+    }
+
+    /**
+     * Avanza alla riga successiva e ne analizza i campi.
+     *
+     * @return false se la porzione è terminata.
+     */
+    boolean prossima() {
+        if (posizione >= limite) {
+            return false;
+        }
+        int inizio = posizione;
+        int fine = inizio;
+        while (fine < limite && dati.get(fine) != '\n') {
+            fine++;
+        }
+        posizione = fine < limite ? fine + 1 : limite;
+        if (fine > inizio && dati.get(fine - 1) == '\r') {
+            fine--;
+        }
+
+        vuota = fine == inizio;
+        valida = !vuota && analizza(inizio, fine);
+        return true;
+    }
+
+    /** @return Il primo byte (relativo al buffer) della riga successiva. */
+    int posizione() {
+        return posizione;
+    }
+
+    boolean vuota() {
+        return vuota;
+    }
+
+    /** @return true se la riga ha tre campi ben formati. */
+    boolean valida() {
+        return valida;
+    }
+
+    int inizioCodice() {
+        return inizioCodice;
+    }
+
+    int fineCodice() {
+        return fineCodice;
+    }
+
+    double valore() {
+        return valore;
+    }
+
+    LocalDateTime timestamp() {
+        return LocalDateTime.of(anno, mese, giorno, ora, minuto, secondo, nano);
+    }
+
+    private boolean analizza(int inizio, int fine) {
+        int separatore1 = separatore(inizio, fine);
+        if (separatore1 <= inizio) {
+            return false;
+        }
+        int separatore2 = separatore(separatore1 + 1, fine);
+        if (separatore2 < 0) {
+            return false;
+        }
+        inizioCodice = inizio;
+        fineCodice = separatore1;
+        if (virgolettato(inizioCodice, fineCodice)) {
+            inizioCodice++;
+            fineCodice--;
+        }
+        return inizioCodice < fineCodice
+                && analizzaTimestamp(separatore1 + 1, separatore2) && analizzaValore(separatore2 + 1, fine);
+    }
+
+    // true se il campo [da, a) è racchiuso tra doppi apici
+    private boolean virgolettato(int da, int a) {
+        return a - da >= 2 && dati.get(da) == '"' && dati.get(a - 1) == '"';
+    }
+
+    private int separatore(int da, int a) {
+        for (int i = da; i < a; i++) {
+            byte b = dati.get(i);
+            if (b == ',' || b == ';') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean analizzaTimestamp(int da, int a) {
+        if (virgolettato(da, a)) {
+            da++;
+            a--;
+        }
+        // Minimo: yyyy-MM-ddTHH:mm (16 caratteri)
+        if (a - da < 16 || dati.get(da + 4) != '-' || dati.get(da + 7) != '-'
+                || (dati.get(da + 10) != 'T' && dati.get(da + 10) != ' ') || dati.get(da + 13) != ':') {
+            return false;
+        }
+        anno = cifre(da, 4);
+        mese = cifre(da + 5, 2);
+        giorno = cifre(da + 8, 2);
+        ora = cifre(da + 11, 2);
+        minuto = cifre(da + 14, 2);
+        secondo = 0;
+        nano = 0;
+
+        int i = da + 16;
+        if (i < a) {
+            if (a - i < 3 || dati.get(i) != ':') {
+                return false;
+            }
+            secondo = cifre(i + 1, 2);
+            i += 3;
+            if (i < a) {
+                if (dati.get(i) != '.' || a - i > 10 || a - i < 2) {
+                    return false;
+                }
+                int frazione = cifre(i + 1, a - i - 1);
+                if (frazione < 0) {
+                    return false;
+                }
+                nano = frazione * (int) POTENZE_10[9 - (a - i - 1)];
+            }
+        }
+        return anno >= 0 && mese >= 1 && mese <= 12 && giorno >= 1 && giorno <= 31
+                && ora >= 0 && ora <= 23 && minuto >= 0 && minuto <= 59 && secondo >= 0 && secondo <= 59
+                && giorno <= YearMonth.of(anno, mese).lengthOfMonth();
+    }
+
+    // Intero di n cifre decimali a partire da 'da'; -1 se compare un carattere non numerico
+    private int cifre(int da, int n) {
+        int risultato = 0;
+        for (int i = da; i < da + n; i++) {
+            int cifra = dati.get(i) - '0';
+            if (cifra < 0 || cifra > 9) {
+                return -1;
+            }
+            risultato = risultato * 10 + cifra;
+        }
+        return risultato;
+    }
+
+    /**
+     * Numero decimale con segno, parte frazionaria ed esponente opzionali.
+     * Il percorso veloce (mantissa fino a 15 cifre, esponente entro 10^22) è esatto;
+     * i casi rimanenti, rari nei file dei logger, sono delegati a Double.parseDouble.
+     */
+    private boolean analizzaValore(int da, int a) {
+        if (virgolettato(da, a)) {
+            da++;
+            a--;
+        }
+        if (da >= a) {
+            return false;
+        }
+        int i = da;
+        boolean negativo = false;
+        if (dati.get(i) == '-' || dati.get(i) == '+') {
+            negativo = dati.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int cifreSignificative = 0;
+        int esponente = 0;
+        boolean cifre = false;
+        boolean frazione = false;
+        for (; i < a; i++) {
+            byte b = dati.get(i);
+            if (b >= '0' && b <= '9') {
+                cifre = true;
+                if (cifreSignificative < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) {
+                        cifreSignificative++;
+                    }
+                    if (frazione) {
+                        esponente--;
+                    }
+                } else if (!frazione) {
+                    esponente++;
+                }
+            } else if (b == '.' && !frazione) {
+                frazione = true;
+            } else {
+                break;
+            }
+        }
+        if (!cifre) {
+            return false;
+        }
+        if (i < a) {
+            if (dati.get(i) != 'e' && dati.get(i) != 'E') {
+                return false;
+            }
+            return lentamente(da, a);
+        }
+
+        if (cifreSignificative <= 15 && esponente >= -22 && esponente <= 22) {
+            double risultato = esponente < 0 ? mantissa / POTENZE_10[-esponente] : mantissa * POTENZE_10[esponente];
+            valore = negativo ? -risultato : risultato;
+            return true;
+        }
+        return lentamente(da, a);
+    }
+
+    private boolean lentamente(int da, int a) {
+        byte[] testo = new byte[a - da];
+        dati.get(da, testo);
+        try {
+            valore = Double.parseDouble(new String(testo, StandardCharsets.US_ASCII));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.AggregatoRilevazione;
+import com.example.demo.enums.Granularita;
+import com.example.demo.shard.PerSensore;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Interfaccia di persistenza per gli aggregati orari e giornalieri delle rilevazioni.
+ */
+public interface AggregatoRilevazioneRepository extends JpaRepository<AggregatoRilevazione, Long> {
+
+    /**
+     * Recupera gli aggregati di un sensore con inizio in [da, a), in ordine cronologico.
+     * Sfrutta il vincolo univoco (sensore_id, granularita, inizio) come indice.
+     */
+    @PerSensore
+    @Query("select a from AggregatoRilevazione a where a.sensoreId = :sensoreId and a.granularita = :granularita " +
+            "and a.inizio >= :da and a.inizio < :a order by a.inizio")
+    List<AggregatoRilevazione> findIntervallo(@Param("sensoreId") Long sensoreId,
+                                             @Param("granularita") Granularita granularita,
+                                             @Param("da") LocalDateTime da,
+                                             @Param("a") LocalDateTime a);
+}
@@ -6,6 +6,7 @@ import com.example.demo.entity.Rilevazione;
 import com.example.demo.entity.Sensore;
 import com.example.demo.enums.StatoCampo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -15,5 +16,14 @@ import java.util.Optional;
 
 public interface CampoRepository extends JpaRepository<Campo, Long> {
     List<Campo> findByStato(StatoCampo stato);
+
+    /**
+     * Azzera i valori economici mancanti (record creati prima dell'introduzione dei campi), con un solo UPDATE.
+     * @return Il numero di campi corretti.
+     */
+    @Modifying
+    @Query("update Campo c set c.produzioneKg = 0.0, c.costiAccumulati = 0.0, c.ricaviStimati = 0.0 " +
+            "where c.produzioneKg is null")
+    int azzeraEconomiaMancante();
 }
 
@@ -0,0 +1,10 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.CheckpointImportazione;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface CheckpointImportazioneRepository extends JpaRepository<CheckpointImportazione, Long> {
+    List<CheckpointImportazione> findByImprontaFileOrderByPorzione(String improntaFile);
+}
@@ -0,0 +1,49 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.ChunkRilevazioni;
+import com.example.demo.shard.PerSensore;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Interfaccia di persistenza per i blocchi compressi delle rilevazioni sigillate.
+ */
+public interface ChunkRilevazioniRepository extends JpaRepository<ChunkRilevazioni, Long> {
+
+    /**
+     * Recupera i blocchi di un sensore con giorno in [da, a], in ordine cronologico.
+     */
+    @PerSensore
+    @Query("select c from ChunkRilevazioni c where c.sensoreId = :sensoreId " +
+            "and c.giorno >= :da and c.giorno <= :a order by c.giorno")
+    List<ChunkRilevazioni> findIntervallo(@Param("sensoreId") Long sensoreId,
+                                          @Param("da") LocalDate da,
+                                          @Param("a") LocalDate a);
+
+    /**
+     * @return Il blocco del sensore per il giorno indicato, se sigillato.
+     */
+    @PerSensore
+    Optional<ChunkRilevazioni> findBySensoreIdAndGiorno(Long sensoreId, LocalDate giorno);
+
+    /**
+     * @return L'ultimo giorno sigillato del sensore, oppure null se non ce ne sono.
+     */
+    @PerSensore
+    @Query("select max(c.giorno) from ChunkRilevazioni c where c.sensoreId = :sensoreId")
+    LocalDate findUltimoGiorno(@Param("sensoreId") Long sensoreId);
+
+    /**
+     * Elimina i blocchi del sensore relativi ai giorni precedenti a {@code limite}.
+     */
+    @PerSensore
+    @Modifying
+    @Query("delete from ChunkRilevazioni c where c.sensoreId = :sensoreId and c.giorno < :limite")
+    int deletePrimaDi(@Param("sensoreId") Long sensoreId, @Param("limite") LocalDate limite);
+}
@@ -0,0 +1,25 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.EventoAllerta;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+/**
+ * Interfaccia di persistenza per lo storico delle transizioni di allerta (feed).
+ */
+public interface EventoAllertaRepository extends JpaRepository<EventoAllerta, Long> {
+    List<EventoAllerta> findByOrderByTimestampDescIdDesc(Limit limite);
+    List<EventoAllerta> findByCampoIdOrderByTimestampDescIdDesc(Long campoId, Limit limite);
+
+    /**
+     * Allerte ancora aperte: per ogni coppia regola/sensore, l'ultima transizione registrata è un'apertura.
+     * Usata all'avvio per ricostruire lo stato in memoria del motore.
+     */
+    @Query("select e from EventoAllerta e where e.transizione = com.example.demo.enums.TransizioneAllerta.APERTA " +
+            "and e.id = (select max(e2.id) from EventoAllerta e2 " +
+            "where e2.regolaId = e.regolaId and e2.sensoreId = e.sensoreId)")
+    List<EventoAllerta> findAperte();
+}
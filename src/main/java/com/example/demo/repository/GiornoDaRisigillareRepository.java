@@ -0,0 +1,19 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.GiornoDaRisigillare;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+
+public interface GiornoDaRisigillareRepository extends JpaRepository<GiornoDaRisigillare, Long> {
+
+    /**
+     * Elimina le voci già elaborate, con una sola istruzione DELETE.
+     */
+    @Modifying
+    @Query("delete from GiornoDaRisigillare g where g.id in :ids")
+    int deleteElaborate(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,14 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.MovimentoEconomico;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+/**
+ * Interfaccia di persistenza del registro economico (in sola aggiunta).
+ */
+public interface MovimentoEconomicoRepository extends JpaRepository<MovimentoEconomico, Long> {
+    List<MovimentoEconomico> findByCampoIdOrderByTimestampDescIdDesc(Long campoId, Limit limite);
+}
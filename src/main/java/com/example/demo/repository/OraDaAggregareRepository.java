@@ -0,0 +1,28 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.OraDaAggregare;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OraDaAggregareRepository extends JpaRepository<OraDaAggregare, Long> {
+
+    /**
+     * @param limite Il numero massimo di voci da restituire.
+     * @return Le prime voci in coda, dalla più vecchia.
+     */
+    @Query("select o from OraDaAggregare o order by o.id")
+    List<OraDaAggregare> findInOrdine(Limit limite);
+
+    /**
+     * Elimina le voci già elaborate, con una sola istruzione DELETE.
+     */
+    @Modifying
+    @Query("delete from OraDaAggregare o where o.id in :ids")
+    int deleteElaborate(@Param("ids") Collection<Long> ids);
+}
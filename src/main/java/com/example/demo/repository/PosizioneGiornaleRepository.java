@@ -0,0 +1,7 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.PosizioneGiornale;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PosizioneGiornaleRepository extends JpaRepository<PosizioneGiornale, String> {
+}
@@ -0,0 +1,10 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.RegolaAllerta;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface RegolaAllertaRepository extends JpaRepository<RegolaAllerta, Long> {
+    List<RegolaAllerta> findByAttivaTrue();
+}
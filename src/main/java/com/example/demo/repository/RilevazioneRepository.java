@@ -1,27 +1,74 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.PuntoRilevazioneDTO;
+import com.example.demo.dto.PuntoSerieDTO;
 import com.example.demo.entity.Rilevazione;
+import com.example.demo.shard.PerSensore;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
  * Interfaccia di persistenza per l'entità Rilevazione.
  * Estende JpaRepository per ereditare le operazioni CRUD standard e la paginazione.
+ * <p>
+ * Le query di lettura per grafici, finestre e aggregati restituiscono proiezioni (record DTO)
+ * con le sole colonne necessarie: nessuna entità entra nel contesto di persistenza.
  */
 public interface RilevazioneRepository extends JpaRepository<Rilevazione, Long> {
 
     /**
-     * Recupera le ultime 96 rilevazioni storiche per un determinato sensore.
+     * Recupera le ultime N rilevazioni storiche per un determinato sensore, come proiezioni.
      * <p>
-     * Utilizza il meccanismo di "Query Derivata" di Spring Data JPA:
-     * - Top96: Applica un limit SQL ai primi 96 record.
-     * - OrderByTimestampDesc: Garantisce che i dati siano ordinati dal più recente al più vecchio.
+     * - Limit: Applica un limit SQL ai primi N record (es. 96).
+     * - order by timestamp desc: Garantisce che i dati siano ordinati dal più recente al più vecchio.
      * <p>
      * 96 rilevazioni corrispondono a una finestra temporale di 24 ore
      * con una frequenza di campionamento di 15 minuti.
+     * Usata per il preriscaldamento della cache delle finestre dei sensori.
      *
      * @param sensoreId L'identificativo univoco del sensore.
-     * @return Lista delle rilevazioni trovate.
+     * @param limite Il numero massimo di rilevazioni da restituire.
+     * @return Lista dei punti trovati.
+     */
+    @PerSensore
+    @Query("select new com.example.demo.dto.PuntoRilevazioneDTO(r.timestamp, r.valore, r.qualita) " +
+            "from Rilevazione r where r.sensore.id = :sensoreId order by r.timestamp desc")
+    List<PuntoRilevazioneDTO> findPuntiRecenti(@Param("sensoreId") Long sensoreId, Limit limite);
+
+    /**
+     * Recupera (istante, valore) delle rilevazioni VALIDO di un sensore con timestamp in [da, a),
+     * in ordine cronologico.
+     * Sfrutta l'indice idx_sens_qual_ts (sensore_id, qualita, timestamp): i punti esclusi non vengono letti.
+     */
+    @PerSensore
+    @Query("select new com.example.demo.dto.PuntoSerieDTO(r.timestamp, r.valore) from Rilevazione r " +
+            "where r.sensore.id = :sensoreId and r.qualita = com.example.demo.enums.QualitaDato.VALIDO " +
+            "and r.timestamp >= :da and r.timestamp < :a order by r.timestamp")
+    List<PuntoSerieDTO> findPuntiValidi(@Param("sensoreId") Long sensoreId,
+                                        @Param("da") LocalDateTime da,
+                                        @Param("a") LocalDateTime a);
+
+    /**
+     * @return Il timestamp della prima rilevazione del sensore a partire da {@code da}, oppure null.
+     */
+    @PerSensore
+    @Query("select min(r.timestamp) from Rilevazione r where r.sensore.id = :sensoreId and r.timestamp >= :da")
+    LocalDateTime findPrimoTimestampDa(@Param("sensoreId") Long sensoreId, @Param("da") LocalDateTime da);
+
+    /**
+     * Elimina in blocco le rilevazioni grezze di un sensore con timestamp in [da, a).
+     * Eseguita come singola istruzione DELETE sull'indice idx_sens_ts.
      */
-    List<Rilevazione> findTop96BySensoreIdOrderByTimestampDesc(Long sensoreId);
-}
\ No newline at end of file
+    @PerSensore
+    @Modifying
+    @Query("delete from Rilevazione r where r.sensore.id = :sensoreId and r.timestamp >= :da and r.timestamp < :a")
+    int deleteIntervallo(@Param("sensoreId") Long sensoreId,
+                         @Param("da") LocalDateTime da,
+                         @Param("a") LocalDateTime a);
+}
@@ -0,0 +1,46 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.TotaliEconomiciDTO;
+import com.example.demo.entity.SaldoEconomicoOrario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SaldoEconomicoOrarioRepository extends JpaRepository<SaldoEconomicoOrario, Long> {
+
+    /**
+     * Incremento atomico del saldo orario.
+     *
+     * @return Il numero di righe aggiornate (0 se l'ora non ha ancora movimenti).
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update SaldoEconomicoOrario s set s.produzioneKg = s.produzioneKg + :produzione, " +
+            "s.costi = s.costi + :costi, s.ricavi = s.ricavi + :ricavi " +
+            "where s.campoId = :campoId and s.ora = :ora")
+    int incrementa(@Param("campoId") Long campoId,
+                   @Param("ora") LocalDateTime ora,
+                   @Param("produzione") double produzione,
+                   @Param("costi") double costi,
+                   @Param("ricavi") double ricavi);
+
+    /**
+     * Saldi orari del campo con ora in [da, a), in ordine cronologico.
+     */
+    @Query("select s from SaldoEconomicoOrario s where s.campoId = :campoId " +
+            "and s.ora >= :da and s.ora < :a order by s.ora")
+    List<SaldoEconomicoOrario> findIntervallo(@Param("campoId") Long campoId,
+                                              @Param("da") LocalDateTime da,
+                                              @Param("a") LocalDateTime a);
+
+    /**
+     * Somme dei saldi orari precedenti a {@code prima}: il punto di partenza del bilancio cumulato.
+     */
+    @Query("select new com.example.demo.dto.TotaliEconomiciDTO(coalesce(sum(s.produzioneKg), 0.0), " +
+            "coalesce(sum(s.costi), 0.0), coalesce(sum(s.ricavi), 0.0)) " +
+            "from SaldoEconomicoOrario s where s.campoId = :campoId and s.ora < :prima")
+    TotaliEconomiciDTO sommaPrecedente(@Param("campoId") Long campoId, @Param("prima") LocalDateTime prima);
+}
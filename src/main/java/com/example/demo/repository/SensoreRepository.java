@@ -1,6 +1,7 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Sensore;
+import com.example.demo.enums.TipoSensore;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
@@ -8,5 +9,7 @@ import java.util.Optional;
 
 public interface SensoreRepository extends JpaRepository<Sensore, Long> {
     List<Sensore> findByCampoIdAndAttivoTrue(Long campoId);
+    List<Sensore> findByCampoIdOrderById(Long campoId);
     Optional<Sensore> findByCodice(String codice);
+    List<Sensore> findByTipo(TipoSensore tipo);
 }
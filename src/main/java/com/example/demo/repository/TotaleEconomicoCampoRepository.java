@@ -0,0 +1,28 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.TotaleEconomicoCampo;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface TotaleEconomicoCampoRepository extends JpaRepository<TotaleEconomicoCampo, Long> {
+
+    /**
+     * Incremento atomico dei totali: nessuna lettura-modifica-scrittura, quindi nessun aggiornamento perso.
+     * Il lock di riga serializza i soli scrittori dello stesso campo fino al commit.
+     *
+     * @return Il numero di righe aggiornate (0 se il campo non ha ancora un saldo aperto).
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update TotaleEconomicoCampo t set t.produzioneKg = t.produzioneKg + :produzione, " +
+            "t.costi = t.costi + :costi, t.ricavi = t.ricavi + :ricavi, t.aggiornato = :aggiornato " +
+            "where t.campoId = :campoId")
+    int incrementa(@Param("campoId") Long campoId,
+                   @Param("produzione") double produzione,
+                   @Param("costi") double costi,
+                   @Param("ricavi") double ricavi,
+                   @Param("aggiornato") LocalDateTime aggiornato);
+}
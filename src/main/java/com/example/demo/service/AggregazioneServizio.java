@@ -0,0 +1,328 @@
+package com.example.demo.service;
+
+import com.example.demo.archivio.ArchivioChunkServizio;
+import com.example.demo.dto.PuntoSerieDTO;
+import com.example.demo.entity.AggregatoRilevazione;
+import com.example.demo.entity.OraDaAggregare;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Granularita;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.repository.AggregatoRilevazioneRepository;
+import com.example.demo.repository.OraDaAggregareRepository;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.shard.ContestoShard;
+import com.example.demo.shard.InstradamentoShard;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Job incrementale che mantiene gli aggregati orari e giornalieri (Rollup) delle rilevazioni.
+ * <p>
+ * Chi scrive rilevazioni accoda nella stessa transazione le ore toccate ({@link OraDaAggregare}):
+ * a ogni esecuzione il job legge la coda, accorpa le voci per sensore in intervalli di ore contigue,
+ * ricalcola da zero quelle ore a partire dalle righe grezze e poi i giorni a partire dalle ore,
+ * ed elimina le voci elaborate. Una voce è visibile solo dopo il commit delle sue righe, quindi anche
+ * le transazioni confermate fuori ordine vengono aggregate; una lettura in ritardo fa ricalcolare solo
+ * la propria ora, non tutto l'intervallo fino all'ultima lettura. Il ricalcolo completo del bucket
+ * rende l'operazione idempotente.
+ * <p>
+ * La coda è elaborata a pagine di {@code collina.aggregazione.ore-per-transazione} voci, una transazione
+ * per pagina: dopo un'importazione storica di anni di dati ogni transazione legge al più quelle ore di
+ * righe grezze, e un'interruzione perde solo la pagina in corso.
+ * Con lo sharding per campo il job gira su ogni shard a turno: coda e aggregati di uno shard
+ * stanno nel suo DB e vengono aggiornati nelle sue transazioni locali.
+ * <p>
+ * Dati già eliminati:
+ * - le ore anteriori al limite di conservazione della tipologia non vengono ricalcolate: l'aggregato
+ *   è ormai l'unico riepilogo e una lettura tardiva lo sovrascriverebbe con dati parziali;
+ * - per i giorni sigillati con le righe grezze eliminate ({@code collina.archivio.elimina-grezze=true})
+ *   le ore sono ricalcolate dai blocchi compressi più le eventuali righe grezze arrivate dopo;
+ * - i giorni sigillati che ricevono nuove righe vengono segnalati all'archivio per essere risigillati.
+ */
+@Service
+public class AggregazioneServizio {
+
+    private final RilevazioneRepository rilevazioneRepo;
+    private final AggregatoRilevazioneRepository aggregatoRepo;
+    private final OraDaAggregareRepository codaRepo;
+    private final SensoreRepository sensoreRepo;
+    private final ArchivioChunkServizio archivio;
+    private final Environment ambiente;
+    private final InstradamentoShard instradamento;
+    private final TransactionTemplate transazione;
+    private final int orePerTransazione;
+
+    /**
+     * Intervallo [da, a) di bucket contigui.
+     */
+    record Intervallo(LocalDateTime da, LocalDateTime a) {}
+
+    public AggregazioneServizio(RilevazioneRepository rilevazioneRepo, AggregatoRilevazioneRepository aggregatoRepo,
+                                OraDaAggregareRepository codaRepo, SensoreRepository sensoreRepo,
+                                ArchivioChunkServizio archivio, Environment ambiente,
+                                InstradamentoShard instradamento, TransactionTemplate transazione,
+                                @Value("${collina.aggregazione.ore-per-transazione:1000}") int orePerTransazione) {
+        if (orePerTransazione <= 0) {
+            throw new IllegalStateException("collina.aggregazione.ore-per-transazione deve essere positivo");
+        }
+        this.rilevazioneRepo = rilevazioneRepo;
+        this.aggregatoRepo = aggregatoRepo;
+        this.codaRepo = codaRepo;
+        this.sensoreRepo = sensoreRepo;
+        this.archivio = archivio;
+        this.ambiente = ambiente;
+        this.instradamento = instradamento;
+        this.transazione = transazione;
+        this.orePerTransazione = orePerTransazione;
+    }
+
+    /**
+     * Esecuzione periodica (default ogni 5 minuti, dopo la fine della precedente).
+     * Coda e aggregati di una pagina vengono aggiornati nella stessa transazione.
+     * Le esecuzioni manuali non si sovrappongono a quella pianificata.
+     */
+    @Scheduled(fixedDelayString = "${collina.aggregazione.intervallo-ms:300000}")
+    @Timed(value = "collina.job.aggregazione", histogram = true)
+    public synchronized void aggiorna() {
+        Map<Long, LocalDate> conservati = limitiConservazione();
+        for (int shard = 0; shard < instradamento.numeroShard(); shard++) {
+            ContestoShard.su(shard, () -> {
+                while (Boolean.TRUE.equals(transazione.execute(stato -> aggiornaPagina(conservati)))) {
+                    // Una transazione per pagina, fino a svuotare la coda dello shard
+                }
+            });
+        }
+    }
+
+    // Primo giorno conservato dei sensori con una durata di conservazione configurata
+    private Map<Long, LocalDate> limitiConservazione() {
+        Map<Long, LocalDate> limiti = new HashMap<>();
+        for (TipoSensore tipo : TipoSensore.values()) {
+            LocalDate limite = ConservazioneServizio.limite(ambiente, tipo);
+            if (limite != null) {
+                for (Sensore sensore : sensoreRepo.findByTipo(tipo)) {
+                    limiti.put(sensore.getId(), limite);
+                }
+            }
+        }
+        return limiti;
+    }
+
+    /**
+     * Elabora la prossima pagina della coda.
+     *
+     * @param conservati Il primo giorno conservato per sensore: le ore precedenti non vengono ricalcolate.
+     * @return true se la pagina era piena e potrebbero esserci altre voci.
+     */
+    private boolean aggiornaPagina(Map<Long, LocalDate> conservati) {
+        List<OraDaAggregare> voci = codaRepo.findInOrdine(Limit.of(orePerTransazione));
+        if (voci.isEmpty()) {
+            return false;
+        }
+
+        Map<Long, SortedSet<LocalDateTime>> orePerSensore = new HashMap<>();
+        List<Long> elaborate = new ArrayList<>(voci.size());
+        for (OraDaAggregare voce : voci) {
+            elaborate.add(voce.getId());
+            LocalDate conservato = conservati.get(voce.getSensoreId());
+            if (conservato == null || !voce.getOra().toLocalDate().isBefore(conservato)) {
+                orePerSensore.computeIfAbsent(voce.getSensoreId(), k -> new TreeSet<>()).add(voce.getOra());
+            }
+        }
+
+        orePerSensore.forEach((sensoreId, ore) -> {
+            for (Intervallo intervallo : contigui(ore, ChronoUnit.HOURS)) {
+                ricalcolaOre(sensoreId, intervallo.da(), intervallo.a());
+            }
+            SortedSet<LocalDateTime> giorni = new TreeSet<>();
+            for (LocalDateTime ora : ore) {
+                giorni.add(ora.truncatedTo(ChronoUnit.DAYS));
+            }
+            for (Intervallo intervallo : contigui(giorni, ChronoUnit.DAYS)) {
+                ricalcolaGiorni(sensoreId, intervallo.da(), intervallo.a());
+            }
+
+            LocalDateTime sigillato = archivio.limiteSigillato(sensoreId);
+            if (sigillato != null) {
+                for (LocalDateTime giorno : giorni.headSet(sigillato)) {
+                    archivio.segnaDaRisigillare(sensoreId, giorno.toLocalDate());
+                }
+            }
+        });
+
+        codaRepo.deleteElaborate(elaborate);
+        return voci.size() == orePerTransazione;
+    }
+
+    /**
+     * Accorpa gli inizi di bucket in intervalli di bucket consecutivi.
+     *
+     * @param inizi Gli inizi dei bucket, già troncati all'unità e ordinati.
+     * @param unita L'ampiezza del bucket (ore o giorni).
+     * @return Gli intervalli [da, a), in ordine cronologico.
+     */
+    static List<Intervallo> contigui(SortedSet<LocalDateTime> inizi, ChronoUnit unita) {
+        List<Intervallo> intervalli = new ArrayList<>();
+        LocalDateTime da = null;
+        LocalDateTime a = null;
+        for (LocalDateTime inizio : inizi) {
+            if (da != null && !inizio.equals(a)) {
+                intervalli.add(new Intervallo(da, a));
+                da = null;
+            }
+            if (da == null) {
+                da = inizio;
+            }
+            a = inizio.plus(1, unita);
+        }
+        if (da != null) {
+            intervalli.add(new Intervallo(da, a));
+        }
+        return intervalli;
+    }
+
+    /**
+     * Ricalcola gli aggregati orari del sensore in [da, a) a partire dalle righe grezze valide
+     * e, per i giorni sigillati con le righe grezze eliminate, dai punti dei blocchi compressi.
+     * Deve essere invocato all'interno di una transazione.
+     */
+    public void ricalcolaOre(Long sensoreId, LocalDateTime da, LocalDateTime a) {
+        Map<LocalDateTime, Accumulatore> perOra = new TreeMap<>();
+        LocalDateTime sigillato = archivio.grezzeEliminate() ? archivio.limiteSigillato(sensoreId) : null;
+        if (sigillato != null && da.isBefore(sigillato)) {
+            archivio.leggi(sensoreId, da, a.isBefore(sigillato) ? a : sigillato, (ts, valore) ->
+                    aggiungi(perOra, LocalDateTime.ofInstant(Instant.ofEpochMilli(ts), ZoneId.systemDefault()), valore));
+        }
+        for (PuntoSerieDTO punto : rilevazioneRepo.findPuntiValidi(sensoreId, da, a)) {
+            if (punto.valore() != null) {
+                aggiungi(perOra, punto.timestamp(), punto.valore());
+            }
+        }
+        salva(sensoreId, Granularita.ORA, da, a, perOra);
+    }
+
+    private static void aggiungi(Map<LocalDateTime, Accumulatore> perOra, LocalDateTime ts, double valore) {
+        perOra.computeIfAbsent(ts.truncatedTo(ChronoUnit.HOURS), k -> new Accumulatore()).aggiungi(ts, valore);
+    }
+
+    /**
+     * Ricalcola gli aggregati giornalieri del sensore in [da, a) combinando quelli orari.
+     * Deve essere invocato all'interno di una transazione.
+     */
+    public void ricalcolaGiorni(Long sensoreId, LocalDateTime da, LocalDateTime a) {
+        Map<LocalDateTime, Accumulatore> perGiorno = new TreeMap<>();
+        for (AggregatoRilevazione ora : aggregatoRepo.findIntervallo(sensoreId, Granularita.ORA, da, a)) {
+            perGiorno.computeIfAbsent(ora.getInizio().truncatedTo(ChronoUnit.DAYS), k -> new Accumulatore())
+                    .combina(ora);
+        }
+        salva(sensoreId, Granularita.GIORNO, da, a, perGiorno);
+    }
+
+    /**
+     * Aggrega i punti in bucket della granularità indicata senza salvarli, come farebbe il job.
+     *
+     * @param punti I punti del sensore, in ordine cronologico.
+     * @return Un aggregato (non persistito) per ogni bucket con almeno un valore, in ordine cronologico.
+     */
+    static List<AggregatoRilevazione> aggregaAlVolo(Long sensoreId, Granularita granularita, List<PuntoSerieDTO> punti) {
+        ChronoUnit unita = granularita == Granularita.ORA ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+        Map<LocalDateTime, Accumulatore> perBucket = new TreeMap<>();
+        for (PuntoSerieDTO punto : punti) {
+            if (punto.valore() != null) {
+                perBucket.computeIfAbsent(punto.timestamp().truncatedTo(unita), k -> new Accumulatore())
+                        .aggiungi(punto.timestamp(), punto.valore());
+            }
+        }
+
+        List<AggregatoRilevazione> aggregati = new ArrayList<>(perBucket.size());
+        for (Map.Entry<LocalDateTime, Accumulatore> voce : perBucket.entrySet()) {
+            AggregatoRilevazione agg = new AggregatoRilevazione();
+            agg.setSensoreId(sensoreId);
+            agg.setGranularita(granularita);
+            agg.setInizio(voce.getKey());
+            voce.getValue().scriviIn(agg);
+            aggregati.add(agg);
+        }
+        return aggregati;
+    }
+
+    // Inserisce o aggiorna (upsert) gli aggregati calcolati, caricando quelli esistenti con una sola query
+    private void salva(Long sensoreId, Granularita granularita, LocalDateTime da, LocalDateTime a,
+                       Map<LocalDateTime, Accumulatore> calcolati) {
+        Map<LocalDateTime, AggregatoRilevazione> esistenti = new HashMap<>();
+        for (AggregatoRilevazione agg : aggregatoRepo.findIntervallo(sensoreId, granularita, da, a)) {
+            esistenti.put(agg.getInizio(), agg);
+        }
+
+        List<AggregatoRilevazione> daSalvare = new ArrayList<>(calcolati.size());
+        for (Map.Entry<LocalDateTime, Accumulatore> voce : calcolati.entrySet()) {
+            AggregatoRilevazione agg = esistenti.get(voce.getKey());
+            if (agg == null) {
+                agg = new AggregatoRilevazione();
+                agg.setSensoreId(sensoreId);
+                agg.setGranularita(granularita);
+                agg.setInizio(voce.getKey());
+            }
+            voce.getValue().scriviIn(agg);
+            daSalvare.add(agg);
+        }
+        aggregatoRepo.saveAll(daSalvare);
+    }
+
+    /**
+     * Accumulatore primitivo di min/max/somma/conteggio/ultimo per un singolo bucket.
+     */
+    private static final class Accumulatore {
+        private double minimo = Double.POSITIVE_INFINITY;
+        private double massimo = Double.NEGATIVE_INFINITY;
+        private double somma;
+        private long conteggio;
+        private double ultimo;
+        private LocalDateTime ultimoTimestamp;
+
+        void aggiungi(LocalDateTime ts, double valore) {
+            minimo = Math.min(minimo, valore);
+            massimo = Math.max(massimo, valore);
+            somma += valore;
+            conteggio++;
+            aggiornaUltimo(ts, valore);
+        }
+
+        void combina(AggregatoRilevazione parziale) {
+            minimo = Math.min(minimo, parziale.getMinimo());
+            massimo = Math.max(massimo, parziale.getMassimo());
+            somma += parziale.getSomma();
+            conteggio += parziale.getConteggio();
+            aggiornaUltimo(parziale.getUltimoTimestamp(), parziale.getUltimo());
+        }
+
+        private void aggiornaUltimo(LocalDateTime ts, double valore) {
+            if (ultimoTimestamp == null || !ts.isBefore(ultimoTimestamp)) {
+                ultimoTimestamp = ts;
+                ultimo = valore;
+            }
+        }
+
+        void scriviIn(AggregatoRilevazione agg) {
+            agg.setMinimo(minimo);
+            agg.setMassimo(massimo);
+            agg.setSomma(somma);
+            agg.setConteggio(conteggio);
+            agg.setUltimo(ultimo);
+            agg.setUltimoTimestamp(ultimoTimestamp);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Campionamento simulato dei sensori, ciascuno alla propria frequenza ({@code Sensore.frequenzaMinuti}).
+ * <p>
+ * I sensori attivi sono pianificati su una {@link RuotaTemporale} con tick di {@code collina.campionamento.tick-ms}.
+ * La prima esecuzione di ogni sensore cade in un punto casuale del suo periodo (jitter), quindi le
+ * letture si distribuiscono uniformemente nel tempo invece di arrivare tutte insieme: a ogni tick
+ * vengono generati e salvati, in un solo blocco, solo i sensori scaduti.
+ * Il salvataggio avviene su un thread dedicato, così un database lento non blocca il thread
+ * dello scheduler (condiviso con gli altri task pianificati); i blocchi sono scritti nell'ordine dei tick.
+ * La coda dei blocchi è limitata a {@code collina.campionamento.coda-blocchi}: oltre, i nuovi blocchi vengono
+ * scartati e contati da collina.campionamento.scartate, invece di accumulare letture in memoria.
+ * <p>
+ * Quando l'anagrafica dei sensori cambia (nuovi sensori, disattivazioni, frequenze modificate),
+ * la pianificazione viene riallineata al tick successivo; i sensori invariati mantengono la propria fase.
+ */
+@Service
+public class CampionamentoSensoriServizio {
+
+    private static final Logger log = LoggerFactory.getLogger(CampionamentoSensoriServizio.class);
+
+    // Slot della ruota: con tick di 1 secondo un giro copre oltre un'ora
+    private static final int SLOT_RUOTA = 4096;
+
+    // Frequenza usata per i sensori senza frequenza configurata
+    private static final int FREQUENZA_PREDEFINITA_MINUTI = 15;
+
+    private final AnagraficaServizio anagrafica;
+    private final IngestioneServizio ingestione;
+    private final SimulatoreServizio simulatore;
+    private final long tickMs;
+    private final RuotaTemporale ruota;
+    private final ThreadPoolExecutor scrittura;
+    private final Counter scartate;
+
+    // Sensori pianificati, per ID, e versione dell'anagrafica da cui sono stati letti
+    private Map<Long, Sensore> pianificati = Map.of();
+    private long versione = -1;
+    private volatile int numeroPianificati;
+
+    public CampionamentoSensoriServizio(AnagraficaServizio anagrafica, IngestioneServizio ingestione,
+                                        SimulatoreServizio simulatore, MeterRegistry metriche,
+                                        @Value("${collina.campionamento.tick-ms:1000}") long tickMs,
+                                        @Value("${collina.campionamento.coda-blocchi:60}") int codaBlocchi) {
+        this.anagrafica = anagrafica;
+        this.ingestione = ingestione;
+        this.simulatore = simulatore;
+        this.tickMs = tickMs;
+        this.ruota = new RuotaTemporale(SLOT_RUOTA, System.currentTimeMillis() / tickMs);
+        this.scartate = Counter.builder("collina.campionamento.scartate")
+                .description("Letture simulate scartate perché la coda di salvataggio era piena")
+                .register(metriche);
+
+        // Un solo thread, per scrivere i blocchi nell'ordine dei tick
+        this.scrittura = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(codaBlocchi),
+                r -> {
+                    Thread t = new Thread(r, "campionamento-scrittura");
+                    t.setDaemon(true);
+                    return t;
+                },
+                (blocco, esecutore) -> {
+                    if (!esecutore.isShutdown()) {
+                        int letture = ((Salvataggio) blocco).rilevazioni.size();
+                        scartate.increment(letture);
+                        log.warn("Coda di salvataggio piena: scartate {} letture", letture);
+                    }
+                });
+
+        Gauge.builder("collina.campionamento.sensori", this, s -> s.numeroPianificati)
+                .description("Sensori pianificati dal campionamento simulato")
+                .register(metriche);
+    }
+
+    /**
+     * Avanza la ruota all'istante corrente e salva, in background, una lettura per ogni sensore scaduto.
+     * Se un tick è in ritardo vengono elaborati anche quelli saltati.
+     */
+    @Scheduled(fixedRateString = "${collina.campionamento.tick-ms:1000}")
+    public synchronized void scatta() {
+        if (anagrafica.versioneSensori() != versione) {
+            riallinea();
+        }
+
+        LocalDateTime adesso = LocalDateTime.now();
+        List<Rilevazione> nuove = new ArrayList<>();
+        ruota.avanza(System.currentTimeMillis() / tickMs, id -> {
+            Sensore sensore = pianificati.get(id);
+            if (sensore != null) {
+                nuove.add(rilevazione(sensore, adesso));
+            }
+        });
+
+        if (!nuove.isEmpty()) {
+            scrittura.execute(new Salvataggio(nuove));
+        }
+    }
+
+    // Blocco di letture di un tick, in coda per il thread di scrittura
+    private final class Salvataggio implements Runnable {
+        private final List<Rilevazione> rilevazioni;
+
+        Salvataggio(List<Rilevazione> rilevazioni) {
+            this.rilevazioni = rilevazioni;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ingestione.registra(rilevazioni);
+            } catch (RuntimeException e) {
+                log.error("Salvataggio di {} letture non riuscito", rilevazioni.size(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        scrittura.shutdown();
+    }
+
+    /**
+     * Confronta i sensori attivi con quelli pianificati: aggiunge i nuovi, rimuove i disattivati
+     * e ripianifica quelli con frequenza cambiata, ciascuno con una fase casuale nel nuovo periodo.
+     */
+    private void riallinea() {
+        // Letta prima del caricamento: una modifica concorrente provocherà un nuovo riallineamento
+        long nuovaVersione = anagrafica.versioneSensori();
+        Map<Long, Sensore> attivi = new HashMap<>();
+        for (Campo campo : anagrafica.campi()) {
+            for (Sensore sensore : anagrafica.sensoriAttivi(campo.getId())) {
+                attivi.put(sensore.getId(), sensore);
+            }
+        }
+
+        for (Long id : pianificati.keySet()) {
+            if (!attivi.containsKey(id)) {
+                ruota.rimuovi(id);
+            }
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (Sensore sensore : attivi.values()) {
+            long periodo = periodoTick(sensore);
+            if (ruota.periodo(sensore.getId()) != periodo) {
+                ruota.pianifica(sensore.getId(), periodo, 1 + random.nextLong(periodo));
+            }
+        }
+
+        pianificati = attivi;
+        versione = nuovaVersione;
+        numeroPianificati = ruota.dimensione();
+    }
+
+    private long periodoTick(Sensore sensore) {
+        Integer minuti = sensore.getFrequenzaMinuti();
+        long periodoMs = (minuti == null || minuti <= 0 ? FREQUENZA_PREDEFINITA_MINUTI : minuti) * 60_000L;
+        return Math.max(1, periodoMs / tickMs);
+    }
+
+    private Rilevazione rilevazione(Sensore sensore, LocalDateTime adesso) {
+        Rilevazione ril = new Rilevazione();
+        ril.setSensore(sensore);
+        ril.setTimestamp(adesso);
+        ril.setValore(simulatore.generaValoreSimulato(sensore.getTipo()));
+        ril.setUnita(sensore.getTipo().getUnita());
+        return ril;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.ConfrontoCampiDTO;
+import com.example.demo.dto.StatisticheCampoDTO;
+import com.example.demo.entity.AggregatoRilevazione;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Granularita;
+import com.example.demo.enums.Risoluzione;
+import com.example.demo.enums.TipoSensore;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Analisi comparativa tra campi (Multi-field analytics) per una tipologia di sensore.
+ * <p>
+ * Il calcolo avviene in tre fasi:
+ * 1. gli aggregati orari o giornalieri di tutti i sensori della tipologia vengono letti in parallelo su
+ *    virtual thread (I/O, con il budget di connessioni di {@link EsecutoreParallelo}), comprese le ore
+ *    più recenti non ancora elaborate dal job degli aggregati;
+ * 2. per ogni campo le medie dei bucket dei suoi sensori sono allineate su una griglia di bucket (ore o giorni)
+ *    e mediate in array primitivi, da cui si ricavano media, deviazione standard e percentili;
+ *    minimo e massimo vengono invece dalle colonne min/max degli aggregati, cioè dalle singole letture;
+ * 3. si calcola la matrice delle correlazioni di Pearson tra i campi, sui soli bucket in comune.
+ * Le fasi 2 e 3 sono puramente di calcolo e vengono suddivise per campo con stream paralleli (pool fork/join comune).
+ */
+@Service
+public class ConfrontoCampiServizio {
+
+    // Bucket in comune necessari perché una correlazione sia significativa
+    private static final int MIN_PUNTI_CORRELAZIONE = 10;
+
+    private final AnagraficaServizio anagrafica;
+    private final SerieStoricaServizio serieStorica;
+    private final EsecutoreParallelo parallelo;
+
+    private record Lettura(int campo, Long sensoreId) {}
+
+    public ConfrontoCampiServizio(AnagraficaServizio anagrafica, SerieStoricaServizio serieStorica,
+                                  EsecutoreParallelo parallelo) {
+        this.anagrafica = anagrafica;
+        this.serieStorica = serieStorica;
+        this.parallelo = parallelo;
+    }
+
+    /**
+     * Confronta tutti i campi sulla tipologia di sensore indicata nell'intervallo [da, a).
+     * I bucket sono orari, oppure giornalieri per gli intervalli che lo storico serve con aggregati giornalieri.
+     *
+     * @param tipo La tipologia di sensore.
+     * @param da Inizio dell'intervallo (incluso).
+     * @param a Fine dell'intervallo (escluso).
+     * @return Statistiche per campo e matrice delle correlazioni.
+     */
+    @Timed(value = "collina.analisi.confronto", histogram = true)
+    public ConfrontoCampiDTO confronta(TipoSensore tipo, LocalDateTime da, LocalDateTime a) {
+        if (!da.isBefore(a)) {
+            throw new IllegalArgumentException("Intervallo non valido: 'da' deve precedere 'a'");
+        }
+        // Anche gli intervalli brevi usano gli aggregati orari: servono le colonne min/max di ogni bucket
+        Risoluzione risoluzione = serieStorica.risoluzionePer(da, a) == Risoluzione.GIORNALIERA
+                ? Risoluzione.GIORNALIERA
+                : Risoluzione.ORARIA;
+        Granularita granularita = risoluzione == Risoluzione.GIORNALIERA ? Granularita.GIORNO : Granularita.ORA;
+        ChronoUnit unita = risoluzione == Risoluzione.GIORNALIERA ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+        long origine = FinestreSensoriServizio.aEpochMillis(da.truncatedTo(unita));
+        long larghezza = unita.getDuration().toMillis();
+        int bucket = (int) ((FinestreSensoriServizio.aEpochMillis(a) - origine + larghezza - 1) / larghezza);
+
+        List<Campo> campi = anagrafica.campi();
+        List<Lettura> letture = new ArrayList<>();
+        for (int c = 0; c < campi.size(); c++) {
+            for (Sensore sensore : anagrafica.sensoriAttivi(campi.get(c).getId())) {
+                if (sensore.getTipo() == tipo) {
+                    letture.add(new Lettura(c, sensore.getId()));
+                }
+            }
+        }
+
+        // 1. Lettura degli aggregati (I/O)
+        List<List<AggregatoRilevazione>> aggregati = parallelo.mappa(letture,
+                l -> serieStorica.aggregati(l.sensoreId(), da, a, granularita));
+
+        Analisi analisi = new Analisi(campi.size(), origine, larghezza, bucket);
+        for (int i = 0; i < letture.size(); i++) {
+            analisi.aggregatiSensori.get(letture.get(i).campo()).add(aggregati.get(i));
+        }
+
+        // 2. Serie e statistiche per campo, 3. correlazioni tra campi (CPU)
+        IntStream.range(0, campi.size()).parallel().forEach(analisi::aggregaCampo);
+        IntStream.range(0, campi.size()).parallel().forEach(analisi::correlaRiga);
+
+        List<StatisticheCampoDTO> statistiche = new ArrayList<>(campi.size());
+        for (int c = 0; c < campi.size(); c++) {
+            statistiche.add(analisi.statistiche(c, campi.get(c)));
+        }
+        return new ConfrontoCampiDTO(tipo, tipo.getUnita(), risoluzione, statistiche, analisi.correlazioni);
+    }
+
+    /**
+     * Stato di una singola analisi: input per campo e risultati in array primitivi.
+     * Ogni task scrive solo le posizioni dei propri campi (o delle proprie righe della matrice).
+     */
+    private static final class Analisi {
+        final long origine;
+        final long larghezza;
+        final int bucket;
+        final List<List<List<AggregatoRilevazione>>> aggregatiSensori;
+
+        // Per campo: serie mediata sui bucket (NaN dove mancano dati), medie dei bucket ordinate,
+        // letture estreme dell'intervallo
+        final double[][] serieCampi;
+        final double[][] ordinati;
+        final double[] medie;
+        final double[] deviazioni;
+        final double[] minimi;
+        final double[] massimi;
+        final Double[][] correlazioni;
+
+        Analisi(int campi, long origine, long larghezza, int bucket) {
+            this.origine = origine;
+            this.larghezza = larghezza;
+            this.bucket = bucket;
+            this.aggregatiSensori = new ArrayList<>(campi);
+            for (int c = 0; c < campi; c++) {
+                aggregatiSensori.add(new ArrayList<>());
+            }
+            this.serieCampi = new double[campi][];
+            this.ordinati = new double[campi][];
+            this.medie = new double[campi];
+            this.deviazioni = new double[campi];
+            this.minimi = new double[campi];
+            this.massimi = new double[campi];
+            this.correlazioni = new Double[campi][campi];
+        }
+
+        void aggregaCampo(int c) {
+            double[] somma = new double[bucket];
+            int[] conteggio = new int[bucket];
+            double minimo = Double.POSITIVE_INFINITY;
+            double massimo = Double.NEGATIVE_INFINITY;
+            for (List<AggregatoRilevazione> sensore : aggregatiSensori.get(c)) {
+                for (AggregatoRilevazione agg : sensore) {
+                    Double mediaBucket = agg.getMedia();
+                    // Arrotondamento: i giorni di 23 o 25 ore (ora legale) restano nel bucket corretto
+                    int b = (int) Math.round((double) (FinestreSensoriServizio.aEpochMillis(agg.getInizio()) - origine)
+                            / larghezza);
+                    if (b >= 0 && b < bucket && mediaBucket != null && !Double.isNaN(mediaBucket)) {
+                        somma[b] += mediaBucket;
+                        conteggio[b]++;
+                        minimo = Math.min(minimo, agg.getMinimo());
+                        massimo = Math.max(massimo, agg.getMassimo());
+                    }
+                }
+            }
+
+            double[] media = new double[bucket];
+            double[] validi = new double[bucket];
+            int n = 0;
+            double totale = 0;
+            for (int b = 0; b < bucket; b++) {
+                media[b] = conteggio[b] == 0 ? Double.NaN : somma[b] / conteggio[b];
+                if (conteggio[b] > 0) {
+                    validi[n++] = media[b];
+                    totale += media[b];
+                }
+            }
+            double mediaCampo = n == 0 ? Double.NaN : totale / n;
+            double scarti = 0;
+            for (int i = 0; i < n; i++) {
+                scarti += (validi[i] - mediaCampo) * (validi[i] - mediaCampo);
+            }
+            validi = Arrays.copyOf(validi, n);
+            Arrays.sort(validi);
+
+            serieCampi[c] = media;
+            ordinati[c] = validi;
+            medie[c] = mediaCampo;
+            deviazioni[c] = n == 0 ? Double.NaN : Math.sqrt(scarti / n);
+            minimi[c] = minimo;
+            massimi[c] = massimo;
+        }
+
+        // Pearson sui bucket in comune, con i valori centrati sulle medie dei campi per stabilità numerica
+        void correlaRiga(int i) {
+            for (int j = i; j < serieCampi.length; j++) {
+                double[] x = serieCampi[i];
+                double[] y = serieCampi[j];
+                int n = 0;
+                double sx = 0, sy = 0, sxx = 0, syy = 0, sxy = 0;
+                for (int b = 0; b < bucket; b++) {
+                    if (!Double.isNaN(x[b]) && !Double.isNaN(y[b])) {
+                        double dx = x[b] - medie[i];
+                        double dy = y[b] - medie[j];
+                        n++;
+                        sx += dx;
+                        sy += dy;
+                        sxx += dx * dx;
+                        syy += dy * dy;
+                        sxy += dx * dy;
+                    }
+                }
+                Double r = null;
+                if (n >= MIN_PUNTI_CORRELAZIONE) {
+                    double cov = sxy - sx * sy / n;
+                    double varX = sxx - sx * sx / n;
+                    double varY = syy - sy * sy / n;
+                    if (varX > 0 && varY > 0) {
+                        r = Math.max(-1.0, Math.min(1.0, cov / Math.sqrt(varX * varY)));
+                    }
+                }
+                correlazioni[i][j] = r;
+                correlazioni[j][i] = r;
+            }
+        }
+
+        StatisticheCampoDTO statistiche(int c, Campo campo) {
+            double[] v = ordinati[c];
+            int sensori = aggregatiSensori.get(c).size();
+            if (v.length == 0) {
+                return new StatisticheCampoDTO(campo.getId(), campo.getNome(), sensori, 0,
+                        null, null, null, null, null, null, null);
+            }
+            return new StatisticheCampoDTO(campo.getId(), campo.getNome(), sensori, v.length,
+                    medie[c], minimi[c], massimi[c], deviazioni[c],
+                    percentile(v, 0.10), percentile(v, 0.50), percentile(v, 0.90));
+        }
+
+        // Percentile con metodo "nearest rank" su valori già ordinati
+        private static double percentile(double[] ordinati, double quota) {
+            int indice = (int) Math.ceil(quota * ordinati.length) - 1;
+            return ordinati[Math.max(0, indice)];
+        }
+    }
+}
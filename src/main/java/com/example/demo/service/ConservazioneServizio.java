@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import com.example.demo.archivio.ArchivioChunkServizio;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.shard.ContestoShard;
+import com.example.demo.shard.InstradamentoShard;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Politica di conservazione (Retention) dei dati grezzi, configurabile per tipologia di sensore.
+ * <p>
+ * Per ogni tipo con una durata configurata ({@code collina.conservazione.giorni.<TIPO>}),
+ * le rilevazioni grezze e i blocchi compressi più vecchi della soglia vengono eliminati
+ * un giorno alla volta per sensore: ogni fetta è una DELETE per intervallo sull'indice
+ * idx_sens_ts, in una transazione breve, così non si bloccano la tabella né l'ingestione.
+ * I tipi senza durata configurata vengono conservati per sempre.
+ * <p>
+ * Se abilitato il riepilogo, prima di eliminare una giornata se ne ricalcolano gli aggregati
+ * orari e giornalieri, che restano disponibili per i grafici di lungo periodo: da quel momento
+ * il job degli aggregati non ricalcola più le ore anteriori al limite (vedi {@link #limite}).
+ * Con lo sharding per campo ogni sensore viene trattato sullo shard del suo campo.
+ */
+@Service
+public class ConservazioneServizio {
+
+    private static final Logger log = LoggerFactory.getLogger(ConservazioneServizio.class);
+
+    private static final LocalDateTime INIZIO_STORICO = LocalDateTime.of(1900, 1, 1, 0, 0);
+
+    private final SensoreRepository sensoreRepo;
+    private final RilevazioneRepository rilevazioneRepo;
+    private final ArchivioChunkServizio archivio;
+    private final AggregazioneServizio aggregazione;
+    private final TransactionTemplate transazione;
+    private final Environment ambiente;
+    private final InstradamentoShard instradamento;
+
+    private final boolean riassumi;
+
+    public ConservazioneServizio(SensoreRepository sensoreRepo, RilevazioneRepository rilevazioneRepo,
+                                 ArchivioChunkServizio archivio, AggregazioneServizio aggregazione,
+                                 TransactionTemplate transazione, Environment ambiente,
+                                 InstradamentoShard instradamento,
+                                 @Value("${collina.conservazione.riassumi:true}") boolean riassumi) {
+        this.sensoreRepo = sensoreRepo;
+        this.rilevazioneRepo = rilevazioneRepo;
+        this.archivio = archivio;
+        this.aggregazione = aggregazione;
+        this.transazione = transazione;
+        this.ambiente = ambiente;
+        this.instradamento = instradamento;
+        this.riassumi = riassumi;
+    }
+
+    /**
+     * Job notturno di eliminazione dei dati scaduti, pianificato fuori dai picchi di ingestione.
+     */
+    @Scheduled(cron = "${collina.conservazione.cron:0 30 3 * * *}")
+    @Timed(value = "collina.job.conservazione")
+    public void applica() {
+        int giornate = 0;
+
+        for (TipoSensore tipo : TipoSensore.values()) {
+            LocalDate limite = limite(ambiente, tipo);
+            if (limite == null) {
+                continue;
+            }
+
+            for (Sensore sensore : sensoreRepo.findByTipo(tipo)) {
+                Long sensoreId = sensore.getId();
+                giornate += ContestoShard.su(instradamento.shardDelSensore(sensoreId),
+                        () -> eliminaScadute(sensoreId, limite));
+            }
+        }
+
+        if (giornate > 0) {
+            log.info("Eliminate {} giornate di dati grezzi scaduti", giornate);
+        }
+    }
+
+    /**
+     * @return Il primo giorno conservato per la tipologia: i dati anteriori sono (o stanno per essere)
+     * eliminati. Null se la tipologia è conservata per sempre.
+     */
+    public static LocalDate limite(Environment ambiente, TipoSensore tipo) {
+        Integer giorni = ambiente.getProperty("collina.conservazione.giorni." + tipo.name(), Integer.class);
+        return giorni == null || giorni <= 0 ? null : LocalDate.now().minusDays(giorni);
+    }
+
+    // Elimina, giorno per giorno, le rilevazioni grezze del sensore anteriori al limite
+    private int eliminaScadute(Long sensoreId, LocalDate limite) {
+        int giornate = 0;
+        LocalDateTime primo = rilevazioneRepo.findPrimoTimestampDa(sensoreId, INIZIO_STORICO);
+
+        while (primo != null && primo.toLocalDate().isBefore(limite)) {
+            LocalDateTime inizio = primo.toLocalDate().atStartOfDay();
+            LocalDateTime fine = inizio.plusDays(1);
+
+            transazione.executeWithoutResult(stato -> {
+                if (riassumi) {
+                    aggregazione.ricalcolaOre(sensoreId, inizio, fine);
+                    aggregazione.ricalcolaGiorni(sensoreId, inizio, fine);
+                }
+                rilevazioneRepo.deleteIntervallo(sensoreId, inizio, fine);
+            });
+            giornate++;
+            primo = rilevazioneRepo.findPrimoTimestampDa(sensoreId, fine);
+        }
+
+        // I blocchi compressi sono dati grezzi a tutti gli effetti: seguono la stessa scadenza
+        archivio.eliminaPrimaDi(sensoreId, limite);
+        return giornate;
+    }
+}
@@ -1,62 +1,79 @@
 package com.example.demo.service;
 
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.cache.FinestreSensoriServizio;
 import com.example.demo.dto.CampoStatsDTO;
 import com.example.demo.dto.DashboardDTO;
 import com.example.demo.entity.Campo;
-import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.TotaleEconomicoCampo;
 import com.example.demo.enums.TipoSensore;
-import com.example.demo.repository.CampoRepository;
-import com.example.demo.repository.RilevazioneRepository;
-import com.example.demo.repository.SensoreRepository;
+import com.example.demo.shard.ContestoShard;
+import com.example.demo.shard.InstradamentoShard;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service che aggrega i dati per la vista principale (Dashboard Overview).
  * Fornisce un riassunto dello stato di tutti i campi.
+ * <p>
+ * Con lo sharding per campo la vista è una scatter/gather: le letture di ogni campo vengono
+ * eseguite in parallelo sullo shard del campo, mentre anagrafica e totali economici arrivano
+ * dallo shard principale; i risultati sono riuniti nell'ordine dei campi.
  */
 @Service
 public class DashboardServizio {
-    private final CampoRepository campoRepo;
-    private final SensoreRepository sensRepo;
-    private final RilevazioneRepository rilRepo;
+    private final AnagraficaServizio anagrafica;
+    private final FinestreSensoriServizio finestre;
+    private final EsecutoreParallelo parallelo;
+    private final RegistroEconomicoServizio registro;
+    private final InstradamentoShard instradamento;
 
-    public DashboardServizio(CampoRepository c, SensoreRepository s, RilevazioneRepository r) {
-        this.campoRepo = c; this.sensRepo = s; this.rilRepo = r;
+    public DashboardServizio(AnagraficaServizio a, FinestreSensoriServizio f, EsecutoreParallelo p,
+                             RegistroEconomicoServizio r, InstradamentoShard i) {
+        this.anagrafica = a; this.finestre = f; this.parallelo = p; this.registro = r; this.instradamento = i;
     }
 
     /**
      * Genera il DTO principale per la dashboard.
      * Per ogni campo, calcola lo stato attuale e recupera l'ultima temperatura rilevata.
+     * Le interrogazioni dei singoli campi sono indipendenti e vengono eseguite in parallelo.
      */
+    @Timed(value = "collina.dashboard.overview", histogram = true)
     public DashboardDTO overview() {
-        List<Campo> campi = campoRepo.findAll();
+        List<Campo> campi = anagrafica.campi();
+        // Totali economici materializzati, letti con una sola query per tutti i campi
+        Map<Long, TotaleEconomicoCampo> totali = registro.totali(campi.stream().map(Campo::getId).toList());
 
         // Trasforma ogni Entità Campo in un DTO leggero con le statistiche chiave
-        List<CampoStatsDTO> stats = campi.stream().map(c -> {
-            // 1. Recupera i sensori attivi per questo campo
-            var sensori = sensRepo.findByCampoIdAndAttivoTrue(c.getId());
+        List<CampoStatsDTO> stats = parallelo.mappa(campi, c -> {
+            // 1. Recupera i sensori attivi per questo campo (dalla cache dell'anagrafica)
+            var sensori = anagrafica.sensoriAttivi(c.getId());
 
             // 2. Cerca specificamente il sensore di Temperatura Aria (KPI principale)
             var tempAirSensore = sensori.stream()
                     .filter(s -> s.getTipo() == TipoSensore.TEMP_AIR)
                     .findFirst();
 
-            // 3. Estrae l'ultima rilevazione disponibile per quel sensore
+            // 3. Estrae l'ultima rilevazione disponibile per quel sensore dalla cache in memoria;
+            // se la finestra non è ancora caricata, la query va sullo shard del campo.
             // Usa una catena di Optional per gestire in sicurezza l'assenza di dati
+            int shard = instradamento.shardDelCampo(c.getId());
             Double tempVal = tempAirSensore
-                    .map(s -> rilRepo.findTop96BySensoreIdOrderByTimestampDesc(s.getId())) // Prende la lista storica
-                    .flatMap(list -> list.stream().findFirst()) // Prende il primo elemento (il più recente)
-                    .map(Rilevazione::getValore) // Estrae il valore numerico
+                    // Ultimo valore della finestra (null se vuota)
+                    .map(s -> ContestoShard.su(shard, () -> finestre.ultimoValore(s.getId())))
                     .orElse(null); // Se non c'è sensore o dati, ritorna null
 
-            // 4. Calcolo del bilancio economico
-            // Definisce il bilancio come Ricavi stimati - Costi accumulati
-            Double bilancioEconomico = c.getRicaviStimati() - c.getCostiAccumulati();
+            // 4. Produzione e bilancio economico (Ricavi stimati - Costi accumulati) dal registro economico;
+            // un campo senza movimenti mostra ancora i valori iniziali dell'anagrafica
+            TotaleEconomicoCampo totale = totali.get(c.getId());
+            Double produzione = totale != null ? totale.getProduzioneKg() : c.getProduzioneKg();
+            Double bilancioEconomico = totale != null ? totale.getBilancio() : c.getRicaviStimati() - c.getCostiAccumulati();
 
-            return new CampoStatsDTO(c.getNome(), c.getStato(), tempVal, c.getProduzioneKg(), bilancioEconomico);
-        }).toList();
+            return new CampoStatsDTO(c.getId(), c.getNome(), c.getStato(), tempVal, produzione, bilancioEconomico);
+        });
 
         return new DashboardDTO(stats);
     }
@@ -1,13 +1,20 @@
 package com.example.demo.service;
 
 import com.example.demo.entity.Campo;
+import com.example.demo.entity.RegolaAllerta;
 import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Confronto;
+import com.example.demo.enums.LivelloAlert;
 import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoRegola;
 import com.example.demo.enums.TipoCampo;
 import com.example.demo.enums.TipoSensore;
 import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.RegolaAllertaRepository;
 import com.example.demo.repository.SensoreRepository;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Service;
 
@@ -16,45 +23,40 @@ import java.util.List;
 /**
  * Servizio di bootstrap eseguito all'avvio dell'applicazione.
  * Popola il database con lo scenario fittizio dell'azienda agricola "La Verde Collina".
- * Crea 3 campi (con diverse configurazioni) e i relativi sensori IoT.
+ * Crea 3 campi (con diverse configurazioni) e i relativi sensori IoT,
+ * oltre alle regole di allerta predefinite (gelata, siccità, caldo).
  */
 @Service
 public class DatiInizialiServizio implements CommandLineRunner {
 
+    private static final Logger log = LoggerFactory.getLogger(DatiInizialiServizio.class);
+
     private final CampoRepository campoRepo;
     private final SensoreRepository sensoreRepo;
+    private final RegolaAllertaRepository regolaRepo;
 
     // Iniezione delle dipendenze tramite costruttore
-    public DatiInizialiServizio(CampoRepository campoRepo, SensoreRepository sensoreRepo) {
+    public DatiInizialiServizio(CampoRepository campoRepo, SensoreRepository sensoreRepo,
+                                RegolaAllertaRepository regolaRepo) {
         this.campoRepo = campoRepo;
         this.sensoreRepo = sensoreRepo;
+        this.regolaRepo = regolaRepo;
     }
 
     @Override
     @Transactional // Garantisce che l'intera operazione sia atomica
     public void run(String... args) throws Exception {
 
-        List<Campo> campiEsistenti = campoRepo.findAll();
-        boolean dirty = false;
-
-        for (Campo campo : campiEsistenti) {
-            if (campo.getProduzioneKg() == null) {
-                campo.setProduzioneKg(0.0);
-                campo.setCostiAccumulati(0.0);
-                campo.setRicaviStimati(0.0);
-                campoRepo.save(campo);
-                dirty = true;
-            }
+        // Un solo UPDATE invece di caricare tutti i campi a ogni avvio
+        if (campoRepo.azzeraEconomiaMancante() > 0) {
+            log.info("Dati finanziari e di produzione mancanti azzerati sui campi esistenti");
         }
 
-        if (dirty) {
-            System.out.println("### [DATA FIX] Dati finanziari/produzione sanificati a 0.0 per record esistenti. ###");
+        // Le regole di allerta predefinite vengono create anche su database già popolati
+        if (regolaRepo.count() == 0) {
+            creaRegoleStandard();
         }
 
-        if (campoRepo.count() > 0)
-        {
-            return;
-        }
         if (campoRepo.count() > 0)
         {
             // Se ci sono già campi, l'inizializzazione è già avvenuta.
@@ -84,7 +86,39 @@ public class DatiInizialiServizio implements CommandLineRunner {
 
         // Il Campo 3 è a RIPOSO, non ha sensori attivi.
 
-        System.out.println("🌱 Dati iniziali (Campi e Sensori) creati con successo.");
+        log.info("Dati iniziali (campi e sensori) creati");
+    }
+
+    // Regole di allerta predefinite, valide per tutti i sensori della tipologia
+    private void creaRegoleStandard() {
+        regolaRepo.saveAll(List.of(
+                // Gelata: temperatura aria sotto zero
+                creaRegola("Gelata", TipoRegola.SOGLIA, TipoSensore.TEMP_AIR, Confronto.SOTTO, 0.0, 0.5, null, LivelloAlert.CRITICAL),
+                creaRegola("Rischio gelata", TipoRegola.SOGLIA, TipoSensore.TEMP_AIR, Confronto.SOTTO, 3.0, 0.5, null, LivelloAlert.WARNING),
+                // Calo termico rapido: oltre 3 °C in meno all'ora
+                creaRegola("Calo termico rapido", TipoRegola.VARIAZIONE, TipoSensore.TEMP_AIR, Confronto.SOTTO, -3.0, 0.0, null, LivelloAlert.WARNING),
+                // Siccità: umidità del suolo sotto il 20% per 24 ore consecutive
+                creaRegola("Siccità", TipoRegola.PERSISTENZA, TipoSensore.SOIL_MOISTURE, Confronto.SOTTO, 20.0, 2.0, 24 * 60, LivelloAlert.CRITICAL),
+                // Stress termico: aria sopra i 35 °C per almeno 2 ore
+                creaRegola("Stress termico", TipoRegola.PERSISTENZA, TipoSensore.TEMP_AIR, Confronto.SOPRA, 35.0, 1.0, 120, LivelloAlert.WARNING)
+        ));
+        // Il motore le carica a contesto pronto, dopo questo runner
+        log.info("Regole di allerta predefinite create");
+    }
+
+    private RegolaAllerta creaRegola(String nome, TipoRegola tipo, TipoSensore tipoSensore, Confronto confronto,
+                                     Double soglia, Double isteresi, Integer durataMinuti, LivelloAlert livello) {
+        RegolaAllerta r = new RegolaAllerta();
+        r.setNome(nome);
+        r.setTipo(tipo);
+        r.setTipoSensore(tipoSensore);
+        r.setConfronto(confronto);
+        r.setSoglia(soglia);
+        r.setIsteresi(isteresi);
+        r.setDurataMinuti(durataMinuti);
+        r.setLivello(livello);
+        r.setAttiva(true);
+        return r;
     }
 
     // Metodo helper per creare un set standard di sensori
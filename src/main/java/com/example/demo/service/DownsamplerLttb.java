@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.SerieTemporaleDTO;
+
+/**
+ * Riduzione del numero di punti di una serie temporale con l'algoritmo
+ * Largest-Triangle-Three-Buckets (LTTB, S. Steinarsson 2013).
+ * <p>
+ * La serie viene divisa in bucket di uguale ampiezza; per ciascun bucket si sceglie
+ * il punto che forma il triangolo di area massima con il punto scelto nel bucket
+ * precedente e con la media del bucket successivo. Picchi e minimi, che la semplice
+ * media cancellerebbe, vengono preservati. Costo O(n), nessuna allocazione per punto.
+ */
+public final class DownsamplerLttb {
+
+    private DownsamplerLttb() {
+    }
+
+    /**
+     * @param serie La serie in ordine cronologico.
+     * @param maxPunti Il numero massimo di punti in uscita (almeno 3 per applicare l'algoritmo).
+     * @return La serie ridotta, oppure la serie originale se già entro il limite.
+     */
+    public static SerieTemporaleDTO riduci(SerieTemporaleDTO serie, int maxPunti) {
+        long[] t = serie.timestamp();
+        double[] v = serie.valori();
+        int n = t.length;
+        if (maxPunti >= n || maxPunti < 3) {
+            return serie;
+        }
+
+        long[] tOut = new long[maxPunti];
+        double[] vOut = new double[maxPunti];
+
+        // Il primo e l'ultimo punto sono sempre conservati
+        tOut[0] = t[0];
+        vOut[0] = v[0];
+        int scelto = 0;
+        int k = 1;
+
+        // Ampiezza dei bucket interni (esclusi primo e ultimo punto)
+        double ampiezza = (double) (n - 2) / (maxPunti - 2);
+
+        for (int b = 0; b < maxPunti - 2; b++) {
+            // Media del bucket successivo (terzo vertice del triangolo)
+            int inizioSucc = (int) Math.floor((b + 1) * ampiezza) + 1;
+            int fineSucc = Math.min((int) Math.floor((b + 2) * ampiezza) + 1, n);
+            double mediaX = 0;
+            double mediaY = 0;
+            for (int j = inizioSucc; j < fineSucc; j++) {
+                mediaX += t[j] - t[0];
+                mediaY += v[j];
+            }
+            int quanti = fineSucc - inizioSucc;
+            mediaX /= quanti;
+            mediaY /= quanti;
+
+            // Punto del bucket corrente che massimizza l'area del triangolo
+            int inizio = (int) Math.floor(b * ampiezza) + 1;
+            int fine = (int) Math.floor((b + 1) * ampiezza) + 1;
+            double ax = t[scelto] - t[0];
+            double ay = v[scelto];
+            double areaMax = -1;
+            int migliore = inizio;
+            for (int j = inizio; j < fine; j++) {
+                double area = Math.abs((ax - mediaX) * (v[j] - ay) - (ax - (t[j] - t[0])) * (mediaY - ay));
+                if (area > areaMax) {
+                    areaMax = area;
+                    migliore = j;
+                }
+            }
+
+            tOut[k] = t[migliore];
+            vOut[k++] = v[migliore];
+            scelto = migliore;
+        }
+
+        tOut[k] = t[n - 1];
+        vOut[k] = v[n - 1];
+        return new SerieTemporaleDTO(tOut, vOut);
+    }
+}
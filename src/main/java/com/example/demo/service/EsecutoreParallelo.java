@@ -0,0 +1,92 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Esecuzione concorrente (Fan-out) di interrogazioni indipendenti su Virtual Thread.
+ * <p>
+ * Ogni elemento viene elaborato su un proprio virtual thread; un unico semaforo, condiviso da tutti
+ * i fan-out in corso, limita il numero di elaborazioni contemporanee al budget di connessioni concesso,
+ * così anche più richieste insieme non esauriscono il pool JDBC condiviso con il resto dell'applicazione.
+ * La latenza complessiva diventa quella della query più lenta, non la somma di tutte.
+ * <p>
+ * Un fan-out annidato (una funzione che a sua volta chiama {@link #mappa}) viene eseguito in sequenza
+ * sul thread dell'elemento: altrimenti gli elementi esterni, che occupano il budget, resterebbero
+ * in attesa di elementi interni che non possono ottenerlo.
+ */
+@Component
+public class EsecutoreParallelo {
+
+    private final boolean abilitato;
+    private final Semaphore budgetConnessioni;
+    private final ExecutorService esecutore = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Vero sui thread che stanno elaborando un elemento di un fan-out
+    private final ThreadLocal<Boolean> inElaborazione = ThreadLocal.withInitial(() -> false);
+
+    public EsecutoreParallelo(@Value("${collina.parallelo.abilitato:true}") boolean abilitato,
+                              @Value("${collina.parallelo.max-connessioni:8}") int maxConnessioni) {
+        this.abilitato = abilitato;
+        this.budgetConnessioni = new Semaphore(maxConnessioni);
+    }
+
+    /**
+     * Applica la funzione a ogni elemento, in parallelo se abilitato, preservando l'ordine.
+     * Con un solo elemento, con la modalità parallela disattivata o se chiamato da un elemento
+     * di un altro fan-out, esegue in sequenza.
+     *
+     * @param elementi Gli elementi da elaborare.
+     * @param funzione L'elaborazione (tipicamente una o più query) da eseguire per elemento.
+     * @return I risultati, nello stesso ordine degli elementi.
+     */
+    public <T, R> List<R> mappa(List<T> elementi, Function<T, R> funzione) {
+        if (!abilitato || elementi.size() <= 1 || inElaborazione.get()) {
+            return elementi.stream().map(funzione).toList();
+        }
+
+        List<Future<R>> futuri = new ArrayList<>(elementi.size());
+        for (T elemento : elementi) {
+            futuri.add(esecutore.submit(() -> {
+                budgetConnessioni.acquire();
+                inElaborazione.set(true);
+                try {
+                    return funzione.apply(elemento);
+                } finally {
+                    inElaborazione.remove();
+                    budgetConnessioni.release();
+                }
+            }));
+        }
+
+        List<R> risultati = new ArrayList<>(futuri.size());
+        try {
+            for (Future<R> futuro : futuri) {
+                risultati.add(futuro.get());
+            }
+        } catch (InterruptedException e) {
+            futuri.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Elaborazione parallela interrotta", e);
+        } catch (ExecutionException e) {
+            futuri.forEach(f -> f.cancel(true));
+            // Propaga l'eccezione originale (es. RisorsaNonTrovataEccezione) al chiamante
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return risultati;
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        esecutore.shutdownNow();
+    }
+}
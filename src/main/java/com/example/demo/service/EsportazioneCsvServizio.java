@@ -0,0 +1,216 @@
+package com.example.demo.service;
+
+import com.example.demo.archivio.ArchivioChunkServizio;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.shard.ContestoShard;
+import com.example.demo.shard.InstradamentoShard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Esportazione CSV dello storico delle rilevazioni in streaming, a memoria costante.
+ * <p>
+ * Le righe di ogni sensore vengono lette con un cursore JDBC forward-only e scritte subito
+ * nel flusso di uscita (eventualmente compresso gzip): non viene mai costruita una lista di
+ * entità, quindi la memoria usata non dipende dall'ampiezza dell'intervallo.
+ * Su MySQL, senza {@code useCursorFetch=true} nell'URL, il driver caricherebbe l'intero risultato
+ * in memoria: invece di attivare i cursori lato server per tutte le connessioni del pool, la sola
+ * query di esportazione usa la lettura riga per riga del driver ({@code fetchSize = Integer.MIN_VALUE}).
+ * Con gli altri database il cursore legge blocchi di {@code fetch-size} righe.
+ * Se il client chiude la connessione, la query in corso viene annullata ({@link java.sql.Statement#cancel()}).
+ * <p>
+ * Se le righe grezze dei giorni sigillati vengono eliminate, quei giorni sono letti dall'archivio
+ * compresso, un mese alla volta. Le esportazioni contemporanee sono limitate, perché ognuna
+ * occupa una connessione del pool per tutta la sua durata.
+ * Con lo sharding per campo il cursore di ogni sensore viene aperto sullo shard del suo campo.
+ */
+@Service
+public class EsportazioneCsvServizio {
+
+    private static final String INTESTAZIONE = "campo_id,sensore_id,codice,tipo,timestamp,valore,unita,qualita";
+
+    private static final String SQL_RIGHE = "select timestamp, valore, unita, qualita from rilevazione " +
+            "where sensore_id = ? and timestamp >= ? and timestamp < ? order by timestamp";
+
+    // Fetch size che su MySQL attiva la lettura riga per riga (streaming) della sola istruzione
+    private static final int STREAMING_MYSQL = Integer.MIN_VALUE;
+
+    private static final DateTimeFormatter FORMATO_TS = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final JdbcTemplate jdbc;
+    private final ArchivioChunkServizio archivio;
+    private final InstradamentoShard instradamento;
+    private final Semaphore esportazioniAttive;
+    private final int fetchSize;
+    private final Counter righeEsportate;
+
+    public EsportazioneCsvServizio(JdbcTemplate jdbc, ArchivioChunkServizio archivio, InstradamentoShard instradamento,
+                                   MeterRegistry metriche,
+                                   @Value("${collina.esportazione.fetch-size:1000}") int fetchSize,
+                                   @Value("${collina.esportazione.max-concorrenti:2}") int maxConcorrenti) {
+        this.jdbc = jdbc;
+        this.archivio = archivio;
+        this.instradamento = instradamento;
+        this.fetchSize = fetchSize;
+        this.esportazioniAttive = new Semaphore(maxConcorrenti);
+        this.righeEsportate = Counter.builder("collina.esportazione.righe")
+                .description("Righe scritte dalle esportazioni CSV")
+                .register(metriche);
+    }
+
+    /**
+     * Prenota uno slot di esportazione, da rilasciare con {@link #rilascia()} al termine della scrittura.
+     *
+     * @return false se è già in corso il numero massimo di esportazioni.
+     */
+    public boolean prenota() {
+        return esportazioniAttive.tryAcquire();
+    }
+
+    public void rilascia() {
+        esportazioniAttive.release();
+    }
+
+    /**
+     * Scrive in CSV le rilevazioni dei sensori nell'intervallo [da, a), sensore per sensore
+     * e in ordine cronologico.
+     *
+     * @param sensori I sensori da esportare, nell'ordine di uscita.
+     * @param gzip Se true, il CSV viene compresso.
+     * @param uscita Il flusso della risposta HTTP (non viene chiuso).
+     */
+    public void scrivi(List<Sensore> sensori, LocalDateTime da, LocalDateTime a, boolean gzip,
+                       OutputStream uscita) throws IOException {
+        OutputStream destinazione = gzip ? new GZIPOutputStream(uscita, 64 * 1024) : uscita;
+        Writer csv = new BufferedWriter(new OutputStreamWriter(destinazione, StandardCharsets.UTF_8), 64 * 1024);
+        csv.write(INTESTAZIONE);
+        csv.write('\n');
+
+        try {
+            for (Sensore sensore : sensori) {
+                scriviSensore(sensore, da, a, csv);
+            }
+        } catch (UncheckedIOException e) {
+            // Tipicamente il client ha chiuso la connessione: la query in corso è già stata annullata
+            throw e.getCause();
+        }
+
+        csv.flush();
+        if (destinazione instanceof GZIPOutputStream compresso) {
+            compresso.finish();
+        }
+    }
+
+    private void scriviSensore(Sensore sensore, LocalDateTime da, LocalDateTime a, Writer csv) throws IOException {
+        String prefisso = sensore.getCampo().getId() + "," + sensore.getId() + "," + campo(sensore.getCodice())
+                + "," + sensore.getTipo() + ",";
+        String unitaArchivio = campo(sensore.getTipo().getUnita());
+
+        // 1. Giorni presenti solo nell'archivio compresso (righe grezze eliminate)
+        LocalDateTime inizioGrezze = da;
+        LocalDateTime limite = archivio.grezzeEliminate() ? archivio.limiteSigillato(sensore.getId()) : null;
+        if (limite != null && da.isBefore(limite)) {
+            LocalDateTime fineArchivio = a.isBefore(limite) ? a : limite;
+            for (LocalDateTime mese = da; mese.isBefore(fineArchivio); mese = mese.plusMonths(1)) {
+                LocalDateTime fineMese = mese.plusMonths(1).isBefore(fineArchivio) ? mese.plusMonths(1) : fineArchivio;
+                archivio.leggi(sensore.getId(), mese, fineMese, (ts, valore) -> riga(csv, prefisso,
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(ts), ZoneId.systemDefault()),
+                        valore, false, unitaArchivio, QualitaDato.VALIDO.name()));
+            }
+            inizioGrezze = fineArchivio;
+        }
+        if (!inizioGrezze.isBefore(a)) {
+            return;
+        }
+
+        // 2. Righe grezze, lette con un cursore forward-only (a blocchi di fetchSize righe, in streaming su MySQL)
+        LocalDateTime daGrezze = inizioGrezze;
+        ContestoShard.su(instradamento.shardDelCampo(sensore.getCampo().getId()), () -> jdbc.query(connessione -> {
+            PreparedStatement ps = connessione.prepareStatement(SQL_RIGHE,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(mysql(connessione) ? STREAMING_MYSQL : fetchSize);
+            ps.setLong(1, sensore.getId());
+            ps.setTimestamp(2, Timestamp.valueOf(daGrezze));
+            ps.setTimestamp(3, Timestamp.valueOf(a));
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            double valore = rs.getDouble(2);
+            try {
+                riga(csv, prefisso, rs.getTimestamp(1).toLocalDateTime(), valore, rs.wasNull(),
+                        campo(rs.getString(3)), rs.getString(4));
+            } catch (UncheckedIOException e) {
+                annulla(rs, e);
+                throw e;
+            }
+        }));
+    }
+
+    private void riga(Writer csv, String prefisso, LocalDateTime ts, double valore, boolean valoreNullo,
+                      String unita, String qualita) {
+        try {
+            csv.write(prefisso);
+            csv.write(FORMATO_TS.format(ts));
+            csv.write(',');
+            if (!valoreNullo) {
+                csv.write(Double.toString(valore));
+            }
+            csv.write(',');
+            csv.write(unita);
+            csv.write(',');
+            if (qualita != null) {
+                csv.write(qualita);
+            }
+            csv.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        righeEsportate.increment();
+    }
+
+    /**
+     * Annulla la query dopo un errore di scrittura. In streaming su MySQL la chiusura del ResultSet
+     * leggerebbe comunque tutte le righe rimanenti, tenendo occupata la connessione fino alla fine.
+     */
+    private static void annulla(ResultSet rs, Exception causa) {
+        try {
+            rs.getStatement().cancel();
+        } catch (SQLException e) {
+            causa.addSuppressed(e);
+        }
+    }
+
+    private static boolean mysql(Connection connessione) throws SQLException {
+        return "MySQL".equalsIgnoreCase(connessione.getMetaData().getDatabaseProductName());
+    }
+
+    // Campo di testo CSV: tra virgolette solo se contiene separatori, virgolette o a capo
+    private static String campo(String testo) {
+        if (testo == null) {
+            return "";
+        }
+        if (testo.indexOf(',') < 0 && testo.indexOf('"') < 0 && testo.indexOf('\n') < 0 && testo.indexOf('\r') < 0) {
+            return testo;
+        }
+        return '"' + testo.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.CampoDeltaDTO;
+import com.example.demo.dto.RilevazioneLiveDTO;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.entity.TotaleEconomicoCampo;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.evento.EconomiaAggiornataEvento;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flusso live (Server-Sent Events) verso la dashboard.
+ * <p>
+ * A ogni scrittura confermata vengono inviate solo le variazioni: le nuove rilevazioni, ai client
+ * iscritti al loro campo o a tutti i campi, e i delta delle statistiche dei campi (temperatura,
+ * produzione, bilancio) a tutti i client, perché alimentano la panoramica. Un delta contiene solo
+ * i valori diversi dall'ultimo inviato per quel campo e non viene inviato se non cambia nulla.
+ * <p>
+ * Ogni client ha una propria coda, svuotata da un virtual thread solo mentre contiene eventi:
+ * un client lento non rallenta né l'ingestione né gli altri client. Se la sua coda supera
+ * {@link #MAX_IN_CODA} eventi la connessione viene chiusa e il browser (EventSource) si riconnette.
+ */
+@Service
+public class FlussoLiveServizio {
+
+    // Chiave usata per gli iscritti a tutti i campi
+    private static final long TUTTI = -1L;
+
+    // Timeout della connessione SSE: il browser (EventSource) si riconnette automaticamente
+    private static final long TIMEOUT_MS = 30 * 60 * 1000L;
+
+    // Eventi in attesa oltre i quali un client è considerato bloccato
+    private static final int MAX_IN_CODA = 10_000;
+
+    private final RegistroEconomicoServizio registro;
+
+    private final Map<Long, List<Iscritto>> iscritti = new ConcurrentHashMap<>();
+
+    // Ultimi valori inviati per campo, per calcolare i delta (accesso sincronizzato su this)
+    private final Map<Long, CampoDeltaDTO> ultimiInviati = new HashMap<>();
+
+    public FlussoLiveServizio(RegistroEconomicoServizio registro, MeterRegistry metriche) {
+        this.registro = registro;
+        Gauge.builder("collina.live.client", this, FlussoLiveServizio::collegati)
+                .description("Client SSE collegati al flusso live")
+                .register(metriche);
+    }
+
+    /**
+     * Registra un nuovo client.
+     *
+     * @param campoId Il campo di cui ricevere le rilevazioni, oppure null per tutti i campi.
+     * @param rilevazioni Se false il client riceve solo i delta dei campi.
+     * @return L'emitter SSE da restituire al client.
+     */
+    public SseEmitter iscrivi(Long campoId, boolean rilevazioni) {
+        long chiave = campoId == null ? TUTTI : campoId;
+        List<Iscritto> lista = iscritti.computeIfAbsent(chiave, k -> new CopyOnWriteArrayList<>());
+        Iscritto iscritto = new Iscritto(new SseEmitter(TIMEOUT_MS), rilevazioni, lista);
+        lista.add(iscritto);
+
+        Runnable rimuovi = () -> lista.remove(iscritto);
+        iscritto.emitter.onCompletion(rimuovi);
+        iscritto.emitter.onTimeout(rimuovi);
+        iscritto.emitter.onError(e -> rimuovi.run());
+        return iscritto.emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void suNuoveRilevazioni(NuoveRilevazioniEvento evento) {
+        if (iscritti.isEmpty()) {
+            return;
+        }
+
+        // Per ogni campo: ultima temperatura aria del blocco
+        Map<Long, Double> temperature = new HashMap<>();
+        for (Rilevazione ril : evento.rilevazioni()) {
+            Sensore sensore = ril.getSensore();
+            Long campoId = sensore.getCampo().getId();
+            RilevazioneLiveDTO dto = new RilevazioneLiveDTO(campoId, sensore.getId(), sensore.getCodice(),
+                    sensore.getTipo(), FinestreSensoriServizio.aEpochMillis(ril.getTimestamp()), ril.getValore(),
+                    ril.getQualita());
+            accoda(iscritti.get(campoId), "rilevazione", dto, true);
+            accoda(iscritti.get(TUTTI), "rilevazione", dto, true);
+            if (sensore.getTipo() == TipoSensore.TEMP_AIR && ril.getQualita() == QualitaDato.VALIDO) {
+                temperature.put(campoId, ril.getValore());
+            }
+        }
+        temperature.forEach((campoId, temp) -> inoltraDelta(new CampoDeltaDTO(campoId, temp, null, null)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void suEconomiaAggiornata(EconomiaAggiornataEvento evento) {
+        if (iscritti.isEmpty()) {
+            return;
+        }
+        for (TotaleEconomicoCampo totale : registro.totali(evento.campoIds()).values()) {
+            inoltraDelta(new CampoDeltaDTO(totale.getCampoId(), null, totale.getProduzioneKg(), totale.getBilancio()));
+        }
+    }
+
+    /**
+     * Commento SSE periodico (keep-alive): mantiene aperte le connessioni attraverso i proxy
+     * e rimuove i client che si sono disconnessi.
+     */
+    @Scheduled(fixedRate = 25000)
+    public void keepAlive() {
+        iscritti.values().forEach(lista -> accoda(lista, null, "keep-alive", false));
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        iscritti.values().forEach(lista -> lista.forEach(iscritto -> iscritto.emitter.complete()));
+    }
+
+    /**
+     * Confronta i valori con gli ultimi inviati per il campo e accoda a tutti i client solo quelli cambiati.
+     * Sincronizzato: i delta di uno stesso campo arrivano ai client nell'ordine in cui sono calcolati.
+     */
+    private synchronized void inoltraDelta(CampoDeltaDTO valori) {
+        CampoDeltaDTO precedente = ultimiInviati.getOrDefault(valori.campoId(),
+                new CampoDeltaDTO(valori.campoId(), null, null, null));
+        Double temperatura = cambiato(valori.temperaturaAriaRecente(), precedente.temperaturaAriaRecente());
+        Double produzione = cambiato(valori.produzioneKg(), precedente.produzioneKg());
+        Double bilancio = cambiato(valori.bilancioEconomico(), precedente.bilancioEconomico());
+        if (temperatura == null && produzione == null && bilancio == null) {
+            return;
+        }
+
+        ultimiInviati.put(valori.campoId(), new CampoDeltaDTO(valori.campoId(),
+                temperatura != null ? temperatura : precedente.temperaturaAriaRecente(),
+                produzione != null ? produzione : precedente.produzioneKg(),
+                bilancio != null ? bilancio : precedente.bilancioEconomico()));
+        CampoDeltaDTO delta = new CampoDeltaDTO(valori.campoId(), temperatura, produzione, bilancio);
+        iscritti.values().forEach(lista -> accoda(lista, "campo", delta, false));
+    }
+
+    private int collegati() {
+        return iscritti.values().stream().mapToInt(List::size).sum();
+    }
+
+    // Il nuovo valore se presente e diverso dal precedente, altrimenti null
+    private static Double cambiato(Double nuovo, Double precedente) {
+        return nuovo != null && !nuovo.equals(precedente) ? nuovo : null;
+    }
+
+    private static void accoda(List<Iscritto> lista, String nome, Object dati, boolean rilevazione) {
+        if (lista == null) {
+            return;
+        }
+        for (Iscritto iscritto : lista) {
+            if (!rilevazione || iscritto.rilevazioni) {
+                iscritto.accoda(new Evento(nome, dati));
+            }
+        }
+    }
+
+    // Evento da inviare: con nome null è un commento SSE
+    private record Evento(String nome, Object dati) {}
+
+    /**
+     * Client iscritto, con la propria coda di eventi da inviare.
+     */
+    private static final class Iscritto {
+
+        private final SseEmitter emitter;
+        private final boolean rilevazioni;
+        private final List<Iscritto> lista;
+        private final Queue<Evento> coda = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inCoda = new AtomicInteger();
+        private final AtomicBoolean inInvio = new AtomicBoolean();
+        private volatile boolean chiuso;
+
+        private Iscritto(SseEmitter emitter, boolean rilevazioni, List<Iscritto> lista) {
+            this.emitter = emitter;
+            this.rilevazioni = rilevazioni;
+            this.lista = lista;
+        }
+
+        void accoda(Evento evento) {
+            if (chiuso) {
+                return;
+            }
+            if (inCoda.incrementAndGet() > MAX_IN_CODA) {
+                // Client troppo lento: chiude la connessione, EventSource si riconnetterà
+                termina();
+                emitter.complete();
+                return;
+            }
+            coda.add(evento);
+            if (inInvio.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("flusso-live").start(this::svuota);
+            }
+        }
+
+        private void svuota() {
+            do {
+                Evento evento;
+                while (!chiuso && (evento = coda.poll()) != null) {
+                    inCoda.decrementAndGet();
+                    invia(evento);
+                }
+                inInvio.set(false);
+                // Un evento accodato dopo l'ultimo poll ma prima del rilascio va inviato da questo thread
+            } while (!chiuso && !coda.isEmpty() && inInvio.compareAndSet(false, true));
+        }
+
+        private void invia(Evento evento) {
+            try {
+                emitter.send(evento.nome() == null
+                        ? SseEmitter.event().comment((String) evento.dati())
+                        : SseEmitter.event().name(evento.nome()).data(evento.dati()));
+            } catch (IOException | IllegalStateException e) {
+                termina();
+            }
+        }
+
+        private void termina() {
+            chiuso = true;
+            coda.clear();
+            lista.remove(this);
+        }
+    }
+}
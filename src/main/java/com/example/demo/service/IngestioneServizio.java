@@ -0,0 +1,251 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.dto.EsitoIngestioneDTO;
+import com.example.demo.dto.RilevazioneInDTO;
+import com.example.demo.entity.OraDaAggregare;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import com.example.demo.giornale.GiornaleIngestione;
+import com.example.demo.shard.ContestoShard;
+import com.example.demo.shard.InstradamentoShard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Service responsabile dell'ingestione massiva delle rilevazioni (Bulk Ingest).
+ * È l'unico punto di scrittura della telemetria: lo usano sia l'API dei gateway di campo
+ * sia il simulatore interno.
+ *
+ * Le prestazioni si basano su tre accorgimenti:
+ * - i sensori vengono risolti per codice dalla cache dell'anagrafica, senza query;
+ * - gli INSERT vengono raggruppati in batch JDBC;
+ * - gli ID provengono da una sequenza "pooled" definita sull'entità {@link Rilevazione}.
+ * Prima della persistenza ogni rilevazione viene classificata da {@link QualitaDatiServizio}.
+ * Se è abilitato il giornale locale ({@link GiornaleIngestione}), le nuove letture vengono prima
+ * rese durevoli su disco e salvate nel DB in un secondo momento, così la latenza non dipende dal DB.
+ * Con lo sharding per campo ({@link InstradamentoShard}) ogni blocco viene suddiviso per shard.
+ *
+ * Metriche esposte: durata di ogni scrittura a blocchi (collina.ingestione.blocco),
+ * rilevazioni salvate per tipologia di sensore (collina.rilevazioni.ingerite{tipo})
+ * e rilevazioni scartate dall'API (collina.rilevazioni.scartate).
+ */
+@Service
+public class IngestioneServizio {
+
+    private final AnagraficaServizio anagrafica;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventi;
+    private final QualitaDatiServizio qualita;
+    private final GiornaleIngestione giornale;
+    private final InstradamentoShard instradamento;
+
+    // Transazione del percorso diretto sul DB (senza giornale) e transazione propria per ogni shard,
+    // aperta dopo aver impostato il contesto dello shard; l'evento di uno shard confermato viene
+    // pubblicato fuori dalla transazione del chiamante
+    private final TransactionTemplate transazione;
+    private final TransactionTemplate transazioneShard;
+    private final TransactionTemplate senzaTransazione;
+
+    // Dimensione del batch JDBC e intervallo di flush/clear del Persistence Context
+    private final int dimensioneBatch;
+
+    // Metriche (Micrometer)
+    private final Timer tempoBlocco;
+    private final Map<TipoSensore, Counter> ingeritePerTipo = new EnumMap<>(TipoSensore.class);
+    private final Counter scartate;
+
+    public IngestioneServizio(AnagraficaServizio anagrafica, EntityManager entityManager,
+                              ApplicationEventPublisher eventi, QualitaDatiServizio qualita, GiornaleIngestione giornale,
+                              InstradamentoShard instradamento, PlatformTransactionManager gestoreTransazioni,
+                              MeterRegistry metriche,
+                              @Value("${collina.ingestione.dimensione-batch:500}") int dimensioneBatch) {
+        this.anagrafica = anagrafica;
+        this.entityManager = entityManager;
+        this.eventi = eventi;
+        this.qualita = qualita;
+        this.giornale = giornale;
+        this.instradamento = instradamento;
+        this.transazione = new TransactionTemplate(gestoreTransazioni);
+        this.transazioneShard = new TransactionTemplate(gestoreTransazioni);
+        this.transazioneShard.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.senzaTransazione = new TransactionTemplate(gestoreTransazioni);
+        this.senzaTransazione.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        this.dimensioneBatch = dimensioneBatch;
+
+        this.tempoBlocco = Timer.builder("collina.ingestione.blocco")
+                .description("Durata della persistenza di un blocco di rilevazioni")
+                .publishPercentileHistogram()
+                .register(metriche);
+        for (TipoSensore tipo : TipoSensore.values()) {
+            ingeritePerTipo.put(tipo, Counter.builder("collina.rilevazioni.ingerite")
+                    .description("Rilevazioni salvate")
+                    .tag("tipo", tipo.name())
+                    .register(metriche));
+        }
+        this.scartate = Counter.builder("collina.rilevazioni.scartate")
+                .description("Rilevazioni rifiutate dall'API di ingestione (sensore sconosciuto o valore mancante)")
+                .register(metriche);
+    }
+
+    /**
+     * Converte e persiste un blocco di rilevazioni ricevute da un gateway.
+     * Le righe con codice sensore sconosciuto o valore mancante vengono scartate
+     * e riportate nell'esito, senza invalidare il resto del blocco.
+     * Non apre una transazione: la scrittura avviene con {@link #registra}.
+     *
+     * @param richieste Le rilevazioni inviate dal gateway.
+     * @return Il riepilogo dell'operazione.
+     */
+    public EsitoIngestioneDTO ingerisci(List<RilevazioneInDTO> richieste) {
+        LocalDateTime ricezione = LocalDateTime.now();
+        List<Rilevazione> daSalvare = new ArrayList<>(richieste.size());
+        Set<String> codiciSconosciuti = new TreeSet<>();
+
+        for (RilevazioneInDTO in : richieste) {
+            if (in.valore() == null || in.codiceSensore() == null) {
+                continue;
+            }
+
+            Sensore sensore = risolviSensore(in.codiceSensore());
+            if (sensore == null) {
+                codiciSconosciuti.add(in.codiceSensore());
+                continue;
+            }
+
+            Rilevazione ril = new Rilevazione();
+            ril.setSensore(sensore);
+            ril.setTimestamp(in.timestamp() != null ? in.timestamp() : ricezione);
+            ril.setValore(in.valore());
+            ril.setUnita(sensore.getTipo().getUnita());
+            daSalvare.add(ril);
+        }
+
+        registra(daSalvare);
+        scartate.increment(richieste.size() - daSalvare.size());
+
+        return new EsitoIngestioneDTO(
+                richieste.size(),
+                daSalvare.size(),
+                richieste.size() - daSalvare.size(),
+                codiciSconosciuti
+        );
+    }
+
+    /**
+     * Punto di ingresso delle nuove letture: con il giornale abilitato le accoda su disco e ritorna
+     * appena sono durevoli, altrimenti le salva subito con {@link #salvaInBlocchi}.
+     * Solo il percorso diretto apre una transazione: con il giornale la latenza non dipende dal DB
+     * e nessuna connessione del pool viene occupata.
+     *
+     * @param rilevazioni Le entità con sensore, timestamp e valore valorizzati.
+     */
+    public void registra(List<Rilevazione> rilevazioni) {
+        if (rilevazioni.isEmpty()) {
+            return;
+        }
+        if (giornale.abilitato()) {
+            giornale.appendi(rilevazioni);
+        } else {
+            transazione.executeWithoutResult(stato -> salvaInBlocchi(rilevazioni));
+        }
+    }
+
+    /**
+     * Classifica la qualità di ogni rilevazione e la persiste a blocchi di {@code dimensioneBatch} righe.
+     * Al termine di ogni blocco il Persistence Context viene svuotato (flush + clear),
+     * così la memoria resta costante anche con migliaia di righe per richiesta.
+     * A fine operazione pubblica un {@link NuoveRilevazioniEvento}, consegnato ai listener dopo il commit.
+     * <p>
+     * Con lo sharding le righe di ogni shard sono salvate in una transazione separata, confermata
+     * prima di passare allo shard successivo. Subito dopo ogni conferma viene pubblicato l'evento con
+     * le sole righe di quello shard, sospendendo la transazione del chiamante: un suo rollback (o
+     * l'errore di uno shard successivo) non fa perdere ai listener le righe già confermate.
+     *
+     * @param rilevazioni Le entità già valorizzate da inserire.
+     */
+    @Transactional
+    public void salvaInBlocchi(List<Rilevazione> rilevazioni) {
+        if (rilevazioni.isEmpty()) {
+            return;
+        }
+        if (instradamento.abilitato()) {
+            instradamento.partiziona(rilevazioni).forEach((shard, parte) -> {
+                ContestoShard.su(shard,
+                        () -> transazioneShard.executeWithoutResult(stato -> tempoBlocco.record(() -> persisti(parte))));
+                senzaTransazione.executeWithoutResult(stato -> pubblica(parte));
+            });
+        } else {
+            tempoBlocco.record(() -> persisti(rilevazioni));
+            pubblica(rilevazioni);
+        }
+    }
+
+    private void pubblica(List<Rilevazione> rilevazioni) {
+        // Conteggio per tipologia: un solo incremento per tipo e per blocco
+        long[] perTipo = new long[TipoSensore.values().length];
+        for (Rilevazione ril : rilevazioni) {
+            perTipo[ril.getSensore().getTipo().ordinal()]++;
+        }
+        for (TipoSensore tipo : TipoSensore.values()) {
+            if (perTipo[tipo.ordinal()] > 0) {
+                ingeritePerTipo.get(tipo).increment(perTipo[tipo.ordinal()]);
+            }
+        }
+
+        eventi.publishEvent(new NuoveRilevazioniEvento(List.copyOf(rilevazioni)));
+    }
+
+    private void persisti(List<Rilevazione> rilevazioni) {
+        // Abilita il batching JDBC per la sessione corrente
+        entityManager.unwrap(Session.class).setJdbcBatchSize(dimensioneBatch);
+
+        qualita.classifica(rilevazioni);
+        int inBlocco = 0;
+        Map<Long, Set<LocalDateTime>> oreToccate = new HashMap<>();
+        for (Rilevazione ril : rilevazioni) {
+            entityManager.persist(ril);
+            oreToccate.computeIfAbsent(ril.getSensore().getId(), k -> new HashSet<>())
+                    .add(ril.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+            if (++inBlocco == dimensioneBatch) {
+                entityManager.flush();
+                entityManager.clear();
+                inBlocco = 0;
+            }
+        }
+
+        // Ore da riaggregare, confermate insieme alle righe
+        oreToccate.forEach((sensoreId, ore) ->
+                ore.forEach(ora -> entityManager.persist(new OraDaAggregare(sensoreId, ora))));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Risolve un sensore attivo a partire dal codice, tramite la cache dell'anagrafica.
+     *
+     * @param codice Il codice univoco del sensore.
+     * @return Il sensore, oppure null se sconosciuto o disattivato.
+     */
+    public Sensore risolviSensore(String codice) {
+        return anagrafica.sensorePerCodice(codice)
+                .filter(Sensore::getAttivo)
+                .orElse(null);
+    }
+}
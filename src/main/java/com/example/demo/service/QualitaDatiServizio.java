@@ -0,0 +1,207 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.SerieTemporaleDTO;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classificazione in linea della qualità delle rilevazioni (Data Quality).
+ * <p>
+ * Per ogni sensore mantiene statistiche incrementali (media e varianza con l'algoritmo di Welford,
+ * ultimo valore e istante, ripetizioni consecutive) e classifica ogni lettura al suo arrivo:
+ * - INVALIDO: valore non finito o fuori dall'intervallo fisico della tipologia;
+ * - DUBBIO: valore anomalo (oltre N deviazioni standard dalla media), valore bloccato
+ *   (ripetuto identico troppe volte) o prima lettura dopo un buco rispetto a frequenzaMinuti;
+ * - VALIDO: tutti gli altri casi.
+ * <p>
+ * Le statistiche vengono aggiornate solo dopo il commit ({@link NuoveRilevazioniEvento}), così una
+ * scrittura annullata non le altera; media e varianza solo con le letture VALIDO, perché le anomalie
+ * non spostino la distribuzione di riferimento. Ultimo valore, istante e ripetizioni seguono invece
+ * tutte le letture plausibili, anche DUBBIO, e all'interno di un blocco sono tenuti su una copia provvisoria.
+ * <p>
+ * Non esegue query: lo stato iniziale di ogni sensore è ricostruito dalla finestra in memoria.
+ */
+@Service
+public class QualitaDatiServizio {
+
+    private static final long NESSUNO = Long.MIN_VALUE;
+
+    private final FinestreSensoriServizio finestre;
+    private final Map<Long, Statistiche> perSensore = new ConcurrentHashMap<>();
+    private final Map<QualitaDato, Counter> conteggi = new EnumMap<>(QualitaDato.class);
+
+    private final double sogliaZ;
+    private final long minCampioni;
+    private final int maxRipetizioni;
+    private final long memoria;
+    private final double tolleranzaCadenza;
+
+    public QualitaDatiServizio(FinestreSensoriServizio finestre, MeterRegistry metriche,
+                               @Value("${collina.qualita.soglia-z:4.0}") double sogliaZ,
+                               @Value("${collina.qualita.min-campioni:30}") long minCampioni,
+                               @Value("${collina.qualita.max-ripetizioni:8}") int maxRipetizioni,
+                               @Value("${collina.qualita.memoria:2000}") long memoria,
+                               @Value("${collina.qualita.tolleranza-cadenza:3.0}") double tolleranzaCadenza) {
+        this.finestre = finestre;
+        this.sogliaZ = sogliaZ;
+        this.minCampioni = minCampioni;
+        this.maxRipetizioni = maxRipetizioni;
+        this.memoria = memoria;
+        this.tolleranzaCadenza = tolleranzaCadenza;
+
+        for (QualitaDato qualita : QualitaDato.values()) {
+            conteggi.put(qualita, Counter.builder("collina.rilevazioni.qualita")
+                    .description("Rilevazioni classificate per esito di qualità")
+                    .tag("esito", qualita.name())
+                    .register(metriche));
+        }
+    }
+
+    /**
+     * Classifica un blocco di rilevazioni, impostandone la qualità, senza aggiornare le statistiche.
+     * Le letture dello stesso sensore sono valutate in sequenza rispetto alle precedenti del blocco.
+     *
+     * @param rilevazioni Le rilevazioni, con sensore, istante e valore già valorizzati.
+     */
+    public void classifica(List<Rilevazione> rilevazioni) {
+        Map<Long, Sequenza> provvisorie = new HashMap<>();
+        for (Rilevazione ril : rilevazioni) {
+            Sensore sensore = ril.getSensore();
+            double valore = ril.getValore();
+            QualitaDato esito;
+
+            if (!Double.isFinite(valore) || !sensore.getTipo().plausibile(valore)) {
+                esito = QualitaDato.INVALIDO;
+            } else {
+                long ts = FinestreSensoriServizio.aEpochMillis(ril.getTimestamp());
+                long cadenzaMs = sensore.getFrequenzaMinuti() == null ? 0 : sensore.getFrequenzaMinuti() * 60_000L;
+                Statistiche stat = perSensore.computeIfAbsent(sensore.getId(), this::daFinestra);
+                synchronized (stat) {
+                    Sequenza sequenza = provvisorie.computeIfAbsent(sensore.getId(), k -> stat.sequenza.copia());
+                    esito = stat.valuta(sequenza, ts, valore, cadenzaMs);
+                    sequenza.registra(ts, valore);
+                }
+            }
+
+            ril.setQualita(esito);
+            conteggi.get(esito).increment();
+        }
+    }
+
+    /**
+     * Aggiorna le statistiche con le rilevazioni confermate. I sensori senza statistiche vengono
+     * ignorati: le ricostruiranno dalla finestra, che contiene già queste letture.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void suNuoveRilevazioni(NuoveRilevazioniEvento evento) {
+        for (Rilevazione ril : evento.rilevazioni()) {
+            if (ril.getQualita() == null || ril.getQualita() == QualitaDato.INVALIDO) {
+                continue;
+            }
+            Statistiche stat = perSensore.get(ril.getSensore().getId());
+            if (stat != null) {
+                synchronized (stat) {
+                    stat.aggiorna(FinestreSensoriServizio.aEpochMillis(ril.getTimestamp()), ril.getValore(),
+                            ril.getQualita() == QualitaDato.VALIDO);
+                }
+            }
+        }
+    }
+
+    // Ricostruisce lo stato del sensore a partire dai punti validi della finestra in memoria
+    private Statistiche daFinestra(Long sensoreId) {
+        Statistiche stat = new Statistiche();
+        SerieTemporaleDTO serie = finestre.serieMascherata(sensoreId);
+        for (int i = 0; i < serie.dimensione(); i++) {
+            if (!Double.isNaN(serie.valori()[i])) {
+                stat.aggiorna(serie.timestamp()[i], serie.valori()[i], true);
+            }
+        }
+        return stat;
+    }
+
+    /**
+     * Ultima lettura e ripetizioni consecutive di un sensore.
+     */
+    private static final class Sequenza {
+        private long ultimoTimestamp = NESSUNO;
+        private double ultimoValore;
+        private int ripetizioni;
+
+        Sequenza copia() {
+            Sequenza copia = new Sequenza();
+            copia.ultimoTimestamp = ultimoTimestamp;
+            copia.ultimoValore = ultimoValore;
+            copia.ripetizioni = ripetizioni;
+            return copia;
+        }
+
+        void registra(long ts, double valore) {
+            if (ultimoTimestamp == NESSUNO || ts > ultimoTimestamp) {
+                ripetizioni = valore == ultimoValore && ultimoTimestamp != NESSUNO ? ripetizioni + 1 : 0;
+                ultimoTimestamp = ts;
+                ultimoValore = valore;
+            }
+        }
+    }
+
+    /**
+     * Statistiche incrementali di un sensore, in memoria costante.
+     */
+    private final class Statistiche {
+        private long n;
+        private double media;
+        private double varianza;
+        private final Sequenza sequenza = new Sequenza();
+
+        QualitaDato valuta(Sequenza sequenza, long ts, double valore, long cadenzaMs) {
+            // Valore anomalo rispetto alla distribuzione osservata
+            if (n >= minCampioni && varianza > 0 && Math.abs(valore - media) > sogliaZ * Math.sqrt(varianza)) {
+                return QualitaDato.DUBBIO;
+            }
+            if (sequenza.ultimoTimestamp == NESSUNO || ts <= sequenza.ultimoTimestamp) {
+                return QualitaDato.VALIDO;
+            }
+            // Valore bloccato: identico al precedente per troppe letture consecutive
+            if (valore == sequenza.ultimoValore && sequenza.ripetizioni + 1 >= maxRipetizioni) {
+                return QualitaDato.DUBBIO;
+            }
+            // Buco: la lettura arriva molto dopo la cadenza attesa
+            if (cadenzaMs > 0 && ts - sequenza.ultimoTimestamp > tolleranzaCadenza * cadenzaMs) {
+                return QualitaDato.DUBBIO;
+            }
+            return QualitaDato.VALIDO;
+        }
+
+        /**
+         * Aggiornamento di Welford (varianza di popolazione), solo per le letture valide. Oltre {@code memoria}
+         * campioni il peso del nuovo punto resta fisso a 1/memoria, così le statistiche seguono i cambi di stagione.
+         */
+        void aggiorna(long ts, double valore, boolean valida) {
+            if (valida) {
+                if (n < memoria) {
+                    n++;
+                }
+                double peso = 1.0 / n;
+                double scarto = valore - media;
+                media += peso * scarto;
+                varianza = (1 - peso) * (varianza + peso * scarto * scarto);
+            }
+            sequenza.registra(ts, valore);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.demo.service;
+
+import com.example.demo.archivio.CollettoreSerie;
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.BilancioCampoDTO;
+import com.example.demo.dto.CostoManualeDTO;
+import com.example.demo.dto.SerieTemporaleDTO;
+import com.example.demo.dto.TotaliEconomiciDTO;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.MovimentoEconomico;
+import com.example.demo.entity.SaldoEconomicoOrario;
+import com.example.demo.entity.TotaleEconomicoCampo;
+import com.example.demo.enums.Granularita;
+import com.example.demo.enums.TipoMovimento;
+import com.example.demo.evento.EconomiaAggiornataEvento;
+import com.example.demo.exception.RisorsaNonTrovataEccezione;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.MovimentoEconomicoRepository;
+import com.example.demo.repository.SaldoEconomicoOrarioRepository;
+import com.example.demo.repository.TotaleEconomicoCampoRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Registro economico dei campi (Ledger) in sola aggiunta, con totali materializzati.
+ * <p>
+ * Ogni variazione di produzione, costi o ricavi è un {@link MovimentoEconomico} che non viene
+ * più modificato. Nella stessa transazione si aggiornano, con incrementi atomici in SQL,
+ * il totale progressivo del campo e il saldo dell'ora di competenza: la dashboard legge i totali
+ * e le serie del bilancio si calcolano dai saldi orari, senza mai rileggere il registro.
+ * <p>
+ * Gli scrittori concorrenti non si contendono la riga di Campo; quelli dello stesso campo
+ * si serializzano solo sul lock della riga dei totali, per la durata della loro transazione.
+ * Le righe mancanti (totale di un campo nuovo, saldo di un'ora nuova) vengono create ciascuna in una
+ * breve transazione prima di aprire quella degli incrementi, così una registrazione occupa una sola
+ * connessione del pool alla volta: se due scrittori le creano insieme, il secondo riceve la violazione
+ * del vincolo di unicità, riconosce la riga creata dal primo e incrementa quella.
+ */
+@Service
+public class RegistroEconomicoServizio {
+
+    private final MovimentoEconomicoRepository movimentoRepo;
+    private final TotaleEconomicoCampoRepository totaleRepo;
+    private final SaldoEconomicoOrarioRepository saldoRepo;
+    private final CampoRepository campoRepo;
+    private final ApplicationEventPublisher eventi;
+
+    // Movimenti e incrementi: una sola transazione, quella del chiamante se già aperta
+    private final TransactionTemplate transazione;
+
+    // Creazione delle righe mancanti, confermata indipendentemente dalla transazione del chiamante
+    private final TransactionTemplate nuovaTransazione;
+
+    // Tentativi di apertura del saldo di un campo prima di rinunciare
+    private static final int TENTATIVI_APERTURA = 3;
+
+    public RegistroEconomicoServizio(MovimentoEconomicoRepository movimentoRepo, TotaleEconomicoCampoRepository totaleRepo,
+                                     SaldoEconomicoOrarioRepository saldoRepo, CampoRepository campoRepo,
+                                     ApplicationEventPublisher eventi, PlatformTransactionManager gestoreTransazioni) {
+        this.movimentoRepo = movimentoRepo;
+        this.totaleRepo = totaleRepo;
+        this.saldoRepo = saldoRepo;
+        this.campoRepo = campoRepo;
+        this.eventi = eventi;
+        this.transazione = new TransactionTemplate(gestoreTransazioni);
+        this.nuovaTransazione = new TransactionTemplate(gestoreTransazioni);
+        this.nuovaTransazione.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Crea un movimento (non ancora registrato).
+     */
+    public static MovimentoEconomico movimento(Long campoId, TipoMovimento tipo, LocalDateTime timestamp,
+                                               double produzioneKg, double costi, double ricavi, String causale) {
+        MovimentoEconomico m = new MovimentoEconomico();
+        m.setCampoId(campoId);
+        m.setTipo(tipo);
+        m.setTimestamp(timestamp);
+        m.setProduzioneKg(produzioneKg);
+        m.setCosti(costi);
+        m.setRicavi(ricavi);
+        m.setCausale(causale);
+        return m;
+    }
+
+    /**
+     * Aggiunge i movimenti al registro e aggiorna totali e saldi orari.
+     * Prima crea le righe mancanti, poi registra movimenti e incrementi in un'unica transazione.
+     * I campi vengono elaborati in ordine di ID, così transazioni concorrenti acquisiscono
+     * i lock delle righe dei totali sempre nello stesso ordine (nessun deadlock).
+     * Al commit viene notificato un {@link EconomiaAggiornataEvento}.
+     * <p>
+     * Va chiamato fuori da una transazione: chiamato dentro una transazione aperta funziona comunque,
+     * ma la creazione delle righe mancanti occupa una seconda connessione del pool.
+     *
+     * @param movimenti I movimenti da registrare.
+     */
+    public void registra(List<MovimentoEconomico> movimenti) {
+        if (movimenti.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<MovimentoEconomico>> perCampo = new TreeMap<>();
+        for (MovimentoEconomico m : movimenti) {
+            perCampo.computeIfAbsent(m.getCampoId(), k -> new ArrayList<>()).add(m);
+        }
+        LocalDateTime adesso = LocalDateTime.now();
+        creaRigheMancanti(perCampo, adesso);
+
+        transazione.executeWithoutResult(stato -> {
+            movimentoRepo.saveAll(movimenti);
+            perCampo.forEach((campoId, delCampo) -> incrementa(campoId, delCampo, adesso));
+            eventi.publishEvent(new EconomiaAggiornataEvento(List.copyOf(perCampo.keySet())));
+        });
+    }
+
+    /**
+     * Registra un singolo movimento.
+     */
+    public void registra(MovimentoEconomico movimento) {
+        registra(List.of(movimento));
+    }
+
+    /**
+     * Registra un costo inserito manualmente dall'operatore.
+     *
+     * @param campoId Il campo a cui imputare il costo.
+     * @param costo Importo (positivo) e causale.
+     */
+    public void registraCostoManuale(Long campoId, CostoManualeDTO costo) {
+        if (costo.importo() == null || !(costo.importo() > 0) || !Double.isFinite(costo.importo())) {
+            throw new IllegalArgumentException("L'importo deve essere un numero positivo");
+        }
+        String causale = costo.causale() == null || costo.causale().isBlank() ? "Costo manuale" : costo.causale();
+        registra(movimento(campoId, TipoMovimento.COSTO_MANUALE, LocalDateTime.now(), 0.0, costo.importo(), 0.0, causale));
+    }
+
+    /**
+     * @return I totali correnti dei campi richiesti, indicizzati per ID del campo.
+     */
+    public Map<Long, TotaleEconomicoCampo> totali(Collection<Long> campoIds) {
+        Map<Long, TotaleEconomicoCampo> totali = new HashMap<>();
+        for (TotaleEconomicoCampo totale : totaleRepo.findAllById(campoIds)) {
+            totali.put(totale.getCampoId(), totale);
+        }
+        return totali;
+    }
+
+    /**
+     * Andamento economico del campo in [da, a), calcolato dai saldi orari materializzati.
+     *
+     * @param granularita Ampiezza dei punti della serie (ORA o GIORNO).
+     */
+    public BilancioCampoDTO bilancio(Long campoId, LocalDateTime da, LocalDateTime a, Granularita granularita) {
+        if (!da.isBefore(a)) {
+            throw new IllegalArgumentException("L'inizio dell'intervallo deve precedere la fine");
+        }
+        if (!campoRepo.existsById(campoId)) {
+            throw new RisorsaNonTrovataEccezione("Campo", campoId);
+        }
+
+        TotaliEconomiciDTO precedenti = saldoRepo.sommaPrecedente(campoId, da);
+        double bilancio = precedenti.ricavi() - precedenti.costi();
+        double produzione = 0, costi = 0, ricavi = 0;
+
+        CollettoreSerie serie = new CollettoreSerie(64);
+        LocalDateTime bucketCorrente = null;
+        for (SaldoEconomicoOrario saldo : saldoRepo.findIntervallo(campoId, da, a)) {
+            LocalDateTime bucket = granularita == Granularita.GIORNO
+                    ? saldo.getOra().truncatedTo(ChronoUnit.DAYS)
+                    : saldo.getOra();
+            if (bucketCorrente != null && !bucket.equals(bucketCorrente)) {
+                serie.accetta(FinestreSensoriServizio.aEpochMillis(bucketCorrente), bilancio);
+            }
+            bucketCorrente = bucket;
+
+            produzione += saldo.getProduzioneKg();
+            costi += saldo.getCosti();
+            ricavi += saldo.getRicavi();
+            bilancio += saldo.getRicavi() - saldo.getCosti();
+        }
+        if (bucketCorrente != null) {
+            serie.accetta(FinestreSensoriServizio.aEpochMillis(bucketCorrente), bilancio);
+        }
+
+        SerieTemporaleDTO colonne = serie.serie();
+        return new BilancioCampoDTO(campoId, granularita, produzione, costi, ricavi,
+                colonne.timestamp(), colonne.valori());
+    }
+
+    /**
+     * Crea, fuori dalla transazione degli incrementi, il totale dei campi nuovi e i saldi delle ore nuove.
+     */
+    private void creaRigheMancanti(Map<Long, List<MovimentoEconomico>> perCampo, LocalDateTime adesso) {
+        Set<Long> conTotale = totali(perCampo.keySet()).keySet();
+        for (Map.Entry<Long, List<MovimentoEconomico>> voce : perCampo.entrySet()) {
+            Long campoId = voce.getKey();
+            if (!conTotale.contains(campoId)) {
+                apriSaldo(campoId, adesso);
+            }
+
+            TreeSet<LocalDateTime> ore = new TreeSet<>();
+            for (MovimentoEconomico m : voce.getValue()) {
+                ore.add(m.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+            }
+            for (SaldoEconomicoOrario saldo : saldoRepo.findIntervallo(campoId, ore.first(), ore.last().plusHours(1))) {
+                ore.remove(saldo.getOra());
+            }
+            for (LocalDateTime ora : ore) {
+                // Una sola volta tra scrittori concorrenti: chi arriva secondo trova la riga del primo
+                try {
+                    nuovaTransazione.executeWithoutResult(stato -> saldoRepo.saveAndFlush(saldo(campoId, ora, 0.0, 0.0, 0.0)));
+                } catch (DataIntegrityViolationException e) {
+                    // Creata nel frattempo da un altro scrittore
+                }
+            }
+        }
+    }
+
+    /**
+     * Incrementa il totale del campo (acquisendo il lock della sua riga) e poi, sotto quel lock,
+     * i saldi delle ore dei movimenti. Le righe sono già state create da {@link #creaRigheMancanti}.
+     */
+    private void incrementa(Long campoId, List<MovimentoEconomico> movimenti, LocalDateTime adesso) {
+        double produzione = 0, costi = 0, ricavi = 0;
+        Map<LocalDateTime, double[]> perOra = new TreeMap<>();
+        for (MovimentoEconomico m : movimenti) {
+            produzione += m.getProduzioneKg();
+            costi += m.getCosti();
+            ricavi += m.getRicavi();
+            double[] ora = perOra.computeIfAbsent(m.getTimestamp().truncatedTo(ChronoUnit.HOURS), k -> new double[3]);
+            ora[0] += m.getProduzioneKg();
+            ora[1] += m.getCosti();
+            ora[2] += m.getRicavi();
+        }
+        if (totaleRepo.incrementa(campoId, produzione, costi, ricavi, adesso) == 0) {
+            throw new IllegalStateException("Totale economico del campo " + campoId + " non trovato");
+        }
+        perOra.forEach((ora, delta) -> {
+            if (saldoRepo.incrementa(campoId, ora, delta[0], delta[1], delta[2]) == 0) {
+                throw new IllegalStateException("Saldo orario del campo " + campoId + " alle " + ora + " non trovato");
+            }
+        });
+    }
+
+    /**
+     * Primo movimento di un campo: apre il saldo riportando i valori già presenti sull'anagrafica.
+     * L'apertura (movimento, totale e saldo orario) è confermata in una transazione propria, eseguita
+     * una sola volta anche con più scrittori concorrenti: chi trova il totale già creato non fa nulla.
+     */
+    private void apriSaldo(Long campoId, LocalDateTime adesso) {
+        for (int tentativo = 1; ; tentativo++) {
+            try {
+                nuovaTransazione.executeWithoutResult(stato -> {
+                    if (!totaleRepo.existsById(campoId)) {
+                        inserisciApertura(campoId, adesso);
+                    }
+                });
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Totale o saldo orario creati nel frattempo da un altro scrittore: si ricontrolla
+                if (tentativo == TENTATIVI_APERTURA) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void inserisciApertura(Long campoId, LocalDateTime adesso) {
+        Campo campo = campoRepo.findById(campoId)
+                .orElseThrow(() -> new RisorsaNonTrovataEccezione("Campo", campoId));
+        double produzione = campo.getProduzioneKg() != null ? campo.getProduzioneKg() : 0.0;
+        double costi = campo.getCostiAccumulati() != null ? campo.getCostiAccumulati() : 0.0;
+        double ricavi = campo.getRicaviStimati() != null ? campo.getRicaviStimati() : 0.0;
+
+        movimentoRepo.save(movimento(campoId, TipoMovimento.APERTURA, adesso, produzione, costi, ricavi, "Saldo di apertura"));
+        totaleRepo.saveAndFlush(new TotaleEconomicoCampo(campoId, produzione, costi, ricavi, adesso));
+        LocalDateTime ora = adesso.truncatedTo(ChronoUnit.HOURS);
+        if (saldoRepo.incrementa(campoId, ora, produzione, costi, ricavi) == 0) {
+            saldoRepo.saveAndFlush(saldo(campoId, ora, produzione, costi, ricavi));
+        }
+    }
+
+    private static SaldoEconomicoOrario saldo(Long campoId, LocalDateTime ora, double produzione, double costi, double ricavi) {
+        SaldoEconomicoOrario saldo = new SaldoEconomicoOrario();
+        saldo.setCampoId(campoId);
+        saldo.setOra(ora);
+        saldo.setProduzioneKg(produzione);
+        saldo.setCosti(costi);
+        saldo.setRicavi(ricavi);
+        return saldo;
+    }
+}
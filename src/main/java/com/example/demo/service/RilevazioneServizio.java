@@ -1,16 +1,22 @@
 package com.example.demo.service;
 
-import com.example.demo.entity.Rilevazione;
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.SerieCampoDTO;
+import com.example.demo.dto.SerieSensoreDTO;
+import com.example.demo.dto.SerieTemporaleDTO;
 import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Risoluzione;
 import com.example.demo.enums.TipoSensore;
 import com.example.demo.exception.RisorsaNonTrovataEccezione;
-import com.example.demo.repository.RilevazioneRepository;
-import com.example.demo.repository.SensoreRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Service Layer responsabile della logica di presentazione dei dati (Data Presentation).
@@ -20,13 +26,19 @@ import java.util.stream.Collectors;
 @Service
 public class RilevazioneServizio {
 
-    private final SensoreRepository sensoreRepo;
-    private final RilevazioneRepository rilevazioneRepo;
-    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    private final AnagraficaServizio anagrafica;
+    private final FinestreSensoriServizio finestre;
+    private final SerieStoricaServizio serieStorica;
+    private final EsecutoreParallelo parallelo;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm")
+            .withZone(ZoneId.systemDefault());
 
-    public RilevazioneServizio(SensoreRepository sensoreRepo, RilevazioneRepository rilevazioneRepo) {
-        this.sensoreRepo = sensoreRepo;
-        this.rilevazioneRepo = rilevazioneRepo;
+    public RilevazioneServizio(AnagraficaServizio anagrafica, FinestreSensoriServizio finestre,
+                               SerieStoricaServizio serieStorica, EsecutoreParallelo parallelo) {
+        this.anagrafica = anagrafica;
+        this.finestre = finestre;
+        this.serieStorica = serieStorica;
+        this.parallelo = parallelo;
     }
 
     /**
@@ -38,13 +50,15 @@ public class RilevazioneServizio {
      * - "labels": Lista temporale asse X.
      * - "datasets": Lista delle serie dati configurate per il rendering.
      */
+    @Timed(value = "collina.grafico.temp-umidita", histogram = true)
     public Map<String, Object> seriesTempUmiditaByCampo(Long campoId) {
         // 1. **GESTIONE ECCEZIONE INIZIALE:** Verifica se il campo esiste prima di proseguire
-        sensoreRepo.findByCampoIdAndAttivoTrue(campoId).stream()
-                .findAny()
-                .orElseThrow(() -> new RisorsaNonTrovataEccezione("Campo", campoId));
+        List<Sensore> sensoriAttivi = anagrafica.sensoriAttivi(campoId);
+        if (sensoriAttivi.isEmpty()) {
+            throw new RisorsaNonTrovataEccezione("Campo", campoId);
+        }
         // 2. Filtraggio Sensori: Selezione dei soli sensori di interesse per il grafico
-        List<Sensore> sensoriCampo = sensoreRepo.findByCampoIdAndAttivoTrue(campoId).stream()
+        List<Sensore> sensoriCampo = sensoriAttivi.stream()
                 .filter(s -> s.getTipo() == TipoSensore.TEMP_AIR || s.getTipo() == TipoSensore.HUMID_AIR)
                 .toList();
 
@@ -52,37 +66,33 @@ public class RilevazioneServizio {
             return Map.of("labels", List.of(), "datasets", List.of());
         }
 
-        // 3. Data Fetching & Processing:
-        // Recupero delle ultime 96 rilevazioni e inversione dell'ordine (da cronologico inverso a diretto).
+        // 3. Data Fetching:
+        // Le ultime 24 ore sono lette dalla cache in memoria, già in ordine cronologico.
+        // I punti non validi sono mascherati (NaN) e diventano interruzioni della linea nel grafico.
         // Utilizzo di una Map per associare efficientemente i dati al sensore di origine.
-        Map<Long, List<Rilevazione>> rilevazioniBySensore = sensoriCampo.stream()
-                .collect(Collectors.toMap(
-                        Sensore::getId,
-                        s -> {
-                            List<Rilevazione> recenti = rilevazioneRepo.findTop96BySensoreIdOrderByTimestampDesc(s.getId());
-                            Collections.reverse(recenti);
-                            return recenti;
-                        }
-                ));
+        Map<Long, SerieTemporaleDTO> serieBySensore = new LinkedHashMap<>();
+        for (Sensore sensore : sensoriCampo) {
+            serieBySensore.put(sensore.getId(), finestre.serieMascherata(sensore.getId()));
+        }
 
         // 4. Estrazione Asse Temporale (Labels):
         // Si assume sincronia nel campionamento; si estraggono i timestamp dal primo dataset disponibile.
-        List<String> labels = rilevazioniBySensore.values().stream()
-                .findFirst()
-                .orElse(List.of())
-                .stream()
-                .map(r -> r.getTimestamp().format(TIME_FORMATTER))
-                .toList();
+        long[] istanti = serieBySensore.values().iterator().next().timestamp();
+        List<String> labels = new ArrayList<>(istanti.length);
+        for (long istante : istanti) {
+            labels.add(TIME_FORMATTER.format(Instant.ofEpochMilli(istante)));
+        }
 
         // 5. Costruzione Datasets:
         // Mapping dei dati nel formato JSON-friendly per il frontend.
         List<Map<String, Object>> datasets = new ArrayList<>();
 
         for (Sensore sensore : sensoriCampo) {
-            List<Rilevazione> rilevazioni = rilevazioniBySensore.get(sensore.getId());
-            List<Double> dataPoints = rilevazioni.stream()
-                    .map(Rilevazione::getValore)
-                    .toList();
+            double[] valori = serieBySensore.get(sensore.getId()).valori();
+            List<Double> dataPoints = new ArrayList<>(valori.length);
+            for (double valore : valori) {
+                dataPoints.add(Double.isNaN(valore) ? null : valore);
+            }
 
             boolean isTemp = sensore.getTipo() == TipoSensore.TEMP_AIR;
             String label = isTemp ? "Temperatura Aria (°C)" : "Umidità Aria (%)";
@@ -92,6 +102,7 @@ public class RilevazioneServizio {
 
             datasets.add(Map.of(
                     "label", label,
+                    "tipo", sensore.getTipo(), // Usato dal flusso live per accodare i nuovi punti
                     "data", dataPoints,
                     "borderColor", color,
                     "backgroundColor", color,
@@ -105,4 +116,43 @@ public class RilevazioneServizio {
                 "datasets", datasets
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Recupera le serie dei sensori di un campo su un intervallo arbitrario, ridotte con LTTB.
+     * <p>
+     * La sorgente (grezza, oraria, giornaliera) è scelta in base all'ampiezza dell'intervallo;
+     * ogni serie viene poi ridotta a {@code maxPunti} preservando picchi e minimi, così anche
+     * un anno di dati a 15 minuti arriva al browser come poche centinaia di punti.
+     * Le letture dei singoli sensori vengono eseguite in parallelo.
+     *
+     * @param campoId L'identificativo del campo monitorato.
+     * @param da Inizio dell'intervallo (incluso).
+     * @param a Fine dell'intervallo (escluso).
+     * @param tipi Le tipologie di sensore richieste; se vuoto, tutte.
+     * @param maxPunti Il numero massimo di punti per serie.
+     * @return Le serie in formato colonnare.
+     */
+    @Timed(value = "collina.grafico.intervallo", histogram = true)
+    public SerieCampoDTO serieCampo(Long campoId, LocalDateTime da, LocalDateTime a,
+                                    Set<TipoSensore> tipi, int maxPunti) {
+        List<Sensore> sensoriAttivi = anagrafica.sensoriAttivi(campoId);
+        if (sensoriAttivi.isEmpty()) {
+            throw new RisorsaNonTrovataEccezione("Campo", campoId);
+        }
+
+        Risoluzione risoluzione = serieStorica.risoluzionePer(da, a);
+        List<Sensore> richiesti = sensoriAttivi.stream()
+                .filter(s -> tipi.isEmpty() || tipi.contains(s.getTipo()))
+                .toList();
+
+        List<SerieSensoreDTO> serie = parallelo.mappa(richiesti, sensore -> {
+            SerieTemporaleDTO ridotta = DownsamplerLttb.riduci(
+                    serieStorica.serie(sensore.getId(), da, a, risoluzione), maxPunti);
+
+            return new SerieSensoreDTO(sensore.getId(), sensore.getCodice(), sensore.getTipo(),
+                    sensore.getTipo().getUnita(), ridotta.timestamp(), ridotta.valori());
+        });
+
+        return new SerieCampoDTO(campoId, risoluzione, serie);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Ruota temporale a hash (Hashed Timing Wheel) per attività periodiche identificate da un ID di tipo long.
+ * <p>
+ * Il tempo è diviso in tick; ogni attività sta nello slot {@code scadenza % slot} ed è ripianificata
+ * sul posto dopo ogni scatto, quindi non viene creato alcun oggetto per esecuzione. Le attività sono
+ * memorizzate in array paralleli e collegate in liste doppie per slot (indici int), così inserimento,
+ * rimozione e ripianificazione costano O(1) e la memoria cresce solo con il numero di attività.
+ * Un periodo più lungo di un giro della ruota viene gestito confrontando la scadenza assoluta.
+ * <p>
+ * Non è thread-safe: l'accesso va sincronizzato dal chiamante.
+ */
+final class RuotaTemporale {
+
+    private static final int NESSUNO = -1;
+
+    private final int maschera;
+    private final int[] teste;
+
+    // Attività, indicizzate per posizione: ID, periodo e scadenza in tick, collegamenti nella lista dello slot
+    private long[] ids = new long[0];
+    private long[] periodi = new long[0];
+    private long[] scadenze = new long[0];
+    private int[] successivi = new int[0];
+    private int[] precedenti = new int[0];
+
+    private final Map<Long, Integer> posizioni = new HashMap<>();
+    private int[] libere = new int[0];
+    private int numeroLibere;
+    private int usate;
+
+    // Ultimo tick già elaborato
+    private long tick;
+
+    /**
+     * @param slot Numero di slot, arrotondato alla potenza di 2 successiva.
+     * @param tickIniziale Il tick corrente: le attività vengono pianificate a partire dal successivo.
+     */
+    RuotaTemporale(int slot, long tickIniziale) {
+        int dimensione = Integer.highestOneBit(Math.max(2, slot - 1)) << 1;
+        this.maschera = dimensione - 1;
+        this.teste = new int[dimensione];
+        Arrays.fill(teste, NESSUNO);
+        this.tick = tickIniziale;
+    }
+
+    /**
+     * Pianifica (o ripianifica) un'attività con il periodo indicato.
+     *
+     * @param id L'identificativo dell'attività.
+     * @param periodo Il periodo in tick (almeno 1).
+     * @param ritardo Tick che mancano alla prima esecuzione, tra 1 e il periodo (fase).
+     */
+    void pianifica(long id, long periodo, long ritardo) {
+        Integer esistente = posizioni.get(id);
+        int i;
+        if (esistente != null) {
+            i = esistente;
+            scollega(i);
+        } else {
+            i = nuovaPosizione();
+            ids[i] = id;
+            posizioni.put(id, i);
+        }
+        periodi[i] = Math.max(1, periodo);
+        scadenze[i] = tick + Math.max(1, ritardo);
+        collega(i);
+    }
+
+    /**
+     * Rimuove un'attività; nessun effetto se non è pianificata.
+     */
+    void rimuovi(long id) {
+        Integer i = posizioni.remove(id);
+        if (i == null) {
+            return;
+        }
+        scollega(i);
+        if (numeroLibere == libere.length) {
+            libere = Arrays.copyOf(libere, Math.max(16, libere.length * 2));
+        }
+        libere[numeroLibere++] = i;
+    }
+
+    /**
+     * @return Il periodo in tick dell'attività, oppure 0 se non è pianificata.
+     */
+    long periodo(long id) {
+        Integer i = posizioni.get(id);
+        return i == null ? 0 : periodi[i];
+    }
+
+    int dimensione() {
+        return posizioni.size();
+    }
+
+    /**
+     * Avanza la ruota fino al tick indicato, consegnando gli ID delle attività scadute in ordine di tick.
+     * Se il ritardo supera un periodo, le esecuzioni perse non vengono recuperate: l'attività riparte
+     * dalla prima scadenza futura, mantenendo la propria fase.
+     */
+    void avanza(long finoA, LongConsumer scaduta) {
+        // Oltre un giro completo, gli slot si ripetono: basta visitarli una volta ciascuno
+        long da = Math.max(tick + 1, finoA - maschera);
+        for (long t = da; t <= finoA; t++) {
+            int slot = (int) (t & maschera);
+            int i = teste[slot];
+            while (i != NESSUNO) {
+                int successivo = successivi[i];
+                if (scadenze[i] <= finoA) {
+                    scollega(i);
+                    long periodo = periodi[i];
+                    long mancanti = (finoA - scadenze[i]) / periodo + 1;
+                    scadenze[i] += mancanti * periodo;
+                    collega(i);
+                    scaduta.accept(ids[i]);
+                }
+                i = successivo;
+            }
+        }
+        tick = Math.max(tick, finoA);
+    }
+
+    private int nuovaPosizione() {
+        if (numeroLibere > 0) {
+            return libere[--numeroLibere];
+        }
+        if (usate == ids.length) {
+            int capacita = Math.max(16, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacita);
+            periodi = Arrays.copyOf(periodi, capacita);
+            scadenze = Arrays.copyOf(scadenze, capacita);
+            successivi = Arrays.copyOf(successivi, capacita);
+            precedenti = Arrays.copyOf(precedenti, capacita);
+        }
+        return usate++;
+    }
+
+    private void collega(int i) {
+        int slot = (int) (scadenze[i] & maschera);
+        successivi[i] = teste[slot];
+        precedenti[i] = NESSUNO;
+        if (teste[slot] != NESSUNO) {
+            precedenti[teste[slot]] = i;
+        }
+        teste[slot] = i;
+    }
+
+    private void scollega(int i) {
+        int slot = (int) (scadenze[i] & maschera);
+        if (precedenti[i] != NESSUNO) {
+            successivi[precedenti[i]] = successivi[i];
+        } else {
+            teste[slot] = successivi[i];
+        }
+        if (successivi[i] != NESSUNO) {
+            precedenti[successivi[i]] = precedenti[i];
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.demo.service;
+
+import com.example.demo.archivio.ArchivioChunkServizio;
+import com.example.demo.archivio.CollettoreSerie;
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.PuntoSerieDTO;
+import com.example.demo.dto.SerieTemporaleDTO;
+import com.example.demo.entity.AggregatoRilevazione;
+import com.example.demo.enums.Granularita;
+import com.example.demo.enums.Risoluzione;
+import com.example.demo.repository.AggregatoRilevazioneRepository;
+import com.example.demo.repository.RilevazioneRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Livello di interrogazione dello storico delle rilevazioni.
+ * <p>
+ * In base all'ampiezza dell'intervallo richiesto sceglie automaticamente la sorgente:
+ * righe grezze per i periodi brevi, aggregati orari per settimane e mesi,
+ * aggregati giornalieri per stagioni e anni. Il numero di righe lette resta così
+ * limitato indipendentemente dalla crescita della tabella Rilevazione.
+ * <p>
+ * Per le righe grezze, i giorni già sigillati vengono letti dai blocchi compressi
+ * dell'archivio e solo il periodo successivo dalla tabella Rilevazione. Per gli aggregati,
+ * i bucket più recenti, che il job incrementale potrebbe non aver ancora aggiornato,
+ * sono calcolati al volo dalle righe grezze.
+ * Tutte le sorgenti contengono solo punti di qualità VALIDO.
+ */
+@Service
+public class SerieStoricaServizio {
+
+    private final RilevazioneRepository rilevazioneRepo;
+    private final AggregatoRilevazioneRepository aggregatoRepo;
+    private final ArchivioChunkServizio archivio;
+
+    // Soglie di passaggio alla risoluzione successiva
+    private final Duration maxGrezza;
+    private final Duration maxOraria;
+    // Ritardo massimo degli aggregati rispetto alle righe grezze: due esecuzioni del job
+    private final Duration ritardoAggregati;
+
+    public SerieStoricaServizio(RilevazioneRepository rilevazioneRepo, AggregatoRilevazioneRepository aggregatoRepo,
+                                ArchivioChunkServizio archivio,
+                                @Value("${collina.storico.max-giorni-grezza:3}") long maxGiorniGrezza,
+                                @Value("${collina.storico.max-giorni-oraria:90}") long maxGiorniOraria,
+                                @Value("${collina.aggregazione.intervallo-ms:300000}") long intervalloAggregazioneMs) {
+        this.rilevazioneRepo = rilevazioneRepo;
+        this.aggregatoRepo = aggregatoRepo;
+        this.archivio = archivio;
+        this.maxGrezza = Duration.ofDays(maxGiorniGrezza);
+        this.maxOraria = Duration.ofDays(maxGiorniOraria);
+        this.ritardoAggregati = Duration.ofMillis(2 * intervalloAggregazioneMs);
+    }
+
+    /**
+     * @return La risoluzione adatta all'intervallo [da, a).
+     */
+    public Risoluzione risoluzionePer(LocalDateTime da, LocalDateTime a) {
+        Duration ampiezza = Duration.between(da, a);
+        if (ampiezza.compareTo(maxGrezza) <= 0) {
+            return Risoluzione.GREZZA;
+        }
+        return ampiezza.compareTo(maxOraria) <= 0 ? Risoluzione.ORARIA : Risoluzione.GIORNALIERA;
+    }
+
+    /**
+     * Recupera la serie di un sensore nell'intervallo [da, a) alla risoluzione scelta automaticamente.
+     */
+    public SerieTemporaleDTO serie(Long sensoreId, LocalDateTime da, LocalDateTime a) {
+        return serie(sensoreId, da, a, risoluzionePer(da, a));
+    }
+
+    /**
+     * Recupera la serie di un sensore nell'intervallo [da, a) alla risoluzione indicata.
+     * Per gli aggregati il punto ha come istante l'inizio del bucket e come valore la media.
+     */
+    @Timed(value = "collina.storico.serie", histogram = true)
+    public SerieTemporaleDTO serie(Long sensoreId, LocalDateTime da, LocalDateTime a, Risoluzione risoluzione) {
+        if (!da.isBefore(a)) {
+            throw new IllegalArgumentException("Intervallo non valido: 'da' deve precedere 'a'");
+        }
+        if (risoluzione == Risoluzione.GREZZA) {
+            return serieGrezza(sensoreId, da, a);
+        }
+
+        Granularita granularita = risoluzione == Risoluzione.ORARIA ? Granularita.ORA : Granularita.GIORNO;
+        List<AggregatoRilevazione> aggregati = aggregati(sensoreId, da, a, granularita);
+        long[] t = new long[aggregati.size()];
+        double[] v = new double[aggregati.size()];
+        for (int i = 0; i < aggregati.size(); i++) {
+            AggregatoRilevazione agg = aggregati.get(i);
+            t[i] = FinestreSensoriServizio.aEpochMillis(agg.getInizio());
+            v[i] = agg.getMedia();
+        }
+        return new SerieTemporaleDTO(t, v);
+    }
+
+    /**
+     * Recupera gli aggregati di un sensore con inizio in [da, a), in ordine cronologico.
+     * I bucket a partire da due intervalli del job incrementale fa sono calcolati dalle righe grezze
+     * e non salvati: l'ora (o il giorno) corrente e quelle non ancora elaborate sono comunque presenti.
+     */
+    public List<AggregatoRilevazione> aggregati(Long sensoreId, LocalDateTime da, LocalDateTime a,
+                                                Granularita granularita) {
+        ChronoUnit unita = granularita == Granularita.ORA ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+        LocalDateTime recenti = LocalDateTime.now().minus(ritardoAggregati).truncatedTo(unita);
+
+        List<AggregatoRilevazione> aggregati = new ArrayList<>();
+        if (da.isBefore(recenti)) {
+            LocalDateTime fineSalvati = a.isBefore(recenti) ? a : recenti;
+            aggregati.addAll(aggregatoRepo.findIntervallo(sensoreId, granularita, da, fineSalvati));
+        }
+        LocalDateTime inizioGrezze = da.isAfter(recenti) ? da : recenti;
+        if (inizioGrezze.isBefore(a)) {
+            aggregati.addAll(AggregazioneServizio.aggregaAlVolo(sensoreId, granularita,
+                    rilevazioneRepo.findPuntiValidi(sensoreId, inizioGrezze, a)));
+        }
+        return aggregati;
+    }
+
+    // Unisce i blocchi compressi dei giorni sigillati con le righe grezze successive
+    private SerieTemporaleDTO serieGrezza(Long sensoreId, LocalDateTime da, LocalDateTime a) {
+        CollettoreSerie collettore = new CollettoreSerie(256);
+        LocalDateTime limite = archivio.limiteSigillato(sensoreId);
+
+        LocalDateTime inizioGrezze = da;
+        if (limite != null && da.isBefore(limite)) {
+            archivio.leggi(sensoreId, da, a.isBefore(limite) ? a : limite, collettore);
+            inizioGrezze = limite;
+        }
+
+        if (inizioGrezze.isBefore(a)) {
+            for (PuntoSerieDTO punto : rilevazioneRepo.findPuntiValidi(sensoreId, inizioGrezze, a)) {
+                if (punto.valore() != null) {
+                    collettore.accetta(FinestreSensoriServizio.aEpochMillis(punto.timestamp()), punto.valore());
+                }
+            }
+        }
+        return collettore.serie();
+    }
+}
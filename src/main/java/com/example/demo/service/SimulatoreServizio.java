@@ -1,19 +1,19 @@
 package com.example.demo.service;
 
+import com.example.demo.cache.AnagraficaServizio;
 import com.example.demo.entity.Campo;
-import com.example.demo.entity.Rilevazione;
-import com.example.demo.entity.Sensore;
-import com.example.demo.enums.QualitaDato;
+import com.example.demo.entity.MovimentoEconomico;
 import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoMovimento;
 import com.example.demo.enums.TipoSensore;
-import com.example.demo.repository.CampoRepository;
-import com.example.demo.repository.RilevazioneRepository;
-import com.example.demo.repository.SensoreRepository;
-import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -23,22 +23,37 @@ import java.util.Random;
  * generando flussi di dati sintetici realistici per validare la piattaforma di monitoraggio.
  *
  * Integra la generazione di telemetria ambientale (sensori) con la simulazione
- * dei parametri economici e produttivi (campi).
+ * dei parametri economici e produttivi (campi). Le letture dei sensori sono pianificate
+ * da {@link CampionamentoSensoriServizio}, ciascuna alla frequenza del proprio sensore;
+ * questo servizio ne fornisce i valori e aggiorna l'economia dei campi a ogni ciclo.
  */
 @Service
 public class SimulatoreServizio {
 
-    private final SensoreRepository sensoreRepo;
-    private final RilevazioneRepository rilevazioneRepo;
-    private final CampoRepository campoRepo;
+    // Periodo del ciclo di simulazione: 15 minuti
+    private static final long PERIODO_MS = 900000;
+
+    // Prezzo di mercato ipotetico del raccolto (€/Kg)
+    private static final double PREZZO_KG = 3.50;
+
+    private final AnagraficaServizio anagrafica;
+    private final RegistroEconomicoServizio registroEconomico;
 
     // Generatore stocastico per introdurre varianza realistica nei dati simulati
     private final Random random = new Random();
 
-    public SimulatoreServizio(SensoreRepository sensoreRepo, RilevazioneRepository rilevazioneRepo, CampoRepository campoRepo) {
-        this.sensoreRepo = sensoreRepo;
-        this.rilevazioneRepo = rilevazioneRepo;
-        this.campoRepo = campoRepo;
+    // Istante (epoch ms) in cui è atteso il prossimo ciclo; 0 finché il primo non è partito
+    private volatile long prossimoCicloPrevisto;
+
+    public SimulatoreServizio(AnagraficaServizio anagrafica, RegistroEconomicoServizio registroEconomico,
+                              MeterRegistry metriche) {
+        this.anagrafica = anagrafica;
+        this.registroEconomico = registroEconomico;
+
+        Gauge.builder("collina.simulatore.ritardo", this, SimulatoreServizio::ritardoSecondi)
+                .description("Secondi di ritardo del ciclo di simulazione rispetto alla pianificazione")
+                .baseUnit("seconds")
+                .register(metriche);
     }
 
     /**
@@ -46,94 +61,79 @@ public class SimulatoreServizio {
      * L'annotazione @Scheduled configura l'esecuzione ciclica del metodo ogni 15 minuti (900000 ms),
      * frequenza standard per il campionamento agronomico.
      *
-     * L'annotazione @Transactional garantisce l'atomicità: l'aggiornamento dei sensori
-     * e dei parametri economici avviene in un'unica transazione database.
+     * I movimenti economici di tutti i campi vengono registrati dal registro in un'unica transazione
+     * database, aperta dal registro stesso dopo aver creato le righe mancanti.
+     * La durata di ogni ciclo è misurata dal timer collina.simulatore.ciclo.
      */
-    @Scheduled(fixedRate = 900000)
-    @Transactional
-    public void generaNuoveRilevazioni() {
-        // 1. Fase Telemetria: Generazione dati ambientali
-        simulaSensoriAmbientali();
+    @Scheduled(fixedRate = PERIODO_MS)
+    @Timed(value = "collina.simulatore.ciclo", description = "Durata di un ciclo di simulazione", histogram = true)
+    public void simulaCiclo() {
+        long adesso = System.currentTimeMillis();
+        prossimoCicloPrevisto = (prossimoCicloPrevisto == 0 ? adesso : prossimoCicloPrevisto) + PERIODO_MS;
 
-        // 2. Fase Economica: Aggiornamento produzione e bilancio
+        // Fase Economica: Aggiornamento produzione e bilancio
         simulaEconomiaCampi();
     }
 
-    /**
-     * Genera e persiste una nuova rilevazione per ogni sensore attivo.
-     * I valori sono generati algoritmicamente per simulare condizioni reali.
-     */
-    private void simulaSensoriAmbientali() {
-        List<Sensore> sensoriAttivi = sensoreRepo.findAll().stream()
-                .filter(Sensore::getAttivo)
-                .toList();
-
-        LocalDateTime now = LocalDateTime.now();
-
-        for (Sensore sensore : sensoriAttivi) {
-            double valoreSimulato = generaValoreSimulato(sensore.getTipo());
-
-            Rilevazione ril = new Rilevazione();
-            ril.setSensore(sensore);
-            ril.setTimestamp(now);
-            ril.setValore(valoreSimulato);
-            ril.setUnita(getUnita(sensore.getTipo()));
-            ril.setQualita(QualitaDato.VALIDO);
-
-            rilevazioneRepo.save(ril);
-        }
-    }
-
     /**
      * Simula l'evoluzione temporale dei KPI economici e produttivi dei campi.
      * Implementa logiche differenziate in base allo stato operativo (ATTIVO vs RIPOSO).
      *
-     * Nota: Include controlli di null-safety (Safe Unboxing) per prevenire errori a runtime
-     * su dati storici parzialmente inizializzati.
+     * Ogni variazione è aggiunta come movimento al registro economico: i totali dei campi
+     * vengono aggiornati dal registro con incrementi atomici, senza modificare la riga di Campo.
      */
     private void simulaEconomiaCampi() {
-        List<Campo> campi = campoRepo.findAll();
+        List<Campo> campi = anagrafica.campi();
+        LocalDateTime now = LocalDateTime.now();
+        List<MovimentoEconomico> movimenti = new ArrayList<>(campi.size() * 2);
 
         for (Campo campo : campi) {
-            // Estrazione sicura dei valori correnti (Gestione Null Pointer Exception)
-            double produzioneAttuale = campo.getProduzioneKg() != null ? campo.getProduzioneKg() : 0.0;
-            double costiAttuali = campo.getCostiAccumulati() != null ? campo.getCostiAccumulati() : 0.0;
-
             if (campo.getStato() == StatoCampo.ATTIVO) {
                 // Logica CAMPO ATTIVO: Incremento Produzione e Costi Operativi
 
                 // 1. Simulazione crescita produttiva (0.5kg - 2.0kg per ciclo)
                 double incrementoProduzione = 0.5 + (random.nextDouble() * 1.5);
-                campo.setProduzioneKg(produzioneAttuale + incrementoProduzione);
 
-                // 2. Simulazione costi operativi variabili (Acqua, Fertilizzanti, Energia)
-                double costiOperativi = 2.0 + (random.nextDouble() * 3.0);
-                campo.setCostiAccumulati(costiAttuali + costiOperativi);
+                // 2. Calcolo Ricavi Stimati (Prezzo mercato ipotetico: 3.50€/Kg)
+                movimenti.add(RegistroEconomicoServizio.movimento(campo.getId(), TipoMovimento.PRODUZIONE, now,
+                        incrementoProduzione, 0.0, incrementoProduzione * PREZZO_KG, "Raccolto simulato"));
 
-                // 3. Calcolo Ricavi Stimati (Prezzo mercato ipotetico: 3.50€/Kg)
-                campo.setRicaviStimati(campo.getProduzioneKg() * 3.50);
+                // 3. Simulazione costi operativi variabili (Acqua, Fertilizzanti, Energia)
+                double costiOperativi = 2.0 + (random.nextDouble() * 3.0);
+                movimenti.add(RegistroEconomicoServizio.movimento(campo.getId(), TipoMovimento.COSTO_OPERATIVO, now,
+                        0.0, costiOperativi, 0.0, "Acqua, fertilizzanti, energia"));
 
             } else {
                 // Logica CAMPO A RIPOSO: Solo Costi fissi di manutenzione
-                double costiManutenzione = 0.5 + (random.nextDouble() * 1.0);
-                campo.setCostiAccumulati(costiAttuali + costiManutenzione);
                 // La produzione e i ricavi rimangono invariati (statici)
+                double costiManutenzione = 0.5 + (random.nextDouble() * 1.0);
+                movimenti.add(RegistroEconomicoServizio.movimento(campo.getId(), TipoMovimento.MANUTENZIONE, now,
+                        0.0, costiManutenzione, 0.0, "Manutenzione campo a riposo"));
             }
-
-            // Persistenza dello stato aggiornato
-            campoRepo.save(campo);
         }
+
+        registroEconomico.registra(movimenti);
+    }
+
+    /**
+     * Ritardo dello scheduler: quanto il ciclo atteso è in ritardo rispetto all'ora corrente.
+     * Vale 0 finché i cicli partono in orario e cresce se lo scheduler è bloccato o saturo.
+     */
+    private double ritardoSecondi() {
+        long previsto = prossimoCicloPrevisto;
+        return previsto == 0 ? 0.0 : Math.max(0, System.currentTimeMillis() - previsto) / 1000.0;
     }
 
     /**
      * Algoritmo di simulazione stocastica basato su Distribuzione Normale (Gaussiana).
      * Genera valori che oscillano realisticamente attorno a una media stagionale,
      * simulando la variabilità naturale dei fenomeni microclimatici.
+     * Visibilità di package: lo usa {@link CampionamentoSensoriServizio} ed è misurato nei benchmark (profilo Maven "benchmark").
      *
      * @param tipo Il tipo di sensore per determinare media e deviazione standard.
      * @return Il valore simulato normalizzato a due cifre decimali.
      */
-    private double generaValoreSimulato(TipoSensore tipo) {
+    double generaValoreSimulato(TipoSensore tipo) {
         double media;
         double deviazioneStandard;
 
@@ -158,17 +158,4 @@ public class SimulatoreServizio {
         // Arrotondamento matematico
         return Math.round(valore * 100.0) / 100.0;
     }
-
-    /**
-     * Risolve l'unità di misura standard in base alla tipologia del sensore.
-     * @param tipo Tipo di sensore.
-     * @return Stringa rappresentante l'unità (es. "°C", "%").
-     */
-    private String getUnita(TipoSensore tipo) {
-        return switch (tipo) {
-            case TEMP_AIR, TEMP_SOIL -> "°C";
-            case HUMID_AIR, SOIL_MOISTURE -> "%";
-            case NDVI_SAT -> "Index";
-        };
-    }
 }
\ No newline at end of file
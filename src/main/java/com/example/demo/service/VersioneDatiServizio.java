@@ -0,0 +1,64 @@
+package com.example.demo.service;
+
+import com.example.demo.evento.EconomiaAggiornataEvento;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Contatore di versione dei dati visualizzati dalla dashboard.
+ * <p>
+ * Viene incrementato a ogni scrittura confermata di nuove rilevazioni o di KPI economici.
+ * I controller lo usano per servire ETag forti e l'header Last-Modified:
+ * finché la versione non cambia, le richieste condizionali ricevono 304 Not Modified
+ * senza interrogare i servizi.
+ */
+@Service
+public class VersioneDatiServizio {
+
+    /**
+     * Istantanea immutabile della versione corrente.
+     *
+     * @param numero Numero di versione, monotono crescente.
+     * @param ultimaModifica Istante dell'ultima modifica in epoch millis.
+     */
+    public record Versione(long numero, long ultimaModifica) {
+
+        /**
+         * @param risorsa Discriminante della risorsa (es. ID del campo), o null per la versione globale.
+         * @return Il valore dell'ETag forte (tra virgolette, come da RFC 9110).
+         */
+        public String etag(Object risorsa) {
+            return risorsa == null ? "\"" + numero + "\"" : "\"" + numero + "-" + risorsa + "\"";
+        }
+    }
+
+    // La versione parte dall'istante di avvio: dopo un riavvio gli ETag precedenti non sono più validi
+    private final AtomicReference<Versione> corrente;
+
+    public VersioneDatiServizio() {
+        long avvio = System.currentTimeMillis();
+        this.corrente = new AtomicReference<>(new Versione(avvio, avvio));
+    }
+
+    public Versione corrente() {
+        return corrente.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void suNuoveRilevazioni(NuoveRilevazioniEvento evento) {
+        incrementa();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void suEconomiaAggiornata(EconomiaAggiornataEvento evento) {
+        incrementa();
+    }
+
+    private void incrementa() {
+        long adesso = System.currentTimeMillis();
+        corrente.updateAndGet(v -> new Versione(v.numero() + 1, Math.max(adesso, v.ultimaModifica())));
+    }
+}
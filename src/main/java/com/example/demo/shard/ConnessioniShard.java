@@ -0,0 +1,74 @@
+package com.example.demo.shard;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Collegamento di Hibernate agli shard: ogni sessione viene aperta sullo shard del contesto
+ * corrente ("tenant") e ottiene le connessioni dal pool di quello shard.
+ * <p>
+ * Oltre a fissare la connessione, il tenant separa lo stato dei generatori di ID: i blocchi della
+ * sequenza "pooled" di {@code Rilevazione} sono tenuti per shard, quindi ogni shard usa solo gli ID
+ * della propria sequenza e non si generano chiavi duplicate.
+ * Le operazioni senza tenant (creazione dello schema, metadati) seguono il contesto del thread.
+ */
+final class ConnessioniShard implements MultiTenantConnectionProvider<String>, CurrentTenantIdentifierResolver<String> {
+
+    private final DataSourceShard dataSource;
+
+    ConnessioniShard(DataSourceShard dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public String resolveCurrentTenantIdentifier() {
+        Integer shard = ContestoShard.corrente();
+        return String.valueOf(shard != null ? shard : 0);
+    }
+
+    @Override
+    public boolean validateExistingCurrentSessions() {
+        return false;
+    }
+
+    @Override
+    public Connection getAnyConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    @Override
+    public void releaseAnyConnection(Connection connessione) throws SQLException {
+        connessione.close();
+    }
+
+    @Override
+    public Connection getConnection(String shard) throws SQLException {
+        return dataSource.sorgente(Integer.parseInt(shard)).getConnection();
+    }
+
+    @Override
+    public void releaseConnection(String shard, Connection connessione) throws SQLException {
+        connessione.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class<?> tipo) {
+        return tipo.isInstance(this);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> tipo) {
+        if (isUnwrappableAs(tipo)) {
+            return tipo.cast(this);
+        }
+        throw new IllegalArgumentException("Tipo non supportato: " + tipo);
+    }
+}
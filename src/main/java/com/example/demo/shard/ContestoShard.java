@@ -0,0 +1,61 @@
+package com.example.demo.shard;
+
+import java.util.function.Supplier;
+
+/**
+ * Shard delle rilevazioni su cui opera il thread corrente.
+ * <p>
+ * Il contesto viene letto da {@link DataSourceShard} quando si apre una connessione e da Hibernate
+ * quando si apre una sessione: va quindi impostato prima di iniziare la transazione, perché una
+ * transazione già aperta resta legata alla connessione ottenuta al suo inizio.
+ * Senza contesto si usa lo shard predefinito (0), che contiene anche anagrafica ed economia.
+ */
+public final class ContestoShard {
+
+    private static final ThreadLocal<Integer> CORRENTE = new ThreadLocal<>();
+
+    private ContestoShard() {
+    }
+
+    /**
+     * @return Lo shard impostato sul thread corrente, oppure null se non è impostato.
+     */
+    public static Integer corrente() {
+        return CORRENTE.get();
+    }
+
+    /**
+     * Esegue l'operazione sullo shard indicato, ripristinando poi il contesto precedente.
+     */
+    public static <T> T su(int shard, Supplier<T> operazione) {
+        Integer precedente = imposta(shard);
+        try {
+            return operazione.get();
+        } finally {
+            ripristina(precedente);
+        }
+    }
+
+    public static void su(int shard, Runnable operazione) {
+        Integer precedente = imposta(shard);
+        try {
+            operazione.run();
+        } finally {
+            ripristina(precedente);
+        }
+    }
+
+    static Integer imposta(int shard) {
+        Integer precedente = CORRENTE.get();
+        CORRENTE.set(shard);
+        return precedente;
+    }
+
+    static void ripristina(Integer precedente) {
+        if (precedente == null) {
+            CORRENTE.remove();
+        } else {
+            CORRENTE.set(precedente);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.demo.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource di instradamento: ogni richiesta di connessione viene servita dal pool dello shard
+ * indicato da {@link ContestoShard}, oppure dallo shard 0 se il contesto non è impostato.
+ * Repository, JdbcTemplate e gestore delle transazioni lo usano come un DataSource qualsiasi.
+ */
+public class DataSourceShard extends AbstractRoutingDataSource {
+
+    private final List<DataSource> sorgenti;
+
+    DataSourceShard(List<DataSource> sorgenti) {
+        this.sorgenti = List.copyOf(sorgenti);
+        Map<Object, Object> perShard = new HashMap<>();
+        for (int i = 0; i < sorgenti.size(); i++) {
+            perShard.put(i, sorgenti.get(i));
+        }
+        setTargetDataSources(perShard);
+        setDefaultTargetDataSource(sorgenti.get(0));
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ContestoShard.corrente();
+    }
+
+    /**
+     * @return Il pool dello shard indicato, indipendentemente dal contesto corrente.
+     */
+    DataSource sorgente(int shard) {
+        return sorgenti.get(shard);
+    }
+
+    /**
+     * Chiude i pool di connessioni degli shard (invocato alla chiusura del contesto Spring).
+     */
+    public void close() {
+        for (DataSource sorgente : sorgenti) {
+            if (sorgente instanceof HikariDataSource pool) {
+                pool.close();
+            }
+        }
+    }
+}
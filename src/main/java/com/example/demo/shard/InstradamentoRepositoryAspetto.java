@@ -0,0 +1,62 @@
+package com.example.demo.shard;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Instradamento trasparente delle query per sensore ({@link PerSensore}) sullo shard del suo campo.
+ * <p>
+ * Se il chiamante ha già impostato un contesto (job per shard, scrittura partizionata) la query
+ * viene eseguita lì. Altrimenti la chiamata è eseguita nel contesto dello shard del sensore; se è in
+ * corso una transazione, che resta legata allo shard principale (ad esempio un listener dopo il commit
+ * dell'ingestione), la transazione viene sospesa per la durata della query.
+ */
+@Aspect
+@Component
+public class InstradamentoRepositoryAspetto {
+
+    private final InstradamentoShard instradamento;
+    private final TransactionTemplate fuoriTransazione;
+
+    public InstradamentoRepositoryAspetto(InstradamentoShard instradamento, PlatformTransactionManager gestoreTransazioni) {
+        this.instradamento = instradamento;
+        this.fuoriTransazione = new TransactionTemplate(gestoreTransazioni);
+        this.fuoriTransazione.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+    }
+
+    @Around("@annotation(com.example.demo.shard.PerSensore) && args(sensoreId, ..)")
+    public Object instrada(ProceedingJoinPoint chiamata, Long sensoreId) throws Throwable {
+        if (!instradamento.abilitato() || ContestoShard.corrente() != null) {
+            return chiamata.proceed();
+        }
+
+        int shard = instradamento.shardDelSensore(sensoreId);
+        boolean inTransazione = TransactionSynchronizationManager.isActualTransactionActive();
+        if (shard == 0 && inTransazione) {
+            return chiamata.proceed();
+        }
+
+        Integer precedente = ContestoShard.imposta(shard);
+        try {
+            return inTransazione ? fuoriTransazione.execute(stato -> prosegui(chiamata)) : chiamata.proceed();
+        } finally {
+            ContestoShard.ripristina(precedente);
+        }
+    }
+
+    private static Object prosegui(ProceedingJoinPoint chiamata) {
+        try {
+            return chiamata.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
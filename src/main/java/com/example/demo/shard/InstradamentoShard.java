@@ -0,0 +1,100 @@
+package com.example.demo.shard;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.entity.Rilevazione;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Assegnazione dei campi agli shard delle rilevazioni.
+ * <p>
+ * Con {@code collina.shard.abilitato=true} lo shard 0 è il DB principale ({@code spring.datasource.*})
+ * e gli shard successivi sono quelli elencati in {@code collina.shard.sorgenti}. Un campo va sullo shard
+ * indicato da {@code collina.shard.campi.<campoId>}, oppure su {@code campoId mod numeroShard}:
+ * assegnando lo stesso indice a più campi si ottengono gruppi di campi (ad esempio una tenuta per shard).
+ * Lo shard 0 contiene anche anagrafica, economia, allerte e stato dei job; gli altri shard ospitano
+ * solo rilevazioni, aggregati e blocchi compressi dei propri campi.
+ * <p>
+ * Con lo sharding disattivato esiste un solo shard e ogni metodo risponde 0.
+ */
+@Component
+public class InstradamentoShard {
+
+    private final AnagraficaServizio anagrafica;
+    private final boolean abilitato;
+    private final Map<Long, Integer> campi;
+    private final int numeroShard;
+
+    public InstradamentoShard(Environment ambiente, AnagraficaServizio anagrafica) {
+        this.anagrafica = anagrafica;
+        this.abilitato = ambiente.getProperty("collina.shard.abilitato", Boolean.class, false);
+
+        this.numeroShard = abilitato ? 1 + sorgenti(ambiente).size() : 1;
+        this.campi = abilitato
+                ? Binder.get(ambiente).bind("collina.shard.campi", Bindable.mapOf(Long.class, Integer.class)).orElse(Map.of())
+                : Map.of();
+        campi.forEach((campoId, shard) -> {
+            if (shard < 0 || shard >= numeroShard) {
+                throw new IllegalStateException("collina.shard.campi." + campoId + "=" + shard
+                        + ": sono configurati solo " + numeroShard + " shard");
+            }
+        });
+    }
+
+    public boolean abilitato() {
+        return abilitato;
+    }
+
+    /**
+     * @return Il numero di shard, compreso quello principale (1 se lo sharding è disattivato).
+     */
+    public int numeroShard() {
+        return numeroShard;
+    }
+
+    /**
+     * @return Gli shard aggiuntivi configurati, nell'ordine degli indici 1, 2, ...
+     */
+    static List<SorgenteShard> sorgenti(Environment ambiente) {
+        return Binder.get(ambiente).bind("collina.shard.sorgenti", Bindable.listOf(SorgenteShard.class))
+                .orElse(List.of());
+    }
+
+    public int shardDelCampo(Long campoId) {
+        if (!abilitato) {
+            return 0;
+        }
+        Integer configurato = campi.get(campoId);
+        return configurato != null ? configurato : (int) Math.floorMod(campoId, (long) numeroShard);
+    }
+
+    /**
+     * @return Lo shard del campo a cui appartiene il sensore (0 se il sensore non esiste).
+     */
+    public int shardDelSensore(Long sensoreId) {
+        if (!abilitato) {
+            return 0;
+        }
+        return anagrafica.sensore(sensoreId)
+                .map(s -> shardDelCampo(s.getCampo().getId()))
+                .orElse(0);
+    }
+
+    /**
+     * Suddivide le rilevazioni per shard, mantenendo l'ordine originale all'interno di ogni shard.
+     *
+     * @return Le rilevazioni di ogni shard, in ordine di indice.
+     */
+    public Map<Integer, List<Rilevazione>> partiziona(List<Rilevazione> rilevazioni) {
+        Map<Integer, List<Rilevazione>> perShard = new TreeMap<>();
+        for (Rilevazione ril : rilevazioni) {
+            perShard.computeIfAbsent(shardDelCampo(ril.getSensore().getCampo().getId()), k -> new ArrayList<>())
+                    .add(ril);
+        }
+        return perShard;
+    }
+}
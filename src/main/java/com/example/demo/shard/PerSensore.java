@@ -0,0 +1,13 @@
+package com.example.demo.shard;
+
+import java.lang.annotation.*;
+
+/**
+ * Indica un metodo di repository il cui primo parametro è l'ID di un sensore: se chiamato fuori
+ * da un contesto di shard, viene eseguito sullo shard del campo del sensore ({@link InstradamentoRepositoryAspetto}).
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface PerSensore {
+}
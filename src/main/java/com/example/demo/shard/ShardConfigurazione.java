@@ -0,0 +1,122 @@
+package com.example.demo.shard;
+
+import com.example.demo.entity.Rilevazione;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Configurazione dello sharding delle rilevazioni per campo ({@code collina.shard.abilitato=true}).
+ * <p>
+ * Sostituisce il DataSource di Spring Boot con {@link DataSourceShard}, che raccoglie un pool Hikari
+ * per il DB principale e uno per ogni voce di {@code collina.shard.sorgenti}, e collega Hibernate
+ * agli shard tramite {@link ConnessioniShard}. Gli shard condividono lo stesso schema; con
+ * {@code collina.shard.crea-schema=true} le tabelle vengono create all'avvio sugli shard aggiuntivi
+ * (utile con H2 in memoria; in produzione lo schema degli shard MySQL va gestito come quello principale).
+ * Sugli shard aggiuntivi la tabella dei sensori resta vuota, quindi la chiave esterna
+ * {@link Rilevazione#FK_SENSORE} va eliminata: la creazione automatica lo fa dopo aver esportato lo schema.
+ * <p>
+ * Richiede {@code spring.jpa.open-in-view=false}: un EntityManager aperto per tutta la richiesta web
+ * resterebbe legato allo shard 0 e le letture instradate altrove non avrebbero effetto.
+ * <p>
+ * Con l'elaborazione AOT (profilo Maven "avvio-rapido") le condizioni sono valutate in fase di build:
+ * la configurazione è inclusa solo se {@code collina.shard.abilitato=true} era impostata durante
+ * {@code process-aot}, e la stessa proprietà all'avvio non ha più effetto.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "collina.shard.abilitato", havingValue = "true")
+public class ShardConfigurazione {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardConfigurazione.class);
+
+    @Bean
+    @Primary
+    DataSourceShard dataSource(Environment ambiente,
+                               @Value("${collina.shard.dimensione-pool:10}") int dimensionePool) {
+        if (ambiente.getProperty("spring.jpa.open-in-view", Boolean.class, true)) {
+            throw new IllegalStateException("Con collina.shard.abilitato=true impostare spring.jpa.open-in-view=false");
+        }
+
+        SorgenteShard principale = Binder.get(ambiente).bind("spring.datasource", SorgenteShard.class)
+                .orElse(new SorgenteShard(null, null, null));
+        if (principale.url() == null) {
+            // Come Spring Boot senza URL configurato: H2 in memoria
+            principale = new SorgenteShard("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                    principale.username() != null ? principale.username() : "sa", principale.password());
+        }
+
+        List<SorgenteShard> coordinate = new ArrayList<>();
+        coordinate.add(principale);
+        coordinate.addAll(InstradamentoShard.sorgenti(ambiente));
+
+        List<DataSource> sorgenti = new ArrayList<>(coordinate.size());
+        for (int i = 0; i < coordinate.size(); i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("collina-shard-" + i);
+            pool.setJdbcUrl(coordinate.get(i).url());
+            pool.setUsername(coordinate.get(i).username());
+            pool.setPassword(coordinate.get(i).password() != null ? coordinate.get(i).password() : "");
+            pool.setMaximumPoolSize(dimensionePool);
+            sorgenti.add(pool);
+        }
+        log.info("Rilevazioni distribuite su {} shard", sorgenti.size());
+        return new DataSourceShard(sorgenti);
+    }
+
+    /**
+     * Registra gli shard nelle proprietà di Hibernate prima che venga costruito l'EntityManagerFactory.
+     */
+    @Bean
+    static BeanPostProcessor hibernateShard(ObjectProvider<DataSourceShard> dataSource) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String nome) {
+                if (bean instanceof LocalContainerEntityManagerFactoryBean fabbrica) {
+                    ConnessioniShard connessioni = new ConnessioniShard(dataSource.getObject());
+                    fabbrica.getJpaPropertyMap().put(AvailableSettings.MULTI_TENANT_CONNECTION_PROVIDER, connessioni);
+                    fabbrica.getJpaPropertyMap().put(AvailableSettings.MULTI_TENANT_IDENTIFIER_RESOLVER, connessioni);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Crea le tabelle sugli shard aggiuntivi, dopo la creazione dei bean e prima dell'avvio dei job pianificati,
+     * senza la chiave esterna verso i sensori (presenti solo sullo shard 0).
+     */
+    @Bean
+    @ConditionalOnProperty(name = "collina.shard.crea-schema", havingValue = "true")
+    SmartInitializingSingleton creazioneSchemaShard(EntityManagerFactory entityManagerFactory,
+                                                    InstradamentoShard instradamento, DataSourceShard dataSource) {
+        return () -> {
+            SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+            for (int shard = 1; shard < instradamento.numeroShard(); shard++) {
+                ContestoShard.su(shard, () -> sessionFactory.getSchemaManager().exportMappedObjects(true));
+                new JdbcTemplate(dataSource.sorgente(shard)).execute(
+                        "alter table rilevazione drop constraint " + Rilevazione.FK_SENSORE);
+                log.info("Schema creato sullo shard {}", shard);
+            }
+        };
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.demo.shard;
+
+/**
+ * Coordinate JDBC di uno shard ({@code collina.shard.sorgenti[i].*}).
+ */
+public record SorgenteShard(String url, String username, String password) {}
@@ -0,0 +1,117 @@
+package com.example.demo.spaziale;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.dto.PosizioneSensoreDTO;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.TipoSensore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Ricerca spaziale dei sensori attivi per posizione: entro un raggio da un punto o dentro un poligono.
+ * <p>
+ * L'indice ({@link IndiceSpaziale}) è costruito dall'anagrafica in cache e ricostruito per intero,
+ * alla prima ricerca successiva, quando cambia {@link AnagraficaServizio#versioneSensori()}.
+ * I sensori senza coordinate non sono indicizzati.
+ * <p>
+ * Metriche: sensori presenti nell'indice (collina.mappe.sensori-indicizzati).
+ */
+@Service
+public class IndiceSensoriServizio {
+
+    private final AnagraficaServizio anagrafica;
+    private final double latoCellaMetri;
+
+    private record Istantanea(long versione, IndiceSpaziale indice) {}
+
+    private volatile Istantanea istantanea;
+
+    public IndiceSensoriServizio(AnagraficaServizio anagrafica, MeterRegistry metriche,
+                                 @Value("${collina.mappe.cella-indice-metri:100}") double latoCellaMetri) {
+        if (latoCellaMetri <= 0) {
+            throw new IllegalStateException("collina.mappe.cella-indice-metri deve essere positivo");
+        }
+        this.anagrafica = anagrafica;
+        this.latoCellaMetri = latoCellaMetri;
+        Gauge.builder("collina.mappe.sensori-indicizzati", this,
+                        s -> s.istantanea != null ? s.istantanea.indice().dimensione() : 0)
+                .register(metriche);
+    }
+
+    /**
+     * @param tipo La tipologia di sensore, oppure null per tutte.
+     * @return I sensori entro {@code raggioMetri} dal punto, dal più vicino al più lontano.
+     */
+    public List<PosizioneSensoreDTO> entroRaggio(double lat, double lon, double raggioMetri, TipoSensore tipo) {
+        IndiceSpaziale indice = indice();
+        List<PosizioneSensoreDTO> trovati = new ArrayList<>();
+        for (int i : indice.entroRaggio(lat, lon, raggioMetri)) {
+            if (tipo == null || indice.sensore(i).getTipo() == tipo) {
+                trovati.add(posizione(indice, i,
+                        IndiceSpaziale.distanzaMetri(lat, lon, indice.latitudine(i), indice.longitudine(i))));
+            }
+        }
+        trovati.sort(Comparator.comparingDouble(PosizioneSensoreDTO::distanzaMetri));
+        return trovati;
+    }
+
+    /**
+     * @param lat Le latitudini dei vertici del poligono.
+     * @param lon Le longitudini dei vertici, nello stesso ordine.
+     * @param tipo La tipologia di sensore, oppure null per tutte.
+     * @return I sensori interni al poligono, in ordine di ID.
+     */
+    public List<PosizioneSensoreDTO> entroPoligono(double[] lat, double[] lon, TipoSensore tipo) {
+        IndiceSpaziale indice = indice();
+        List<PosizioneSensoreDTO> trovati = new ArrayList<>();
+        for (int i : indice.entroPoligono(lat, lon)) {
+            if (tipo == null || indice.sensore(i).getTipo() == tipo) {
+                trovati.add(posizione(indice, i, null));
+            }
+        }
+        trovati.sort(Comparator.comparing(PosizioneSensoreDTO::sensoreId));
+        return trovati;
+    }
+
+    /**
+     * @return L'indice aggiornato all'anagrafica corrente.
+     */
+    IndiceSpaziale indice() {
+        long versione = anagrafica.versioneSensori();
+        Istantanea corrente = istantanea;
+        if (corrente != null && corrente.versione() == versione) {
+            return corrente.indice();
+        }
+        synchronized (this) {
+            if (istantanea == null || istantanea.versione() != versione) {
+                istantanea = new Istantanea(versione, new IndiceSpaziale(sensoriConPosizione(), latoCellaMetri));
+            }
+            return istantanea.indice();
+        }
+    }
+
+    private List<Sensore> sensoriConPosizione() {
+        List<Sensore> sensori = new ArrayList<>();
+        for (Campo campo : anagrafica.campi()) {
+            for (Sensore sensore : anagrafica.sensoriAttivi(campo.getId())) {
+                if (sensore.getLatitudine() != null && sensore.getLongitudine() != null) {
+                    sensori.add(sensore);
+                }
+            }
+        }
+        return sensori;
+    }
+
+    private static PosizioneSensoreDTO posizione(IndiceSpaziale indice, int i, Double distanza) {
+        Sensore sensore = indice.sensore(i);
+        return new PosizioneSensoreDTO(sensore.getId(), sensore.getCodice(), sensore.getCampo().getId(),
+                sensore.getTipo(), indice.latitudine(i), indice.longitudine(i), sensore.getProfondita(), distanza);
+    }
+}
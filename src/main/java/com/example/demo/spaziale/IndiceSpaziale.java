@@ -0,0 +1,217 @@
+package com.example.demo.spaziale;
+
+import com.example.demo.entity.Sensore;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Indice spaziale a griglia uniforme (Grid Index) sulle coordinate dei sensori.
+ * <p>
+ * Lo spazio latitudine/longitudine è diviso in celle quadrate di lato fisso in gradi; ogni cella
+ * non vuota conserva gli indici dei propri sensori in un array di int. Una ricerca visita solo le
+ * celle che intersecano il rettangolo di interesse e verifica la condizione esatta (distanza o
+ * appartenenza al poligono) sui soli sensori trovati. Con sensori di un'azienda agricola, distribuiti
+ * in modo abbastanza uniforme, la griglia è più semplice di un R-tree e altrettanto efficace.
+ * Per ogni campo sono conservati anche gli indici dei suoi sensori, così le mappe di un campo
+ * non scorrono l'intero indice.
+ * <p>
+ * Le coordinate sono in array primitivi paralleli; l'indice è immutabile e si ricostruisce per intero
+ * quando cambia l'anagrafica, quindi può essere letto da più thread senza sincronizzazione.
+ */
+final class IndiceSpaziale {
+
+    // Raggio terrestre medio (m) e metri per grado di latitudine
+    static final double RAGGIO_TERRA = 6_371_008.8;
+    static final double METRI_PER_GRADO = Math.PI * RAGGIO_TERRA / 180.0;
+
+    private static final int[] NESSUNO = new int[0];
+
+    private final Sensore[] sensori;
+    private final double[] latitudini;
+    private final double[] longitudini;
+    private final double latoCella;
+    private final Map<Long, int[]> celle;
+    // Indici dei sensori di ogni campo, in ordine crescente
+    private final Map<Long, int[]> perCampo;
+
+    /**
+     * @param sensori I sensori da indicizzare, tutti con latitudine e longitudine valorizzate.
+     * @param latoCellaMetri Lato di una cella in metri (convertito in gradi di latitudine).
+     */
+    IndiceSpaziale(List<Sensore> sensori, double latoCellaMetri) {
+        int n = sensori.size();
+        this.sensori = sensori.toArray(new Sensore[0]);
+        this.latitudini = new double[n];
+        this.longitudini = new double[n];
+        this.latoCella = latoCellaMetri / METRI_PER_GRADO;
+
+        // Due passate: conteggio per cella, poi riempimento degli array
+        Map<Long, int[]> conteggi = new HashMap<>();
+        long[] chiavi = new long[n];
+        for (int i = 0; i < n; i++) {
+            latitudini[i] = sensori.get(i).getLatitudine();
+            longitudini[i] = sensori.get(i).getLongitudine();
+            chiavi[i] = chiave(riga(latitudini[i]), colonna(longitudini[i]));
+            conteggi.computeIfAbsent(chiavi[i], k -> new int[1])[0]++;
+        }
+        this.celle = new HashMap<>(conteggi.size() * 2);
+        Map<Long, int[]> riempimento = new HashMap<>(conteggi.size() * 2);
+        conteggi.forEach((k, c) -> {
+            celle.put(k, new int[c[0]]);
+            riempimento.put(k, new int[1]);
+        });
+        for (int i = 0; i < n; i++) {
+            celle.get(chiavi[i])[riempimento.get(chiavi[i])[0]++] = i;
+        }
+
+        Map<Long, Risultati> sensoriPerCampo = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            sensoriPerCampo.computeIfAbsent(this.sensori[i].getCampo().getId(), k -> new Risultati()).aggiungi(i);
+        }
+        this.perCampo = new HashMap<>(sensoriPerCampo.size() * 2);
+        sensoriPerCampo.forEach((campoId, indici) -> perCampo.put(campoId, indici.ordinati()));
+    }
+
+    int dimensione() {
+        return sensori.length;
+    }
+
+    Sensore sensore(int i) {
+        return sensori[i];
+    }
+
+    double latitudine(int i) {
+        return latitudini[i];
+    }
+
+    double longitudine(int i) {
+        return longitudini[i];
+    }
+
+    /**
+     * @return Gli indici dei sensori del campo, in ordine crescente (vuoto se il campo non ne ha).
+     */
+    int[] delCampo(Long campoId) {
+        return perCampo.getOrDefault(campoId, NESSUNO);
+    }
+
+    /**
+     * @return Gli indici dei sensori entro {@code raggioMetri} dal punto, in ordine di indice.
+     */
+    int[] entroRaggio(double lat, double lon, double raggioMetri) {
+        double dLat = raggioMetri / METRI_PER_GRADO;
+        double dLon = dLat / Math.max(Math.cos(Math.toRadians(lat)), 1e-6);
+        Risultati trovati = new Risultati();
+        visita(lat - dLat, lat + dLat, lon - dLon, lon + dLon, i -> {
+            if (distanzaMetri(lat, lon, latitudini[i], longitudini[i]) <= raggioMetri) {
+                trovati.aggiungi(i);
+            }
+        });
+        return trovati.ordinati();
+    }
+
+    /**
+     * Sensori interni a un poligono semplice (non intrecciato), con vertici in ordine qualsiasi di percorrenza.
+     *
+     * @return Gli indici dei sensori trovati, in ordine di indice.
+     */
+    int[] entroPoligono(double[] lat, double[] lon) {
+        double latMin = Arrays.stream(lat).min().orElse(0), latMax = Arrays.stream(lat).max().orElse(0);
+        double lonMin = Arrays.stream(lon).min().orElse(0), lonMax = Arrays.stream(lon).max().orElse(0);
+        Risultati trovati = new Risultati();
+        visita(latMin, latMax, lonMin, lonMax, i -> {
+            if (interno(lat, lon, latitudini[i], longitudini[i])) {
+                trovati.aggiungi(i);
+            }
+        });
+        return trovati.ordinati();
+    }
+
+    /**
+     * Distanza ortodromica (formula dell'emisenoverso) in metri.
+     */
+    static double distanzaMetri(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RAGGIO_TERRA * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // Test del raggio (ray casting): conta gli attraversamenti dei lati lungo il parallelo del punto
+    private static boolean interno(double[] lat, double[] lon, double pLat, double pLon) {
+        boolean dentro = false;
+        for (int i = 0, j = lat.length - 1; i < lat.length; j = i++) {
+            if ((lat[i] > pLat) != (lat[j] > pLat)
+                    && pLon < (lon[j] - lon[i]) * (pLat - lat[i]) / (lat[j] - lat[i]) + lon[i]) {
+                dentro = !dentro;
+            }
+        }
+        return dentro;
+    }
+
+    private void visita(double latMin, double latMax, double lonMin, double lonMax, IntConsumer azione) {
+        long rigaMin = riga(latMin), rigaMax = riga(latMax);
+        long colonnaMin = colonna(lonMin), colonnaMax = colonna(lonMax);
+        // Rettangolo più ampio delle celle occupate: conviene scorrere le celle non vuote
+        if ((rigaMax - rigaMin + 1) * (colonnaMax - colonnaMin + 1) > celle.size()) {
+            celle.forEach((k, indici) -> {
+                long r = k >> 32;
+                long c = (int) k.longValue();
+                if (r >= rigaMin && r <= rigaMax && c >= colonnaMin && c <= colonnaMax) {
+                    for (int i : indici) {
+                        azione.accept(i);
+                    }
+                }
+            });
+            return;
+        }
+        for (long r = rigaMin; r <= rigaMax; r++) {
+            for (long c = colonnaMin; c <= colonnaMax; c++) {
+                int[] indici = celle.get(chiave(r, c));
+                if (indici != null) {
+                    for (int i : indici) {
+                        azione.accept(i);
+                    }
+                }
+            }
+        }
+    }
+
+    private long riga(double lat) {
+        return (long) Math.floor(lat / latoCella);
+    }
+
+    private long colonna(double lon) {
+        return (long) Math.floor(lon / latoCella);
+    }
+
+    private static long chiave(long riga, long colonna) {
+        return (riga << 32) | (colonna & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Lista di int a crescita geometrica, per raccogliere gli indici senza boxing.
+     */
+    private static final class Risultati {
+        private int[] indici = new int[16];
+        private int n;
+
+        void aggiungi(int i) {
+            if (n == indici.length) {
+                indici = Arrays.copyOf(indici, n * 2);
+            }
+            indici[n++] = i;
+        }
+
+        int[] ordinati() {
+            int[] risultato = Arrays.copyOf(indici, n);
+            Arrays.sort(risultato);
+            return risultato;
+        }
+    }
+}
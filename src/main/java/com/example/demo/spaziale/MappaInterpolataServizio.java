@@ -0,0 +1,298 @@
+package com.example.demo.spaziale;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.cache.CacheLimitata;
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.MappaInterpolataDTO;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import com.example.demo.exception.RisorsaNonTrovataEccezione;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Mappe interpolate di un campo (Inverse Distance Weighting) per una tipologia di sensore.
+ * <p>
+ * Il valore di ogni cella è la media degli ultimi valori validi dei sensori del campo, pesati con
+ * l'inverso della distanza elevata a {@code collina.mappe.potenza}. Con un raggio di influenza
+ * contribuiscono solo i sensori entro il raggio, trovati per ogni tile con {@link IndiceSensoriServizio};
+ * le celle senza sensori vicini restano indefinite. I valori sono letti dalle finestre in memoria
+ * ({@link FinestreSensoriServizio}), senza query.
+ * <p>
+ * La griglia è suddivisa in tile di {@value #LATO_TILE}x{@value #LATO_TILE} celle, calcolati in parallelo
+ * con uno stream parallelo (pool fork/join comune). Il risultato resta in cache finché non arrivano nuove rilevazioni della stessa
+ * tipologia sul campo o non cambia l'anagrafica dei sensori.
+ * <p>
+ * Metriche: tempo di calcolo (collina.mappe.interpolazione) e mappe in cache (collina.mappe.in-cache).
+ */
+@Service
+public class MappaInterpolataServizio {
+
+    static final int LATO_TILE = 16;
+
+    // Estensione minima della mappa e margine attorno ai sensori (quota dell'estensione)
+    private static final double MIN_ESTENSIONE_METRI = 50.0;
+    private static final double MARGINE = 0.1;
+
+    // Sotto questa distanza la cella assume il valore del sensore
+    private static final double COINCIDENZA_METRI = 0.5;
+
+    private final IndiceSensoriServizio indiceSensori;
+    private final FinestreSensoriServizio finestre;
+    private final AnagraficaServizio anagrafica;
+    private final int maxCelle;
+    private final double potenza;
+
+    private final CacheLimitata<ChiaveMappa, MappaInterpolataDTO> mappe;
+
+    // Versione dei dati per campo e tipologia, incrementata a ogni blocco di nuove rilevazioni
+    private final Map<ChiaveDati, Long> versioniDati = new ConcurrentHashMap<>();
+
+    private record ChiaveDati(Long campoId, TipoSensore tipo) {}
+
+    private record ChiaveMappa(Long campoId, TipoSensore tipo, int celle, Double raggioMetri,
+                               long versioneDati, long versioneSensori) {}
+
+    public MappaInterpolataServizio(IndiceSensoriServizio indiceSensori, FinestreSensoriServizio finestre,
+                                    AnagraficaServizio anagrafica, MeterRegistry metriche,
+                                    @Value("${collina.mappe.max-celle:512}") int maxCelle,
+                                    @Value("${collina.mappe.potenza:2}") double potenza,
+                                    @Value("${collina.mappe.max-in-cache:256}") int maxInCache) {
+        this.indiceSensori = indiceSensori;
+        this.finestre = finestre;
+        this.anagrafica = anagrafica;
+        this.maxCelle = maxCelle;
+        this.potenza = potenza;
+        this.mappe = new CacheLimitata<>(maxInCache);
+        Gauge.builder("collina.mappe.in-cache", mappe, CacheLimitata::dimensione).register(metriche);
+    }
+
+    /**
+     * Mappa interpolata della tipologia di sensore sul campo.
+     *
+     * @param campoId L'identificativo del campo.
+     * @param tipo La tipologia di sensore da interpolare.
+     * @param celle Il numero di celle sul lato più lungo del campo.
+     * @param raggioMetri Il raggio di influenza dei sensori in metri, oppure null per usarli tutti.
+     * @return La griglia dei valori interpolati.
+     */
+    @Timed(value = "collina.mappe.interpolazione", histogram = true)
+    public MappaInterpolataDTO mappa(Long campoId, TipoSensore tipo, int celle, Double raggioMetri) {
+        if (celle < 1 || celle > maxCelle) {
+            throw new IllegalArgumentException("Il numero di celle deve essere compreso tra 1 e " + maxCelle);
+        }
+        if (raggioMetri != null && !(raggioMetri > 0)) {
+            throw new IllegalArgumentException("Il raggio deve essere positivo");
+        }
+        if (anagrafica.campo(campoId).isEmpty()) {
+            throw new RisorsaNonTrovataEccezione("Campo", campoId);
+        }
+
+        ChiaveMappa chiave = new ChiaveMappa(campoId, tipo, celle, raggioMetri,
+                versioniDati.getOrDefault(new ChiaveDati(campoId, tipo), 0L), anagrafica.versioneSensori());
+        return mappe.ottieni(chiave, this::calcola);
+    }
+
+    /**
+     * Invalida le mappe delle tipologie e dei campi che hanno ricevuto nuove rilevazioni.
+     * Viene eseguito dopo l'aggiornamento delle finestre, da cui le mappe leggono i valori.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void suNuoveRilevazioni(NuoveRilevazioniEvento evento) {
+        Set<ChiaveDati> toccate = new HashSet<>();
+        for (Rilevazione ril : evento.rilevazioni()) {
+            Sensore sensore = ril.getSensore();
+            toccate.add(new ChiaveDati(sensore.getCampo().getId(), sensore.getTipo()));
+        }
+        for (ChiaveDati chiave : toccate) {
+            versioniDati.merge(chiave, 1L, Long::sum);
+        }
+    }
+
+    private MappaInterpolataDTO calcola(ChiaveMappa chiave) {
+        IndiceSpaziale indice = indiceSensori.indice();
+        int[] delCampo = indice.delCampo(chiave.campoId());
+        if (delCampo.length == 0) {
+            throw new IllegalArgumentException("Il campo " + chiave.campoId() + " non ha sensori con coordinate");
+        }
+
+        // Estensione dai sensori del campo di qualunque tipologia, valori dai sensori della tipologia richiesta
+        double latMin = Double.MAX_VALUE, latMax = -Double.MAX_VALUE;
+        double lonMin = Double.MAX_VALUE, lonMax = -Double.MAX_VALUE;
+        int[] valorePerSensore = new int[delCampo.length];
+        Arrays.fill(valorePerSensore, -1);
+        double[] valori = new double[delCampo.length];
+        int sensoriConValore = 0;
+        for (int p = 0; p < delCampo.length; p++) {
+            int i = delCampo[p];
+            Sensore sensore = indice.sensore(i);
+            latMin = Math.min(latMin, indice.latitudine(i));
+            latMax = Math.max(latMax, indice.latitudine(i));
+            lonMin = Math.min(lonMin, indice.longitudine(i));
+            lonMax = Math.max(lonMax, indice.longitudine(i));
+            Double valore = sensore.getTipo() == chiave.tipo() ? finestre.ultimoValore(sensore.getId()) : null;
+            if (valore != null) {
+                valorePerSensore[p] = sensoriConValore;
+                valori[sensoriConValore++] = valore;
+            }
+        }
+
+        // Rettangolo dei sensori con margine ed estensione minima, celle quadrate in metri
+        double latCentro = (latMin + latMax) / 2;
+        double lonCentro = (lonMin + lonMax) / 2;
+        double metriPerGradoLon = IndiceSpaziale.METRI_PER_GRADO * Math.cos(Math.toRadians(latCentro));
+        double altezza = Math.max((latMax - latMin) * IndiceSpaziale.METRI_PER_GRADO * (1 + 2 * MARGINE), MIN_ESTENSIONE_METRI);
+        double larghezza = Math.max((lonMax - lonMin) * metriPerGradoLon * (1 + 2 * MARGINE), MIN_ESTENSIONE_METRI);
+        double latoCella = Math.max(altezza, larghezza) / chiave.celle();
+        int righe = Math.max(1, (int) Math.ceil(altezza / latoCella - 1e-9));
+        int colonne = Math.max(1, (int) Math.ceil(larghezza / latoCella - 1e-9));
+
+        Griglia griglia = new Griglia(indice, delCampo, valorePerSensore, Arrays.copyOf(valori, sensoriConValore),
+                righe, colonne,
+                latCentro - righe * latoCella / IndiceSpaziale.METRI_PER_GRADO / 2,
+                lonCentro - colonne * latoCella / metriPerGradoLon / 2,
+                latoCella / IndiceSpaziale.METRI_PER_GRADO, latoCella / metriPerGradoLon,
+                latoCella, metriPerGradoLon, chiave.raggioMetri(), potenza);
+        if (sensoriConValore > 0) {
+            int tileRighe = (righe + LATO_TILE - 1) / LATO_TILE;
+            int tileColonne = (colonne + LATO_TILE - 1) / LATO_TILE;
+            IntStream.range(0, tileRighe * tileColonne).parallel()
+                    .forEach(tile -> griglia.interpolaTile(tile / tileColonne, tile % tileColonne));
+        }
+
+        Double[] risultato = new Double[righe * colonne];
+        for (int i = 0; i < risultato.length; i++) {
+            risultato[i] = Double.isNaN(griglia.celle[i]) ? null : griglia.celle[i];
+        }
+        return new MappaInterpolataDTO(chiave.campoId(), chiave.tipo(), chiave.tipo().getUnita(), righe, colonne,
+                griglia.latMin, griglia.lonMin, griglia.passoLat, griglia.passoLon,
+                risultato, sensoriConValore, LocalDateTime.now());
+    }
+
+    /**
+     * Stato di un calcolo: sensori con valore e griglia in array primitivi.
+     * Ogni task scrive solo le celle del proprio tile.
+     */
+    private static final class Griglia {
+        final IndiceSpaziale indice;
+        // Indici nell'indice spaziale dei sensori del campo e, per ciascuno, la posizione del valore (-1 se manca)
+        final int[] delCampo;
+        final int[] valorePerSensore;
+        final double[] valori;
+        final int righe;
+        final int colonne;
+        final double latMin;
+        final double lonMin;
+        final double passoLat;
+        final double passoLon;
+        final double latoCella;
+        final double metriPerGradoLon;
+        final Double raggioMetri;
+        final double potenza;
+        final double[] celle;
+
+        // Posizioni dei sensori con valore, in metri rispetto all'angolo sud-ovest della griglia
+        final double[] x;
+        final double[] y;
+
+        Griglia(IndiceSpaziale indice, int[] delCampo, int[] valorePerSensore, double[] valori, int righe, int colonne,
+                double latMin, double lonMin, double passoLat, double passoLon,
+                double latoCella, double metriPerGradoLon, Double raggioMetri, double potenza) {
+            this.indice = indice;
+            this.delCampo = delCampo;
+            this.valorePerSensore = valorePerSensore;
+            this.valori = valori;
+            this.righe = righe;
+            this.colonne = colonne;
+            this.latMin = latMin;
+            this.lonMin = lonMin;
+            this.passoLat = passoLat;
+            this.passoLon = passoLon;
+            this.latoCella = latoCella;
+            this.metriPerGradoLon = metriPerGradoLon;
+            this.raggioMetri = raggioMetri;
+            this.potenza = potenza;
+            // Indefinite finché un tile non le calcola: senza sensori con valore restano tali
+            this.celle = new double[righe * colonne];
+            Arrays.fill(celle, Double.NaN);
+            this.x = new double[valori.length];
+            this.y = new double[valori.length];
+            for (int p = 0; p < delCampo.length; p++) {
+                int v = valorePerSensore[p];
+                if (v >= 0) {
+                    x[v] = (indice.longitudine(delCampo[p]) - lonMin) * metriPerGradoLon;
+                    y[v] = (indice.latitudine(delCampo[p]) - latMin) * IndiceSpaziale.METRI_PER_GRADO;
+                }
+            }
+        }
+
+        void interpolaTile(int tileRiga, int tileColonna) {
+            int r0 = tileRiga * LATO_TILE, r1 = Math.min(righe, r0 + LATO_TILE);
+            int c0 = tileColonna * LATO_TILE, c1 = Math.min(colonne, c0 + LATO_TILE);
+            int[] candidati = candidati(r0, r1, c0, c1);
+
+            // Distanze in proiezione equirettangolare locale: sulla scala di un campo l'errore è trascurabile
+            double raggio2 = raggioMetri != null ? raggioMetri * raggioMetri : Double.POSITIVE_INFINITY;
+            double soglia2 = COINCIDENZA_METRI * COINCIDENZA_METRI;
+            double esponente = potenza / 2;
+            for (int r = r0; r < r1; r++) {
+                double cy = (r + 0.5) * latoCella;
+                for (int c = c0; c < c1; c++) {
+                    double cx = (c + 0.5) * latoCella;
+                    double sommaPesi = 0, somma = 0;
+                    double esatto = Double.NaN;
+                    for (int v : candidati) {
+                        double dx = x[v] - cx, dy = y[v] - cy;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 <= soglia2) {
+                            esatto = valori[v];
+                            break;
+                        }
+                        if (d2 <= raggio2) {
+                            double peso = esponente == 1 ? 1 / d2 : 1 / Math.pow(d2, esponente);
+                            sommaPesi += peso;
+                            somma += peso * valori[v];
+                        }
+                    }
+                    celle[r * colonne + c] = !Double.isNaN(esatto) ? esatto
+                            : sommaPesi > 0 ? somma / sommaPesi : Double.NaN;
+                }
+            }
+        }
+
+        // Sensori con valore che possono influire sul tile: tutti, oppure quelli del campo entro raggio + semidiagonale dal centro
+        private int[] candidati(int r0, int r1, int c0, int c1) {
+            if (raggioMetri == null) {
+                int[] tutti = new int[valori.length];
+                Arrays.setAll(tutti, i -> i);
+                return tutti;
+            }
+            double lat = latMin + (r0 + r1) / 2.0 * passoLat;
+            double lon = lonMin + (c0 + c1) / 2.0 * passoLon;
+            double semidiagonale = Math.hypot(r1 - r0, c1 - c0) * latoCella / 2;
+            int[] vicini = indice.entroRaggio(lat, lon, raggioMetri + semidiagonale);
+            int n = 0;
+            for (int i : vicini) {
+                int p = Arrays.binarySearch(delCampo, i);
+                if (p >= 0 && valorePerSensore[p] >= 0) {
+                    vicini[n++] = valorePerSensore[p];
+                }
+            }
+            return Arrays.copyOf(vicini, n);
+        }
+    }
+}
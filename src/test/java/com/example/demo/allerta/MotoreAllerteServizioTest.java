@@ -0,0 +1,257 @@
+package com.example.demo.allerta;
+
+import com.example.demo.dto.AllertaDTO;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.EventoAllerta;
+import com.example.demo.entity.RegolaAllerta;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Confronto;
+import com.example.demo.enums.LivelloAlert;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoRegola;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.enums.TransizioneAllerta;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import com.example.demo.repository.EventoAllertaRepository;
+import com.example.demo.repository.RegolaAllertaRepository;
+import com.example.demo.supporto.StubRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Valutazione delle regole di allerta sul flusso, senza database: soglia con isteresi,
+ * variazione oraria, persistenza, letture in ritardo, ripristino delle allerte aperte e regole disattivate.
+ */
+class MotoreAllerteServizioTest {
+
+    private static final LocalDateTime ISTANTE = LocalDateTime.of(2025, 1, 10, 6, 0);
+
+    // Le transizioni vengono "salvate" senza transazioni reali
+    private static final PlatformTransactionManager SENZA_DB = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definizione) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus stato) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus stato) {
+        }
+    };
+
+    private final List<RegolaAllerta> regole = new ArrayList<>();
+    private final List<EventoAllerta> aperte = new ArrayList<>();
+    private final List<EventoAllerta> salvate = new ArrayList<>();
+
+    private final Sensore aria = sensore(1L, TipoSensore.TEMP_AIR);
+
+    @Test
+    void sogliaConIsteresi() {
+        regole.add(regola(10L, TipoRegola.SOGLIA, Confronto.SOTTO, 0.0, 0.5, null));
+        MotoreAllerteServizio motore = motore();
+
+        leggi(motore, aria, 0, 1.0);
+        assertTrue(salvate.isEmpty());
+
+        leggi(motore, aria, 15, -0.2);
+        assertEquals(List.of(TransizioneAllerta.APERTA), transizioni());
+        assertEquals(1, motore.attive(null).size());
+
+        // Sopra la soglia ma entro il margine di isteresi: l'allerta resta aperta
+        leggi(motore, aria, 30, 0.3);
+        assertEquals(1, salvate.size());
+
+        leggi(motore, aria, 45, 0.6);
+        assertEquals(List.of(TransizioneAllerta.APERTA, TransizioneAllerta.RIENTRATA), transizioni());
+        assertTrue(motore.attive(null).isEmpty());
+
+        // Senza allerta aperta l'isteresi non si applica: 0.3 non riapre
+        leggi(motore, aria, 60, 0.3);
+        assertEquals(2, salvate.size());
+    }
+
+    @Test
+    void lettureInRitardoIgnorate() {
+        regole.add(regola(10L, TipoRegola.SOGLIA, Confronto.SOTTO, 0.0, 0.0, null));
+        MotoreAllerteServizio motore = motore();
+
+        leggi(motore, aria, 30, 2.0);
+        leggi(motore, aria, 15, -5.0);
+        leggi(motore, aria, 30, -5.0);
+        assertTrue(salvate.isEmpty());
+    }
+
+    @Test
+    void variazioneOraria() {
+        regole.add(regola(11L, TipoRegola.VARIAZIONE, Confronto.SOTTO, -3.0, 0.0, null));
+        MotoreAllerteServizio motore = motore();
+
+        // La prima lettura serve solo da riferimento
+        leggi(motore, aria, 0, 10.0);
+        assertTrue(salvate.isEmpty());
+
+        // -2 °C in 30 minuti = -4 °C/h
+        leggi(motore, aria, 30, 8.0);
+        assertEquals(List.of(TransizioneAllerta.APERTA), transizioni());
+        assertEquals(-4.0, salvate.getFirst().getValore(), 1e-9);
+
+        leggi(motore, aria, 90, 8.5);
+        assertEquals(List.of(TransizioneAllerta.APERTA, TransizioneAllerta.RIENTRATA), transizioni());
+    }
+
+    @Test
+    void persistenzaConDurataMinima() {
+        regole.add(regola(12L, TipoRegola.PERSISTENZA, Confronto.SOPRA, 35.0, 1.0, 120));
+        MotoreAllerteServizio motore = motore();
+
+        leggi(motore, aria, 0, 36.0);
+        leggi(motore, aria, 60, 36.5);
+        assertTrue(salvate.isEmpty());
+
+        // Un'interruzione azzera la durata
+        leggi(motore, aria, 90, 34.0);
+        leggi(motore, aria, 120, 36.0);
+        leggi(motore, aria, 200, 36.0);
+        assertTrue(salvate.isEmpty());
+
+        leggi(motore, aria, 240, 37.0);
+        assertEquals(List.of(TransizioneAllerta.APERTA), transizioni());
+
+        // Entro il margine di isteresi resta aperta, sotto rientra
+        leggi(motore, aria, 255, 34.5);
+        leggi(motore, aria, 270, 33.9);
+        assertEquals(List.of(TransizioneAllerta.APERTA, TransizioneAllerta.RIENTRATA), transizioni());
+    }
+
+    @Test
+    void regolaDiSensoreSoloSulSensore() {
+        RegolaAllerta regola = regola(13L, TipoRegola.SOGLIA, Confronto.SOPRA, 30.0, 0.0, null);
+        regola.setTipoSensore(null);
+        regola.setSensoreId(aria.getId());
+        regole.add(regola);
+        MotoreAllerteServizio motore = motore();
+
+        leggi(motore, sensore(2L, TipoSensore.TEMP_AIR), 0, 40.0);
+        assertTrue(salvate.isEmpty());
+
+        leggi(motore, aria, 0, 40.0);
+        assertEquals(aria.getId(), salvate.getFirst().getSensoreId());
+    }
+
+    @Test
+    void ricaricaRipristinaAllerteAperteERegoleNuove() {
+        regole.add(regola(10L, TipoRegola.SOGLIA, Confronto.SOTTO, 0.0, 0.5, null));
+        EventoAllerta apertura = apertura(10L);
+        aperte.add(apertura);
+        // Allerta rimasta aperta di una regola nel frattempo eliminata
+        aperte.add(apertura(99L));
+
+        MotoreAllerteServizio motore = motore();
+        assertEquals(List.of(apertura.getId()), motore.attive(null).stream().map(AllertaDTO::id).toList());
+
+        regole.add(regola(11L, TipoRegola.SOGLIA, Confronto.SOPRA, 30.0, 0.0, null));
+        motore.ricarica();
+        leggi(motore, aria, 30, 31.0);
+        assertEquals(List.of(TransizioneAllerta.RIENTRATA, TransizioneAllerta.APERTA), transizioni());
+    }
+
+    @Test
+    void ricaricaScartaLoStatoDelleRegoleDisattivate() {
+        RegolaAllerta regola = regola(10L, TipoRegola.SOGLIA, Confronto.SOTTO, 0.0, 0.0, null);
+        regole.add(regola);
+        MotoreAllerteServizio motore = motore();
+        leggi(motore, aria, 0, -1.0);
+        assertEquals(1, motore.attive(null).size());
+
+        regole.remove(regola);
+        motore.ricarica();
+        assertTrue(motore.attive(null).isEmpty());
+        leggi(motore, aria, 15, -2.0);
+
+        // Riattivata, riparte da zero: la lettura successiva riapre l'allerta
+        regole.add(regola);
+        motore.ricarica();
+        leggi(motore, aria, 30, -3.0);
+        assertEquals(List.of(TransizioneAllerta.APERTA, TransizioneAllerta.APERTA), transizioni());
+    }
+
+    private MotoreAllerteServizio motore() {
+        RegolaAllertaRepository regolaRepo = StubRepository.di(RegolaAllertaRepository.class,
+                Map.of("findByAttivaTrue", argomenti -> List.copyOf(regole)));
+        EventoAllertaRepository eventoRepo = StubRepository.di(EventoAllertaRepository.class, Map.of(
+                "findAperte", argomenti -> List.copyOf(aperte),
+                "saveAll", argomenti -> {
+                    @SuppressWarnings("unchecked")
+                    Collection<EventoAllerta> eventi = (Collection<EventoAllerta>) argomenti[0];
+                    salvate.addAll(eventi);
+                    return List.copyOf(eventi);
+                }));
+        MotoreAllerteServizio motore = new MotoreAllerteServizio(regolaRepo, eventoRepo, SENZA_DB);
+        motore.avvia();
+        return motore;
+    }
+
+    private EventoAllerta apertura(long regolaId) {
+        EventoAllerta apertura = new EventoAllerta();
+        apertura.setId(100L + regolaId);
+        apertura.setRegolaId(regolaId);
+        apertura.setSensoreId(aria.getId());
+        apertura.setCampoId(aria.getCampo().getId());
+        apertura.setLivello(LivelloAlert.CRITICAL);
+        apertura.setTransizione(TransizioneAllerta.APERTA);
+        apertura.setTimestamp(ISTANTE);
+        return apertura;
+    }
+
+    private static void leggi(MotoreAllerteServizio motore, Sensore sensore, int minuti, double valore) {
+        Rilevazione ril = new Rilevazione();
+        ril.setSensore(sensore);
+        ril.setTimestamp(ISTANTE.plusMinutes(minuti));
+        ril.setValore(valore);
+        motore.suNuoveRilevazioni(new NuoveRilevazioniEvento(List.of(ril)));
+    }
+
+    private List<TransizioneAllerta> transizioni() {
+        return salvate.stream().map(EventoAllerta::getTransizione).toList();
+    }
+
+    private static RegolaAllerta regola(long id, TipoRegola tipo, Confronto confronto, double soglia,
+                                        double isteresi, Integer durataMinuti) {
+        RegolaAllerta regola = new RegolaAllerta();
+        regola.setId(id);
+        regola.setNome("Regola " + id);
+        regola.setTipo(tipo);
+        regola.setConfronto(confronto);
+        regola.setSoglia(soglia);
+        regola.setIsteresi(isteresi);
+        regola.setDurataMinuti(durataMinuti);
+        regola.setLivello(LivelloAlert.WARNING);
+        regola.setTipoSensore(TipoSensore.TEMP_AIR);
+        return regola;
+    }
+
+    private static Sensore sensore(long id, TipoSensore tipo) {
+        Sensore sensore = new Sensore();
+        sensore.setId(id);
+        sensore.setCodice("S-" + id);
+        sensore.setTipo(tipo);
+        sensore.setCampo(new Campo(7L, "Prova", TipoCampo.PIENO, 1.0, StatoCampo.ATTIVO, 0.0, 0.0, 0.0));
+        return sensore;
+    }
+}
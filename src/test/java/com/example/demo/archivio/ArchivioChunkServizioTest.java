@@ -0,0 +1,95 @@
+package com.example.demo.archivio;
+
+import com.example.demo.dto.SerieTemporaleDTO;
+import com.example.demo.entity.AggregatoRilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Granularita;
+import com.example.demo.repository.AggregatoRilevazioneRepository;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.service.AggregazioneServizio;
+import com.example.demo.service.IngestioneServizio;
+import com.example.demo.supporto.DatiDiProva;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Archivio con eliminazione delle righe grezze: una lettura arrivata dopo la sigillatura non deve
+ * sostituire l'aggregato orario con dati parziali e deve finire nel blocco alla sigillatura successiva.
+ */
+@SpringBootTest(properties = "collina.archivio.elimina-grezze=true")
+class ArchivioChunkServizioTest {
+
+    // Più vecchio della soglia di sigillatura
+    private static final LocalDate GIORNO = LocalDate.of(2001, 2, 1);
+    private static final LocalDateTime ORA = GIORNO.atTime(10, 0);
+
+    @Autowired
+    private ArchivioChunkServizio archivio;
+
+    @Autowired
+    private AggregazioneServizio aggregazione;
+
+    @Autowired
+    private IngestioneServizio ingestione;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    @Autowired
+    private RilevazioneRepository rilevazioneRepo;
+
+    @Autowired
+    private AggregatoRilevazioneRepository aggregatoRepo;
+
+    @Test
+    void letturaInRitardoSuUnGiornoSigillato() {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        ingestione.registra(List.of(DatiDiProva.rilevazione(sensore, ORA, 1.0),
+                DatiDiProva.rilevazione(sensore, ORA.plusMinutes(30), 3.0)));
+        aggregazione.aggiorna();
+        archivio.sigilla();
+        assertEquals(GIORNO.plusDays(1).atStartOfDay(), archivio.limiteSigillato(sensore.getId()));
+        assertNull(rilevazioneRepo.findPrimoTimestampDa(sensore.getId(), GIORNO.atStartOfDay()));
+
+        // L'ora viene ricalcolata dal blocco più la nuova riga, non dalla sola riga in ritardo
+        ingestione.registra(List.of(DatiDiProva.rilevazione(sensore, ORA.plusMinutes(15), 5.0)));
+        aggregazione.aggiorna();
+        AggregatoRilevazione oraria = aggregatoRepo.findIntervallo(sensore.getId(), Granularita.ORA,
+                ORA, ORA.plusHours(1)).getFirst();
+        assertEquals(3L, oraria.getConteggio());
+        assertEquals(3.0, oraria.getMedia(), 1e-9);
+
+        // Alla sigillatura successiva il blocco del giorno include la lettura in ritardo, in ordine
+        archivio.sigilla();
+        CollettoreSerie letti = new CollettoreSerie(16);
+        archivio.leggi(sensore.getId(), GIORNO.atStartOfDay(), GIORNO.plusDays(1).atStartOfDay(), letti);
+        assertArrayEquals(new double[]{1.0, 5.0, 3.0}, letti.serie().valori());
+        assertNull(rilevazioneRepo.findPrimoTimestampDa(sensore.getId(), GIORNO.atStartOfDay()));
+
+        // La conservazione elimina il blocco e riallinea l'ultimo giorno sigillato
+        assertEquals(1, archivio.eliminaPrimaDi(sensore.getId(), GIORNO.plusDays(1)));
+        assertNull(archivio.limiteSigillato(sensore.getId()));
+    }
+
+    @Test
+    void unioneDiSerieOrdinate() {
+        SerieTemporaleDTO a = new SerieTemporaleDTO(new long[]{1, 4, 6}, new double[]{10, 40, 60});
+        SerieTemporaleDTO b = new SerieTemporaleDTO(new long[]{2, 4, 9}, new double[]{20, 41, 90});
+        SerieTemporaleDTO unita = ArchivioChunkServizio.unisci(a, b);
+        assertArrayEquals(new long[]{1, 2, 4, 4, 6, 9}, unita.timestamp());
+        assertArrayEquals(new double[]{10, 20, 40, 41, 60, 90}, unita.valori());
+        assertEquals(0, ArchivioChunkServizio.unisci(SerieTemporaleDTO.VUOTA, SerieTemporaleDTO.VUOTA).dimensione());
+    }
+}
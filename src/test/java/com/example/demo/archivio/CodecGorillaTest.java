@@ -0,0 +1,100 @@
+package com.example.demo.archivio;
+
+import com.example.demo.dto.SerieTemporaleDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Codifica e decodifica devono restituire esattamente gli stessi punti (bit per bit),
+ * su tutti i rami del formato: delta del delta a 1, 7, 9, 12 e 64 bit, XOR nullo,
+ * finestra di bit riusata o nuova.
+ */
+class CodecGorillaTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void bloccoVuoto() {
+        byte[] dati = CodecGorilla.codifica(new long[0], new double[0], 0);
+        assertEquals(0, CodecGorilla.decodifica(dati, (t, v) -> fail("Nessun punto atteso")));
+    }
+
+    @Test
+    void campionamentoRegolareConValoriRipetuti() {
+        int n = 96;
+        long[] t = new long[n];
+        double[] v = new double[n];
+        for (int i = 0; i < n; i++) {
+            t[i] = T0 + i * 900_000L;
+            v[i] = i % 10 < 5 ? 21.5 : 21.5 + (i % 3) * 0.1;
+        }
+        byte[] dati = verificaAndataRitorno(t, v, n);
+        // Con cadenza regolare il blocco resta ben sotto i 16 byte per punto in chiaro
+        assertTrue(dati.length < n * 4, "Blocco di " + dati.length + " byte");
+    }
+
+    @Test
+    void deltaIrregolariEBuchi() {
+        long[] t = {T0, T0 + 900_000, T0 + 1_800_030, T0 + 2_700_000, T0 + 2_700_100, T0 + 2_700_400,
+                T0 + 2_702_000, T0 + 86_400_000L * 3, T0 + 86_400_000L * 3 + 1, T0 + 86_400_000L * 3 - 5_000};
+        double[] v = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        verificaAndataRitorno(t, v, t.length);
+    }
+
+    @Test
+    void valoriSpeciali() {
+        double[] v = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, 1e-300, -273.15, 1.0, 1.0};
+        long[] t = new long[v.length];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = T0 + i * 60_000L;
+        }
+        verificaAndataRitorno(t, v, v.length);
+    }
+
+    @Test
+    void soloIPrimiNPunti() {
+        long[] t = {T0, T0 + 1000, T0 + 2000, T0 + 3000};
+        double[] v = {1.5, 2.5, 3.5, 4.5};
+        verificaAndataRitorno(t, v, 2);
+    }
+
+    @Test
+    void serieCasuale() {
+        Random caso = new Random(42);
+        int n = 10_000;
+        long[] t = new long[n];
+        double[] v = new double[n];
+        long ts = T0;
+        double valore = 15;
+        for (int i = 0; i < n; i++) {
+            ts += switch (caso.nextInt(4)) {
+                case 0 -> 900_000L;
+                case 1 -> 900_000L + caso.nextInt(2000) - 1000;
+                case 2 -> caso.nextInt(100_000_000);
+                default -> -caso.nextInt(5000);
+            };
+            valore = caso.nextInt(5) == 0 ? valore : valore + caso.nextGaussian();
+            t[i] = ts;
+            v[i] = valore;
+        }
+        verificaAndataRitorno(t, v, n);
+    }
+
+    private static byte[] verificaAndataRitorno(long[] t, double[] v, int n) {
+        byte[] dati = CodecGorilla.codifica(t, v, n);
+        CollettoreSerie letti = new CollettoreSerie(n);
+        assertEquals(n, CodecGorilla.decodifica(dati, letti));
+        SerieTemporaleDTO serie = letti.serie();
+        assertEquals(n, serie.dimensione());
+        for (int i = 0; i < n; i++) {
+            assertEquals(t[i], serie.timestamp()[i], "Timestamp del punto " + i);
+            assertEquals(Double.doubleToRawLongBits(v[i]), Double.doubleToRawLongBits(serie.valori()[i]),
+                    "Valore del punto " + i);
+        }
+        return dati;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo.avvio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Misura riproducibile del tempo di avvio a freddo: dall'avvio della JVM alla prima risposta HTTP 200.
+ * <p>
+ * Il jar già costruito viene avviato più volte in un processo separato, ognuno su una porta libera;
+ * a ogni avvio si interroga il percorso indicato ogni 10 ms fino alla prima risposta valida, poi il
+ * processo viene terminato. Il report con i tempi di ogni avvio e min/mediana/max viene scritto su file.
+ * Se è indicata una soglia, la mediana non deve superarla.
+ * <p>
+ * Non viene eseguita con la normale suite di test. Esempio, con il profilo di avvio rapido:
+ * <pre>
+ * mvn -Pavvio-rapido package -DskipTests
+ * mvn test -Dtest=ProvaAvvioTest -Dcollina.avvio.abilitato=true \
+ *     -Dcollina.avvio.jar=target/avvio/collina-monitoring-0.0.1-SNAPSHOT.jar \
+ *     -Dcollina.avvio.jvm="-XX:SharedArchiveFile=target/avvio/collina.jsa -Dspring.aot.enabled=true" \
+ *     -Dcollina.avvio.argomenti="--spring.profiles.active=avvio-rapido --spring.jpa.hibernate.ddl-auto=create-drop"
+ * </pre>
+ * Su H2 in memoria lo schema va creato a ogni avvio; su un DB già migrato (MySQL) basta il profilo.
+ * Senza {@code collina.avvio.jvm} e {@code collina.avvio.argomenti} si misura l'avvio standard, per confronto.
+ */
+@EnabledIfSystemProperty(named = "collina.avvio.abilitato", matches = "true")
+class ProvaAvvioTest {
+
+    // Parametri della prova, sovrascrivibili con -D
+    private final Path jar = Path.of(System.getProperty("collina.avvio.jar", "target/collina-monitoring-0.0.1-SNAPSHOT.jar"));
+    private final String jvm = System.getProperty("collina.avvio.jvm", "");
+    private final String argomenti = System.getProperty("collina.avvio.argomenti", "");
+    private final String percorso = System.getProperty("collina.avvio.percorso", "/");
+    private final int ripetizioni = Integer.getInteger("collina.avvio.ripetizioni", 5);
+    private final int timeoutSecondi = Integer.getInteger("collina.avvio.timeout-secondi", 120);
+    private final long sogliaMs = Long.getLong("collina.avvio.soglia-ms", 0);
+    private final Path fileReport = Path.of(System.getProperty("collina.avvio.report", "target/avvio/report.txt"));
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+
+    @Test
+    void tempoAllaPrimaRichiesta() throws Exception {
+        assertTrue(Files.exists(jar), "Jar non trovato: " + jar + " (eseguire prima mvn package)");
+
+        long[] tempi = new long[ripetizioni];
+        for (int i = 0; i < ripetizioni; i++) {
+            tempi[i] = avvia();
+        }
+        long[] ordinati = tempi.clone();
+        Arrays.sort(ordinati);
+        long mediana = ordinati[ordinati.length / 2];
+
+        List<String> righe = new ArrayList<>();
+        righe.add("Prova di avvio " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        righe.add("jar=" + jar + " jvm=[" + jvm + "] argomenti=[" + argomenti + "] percorso=" + percorso);
+        righe.add("tempi alla prima richiesta (ms): " + Arrays.toString(tempi));
+        righe.add(String.format(Locale.ROOT, "min=%d ms mediana=%d ms max=%d ms",
+                ordinati[0], mediana, ordinati[ordinati.length - 1]));
+
+        Files.createDirectories(fileReport.toAbsolutePath().getParent());
+        Files.write(fileReport, righe);
+        righe.forEach(System.out::println);
+
+        if (sogliaMs > 0) {
+            assertTrue(mediana <= sogliaMs, "Mediana " + mediana + " ms oltre la soglia di " + sogliaMs + " ms");
+        }
+    }
+
+    // Avvia un processo e restituisce i millisecondi trascorsi fino alla prima risposta 200
+    private long avvia() throws IOException, InterruptedException {
+        int porta = portaLibera();
+        List<String> comando = new ArrayList<>();
+        comando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        comando.addAll(parole(jvm));
+        comando.add("-jar");
+        comando.add(jar.toString());
+        comando.add("--server.port=" + porta);
+        comando.addAll(parole(argomenti));
+
+        Path log = Files.createTempFile("collina-avvio", ".log");
+        long inizio = System.nanoTime();
+        Process processo = new ProcessBuilder(comando).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            HttpRequest richiesta = HttpRequest.newBuilder(URI.create("http://localhost:" + porta + percorso)).GET().build();
+            long scadenza = inizio + TimeUnit.SECONDS.toNanos(timeoutSecondi);
+            while (System.nanoTime() < scadenza) {
+                assertTrue(processo.isAlive(), "Il processo è terminato durante l'avvio, vedi " + log);
+                try {
+                    if (client.send(richiesta, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inizio);
+                    }
+                } catch (IOException e) {
+                    // Server non ancora in ascolto
+                }
+                Thread.sleep(10);
+            }
+            throw new AssertionError("Nessuna risposta entro " + timeoutSecondi + " s, vedi " + log);
+        } finally {
+            processo.destroy();
+            if (!processo.waitFor(30, TimeUnit.SECONDS)) {
+                processo.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static int portaLibera() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static List<String> parole(String testo) {
+        return testo.isBlank() ? List.of() : List.of(testo.trim().split("\\s+"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.StubRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Risoluzione dei sensori per codice dalla cache dell'anagrafica: una sola query per codice,
+ * anche per i codici sconosciuti, e ricaricamento dopo la scrittura di un sensore.
+ * Campi e sensori attivi per campo: letti una volta e ricaricati solo dopo la scrittura che li riguarda.
+ */
+class AnagraficaServizioTest {
+
+    private final Campo campo = new Campo(1L, "Vigneto", TipoCampo.PIENO, 2.5, StatoCampo.ATTIVO, 0.0, 0.0, 0.0);
+    private final List<Sensore> sensori = new ArrayList<>();
+    private final List<String> codiciCercati = new ArrayList<>();
+    private final List<Long> campiCercati = new ArrayList<>();
+    private int letturePerCampi;
+
+    private final AnagraficaServizio anagrafica = new AnagraficaServizio(
+            StubRepository.di(CampoRepository.class, Map.of("findAll", argomenti -> {
+                letturePerCampi++;
+                return List.of(campo);
+            })),
+            StubRepository.di(SensoreRepository.class, Map.of(
+                    "findByCodice", argomenti -> {
+                        codiciCercati.add((String) argomenti[0]);
+                        return sensori.stream().filter(s -> s.getCodice().equals(argomenti[0])).findFirst();
+                    },
+                    "findByCampoIdAndAttivoTrue", argomenti -> {
+                        campiCercati.add((Long) argomenti[0]);
+                        return sensori.stream().filter(s -> s.getCampo().getId().equals(argomenti[0])).toList();
+                    })),
+            new SimpleMeterRegistry(), 16, 16);
+
+    @Test
+    void codiceRisoltoConUnaSolaQuery() {
+        Sensore sensore = sensore(10L, "T-ARIA-01");
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(sensore, anagrafica.sensorePerCodice("T-ARIA-01").orElseThrow());
+        }
+        assertEquals(List.of("T-ARIA-01"), codiciCercati);
+    }
+
+    @Test
+    void codiceSconosciutoMemorizzato() {
+        // Un gateway mal configurato ripete lo stesso codice a ogni lettura
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Optional.empty(), anagrafica.sensorePerCodice("SCONOSCIUTO"));
+        }
+        assertEquals(List.of("SCONOSCIUTO"), codiciCercati);
+    }
+
+    @Test
+    void scritturaDiUnSensoreRicaricaICodici() {
+        assertTrue(anagrafica.sensorePerCodice("U-SUOLO-07").isEmpty());
+
+        // Il sensore viene registrato: il codice prima sconosciuto diventa risolvibile
+        Sensore nuovo = sensore(11L, "U-SUOLO-07");
+        long versione = anagrafica.versioneSensori();
+        anagrafica.invalida(nuovo);
+
+        assertSame(nuovo, anagrafica.sensorePerCodice("U-SUOLO-07").orElseThrow());
+        assertEquals(List.of("U-SUOLO-07", "U-SUOLO-07"), codiciCercati);
+        assertTrue(anagrafica.versioneSensori() > versione);
+    }
+
+    @Test
+    void scritturaDiUnCampoNonToccaICodici() {
+        sensore(12L, "T-SUOLO-02");
+        anagrafica.sensorePerCodice("T-SUOLO-02");
+        anagrafica.invalida(campo);
+
+        anagrafica.sensorePerCodice("T-SUOLO-02");
+        assertEquals(List.of("T-SUOLO-02"), codiciCercati);
+    }
+
+    @Test
+    void campiLettiUnaVoltaERicaricatiDopoUnaScrittura() {
+        assertEquals(List.of(campo), anagrafica.campi());
+        assertSame(campo, anagrafica.campo(1L).orElseThrow());
+        assertTrue(anagrafica.campo(2L).isEmpty());
+        assertEquals(1, letturePerCampi);
+
+        // La scrittura di un sensore non riguarda l'elenco dei campi
+        anagrafica.invalida(sensore(13L, "T-ARIA-03"));
+        anagrafica.campi();
+        assertEquals(1, letturePerCampi);
+
+        anagrafica.invalida(campo);
+        anagrafica.campi();
+        assertEquals(2, letturePerCampi);
+    }
+
+    @Test
+    void sensoriAttiviPerCampoRicaricatiDopoUnaScrittura() {
+        Sensore primo = sensore(14L, "U-SUOLO-01");
+        assertEquals(List.of(primo), anagrafica.sensoriAttivi(1L));
+        assertEquals(List.of(primo), anagrafica.sensoriAttivi(1L));
+        assertEquals(List.of(1L), campiCercati);
+
+        Sensore secondo = sensore(15L, "U-SUOLO-02");
+        anagrafica.invalida(secondo);
+        assertEquals(List.of(primo, secondo), anagrafica.sensoriAttivi(1L));
+        assertEquals(List.of(1L, 1L), campiCercati);
+    }
+
+    private Sensore sensore(long id, String codice) {
+        Sensore sensore = new Sensore();
+        sensore.setId(id);
+        sensore.setCodice(codice);
+        sensore.setTipo(TipoSensore.TEMP_AIR);
+        sensore.setCampo(campo);
+        sensori.add(sensore);
+        return sensore;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cache LRU limitata: rimozione della voce usata meno di recente e caricamenti iniziati
+ * prima di uno svuotamento, che non devono reinserire valori superati.
+ */
+class CacheLimitataTest {
+
+    private final List<String> caricate = new ArrayList<>();
+
+    @Test
+    void oltreLaCapacitaEsceLaMenoUsataDiRecente() {
+        CacheLimitata<String, String> cache = new CacheLimitata<>(2);
+        cache.ottieni("a", this::carica);
+        cache.ottieni("b", this::carica);
+        // L'accesso ad "a" la rende la più recente: con "c" esce "b"
+        cache.ottieni("a", this::carica);
+        cache.ottieni("c", this::carica);
+        assertEquals(2, cache.dimensione());
+
+        cache.ottieni("a", this::carica);
+        cache.ottieni("c", this::carica);
+        assertEquals(List.of("a", "b", "c"), caricate);
+
+        cache.ottieni("b", this::carica);
+        assertEquals(List.of("a", "b", "c", "b"), caricate);
+    }
+
+    @Test
+    void svuotaRimuoveTutteLeVoci() {
+        CacheLimitata<String, String> cache = new CacheLimitata<>(4);
+        assertEquals("valore a", cache.ottieni("a", this::carica));
+        cache.svuota();
+        assertEquals(0, cache.dimensione());
+
+        assertEquals("valore a", cache.ottieni("a", this::carica));
+        assertEquals(List.of("a", "a"), caricate);
+    }
+
+    @Test
+    void caricamentoIniziatoPrimaDelloSvuotamentoNonVieneMemorizzato() {
+        CacheLimitata<String, String> cache = new CacheLimitata<>(4);
+        // Lo svuotamento arriva mentre il valore è in caricamento (ad esempio una scrittura concorrente)
+        String superato = cache.ottieni("a", chiave -> {
+            cache.svuota();
+            return "superato";
+        });
+
+        assertEquals("superato", superato);
+        assertEquals(0, cache.dimensione());
+        assertEquals("valore a", cache.ottieni("a", this::carica));
+        assertEquals(1, cache.dimensione());
+    }
+
+    @Test
+    void caricamentoConcorrenteScartatoDopoLoSvuotamento() throws Exception {
+        CacheLimitata<String, String> cache = new CacheLimitata<>(4);
+        CountDownLatch inCaricamento = new CountDownLatch(1);
+        CountDownLatch prosegui = new CountDownLatch(1);
+        ExecutorService esecutore = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> lento = esecutore.submit(() -> cache.ottieni("a", chiave -> {
+                inCaricamento.countDown();
+                attendi(prosegui);
+                return "letto prima della scrittura";
+            }));
+            assertTrue(inCaricamento.await(10, TimeUnit.SECONDS));
+
+            // La scrittura invalida la cache, poi un altro thread carica il valore aggiornato
+            cache.svuota();
+            assertEquals("valore a", cache.ottieni("a", this::carica));
+
+            prosegui.countDown();
+            assertEquals("letto prima della scrittura", lento.get(10, TimeUnit.SECONDS));
+        } finally {
+            esecutore.shutdownNow();
+        }
+
+        // Resta il valore caricato dopo lo svuotamento
+        Function<String, String> nonAtteso = chiave -> fail("Valore non in cache");
+        assertEquals("valore a", cache.ottieni("a", nonAtteso));
+    }
+
+    private String carica(String chiave) {
+        caricate.add(chiave);
+        return "valore " + chiave;
+    }
+
+    private static void attendi(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Attesa scaduta");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
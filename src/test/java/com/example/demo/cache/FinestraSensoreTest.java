@@ -0,0 +1,151 @@
+package com.example.demo.cache;
+
+import com.example.demo.dto.SerieTemporaleDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Buffer circolare della finestra: giro del buffer, inserimenti fuori ordine, letture troppo vecchie
+ * e capacità non valide. Bitmap di validità: mascheratura dei punti non validi, ultimo valore valido
+ * e allineamento dei bit con i valori negli inserimenti in ritardo e oltre i 64 punti.
+ */
+class FinestraSensoreTest {
+
+    @Test
+    void alGiroDelBufferRestanoLeUltimeRilevazioni() {
+        FinestraSensore finestra = new FinestraSensore(3);
+        for (int i = 1; i <= 7; i++) {
+            finestra.aggiungi(i * 10L, i, true);
+        }
+
+        assertEquals(3, finestra.dimensione());
+        assertEquals(3, finestra.capacita());
+        SerieTemporaleDTO serie = finestra.istantanea();
+        assertArrayEquals(new long[]{50, 60, 70}, serie.timestamp());
+        assertArrayEquals(new double[]{5, 6, 7}, serie.valori());
+        assertEquals(70, finestra.ultimoTimestamp());
+    }
+
+    @Test
+    void inserimentiFuoriOrdine() {
+        FinestraSensore finestra = new FinestraSensore(5);
+        finestra.aggiungi(30, 3, true);
+        finestra.aggiungi(10, 1, true);
+        finestra.aggiungi(50, 5, true);
+        finestra.aggiungi(20, 2, true);
+        assertArrayEquals(new long[]{10, 20, 30, 50}, finestra.istantanea().timestamp());
+
+        // A finestra piena e dopo un giro del buffer: il più vecchio esce, l'ordine resta cronologico
+        finestra.aggiungi(60, 6, true);
+        finestra.aggiungi(70, 7, true);
+        finestra.aggiungi(40, 4, true);
+        SerieTemporaleDTO serie = finestra.istantanea();
+        assertArrayEquals(new long[]{30, 40, 50, 60, 70}, serie.timestamp());
+        assertArrayEquals(new double[]{3, 4, 5, 6, 7}, serie.valori());
+        assertEquals(Double.valueOf(7), finestra.ultimoValore());
+
+        // Stesso istante dell'ultima: accodata come caso normale
+        finestra.aggiungi(70, 7.5, true);
+        assertArrayEquals(new long[]{40, 50, 60, 70, 70}, finestra.istantanea().timestamp());
+        assertEquals(Double.valueOf(7.5), finestra.ultimoValore());
+    }
+
+    @Test
+    void letturaPiuVecchiaDellaFinestraPienaScartata() {
+        FinestraSensore finestra = new FinestraSensore(3);
+        finestra.aggiungi(10, 1, true);
+        finestra.aggiungi(20, 2, true);
+
+        // Finestra non piena: anche la più vecchia trova posto
+        finestra.aggiungi(5, 0.5, true);
+        assertArrayEquals(new long[]{5, 10, 20}, finestra.istantanea().timestamp());
+
+        finestra.aggiungi(1, 0.1, true);
+        SerieTemporaleDTO serie = finestra.istantanea();
+        assertArrayEquals(new long[]{5, 10, 20}, serie.timestamp());
+        assertArrayEquals(new double[]{0.5, 1, 2}, serie.valori());
+    }
+
+    @Test
+    void capacitaNonPositivaRifiutata() {
+        assertThrows(IllegalArgumentException.class, () -> new FinestraSensore(0));
+        assertThrows(IllegalArgumentException.class, () -> new FinestraSensore(-1));
+    }
+
+    @Test
+    void finestraVuota() {
+        FinestraSensore finestra = new FinestraSensore(1);
+        assertEquals(0, finestra.ultimoTimestamp());
+        assertEquals(0, finestra.istantanea().dimensione());
+
+        finestra.aggiungi(10, 1, true);
+        finestra.aggiungi(20, 2, true);
+        assertArrayEquals(new long[]{20}, finestra.istantanea().timestamp());
+    }
+
+    @Test
+    void istantaneaMascheraIPuntiNonValidi() {
+        FinestraSensore finestra = new FinestraSensore(4);
+        finestra.aggiungi(10, 1.0, true);
+        finestra.aggiungi(20, 2.0, false);
+        finestra.aggiungi(30, 3.0, true);
+
+        assertArrayEquals(new double[]{1.0, Double.NaN, 3.0}, finestra.istantanea(true).valori());
+        // Senza maschera i valori restano quelli registrati
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0}, finestra.istantanea().valori());
+        assertArrayEquals(new long[]{10, 20, 30}, finestra.istantanea(true).timestamp());
+    }
+
+    @Test
+    void ultimoValoreSaltaINonValidi() {
+        FinestraSensore finestra = new FinestraSensore(4);
+        assertNull(finestra.ultimoValore());
+
+        finestra.aggiungi(10, 1.0, true);
+        finestra.aggiungi(20, 2.0, false);
+        finestra.aggiungi(30, 3.0, false);
+        assertEquals(Double.valueOf(1.0), finestra.ultimoValore());
+        assertEquals(30, finestra.ultimoTimestamp());
+
+        // Sovrascritto l'unico punto valido, non ne resta nessuno
+        finestra.aggiungi(40, 4.0, false);
+        finestra.aggiungi(50, 5.0, false);
+        assertNull(finestra.ultimoValore());
+    }
+
+    @Test
+    void inserimentoInRitardoSpostaIBitConIValori() {
+        FinestraSensore finestra = new FinestraSensore(4);
+        finestra.aggiungi(10, 1.0, true);
+        finestra.aggiungi(30, 3.0, false);
+        finestra.aggiungi(20, 2.0, true);
+        assertArrayEquals(new double[]{1.0, 2.0, Double.NaN}, finestra.istantanea(true).valori());
+
+        // A finestra piena il più vecchio esce e i bit restano sui rispettivi punti
+        finestra.aggiungi(40, 4.0, true);
+        finestra.aggiungi(25, 2.5, false);
+        SerieTemporaleDTO serie = finestra.istantanea(true);
+        assertArrayEquals(new long[]{20, 25, 30, 40}, serie.timestamp());
+        assertArrayEquals(new double[]{2.0, Double.NaN, Double.NaN, 4.0}, serie.valori());
+    }
+
+    @Test
+    void bitmapOltreUnaParolaDa64Bit() {
+        // 70 posizioni: la bitmap usa due long e il giro del buffer attraversa il confine tra le parole
+        FinestraSensore finestra = new FinestraSensore(70);
+        for (int i = 0; i < 151; i++) {
+            finestra.aggiungi(i, i, i % 3 != 0);
+        }
+
+        SerieTemporaleDTO serie = finestra.istantanea(true);
+        assertEquals(70, serie.dimensione());
+        for (int i = 0; i < 70; i++) {
+            long ts = serie.timestamp()[i];
+            assertEquals(81 + i, ts);
+            assertEquals(ts % 3 != 0 ? (double) ts : Double.NaN, serie.valori()[i], "punto " + ts);
+        }
+        // L'ultimo punto (150) non è valido
+        assertEquals(Double.valueOf(149.0), finestra.ultimoValore());
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.demo.carico;
+
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.test.LocalServerPort;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prova di carico (Load test) su scala di flotta: ingestione e dashboard sotto traffico concorrente.
+ * <p>
+ * Crea N campi sintetici con M sensori ciascuno, invia rilevazioni all'API di ingestione a un
+ * ritmo costante (modello "aperto": un server lento non riduce il carico offerto) e, in parallelo,
+ * interroga la pagina di overview, il grafico 24h e l'API dei grafici su intervallo.
+ * Al termine scrive throughput e latenze p50/p95/p99 per endpoint in un file di report.
+ * <p>
+ * Non viene eseguita con la normale suite di test. Esempio (H2 in memoria, 2.000 sensori):
+ * <pre>
+ * mvn test -Dtest=ProvaCaricoFlottaTest -Dcollina.carico.abilitato=true \
+ *     -Dcollina.carico.campi=50 -Dcollina.carico.sensori-per-campo=40 -Dcollina.carico.letture-al-secondo=2000
+ * </pre>
+ * Per provare su MySQL locale basta aggiungere {@code -Dspring.datasource.url=...} e le credenziali.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "collina.carico.abilitato", matches = "true")
+class ProvaCaricoFlottaTest {
+
+    private static final TipoSensore[] TIPI = TipoSensore.values();
+
+    @LocalServerPort
+    private int porta;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    // Parametri della prova, sovrascrivibili con -D
+    private final int numeroCampi = intero("collina.carico.campi", 50);
+    private final int sensoriPerCampo = intero("collina.carico.sensori-per-campo", 40);
+    private final int lettureAlSecondo = intero("collina.carico.letture-al-secondo", 2000);
+    private final int dimensioneBlocco = intero("collina.carico.dimensione-blocco", 200);
+    private final int lettori = intero("collina.carico.lettori", 16);
+    private final int durataSecondi = intero("collina.carico.durata-secondi", 60);
+    private final Path fileReport = Path.of(System.getProperty("collina.carico.report", "target/carico/report.txt"));
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    void caricoFlotta() throws Exception {
+        List<Long> campoIds = new ArrayList<>(numeroCampi);
+        List<String> codici = new ArrayList<>(numeroCampi * sensoriPerCampo);
+        provisiona(campoIds, codici);
+
+        RegistroLatenze ingestione = new RegistroLatenze("POST /api/rilevazioni");
+        RegistroLatenze overview = new RegistroLatenze("GET /");
+        RegistroLatenze grafico24h = new RegistroLatenze("GET temp-umidita");
+        RegistroLatenze graficoStorico = new RegistroLatenze("GET storico/campi");
+        AtomicLong lettureInviate = new AtomicLong();
+
+        long inizio = System.nanoTime();
+        long scadenza = inizio + TimeUnit.SECONDS.toNanos(durataSecondi);
+
+        // 1. Scrittori: un blocco ogni (dimensioneBlocco / lettureAlSecondo) secondi, ciascuno su un virtual thread
+        ExecutorService virtuali = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledExecutorService cadenza = Executors.newSingleThreadScheduledExecutor();
+        long periodoMicros = Math.max(1, 1_000_000L * dimensioneBlocco / lettureAlSecondo);
+        AtomicLong cursore = new AtomicLong();
+        cadenza.scheduleAtFixedRate(() -> virtuali.execute(() -> {
+            String corpo = bloccoJson(codici, cursore.getAndAdd(dimensioneBlocco));
+            HttpRequest richiesta = HttpRequest.newBuilder(uri("/api/rilevazioni"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(corpo))
+                    .build();
+            if (esegui(richiesta, ingestione)) {
+                lettureInviate.addAndGet(dimensioneBlocco);
+            }
+        }), 0, periodoMicros, TimeUnit.MICROSECONDS);
+
+        // 2. Lettori: ciclo chiuso sugli endpoint della dashboard fino alla scadenza
+        List<Future<?>> cicliLettura = new ArrayList<>(lettori);
+        for (int i = 0; i < lettori; i++) {
+            cicliLettura.add(virtuali.submit(() -> {
+                ThreadLocalRandom caso = ThreadLocalRandom.current();
+                while (System.nanoTime() < scadenza) {
+                    Long campoId = campoIds.get(caso.nextInt(campoIds.size()));
+                    switch (caso.nextInt(3)) {
+                        case 0 -> esegui(HttpRequest.newBuilder(uri("/")).GET().build(), overview);
+                        case 1 -> esegui(HttpRequest.newBuilder(uri("/api/dashboard/temp-umidita?campoId=" + campoId))
+                                .GET().build(), grafico24h);
+                        default -> {
+                            LocalDateTime a = LocalDateTime.now();
+                            String query = "?from=" + a.minusDays(7).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                                    + "&to=" + a.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "&maxPoints=500";
+                            esegui(HttpRequest.newBuilder(uri("/api/storico/campi/" + campoId + query)).GET().build(),
+                                    graficoStorico);
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> ciclo : cicliLettura) {
+            ciclo.get();
+        }
+        cadenza.shutdownNow();
+        virtuali.shutdown();
+        virtuali.awaitTermination(30, TimeUnit.SECONDS);
+        double durataEffettiva = (System.nanoTime() - inizio) / 1e9;
+
+        List<String> righe = new ArrayList<>();
+        righe.add("Prova di carico " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        righe.add(String.format(Locale.ROOT, "campi=%d sensori=%d ritmo richiesto=%d letture/s blocco=%d lettori=%d durata=%.1fs",
+                numeroCampi, codici.size(), lettureAlSecondo, dimensioneBlocco, lettori, durataEffettiva));
+        righe.add(String.format(Locale.ROOT, "letture confermate=%d (%.1f letture/s)",
+                lettureInviate.get(), lettureInviate.get() / durataEffettiva));
+        for (RegistroLatenze registro : List.of(ingestione, overview, grafico24h, graficoStorico)) {
+            righe.add(registro.riepilogo(durataEffettiva));
+        }
+
+        Files.createDirectories(fileReport.toAbsolutePath().getParent());
+        Files.write(fileReport, righe);
+        righe.forEach(System.out::println);
+
+        assertTrue(lettureInviate.get() > 0, "Nessuna rilevazione è stata accettata dal server");
+    }
+
+    // Crea i campi e i sensori sintetici; i tipi di sensore vengono assegnati a rotazione
+    private void provisiona(List<Long> campoIds, List<String> codici) {
+        List<Campo> campi = new ArrayList<>(numeroCampi);
+        for (int c = 0; c < numeroCampi; c++) {
+            campi.add(new Campo(null, "Carico " + c, TipoCampo.PIENO, 10.0, StatoCampo.ATTIVO, 0.0, 0.0, 0.0));
+        }
+        campoRepo.saveAll(campi);
+
+        List<Sensore> sensori = new ArrayList<>(numeroCampi * sensoriPerCampo);
+        for (Campo campo : campi) {
+            campoIds.add(campo.getId());
+            for (int s = 0; s < sensoriPerCampo; s++) {
+                Sensore sensore = new Sensore();
+                sensore.setCampo(campo);
+                sensore.setCodice("LT-" + campo.getId() + "-" + s);
+                sensore.setTipo(TIPI[s % TIPI.length]);
+                sensore.setAttivo(true);
+                sensore.setFrequenzaMinuti(15);
+                sensori.add(sensore);
+                codici.add(sensore.getCodice());
+            }
+        }
+        sensoreRepo.saveAll(sensori);
+    }
+
+    // Blocco JSON di rilevazioni sui sensori successivi al cursore (round-robin su tutta la flotta)
+    private String bloccoJson(List<String> codici, long cursore) {
+        ThreadLocalRandom caso = ThreadLocalRandom.current();
+        String adesso = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        StringBuilder json = new StringBuilder(dimensioneBlocco * 80).append('[');
+        for (int i = 0; i < dimensioneBlocco; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String codice = codici.get((int) ((cursore + i) % codici.size()));
+            json.append("{\"codiceSensore\":\"").append(codice)
+                    .append("\",\"timestamp\":\"").append(adesso)
+                    .append("\",\"valore\":").append(String.format(Locale.ROOT, "%.2f", 10 + caso.nextGaussian() * 5))
+                    .append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    // Esegue la richiesta e registra la latenza; ritorna true per le risposte 2xx/304
+    private boolean esegui(HttpRequest richiesta, RegistroLatenze registro) {
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<Void> risposta = client.send(richiesta, HttpResponse.BodyHandlers.discarding());
+            registro.registra((System.nanoTime() - t0) / 1000);
+            boolean ok = risposta.statusCode() / 100 == 2 || risposta.statusCode() == 304;
+            if (!ok) {
+                registro.errore();
+            }
+            return ok;
+        } catch (IOException e) {
+            registro.errore();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private URI uri(String percorso) {
+        return URI.create("http://localhost:" + porta + percorso);
+    }
+
+    private static int intero(String chiave, int predefinito) {
+        return Integer.getInteger(chiave, predefinito);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.carico;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Raccoglitore thread-safe delle latenze (in microsecondi) di un singolo endpoint.
+ * I campioni sono tenuti in un array primitivo che cresce per raddoppio; i percentili
+ * vengono calcolati a fine prova ordinando una copia.
+ */
+class RegistroLatenze {
+
+    private final String nome;
+    private long[] campioni = new long[4096];
+    private int dimensione;
+    private long errori;
+
+    RegistroLatenze(String nome) {
+        this.nome = nome;
+    }
+
+    synchronized void registra(long micros) {
+        if (dimensione == campioni.length) {
+            campioni = Arrays.copyOf(campioni, campioni.length * 2);
+        }
+        campioni[dimensione++] = micros;
+    }
+
+    synchronized void errore() {
+        errori++;
+    }
+
+    /**
+     * Riga di riepilogo: richieste, errori, throughput e percentili p50/p95/p99 in millisecondi.
+     *
+     * @param durataSecondi La durata effettiva della prova, per il calcolo del throughput.
+     */
+    synchronized String riepilogo(double durataSecondi) {
+        long[] ordinati = Arrays.copyOf(campioni, dimensione);
+        Arrays.sort(ordinati);
+        return String.format(Locale.ROOT, "%-22s richieste=%8d errori=%6d throughput=%9.1f/s p50=%8.2fms p95=%8.2fms p99=%8.2fms max=%8.2fms",
+                nome, dimensione, errori, dimensione / durataSecondi,
+                percentile(ordinati, 0.50), percentile(ordinati, 0.95), percentile(ordinati, 0.99),
+                percentile(ordinati, 1.0));
+    }
+
+    // Percentile con metodo "nearest rank", convertito da microsecondi a millisecondi
+    private static double percentile(long[] ordinati, double quota) {
+        if (ordinati.length == 0) {
+            return 0.0;
+        }
+        int indice = (int) Math.ceil(quota * ordinati.length) - 1;
+        return ordinati[Math.max(0, indice)] / 1000.0;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.giornale;
+
+import com.example.demo.entity.PosizioneGiornale;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.PosizioneGiornaleRepository;
+import com.example.demo.supporto.StubRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Riavvio del giornale: dopo la riapertura si rileggono solo le voci successive alla posizione
+ * di riversamento salvata nel DB, e la numerazione prosegue senza sovrapposizioni.
+ */
+class GiornaleIngestioneTest {
+
+    private static final LocalDateTime ISTANTE = LocalDateTime.of(2025, 6, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void riavvioRiprendeDallaPosizioneSalvata() {
+        GiornaleIngestione giornale = apri(0);
+        giornale.appendi(rilevazioni(1, 5));
+        assertEquals(5, giornale.leggi(0, 100).size());
+        giornale.chiudi();
+
+        // Arresto dopo aver riversato le prime tre voci
+        GiornaleIngestione riavviato = apri(3);
+        List<VoceGiornale> daRiversare = riavviato.leggi(3, 100);
+        assertEquals(List.of(4L, 5L), daRiversare.stream().map(VoceGiornale::sequenza).toList());
+        assertEquals(new VoceGiornale(4, 4, ISTANTE.plusMinutes(4), 4.0), daRiversare.getFirst());
+
+        riavviato.appendi(rilevazioni(6, 1));
+        assertEquals(List.of(6L), riavviato.leggi(5, 100).stream().map(VoceGiornale::sequenza).toList());
+        riavviato.chiudi();
+
+        // Tutto riversato: un nuovo riavvio non ripropone nulla
+        GiornaleIngestione ancora = apri(6);
+        assertTrue(ancora.leggi(6, 100).isEmpty());
+        ancora.chiudi();
+    }
+
+    @Test
+    void vociScartateInFileCsv() throws IOException {
+        GiornaleIngestione giornale = apri(0);
+        giornale.scarta(new VoceGiornale(7, 3, ISTANTE, 1.5), new IllegalStateException("vincolo, violato\nriga 2"));
+        giornale.chiudi();
+
+        List<String> righe = Files.readAllLines(directory.resolve(GiornaleIngestione.FILE_SCARTATE));
+        assertEquals(List.of("7,3," + ISTANTE + ",1.5,vincolo violato riga 2"), righe);
+    }
+
+    private GiornaleIngestione apri(long posizione) {
+        PosizioneGiornaleRepository posizioni = StubRepository.di(PosizioneGiornaleRepository.class,
+                Map.of("findById", argomenti -> Optional.of(new PosizioneGiornale((String) argomenti[0], posizione))));
+        return new GiornaleIngestione(posizioni, new SimpleMeterRegistry(), true, directory.toString(), 1, "prova");
+    }
+
+    // Rilevazioni del sensore i, con valore i, dalla sequenza attesa "da" in poi
+    private static List<Rilevazione> rilevazioni(int da, int n) {
+        List<Rilevazione> rilevazioni = new ArrayList<>();
+        for (int i = da; i < da + n; i++) {
+            Sensore sensore = new Sensore();
+            sensore.setId((long) i);
+            Rilevazione ril = new Rilevazione();
+            ril.setSensore(sensore);
+            ril.setTimestamp(ISTANTE.plusMinutes(i));
+            ril.setValore((double) i);
+            rilevazioni.add(ril);
+        }
+        return rilevazioni;
+    }
+}
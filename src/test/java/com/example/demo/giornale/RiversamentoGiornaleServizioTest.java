@@ -0,0 +1,61 @@
+package com.example.demo.giornale;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gestione degli errori del riversamento: un blocco con voci rifiutate dal DB viene diviso fino a
+ * isolarle, mentre un errore transitorio lascia il blocco intatto per il nuovo tentativo.
+ */
+class RiversamentoGiornaleServizioTest {
+
+    @Test
+    void vociRifiutateIsolateEScartate() {
+        List<Long> salvate = new ArrayList<>();
+        List<Long> scartate = new ArrayList<>();
+
+        RiversamentoGiornaleServizio.salvaDividendo(voci(10), blocco -> {
+            if (blocco.stream().anyMatch(v -> v.sequenza() == 4 || v.sequenza() == 7)) {
+                throw new DataIntegrityViolationException("valore fuori dominio");
+            }
+            blocco.forEach(v -> salvate.add(v.sequenza()));
+        }, (voce, errore) -> scartate.add(voce.sequenza()));
+
+        assertEquals(List.of(1L, 2L, 3L, 5L, 6L, 8L, 9L, 10L), salvate);
+        assertEquals(List.of(4L, 7L), scartate);
+    }
+
+    @Test
+    void erroreTransitorioNonDivideIlBlocco() {
+        List<Integer> tentativi = new ArrayList<>();
+        assertThrows(QueryTimeoutException.class, () -> RiversamentoGiornaleServizio.salvaDividendo(voci(10), blocco -> {
+            tentativi.add(blocco.size());
+            throw new QueryTimeoutException("DB non raggiungibile");
+        }, (voce, errore) -> fail("Nessuna voce va scartata per un errore transitorio")));
+        assertEquals(List.of(10), tentativi);
+    }
+
+    @Test
+    void classificazioneDegliErrori() {
+        assertTrue(RiversamentoGiornaleServizio.permanente(new RuntimeException(new SQLException("duplicato", "23505"))));
+        assertTrue(RiversamentoGiornaleServizio.permanente(new RuntimeException(new SQLException("fuori intervallo", "22003"))));
+        assertFalse(RiversamentoGiornaleServizio.permanente(new RuntimeException(new SQLException("connessione", "08001"))));
+        assertFalse(RiversamentoGiornaleServizio.permanente(new IllegalStateException("generico")));
+    }
+
+    private static List<VoceGiornale> voci(int n) {
+        List<VoceGiornale> voci = new ArrayList<>();
+        for (long s = 1; s <= n; s++) {
+            voci.add(new VoceGiornale(s, 1, LocalDateTime.of(2025, 6, 1, 0, 0).plusMinutes(s), s));
+        }
+        return voci;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.giornale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Recupero di un segmento del giornale dopo un riavvio: voci integre, CRC errato e scrittura incompleta in coda.
+ */
+class SegmentoGiornaleTest {
+
+    private static final LocalDateTime ISTANTE = LocalDateTime.of(2025, 6, 1, 10, 15, 30, 123_456_789);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void riaperturaRitrovaLeVociScritte() throws IOException {
+        SegmentoGiornale segmento = SegmentoGiornale.apri(directory, 1, 10);
+        scrivi(segmento, 3);
+
+        SegmentoGiornale riaperto = SegmentoGiornale.apri(directory, 1, 10);
+        assertEquals(3, riaperto.voci());
+        assertEquals(4, riaperto.prossimaSequenza());
+        assertEquals(new VoceGiornale(2, 12, ISTANTE.plusMinutes(1), 21.5), riaperto.leggi(2));
+    }
+
+    @Test
+    void crcErratoTroncaIlSegmento() throws IOException {
+        scrivi(SegmentoGiornale.apri(directory, 1, 10), 3);
+
+        // Un bit del valore della seconda voce cambiato dopo la scrittura
+        Path file = unicoFile();
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            canale.read(b, SegmentoGiornale.DIMENSIONE_VOCE + 24);
+            b.flip();
+            canale.write(ByteBuffer.wrap(new byte[]{(byte) (b.get() ^ 1)}), SegmentoGiornale.DIMENSIONE_VOCE + 24);
+        }
+
+        SegmentoGiornale riaperto = SegmentoGiornale.apri(directory, 1, 10);
+        assertEquals(1, riaperto.voci());
+        byte[] contenuto = Files.readAllBytes(file);
+        for (int i = SegmentoGiornale.DIMENSIONE_VOCE; i < contenuto.length; i++) {
+            assertEquals(0, contenuto[i], "Byte " + i + " non azzerato dopo il recupero");
+        }
+    }
+
+    @Test
+    void scritturaIncompletaInCodaVieneScartata() throws IOException {
+        scrivi(SegmentoGiornale.apri(directory, 1, 10), 3);
+
+        // Quarta voce interrotta dopo sequenza e sensore, senza CRC
+        try (FileChannel canale = FileChannel.open(unicoFile(), StandardOpenOption.WRITE)) {
+            canale.write(ByteBuffer.allocate(16).putLong(4).putLong(99).flip(), 3L * SegmentoGiornale.DIMENSIONE_VOCE);
+        }
+
+        SegmentoGiornale riaperto = SegmentoGiornale.apri(directory, 1, 10);
+        assertEquals(3, riaperto.voci());
+        riaperto.scrivi(14, ISTANTE, 7.0);
+        riaperto.forza(riaperto.voci());
+
+        SegmentoGiornale ancora = SegmentoGiornale.apri(directory, 1, 10);
+        assertEquals(4, ancora.voci());
+        assertEquals(new VoceGiornale(4, 14, ISTANTE, 7.0), ancora.leggi(4));
+    }
+
+    @Test
+    void nomeDelFileContieneLaPrimaSequenza() throws IOException {
+        SegmentoGiornale.apri(directory, 42, 10);
+        assertEquals(42, SegmentoGiornale.primaSequenza(unicoFile()));
+        assertEquals(-1, SegmentoGiornale.primaSequenza(directory.resolve(GiornaleIngestione.FILE_SCARTATE)));
+    }
+
+    // Voci con sequenza 1..n, sensore 10 + sequenza, un minuto l'una dall'altra
+    private static void scrivi(SegmentoGiornale segmento, int n) {
+        for (int i = 0; i < n; i++) {
+            segmento.scrivi(11 + i, ISTANTE.plusMinutes(i), 20.0 + 1.5 * i);
+        }
+        segmento.forza(segmento.voci());
+    }
+
+    private Path unicoFile() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(f -> SegmentoGiornale.primaSequenza(f) > 0).findFirst().orElseThrow();
+        }
+    }
+}
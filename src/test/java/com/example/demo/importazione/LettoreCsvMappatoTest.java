@@ -0,0 +1,103 @@
+package com.example.demo.importazione;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Analisi delle righe CSV direttamente dai byte: separatori, fine riga, campi tra apici,
+ * formati del timestamp e dei valori numerici.
+ */
+class LettoreCsvMappatoTest {
+
+    @Test
+    void righeConCrlfEUltimaSenzaAccapo() {
+        byte[] testo = "S-01,2024-03-01T10:15,1.5\r\nS-02;2024-03-01 10:30:45;2\r\n\r\nS-03,2024-03-01T10:45,4"
+                .getBytes(StandardCharsets.US_ASCII);
+        LettoreCsvMappato lettore = new LettoreCsvMappato(ByteBuffer.wrap(testo));
+
+        assertTrue(lettore.prossima());
+        assertTrue(lettore.valida());
+        assertEquals("S-01", codice(testo, lettore));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 10, 15), lettore.timestamp());
+        assertEquals(1.5, lettore.valore());
+        assertEquals("S-01,2024-03-01T10:15,1.5\r\n".length(), lettore.posizione());
+
+        assertTrue(lettore.prossima());
+        assertTrue(lettore.valida());
+        assertEquals("S-02", codice(testo, lettore));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 10, 30, 45), lettore.timestamp());
+        assertEquals(2.0, lettore.valore());
+
+        assertTrue(lettore.prossima());
+        assertTrue(lettore.vuota());
+
+        assertTrue(lettore.prossima());
+        assertTrue(lettore.valida());
+        assertEquals("S-03", codice(testo, lettore));
+        assertEquals(4.0, lettore.valore());
+        assertEquals(testo.length, lettore.posizione());
+
+        assertFalse(lettore.prossima());
+    }
+
+    @Test
+    void campiTraDoppiApici() {
+        byte[] testo = "\"S-01\",\"2024-03-01 10:15:30.25\",\"-12.5\"\n".getBytes(StandardCharsets.US_ASCII);
+        LettoreCsvMappato lettore = new LettoreCsvMappato(ByteBuffer.wrap(testo));
+
+        assertTrue(lettore.prossima());
+        assertTrue(lettore.valida());
+        assertEquals("S-01", codice(testo, lettore));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 10, 15, 30, 250_000_000), lettore.timestamp());
+        assertEquals(-12.5, lettore.valore());
+    }
+
+    @Test
+    void valoriConSegnoEsponenteEMoltiDecimali() {
+        String[] valori = {"-3.25", "+7", "0.001", "1.5e3", "-2E-2", "123456789.123456789", "-0", ".5"};
+        for (String valore : valori) {
+            LettoreCsvMappato lettore = lettore("S-01,2024-03-01T10:15," + valore + "\n");
+            assertTrue(lettore.prossima());
+            assertTrue(lettore.valida(), valore);
+            assertEquals(Double.parseDouble(valore), lettore.valore(), valore);
+        }
+    }
+
+    @Test
+    void righeMalformateNonValide() {
+        String[] righe = {
+                "S-01,2024-03-01T10:15,abc",
+                "S-01,2024-03-01T10:15,1.5x",
+                "S-01,2024-03-01T10:15,",
+                "S-01,2024-03-01T10:15,-",
+                "S-01,2024-02-30T10:15,1",
+                "S-01,2024-13-01T10:15,1",
+                "S-01,2024-03-01T24:00,1",
+                "S-01,2024/03/01T10:15,1",
+                "S-01,2024-03-01T10:15:6,1",
+                "S-01,2024-03-01T10:15",
+                ",2024-03-01T10:15,1",
+                "\"\",2024-03-01T10:15,1"
+        };
+        for (String riga : righe) {
+            LettoreCsvMappato lettore = lettore(riga + "\n");
+            assertTrue(lettore.prossima());
+            assertFalse(lettore.vuota(), riga);
+            assertFalse(lettore.valida(), riga);
+        }
+    }
+
+    private static LettoreCsvMappato lettore(String testo) {
+        return new LettoreCsvMappato(ByteBuffer.wrap(testo.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String codice(byte[] testo, LettoreCsvMappato lettore) {
+        return new String(testo, lettore.inizioCodice(), lettore.fineCodice() - lettore.inizioCodice(),
+                StandardCharsets.US_ASCII);
+    }
+}
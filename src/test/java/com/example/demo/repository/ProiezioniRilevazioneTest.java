@@ -0,0 +1,97 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.PuntoRilevazioneDTO;
+import com.example.demo.dto.PuntoSerieDTO;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.supporto.DatiDiProva;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Letture per proiezione delle rilevazioni: colonne, filtri e ordinamento delle query dei grafici
+ * e delle finestre, senza entità nel contesto di persistenza.
+ */
+@SpringBootTest
+class ProiezioniRilevazioneTest {
+
+    private static final LocalDateTime GIORNO = LocalDateTime.of(2001, 2, 1, 0, 0);
+
+    @Autowired
+    private RilevazioneRepository rilevazioneRepo;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    @Autowired
+    private TransactionTemplate transazione;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void puntiRecentiDalPiuRecenteConQualita() {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        salva(sensore);
+
+        List<PuntoRilevazioneDTO> recenti = rilevazioneRepo.findPuntiRecenti(sensore.getId(), Limit.of(3));
+        assertEquals(List.of(
+                new PuntoRilevazioneDTO(GIORNO.plusMinutes(75), 15.0, QualitaDato.VALIDO),
+                new PuntoRilevazioneDTO(GIORNO.plusMinutes(60), 14.0, QualitaDato.INVALIDO),
+                new PuntoRilevazioneDTO(GIORNO.plusMinutes(45), 13.0, QualitaDato.VALIDO)), recenti);
+    }
+
+    @Test
+    void puntiValidiNellIntervalloInOrdine() {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        salva(sensore);
+
+        // Estremo finale escluso, letture non valide e di altri sensori scartate
+        List<PuntoSerieDTO> validi = rilevazioneRepo.findPuntiValidi(sensore.getId(),
+                GIORNO.plusMinutes(15), GIORNO.plusMinutes(75));
+        assertEquals(List.of(
+                new PuntoSerieDTO(GIORNO.plusMinutes(15), 11.0),
+                new PuntoSerieDTO(GIORNO.plusMinutes(45), 13.0)), validi);
+    }
+
+    @Test
+    void nessunaEntitaNelContestoDiPersistenza() {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        salva(sensore);
+
+        transazione.executeWithoutResult(stato -> {
+            entityManager.clear();
+            assertEquals(6, rilevazioneRepo.findPuntiRecenti(sensore.getId(), Limit.of(96)).size());
+            assertEquals(4, rilevazioneRepo.findPuntiValidi(sensore.getId(), GIORNO, GIORNO.plusDays(1)).size());
+            // Né rilevazioni né i relativi sensore e campo sono stati caricati
+            assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+        });
+    }
+
+    // Sei letture ogni 15 minuti (10, 11, ... 15), la terza dubbia e la quinta invalida, più una di un altro sensore
+    private void salva(Sensore sensore) {
+        List<Rilevazione> rilevazioni = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            QualitaDato qualita = i == 2 ? QualitaDato.DUBBIO : i == 4 ? QualitaDato.INVALIDO : QualitaDato.VALIDO;
+            rilevazioni.add(DatiDiProva.rilevazione(sensore, GIORNO.plusMinutes(15L * i), 10.0 + i, qualita));
+        }
+        Sensore altro = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        rilevazioni.add(DatiDiProva.rilevazione(altro, GIORNO.plusMinutes(30), 99.0, QualitaDato.VALIDO));
+        rilevazioneRepo.saveAll(rilevazioni);
+    }
+}
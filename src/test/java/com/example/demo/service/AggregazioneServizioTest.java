@@ -0,0 +1,122 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.AggregatoRilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Granularita;
+import com.example.demo.repository.AggregatoRilevazioneRepository;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.service.AggregazioneServizio.Intervallo;
+import com.example.demo.supporto.DatiDiProva;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coda delle ore da aggregare: accorpamento delle ore contigue e aggregazione di una transazione
+ * di ingestione confermata dopo una successiva (ID più bassi, commit più tardo).
+ */
+@SpringBootTest
+class AggregazioneServizioTest {
+
+    private static final LocalDateTime GIORNO = LocalDateTime.of(2001, 1, 1, 0, 0);
+
+    @Autowired
+    private AggregazioneServizio aggregazione;
+
+    @Autowired
+    private IngestioneServizio ingestione;
+
+    @Autowired
+    private TransactionTemplate transazione;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    @Autowired
+    private AggregatoRilevazioneRepository aggregatoRepo;
+
+    @Test
+    void oreContigueAccorpateInIntervalli() {
+        TreeSet<LocalDateTime> ore = new TreeSet<>(List.of(
+                GIORNO.plusHours(3), GIORNO.plusHours(1), GIORNO.plusHours(2), GIORNO.plusHours(5)));
+        assertEquals(List.of(new Intervallo(GIORNO.plusHours(1), GIORNO.plusHours(4)),
+                        new Intervallo(GIORNO.plusHours(5), GIORNO.plusHours(6))),
+                AggregazioneServizio.contigui(ore, ChronoUnit.HOURS));
+
+        TreeSet<LocalDateTime> giorni = new TreeSet<>(List.of(GIORNO, GIORNO.plusDays(1)));
+        assertEquals(List.of(new Intervallo(GIORNO, GIORNO.plusDays(2))),
+                AggregazioneServizio.contigui(giorni, ChronoUnit.DAYS));
+        assertTrue(AggregazioneServizio.contigui(new TreeSet<>(), ChronoUnit.HOURS).isEmpty());
+    }
+
+    @Test
+    void transazioneConfermataInRitardo() throws Exception {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        CountDownLatch scritta = new CountDownLatch(1);
+        CountDownLatch conferma = new CountDownLatch(1);
+        ExecutorService esecutore = Executors.newSingleThreadExecutor();
+        try {
+            // Riserva gli ID per prima ma conferma per ultima
+            Future<?> inRitardo = esecutore.submit(() -> transazione.executeWithoutResult(stato -> {
+                ingestione.salvaInBlocchi(List.of(DatiDiProva.rilevazione(sensore, GIORNO.plusHours(10), 20.0)));
+                scritta.countDown();
+                attendi(conferma);
+            }));
+            assertTrue(scritta.await(30, TimeUnit.SECONDS));
+
+            ingestione.registra(List.of(DatiDiProva.rilevazione(sensore, GIORNO.plusHours(12), 10.0),
+                    DatiDiProva.rilevazione(sensore, GIORNO.plusHours(12).plusMinutes(30), 14.0)));
+            aggregazione.aggiorna();
+            assertEquals(List.of(GIORNO.plusHours(12)),
+                    orari(sensore).stream().map(AggregatoRilevazione::getInizio).toList());
+
+            conferma.countDown();
+            inRitardo.get(30, TimeUnit.SECONDS);
+            aggregazione.aggiorna();
+        } finally {
+            esecutore.shutdownNow();
+        }
+
+        // L'ora 11, senza letture, resta senza aggregato
+        List<AggregatoRilevazione> orari = orari(sensore);
+        assertEquals(List.of(GIORNO.plusHours(10), GIORNO.plusHours(12)),
+                orari.stream().map(AggregatoRilevazione::getInizio).toList());
+        assertEquals(20.0, orari.get(0).getMedia(), 1e-9);
+        assertEquals(12.0, orari.get(1).getMedia(), 1e-9);
+
+        List<AggregatoRilevazione> giorni = aggregatoRepo.findIntervallo(sensore.getId(), Granularita.GIORNO,
+                GIORNO, GIORNO.plusDays(1));
+        assertEquals(1, giorni.size());
+        assertEquals(3L, giorni.getFirst().getConteggio());
+        assertEquals(10.0, giorni.getFirst().getMinimo(), 1e-9);
+        assertEquals(20.0, giorni.getFirst().getMassimo(), 1e-9);
+    }
+
+    private List<AggregatoRilevazione> orari(Sensore sensore) {
+        return aggregatoRepo.findIntervallo(sensore.getId(), Granularita.ORA, GIORNO, GIORNO.plusDays(1));
+    }
+
+    private static void attendi(CountDownLatch latch) {
+        try {
+            if (!latch.await(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Attesa scaduta");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.dto.ConfrontoCampiDTO;
+import com.example.demo.dto.StatisticheCampoDTO;
+import com.example.demo.entity.AggregatoRilevazione;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Granularita;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.repository.AggregatoRilevazioneRepository;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.StubRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Confronto tra campi su aggregati orari, senza database: media, deviazione standard e percentili
+ * calcolati sulle medie dei bucket (non sulle singole letture), minimo e massimo dalle letture,
+ * correlazioni di Pearson sui bucket in comune.
+ */
+class ConfrontoCampiServizioTest {
+
+    private static final LocalDateTime DA = LocalDateTime.of(2001, 5, 1, 0, 0);
+    private static final LocalDateTime A = DA.plusDays(2);
+
+    private final List<Campo> campi = new ArrayList<>();
+    private final List<Sensore> sensori = new ArrayList<>();
+    private final Map<Long, List<AggregatoRilevazione>> aggregati = new HashMap<>();
+
+    private final ConfrontoCampiServizio confronto = new ConfrontoCampiServizio(
+            new AnagraficaServizio(
+                    StubRepository.di(CampoRepository.class, Map.of("findAll", argomenti -> List.copyOf(campi))),
+                    StubRepository.di(SensoreRepository.class, Map.of("findByCampoIdAndAttivoTrue", argomenti ->
+                            sensori.stream().filter(s -> s.getCampo().getId().equals(argomenti[0])).toList())),
+                    new SimpleMeterRegistry(), 16, 16),
+            new SerieStoricaServizio(
+                    StubRepository.di(RilevazioneRepository.class, Map.of("findPuntiValidi", argomenti -> List.of())),
+                    StubRepository.di(AggregatoRilevazioneRepository.class, Map.of("findIntervallo", argomenti ->
+                            aggregati.getOrDefault((Long) argomenti[0], List.of()))),
+                    null, 3, 90, 300_000),
+            new EsecutoreParallelo(false, 1));
+
+    @Test
+    void statisticheSulleMedieDeiBucket() {
+        Campo vigneto = campo(1L);
+        Campo vuoto = campo(2L);
+        // Medie b e b + 2 con numeri di letture diversi: la media del bucket è b + 1, non pesata (b + 0.4)
+        for (int b = 0; b < 12; b++) {
+            aggrega(sensore(10L, vigneto, TipoSensore.TEMP_AIR), b, b, 4, b - 1, b + 1);
+            aggrega(sensore(11L, vigneto, TipoSensore.TEMP_AIR), b, b + 2, 1, b, b + 5);
+        }
+        // Altra tipologia, ignorata
+        aggrega(sensore(12L, vigneto, TipoSensore.TEMP_SOIL), 0, 100, 1, 100, 100);
+
+        ConfrontoCampiDTO esito = confronto.confronta(TipoSensore.TEMP_AIR, DA, A);
+
+        StatisticheCampoDTO statistiche = esito.campi().get(0);
+        assertEquals(2, statistiche.sensori());
+        assertEquals(12, statistiche.campioni());
+        assertEquals(6.5, statistiche.media(), 1e-9);
+        assertEquals(Math.sqrt(143.0 / 12), statistiche.deviazioneStandard(), 1e-9);
+        assertEquals(2.0, statistiche.p10(), 1e-9);
+        assertEquals(6.0, statistiche.p50(), 1e-9);
+        assertEquals(11.0, statistiche.p90(), 1e-9);
+        // Estremi dalle colonne min/max, cioè dalle singole letture
+        assertEquals(-1.0, statistiche.minimo(), 1e-9);
+        assertEquals(16.0, statistiche.massimo(), 1e-9);
+
+        assertEquals(new StatisticheCampoDTO(vuoto.getId(), vuoto.getNome(), 0, 0,
+                null, null, null, null, null, null, null), esito.campi().get(1));
+    }
+
+    @Test
+    void correlazioniSulleMedieDeiBucket() {
+        Campo vigneto = campo(1L);
+        Campo uliveto = campo(2L);
+        Campo serra = campo(3L);
+        double[] medieVigneto = new double[12];
+        double[] medieUliveto = new double[12];
+        double[] pesateVigneto = new double[12];
+        for (int b = 0; b < 12; b++) {
+            aggrega(sensore(10L, vigneto, TipoSensore.TEMP_AIR), b, b, 4, b, b);
+            aggrega(sensore(11L, vigneto, TipoSensore.TEMP_AIR), b, b * b / 4.0, 1, b, b);
+            aggrega(sensore(20L, uliveto, TipoSensore.TEMP_AIR), b, b % 3, 1, b, b);
+            medieVigneto[b] = (b + b * b / 4.0) / 2;
+            pesateVigneto[b] = (4 * b + b * b / 4.0) / 5;
+            medieUliveto[b] = b % 3;
+        }
+        // Troppo pochi bucket in comune per una correlazione significativa
+        for (int b = 0; b < 5; b++) {
+            aggrega(sensore(30L, serra, TipoSensore.TEMP_AIR), b, 20 + b, 1, b, b);
+        }
+
+        Double[][] correlazioni = confronto.confronta(TipoSensore.TEMP_AIR, DA, A).correlazioni();
+
+        double attesa = pearson(medieVigneto, medieUliveto);
+        assertNotEquals(attesa, pearson(pesateVigneto, medieUliveto), 1e-3);
+        assertEquals(attesa, correlazioni[0][1], 1e-9);
+        assertEquals(attesa, correlazioni[1][0], 1e-9);
+        assertEquals(1.0, correlazioni[0][0], 1e-9);
+        assertNull(correlazioni[0][2]);
+        assertNull(correlazioni[2][1]);
+        assertNull(correlazioni[2][2]);
+    }
+
+    private Campo campo(long id) {
+        Campo campo = new Campo(id, "Campo " + id, TipoCampo.PIENO, 1.0, StatoCampo.ATTIVO, 0.0, 0.0, 0.0);
+        campi.add(campo);
+        return campo;
+    }
+
+    private Sensore sensore(long id, Campo campo, TipoSensore tipo) {
+        for (Sensore sensore : sensori) {
+            if (sensore.getId() == id) {
+                return sensore;
+            }
+        }
+        Sensore sensore = new Sensore();
+        sensore.setId(id);
+        sensore.setCodice("S-" + id);
+        sensore.setTipo(tipo);
+        sensore.setCampo(campo);
+        sensore.setAttivo(true);
+        sensori.add(sensore);
+        return sensore;
+    }
+
+    // Aggregato orario del bucket b con la media e il numero di letture indicati
+    private void aggrega(Sensore sensore, int b, double media, long letture, double minimo, double massimo) {
+        AggregatoRilevazione agg = new AggregatoRilevazione();
+        agg.setSensoreId(sensore.getId());
+        agg.setGranularita(Granularita.ORA);
+        agg.setInizio(DA.plusHours(b));
+        agg.setSomma(media * letture);
+        agg.setConteggio(letture);
+        agg.setMinimo(minimo);
+        agg.setMassimo(massimo);
+        aggregati.computeIfAbsent(sensore.getId(), k -> new ArrayList<>()).add(agg);
+    }
+
+    private static double pearson(double[] x, double[] y) {
+        double mx = 0, my = 0;
+        for (int i = 0; i < x.length; i++) {
+            mx += x[i] / x.length;
+            my += y[i] / y.length;
+        }
+        double cov = 0, vx = 0, vy = 0;
+        for (int i = 0; i < x.length; i++) {
+            cov += (x[i] - mx) * (y[i] - my);
+            vx += (x[i] - mx) * (x[i] - mx);
+            vy += (y[i] - my) * (y[i] - my);
+        }
+        return cov / Math.sqrt(vx * vy);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.AggregatoRilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.Granularita;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.repository.AggregatoRilevazioneRepository;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.DatiDiProva;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conservazione per tipologia: eliminate solo le giornate anteriori al limite, dopo averne
+ * riassunto gli aggregati; le tipologie senza durata configurata restano intatte.
+ */
+@SpringBootTest(properties = "collina.conservazione.giorni.TEMP_SOIL=30")
+class ConservazioneServizioTest {
+
+    @Autowired
+    private ConservazioneServizio conservazione;
+
+    @Autowired
+    private IngestioneServizio ingestione;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    @Autowired
+    private RilevazioneRepository rilevazioneRepo;
+
+    @Autowired
+    private AggregatoRilevazioneRepository aggregatoRepo;
+
+    @Autowired
+    private Environment ambiente;
+
+    @Test
+    void eliminateSoloLeGiornateAnterioriAlLimite() {
+        LocalDate limite = LocalDate.now().minusDays(30);
+        assertEquals(limite, ConservazioneServizio.limite(ambiente, TipoSensore.TEMP_SOIL));
+        assertNull(ConservazioneServizio.limite(ambiente, TipoSensore.TEMP_AIR));
+
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        LocalDateTime inizio = limite.atStartOfDay();
+        ingestione.registra(List.of(
+                DatiDiProva.rilevazione(sensore, inizio.minusDays(2).plusHours(10), 12.0),
+                DatiDiProva.rilevazione(sensore, inizio.minusMinutes(15), 14.0),
+                DatiDiProva.rilevazione(sensore, inizio, 16.0),
+                DatiDiProva.rilevazione(sensore, inizio.plusDays(1).plusHours(12), 18.0)));
+
+        conservazione.applica();
+
+        // La prima lettura conservata è quella di mezzanotte del giorno limite
+        assertEquals(inizio, rilevazioneRepo.findPrimoTimestampDa(sensore.getId(), inizio.minusYears(1)));
+        assertEquals(2, rilevazioneRepo.findPuntiRecenti(sensore.getId(), Limit.of(10)).size());
+
+        // Le giornate eliminate restano disponibili come aggregati orari e giornalieri
+        List<AggregatoRilevazione> orari = aggregatoRepo.findIntervallo(sensore.getId(), Granularita.ORA,
+                inizio.minusDays(2), inizio);
+        assertEquals(List.of(inizio.minusDays(2).plusHours(10), inizio.minusHours(1)),
+                orari.stream().map(AggregatoRilevazione::getInizio).toList());
+        assertEquals(14.0, orari.get(1).getMedia(), 1e-9);
+        assertEquals(2, aggregatoRepo.findIntervallo(sensore.getId(), Granularita.GIORNO,
+                inizio.minusDays(2), inizio).size());
+
+        // Una seconda esecuzione non trova più nulla da eliminare
+        conservazione.applica();
+        assertEquals(inizio, rilevazioneRepo.findPrimoTimestampDa(sensore.getId(), inizio.minusYears(1)));
+    }
+}
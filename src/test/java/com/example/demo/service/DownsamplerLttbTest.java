@@ -0,0 +1,99 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.SerieTemporaleDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Riduzione LTTB: estremi conservati, numero di punti richiesto, punti presi dalla serie originale
+ * in ordine cronologico e picchi isolati preservati.
+ */
+class DownsamplerLttbTest {
+
+    private static final long PASSO = 15 * 60_000L;
+
+    @Test
+    void estremiENumeroDiPunti() {
+        SerieTemporaleDTO serie = casuale(1000, new Random(5));
+        for (int maxPunti : new int[]{3, 4, 10, 97, 500, 999}) {
+            SerieTemporaleDTO ridotta = DownsamplerLttb.riduci(serie, maxPunti);
+
+            assertEquals(maxPunti, ridotta.dimensione(), "maxPunti " + maxPunti);
+            assertEquals(serie.timestamp()[0], ridotta.timestamp()[0]);
+            assertEquals(serie.valori()[0], ridotta.valori()[0]);
+            assertEquals(serie.timestamp()[999], ridotta.timestamp()[maxPunti - 1]);
+            assertEquals(serie.valori()[999], ridotta.valori()[maxPunti - 1]);
+        }
+    }
+
+    @Test
+    void puntiDellaSerieOriginaleInOrdine() {
+        SerieTemporaleDTO serie = casuale(777, new Random(9));
+        Map<Long, Double> originali = new HashMap<>();
+        for (int i = 0; i < serie.dimensione(); i++) {
+            originali.put(serie.timestamp()[i], serie.valori()[i]);
+        }
+
+        SerieTemporaleDTO ridotta = DownsamplerLttb.riduci(serie, 50);
+        for (int i = 0; i < ridotta.dimensione(); i++) {
+            assertEquals(originali.get(ridotta.timestamp()[i]), ridotta.valori()[i], "punto " + i);
+            if (i > 0) {
+                assertTrue(ridotta.timestamp()[i] > ridotta.timestamp()[i - 1], "ordine al punto " + i);
+            }
+        }
+    }
+
+    @Test
+    void picchiIsolatiConservati() {
+        int n = 2000;
+        long[] t = new long[n];
+        double[] v = new double[n];
+        for (int i = 0; i < n; i++) {
+            t[i] = i * PASSO;
+            v[i] = 20.0;
+        }
+        v[613] = 45.0;
+        v[1499] = -5.0;
+
+        SerieTemporaleDTO ridotta = DownsamplerLttb.riduci(new SerieTemporaleDTO(t, v), 40);
+        assertTrue(contiene(ridotta, 613 * PASSO, 45.0));
+        assertTrue(contiene(ridotta, 1499 * PASSO, -5.0));
+    }
+
+    @Test
+    void serieEntroIlLimiteRestituitaInvariata() {
+        SerieTemporaleDTO serie = casuale(20, new Random(1));
+        assertSame(serie, DownsamplerLttb.riduci(serie, 20));
+        assertSame(serie, DownsamplerLttb.riduci(serie, 500));
+        // Sotto i 3 punti l'algoritmo non si applica
+        assertSame(serie, DownsamplerLttb.riduci(serie, 2));
+        assertSame(SerieTemporaleDTO.VUOTA, DownsamplerLttb.riduci(SerieTemporaleDTO.VUOTA, 10));
+    }
+
+    private static boolean contiene(SerieTemporaleDTO serie, long ts, double valore) {
+        for (int i = 0; i < serie.dimensione(); i++) {
+            if (serie.timestamp()[i] == ts && serie.valori()[i] == valore) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Passeggiata casuale a cadenza di 15 minuti
+    private static SerieTemporaleDTO casuale(int n, Random caso) {
+        long[] t = new long[n];
+        double[] v = new double[n];
+        double valore = 20;
+        for (int i = 0; i < n; i++) {
+            t[i] = 1_700_000_000_000L + i * PASSO;
+            valore += caso.nextGaussian();
+            v[i] = valore;
+        }
+        return new SerieTemporaleDTO(t, v);
+    }
+}
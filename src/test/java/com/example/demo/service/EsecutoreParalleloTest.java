@@ -0,0 +1,38 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fan-out su virtual thread: ordine dei risultati e fan-out annidati con budget esaurito.
+ */
+class EsecutoreParalleloTest {
+
+    @Test
+    void risultatiNellOrdineDegliElementi() {
+        EsecutoreParallelo parallelo = new EsecutoreParallelo(true, 2);
+        try {
+            assertEquals(List.of(2, 4, 6, 8), parallelo.mappa(List.of(1, 2, 3, 4), n -> n * 2));
+        } finally {
+            parallelo.chiudi();
+        }
+    }
+
+    @Test
+    void fanOutAnnidatoNonSiBlocca() {
+        // Con un solo permesso l'elemento esterno lo occupa: il fan-out interno deve proseguire in sequenza
+        EsecutoreParallelo parallelo = new EsecutoreParallelo(true, 1);
+        try {
+            List<Integer> somme = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                    parallelo.mappa(List.of(1, 2), n -> parallelo.mappa(List.of(n, n * 10), m -> m)
+                            .stream().mapToInt(Integer::intValue).sum()));
+            assertEquals(List.of(11, 22), somme);
+        } finally {
+            parallelo.chiudi();
+        }
+    }
+}
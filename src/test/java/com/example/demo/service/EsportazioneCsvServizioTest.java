@@ -0,0 +1,148 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.DatiDiProva;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.test.LocalServerPort;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Esportazione CSV in streaming: righe del solo intervallo richiesto in ordine cronologico,
+ * interruzione della query quando il client chiude la connessione e limite di esportazioni contemporanee.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class EsportazioneCsvServizioTest {
+
+    private static final LocalDateTime GIORNO = LocalDateTime.of(2001, 4, 1, 0, 0);
+
+    // Oltre il buffer di scrittura da 64 KB, così il flusso di uscita viene usato durante la lettura
+    private static final int LETTURE = 2000;
+
+    @LocalServerPort
+    private int porta;
+
+    @Autowired
+    private EsportazioneCsvServizio esportazione;
+
+    @Autowired
+    private IngestioneServizio ingestione;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    @Autowired
+    private MeterRegistry metriche;
+
+    @Test
+    void righeDellIntervalloInOrdine() throws IOException {
+        Sensore sensore = sensoreConLetture();
+        ByteArrayOutputStream uscita = new ByteArrayOutputStream();
+        esportazione.scrivi(List.of(sensore), GIORNO.plusMinutes(10), GIORNO.plusMinutes(1010), false, uscita);
+
+        String[] righe = uscita.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("campo_id,sensore_id,codice,tipo,timestamp,valore,unita,qualita", righe[0]);
+        assertEquals(1001, righe.length);
+        String prefisso = sensore.getCampo().getId() + "," + sensore.getId() + "," + sensore.getCodice() + ","
+                + sensore.getTipo() + ",";
+        assertTrue(righe[1].startsWith(prefisso + "2001-04-01T00:10:00,15.0," + sensore.getTipo().getUnita() + ","),
+                righe[1]);
+        assertTrue(righe[1000].startsWith(prefisso + "2001-04-01T16:49:00,15.9,"), righe[1000]);
+
+        // Stesso contenuto compresso
+        ByteArrayOutputStream compressa = new ByteArrayOutputStream();
+        esportazione.scrivi(List.of(sensore), GIORNO.plusMinutes(10), GIORNO.plusMinutes(1010), true, compressa);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressa.toByteArray()))) {
+            assertEquals(uscita.toString(StandardCharsets.UTF_8), new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void clientDisconnessoInterrompeLaQuery() throws IOException {
+        Sensore sensore = sensoreConLetture();
+        double primaRighe = metriche.get("collina.esportazione.righe").counter().count();
+
+        OutputStream chiusa = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Connessione chiusa dal client");
+            }
+        };
+        IOException errore = assertThrows(IOException.class, () ->
+                esportazione.scrivi(List.of(sensore), GIORNO, GIORNO.plusDays(2), false, chiusa));
+        assertEquals("Connessione chiusa dal client", errore.getMessage());
+
+        // La lettura si ferma al primo errore di scrittura, senza scorrere le righe rimanenti
+        double scritte = metriche.get("collina.esportazione.righe").counter().count() - primaRighe;
+        assertTrue(scritte < LETTURE, "Righe elaborate dopo la disconnessione: " + scritte);
+
+        // La connessione è tornata al pool ed è riutilizzabile
+        ByteArrayOutputStream uscita = new ByteArrayOutputStream();
+        esportazione.scrivi(List.of(sensore), GIORNO, GIORNO.plusMinutes(5), false, uscita);
+        assertEquals(6, uscita.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    @Test
+    void esportazioniContemporaneeLimitate() throws Exception {
+        Sensore sensore = sensoreConLetture();
+        String indirizzo = "http://localhost:" + porta + "/api/esportazioni/rilevazioni?sensoreId=" + sensore.getId()
+                + "&from=2001-04-01T00:00:00&to=2001-04-01T01:00:00&gzip=false";
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest richiesta = HttpRequest.newBuilder(URI.create(indirizzo)).GET().build();
+
+        // Slot occupati (max-concorrenti = 2): la richiesta viene respinta
+        assertTrue(esportazione.prenota());
+        assertTrue(esportazione.prenota());
+        try {
+            assertFalse(esportazione.prenota());
+            assertEquals(429, client.send(richiesta, HttpResponse.BodyHandlers.discarding()).statusCode());
+        } finally {
+            esportazione.rilascia();
+            esportazione.rilascia();
+        }
+
+        HttpResponse<String> risposta = client.send(richiesta, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, risposta.statusCode());
+        assertEquals(61, risposta.body().split("\n").length);
+
+        // Al termine della scrittura lo slot della richiesta è stato rilasciato
+        assertTrue(esportazione.prenota());
+        assertTrue(esportazione.prenota());
+        esportazione.rilascia();
+        esportazione.rilascia();
+    }
+
+    // Una lettura al minuto a partire da GIORNO, con valori 15.0, 15.1, ... 15.9 a rotazione
+    private Sensore sensoreConLetture() {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        List<Rilevazione> rilevazioni = new ArrayList<>(LETTURE);
+        for (int i = 0; i < LETTURE; i++) {
+            rilevazioni.add(DatiDiProva.rilevazione(sensore, GIORNO.plusMinutes(i), 15.0 + (i % 10) / 10.0));
+        }
+        ingestione.registra(rilevazioni);
+        return sensore;
+    }
+}
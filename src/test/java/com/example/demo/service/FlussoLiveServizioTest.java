@@ -0,0 +1,90 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.DatiDiProva;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.test.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Flusso live SSE: un client iscritto a un campo riceve le rilevazioni confermate di quel campo
+ * e, chiusa la connessione, viene rimosso dagli iscritti al primo invio successivo.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FlussoLiveServizioTest {
+
+    private static final LocalDateTime ORA = LocalDateTime.of(2001, 6, 1, 9, 0);
+
+    @LocalServerPort
+    private int porta;
+
+    @Autowired
+    private IngestioneServizio ingestione;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    @Autowired
+    private MeterRegistry metriche;
+
+    @Test
+    void iscrizioneInvioERimozione() throws Exception {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        double collegatiPrima = collegati();
+
+        // La risposta arriva dopo l'iscrizione: da qui le nuove rilevazioni del campo vengono inviate
+        HttpResponse<Stream<String>> risposta = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + porta + "/api/live?campoId="
+                        + sensore.getCampo().getId())).GET().build(),
+                HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, risposta.statusCode());
+        assertEquals(collegatiPrima + 1, collegati(), 1e-9);
+
+        ingestione.registra(List.of(DatiDiProva.rilevazione(sensore, ORA, 21.5)));
+        Iterator<String> righe = risposta.body().iterator();
+        String evento = CompletableFuture.supplyAsync(() -> {
+            String riga;
+            while (!(riga = righe.next()).startsWith("event:")) {
+                // Commenti di keep-alive e righe vuote tra un evento e l'altro
+            }
+            return riga + "\n" + righe.next();
+        }).get(10, TimeUnit.SECONDS);
+        String compatto = evento.replace(" ", "");
+        assertTrue(compatto.startsWith("event:rilevazione\ndata:"), evento);
+        assertTrue(compatto.contains("\"sensoreId\":" + sensore.getId()), evento);
+        assertTrue(compatto.contains("\"valore\":21.5"), evento);
+
+        // Client disconnesso: l'errore di scrittura di uno degli invii successivi lo rimuove
+        risposta.body().close();
+        long limite = System.currentTimeMillis() + 10_000;
+        for (int i = 1; collegati() > collegatiPrima && System.currentTimeMillis() < limite; i++) {
+            ingestione.registra(List.of(DatiDiProva.rilevazione(sensore, ORA.plusMinutes(i), 21.5)));
+            Thread.sleep(50);
+        }
+        assertEquals(collegatiPrima, collegati(), 1e-9);
+    }
+
+    private double collegati() {
+        return metriche.get("collina.live.client").gauge().value();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.EsitoIngestioneDTO;
+import com.example.demo.dto.PuntoRilevazioneDTO;
+import com.example.demo.dto.RilevazioneInDTO;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.DatiDiProva;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.test.LocalServerPort;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ingestione dall'API dei gateway: righe scartate e riportate nell'esito, scrittura a blocchi
+ * di {@code dimensione-batch} righe e risposta dell'endpoint POST /api/rilevazioni.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "collina.ingestione.dimensione-batch=3")
+class IngestioneServizioTest {
+
+    private static final LocalDateTime ORA = LocalDateTime.of(2001, 3, 1, 10, 0);
+
+    @LocalServerPort
+    private int porta;
+
+    @Autowired
+    private IngestioneServizio ingestione;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    @Autowired
+    private RilevazioneRepository rilevazioneRepo;
+
+    @Autowired
+    private TransactionTemplate transazione;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private MeterRegistry metriche;
+
+    @Test
+    void righeNonValideScartateERiportate() {
+        Sensore attivo = sensoreAttivo();
+        Sensore disattivato = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        String sconosciuto = "SCONOSCIUTO-" + System.nanoTime();
+        double scartatePrima = metriche.get("collina.rilevazioni.scartate").counter().count();
+
+        EsitoIngestioneDTO esito = ingestione.ingerisci(Arrays.asList(
+                new RilevazioneInDTO(attivo.getCodice(), ORA, 18.0),
+                new RilevazioneInDTO(sconosciuto, ORA, 18.5),
+                new RilevazioneInDTO(disattivato.getCodice(), ORA, 19.0),
+                new RilevazioneInDTO(attivo.getCodice(), ORA.plusMinutes(15), null),
+                new RilevazioneInDTO(null, ORA, 20.0),
+                new RilevazioneInDTO(attivo.getCodice(), ORA.plusMinutes(30), 18.2)));
+
+        assertEquals(new EsitoIngestioneDTO(6, 2, 4, Set.of(sconosciuto, disattivato.getCodice())), esito);
+        assertEquals(4.0, metriche.get("collina.rilevazioni.scartate").counter().count() - scartatePrima, 1e-9);
+        assertEquals(List.of(ORA.plusMinutes(30), ORA),
+                rilevazioneRepo.findPuntiRecenti(attivo.getId(), Limit.of(10)).stream()
+                        .map(PuntoRilevazioneDTO::timestamp).toList());
+        assertTrue(rilevazioneRepo.findPuntiRecenti(disattivato.getId(), Limit.of(10)).isEmpty());
+    }
+
+    @Test
+    void salvataggioABlocchiDiDimensioneBatch() {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        List<Rilevazione> rilevazioni = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            rilevazioni.add(DatiDiProva.rilevazione(sensore, ORA.plusMinutes(5L * i), 15.0 + i * 0.1));
+        }
+
+        // Entità presenti nel contesto di persistenza a ogni flush
+        List<Integer> entitaPerFlush = new ArrayList<>();
+        transazione.executeWithoutResult(stato -> {
+            Session sessione = entityManager.unwrap(Session.class);
+            sessione.addEventListeners(new SessionEventListener() {
+                @Override
+                public void flushEnd(int numeroEntita, int numeroCollezioni) {
+                    if (numeroEntita > 0) {
+                        entitaPerFlush.add(numeroEntita);
+                    }
+                }
+            });
+            ingestione.salvaInBlocchi(rilevazioni);
+            assertEquals(0, sessione.getStatistics().getEntityCount());
+        });
+
+        // Due blocchi pieni, poi l'ultima riga con l'ora da riaggregare
+        assertEquals(List.of(3, 3, 2), entitaPerFlush);
+        assertEquals(7, rilevazioneRepo.findPuntiRecenti(sensore.getId(), Limit.of(10)).size());
+    }
+
+    @Test
+    void postRilevazioni() throws Exception {
+        Sensore sensore = sensoreAttivo();
+        String corpo = """
+                [{"codiceSensore":"%s","timestamp":"2001-03-02T08:00:00","valore":17.5},
+                 {"codiceSensore":"SCONOSCIUTO","timestamp":"2001-03-02T08:00:00","valore":17.5},
+                 {"codiceSensore":"%s","timestamp":"2001-03-02T08:15:00"}]
+                """.formatted(sensore.getCodice(), sensore.getCodice());
+
+        HttpResponse<String> risposta = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + porta + "/api/rilevazioni"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(corpo))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(201, risposta.statusCode());
+        String esito = risposta.body().replace(" ", "");
+        assertTrue(esito.contains("\"ricevute\":3"), esito);
+        assertTrue(esito.contains("\"salvate\":1"), esito);
+        assertTrue(esito.contains("\"scartate\":2"), esito);
+        assertTrue(esito.contains("\"codiciSconosciuti\":[\"SCONOSCIUTO\"]"), esito);
+
+        List<PuntoRilevazioneDTO> salvate = rilevazioneRepo.findPuntiRecenti(sensore.getId(), Limit.of(10));
+        assertEquals(1, salvate.size());
+        assertEquals(LocalDateTime.of(2001, 3, 2, 8, 0), salvate.getFirst().timestamp());
+        assertEquals(17.5, salvate.getFirst().valore(), 1e-9);
+    }
+
+    // L'ingestione dall'API accetta solo i sensori attivi; con una frequenza annuale
+    // il campionamento simulato non produce letture durante la prova
+    private Sensore sensoreAttivo() {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        sensore.setAttivo(true);
+        sensore.setFrequenzaMinuti(365 * 24 * 60);
+        return sensoreRepo.save(sensore);
+    }
+}
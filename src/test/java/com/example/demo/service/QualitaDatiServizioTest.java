@@ -0,0 +1,160 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.StubRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classificazione della qualità: valori non plausibili, anomalie, valori bloccati e buchi di cadenza.
+ * Le statistiche cambiano solo con le letture confermate e la distribuzione solo con quelle valide.
+ */
+class QualitaDatiServizioTest {
+
+    private static final LocalDateTime ISTANTE = LocalDateTime.of(2025, 5, 1, 0, 0);
+
+    private final QualitaDatiServizio qualita = new QualitaDatiServizio(finestreVuote(), new SimpleMeterRegistry(),
+            4.0, 30, 8, 2000, 3.0);
+
+    private final Sensore sensore = sensore(1L, null);
+
+    @Test
+    void valoriNonPlausibili() {
+        List<Rilevazione> blocco = List.of(
+                rilevazione(sensore, 0, Double.NaN),
+                rilevazione(sensore, 1, 100.0),
+                rilevazione(sensore, 2, 20.0));
+        qualita.classifica(blocco);
+        assertEquals(List.of(QualitaDato.INVALIDO, QualitaDato.INVALIDO, QualitaDato.VALIDO), esiti(blocco));
+    }
+
+    @Test
+    void leStatisticheCambianoSoloDopoLaConferma() {
+        List<Rilevazione> base = riferimento(0);
+        qualita.classifica(base);
+
+        // Nessuna lettura confermata: la distribuzione è ancora vuota e l'anomalia non si riconosce
+        Rilevazione anomala = rilevazione(sensore, 100, 55.0);
+        qualita.classifica(List.of(anomala));
+        assertEquals(QualitaDato.VALIDO, anomala.getQualita());
+
+        conferma(base);
+        Rilevazione ancora = rilevazione(sensore, 101, 55.0);
+        qualita.classifica(List.of(ancora));
+        assertEquals(QualitaDato.DUBBIO, ancora.getQualita());
+    }
+
+    @Test
+    void leAnomalieNonEntranoNellaDistribuzione() {
+        conferma(classificate(riferimento(0)));
+
+        // Cinque anomalie confermate: se entrassero nella media la sesta sembrerebbe normale
+        List<Rilevazione> anomale = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            anomale.add(rilevazione(sensore, 40 + i, i % 2 == 0 ? 55.0 : 54.0));
+        }
+        qualita.classifica(anomale);
+        assertTrue(esiti(anomale).stream().allMatch(QualitaDato.DUBBIO::equals));
+        conferma(anomale);
+
+        Rilevazione sesta = rilevazione(sensore, 50, 55.0);
+        qualita.classifica(List.of(sesta));
+        assertEquals(QualitaDato.DUBBIO, sesta.getQualita());
+    }
+
+    @Test
+    void valoreBloccatoNelloStessoBlocco() {
+        List<Rilevazione> blocco = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            blocco.add(rilevazione(sensore, i, 12.0));
+        }
+        qualita.classifica(blocco);
+
+        // Con 8 ripetizioni ammesse, dalla nona lettura identica il valore è considerato bloccato
+        List<QualitaDato> esiti = esiti(blocco);
+        assertTrue(esiti.subList(0, 8).stream().allMatch(QualitaDato.VALIDO::equals), esiti.toString());
+        assertEquals(List.of(QualitaDato.DUBBIO, QualitaDato.DUBBIO), esiti.subList(8, 10));
+    }
+
+    @Test
+    void buchiDiCadenza() {
+        Sensore ogni15 = sensore(2L, 15);
+        conferma(classificate(List.of(rilevazione(ogni15, 0, 10.0), rilevazione(ogni15, 15, 11.0))));
+
+        // Oltre 3 volte la cadenza: la prima lettura dopo il buco è dubbia, la successiva no
+        List<Rilevazione> dopoIlBuco = List.of(rilevazione(ogni15, 75, 12.0), rilevazione(ogni15, 90, 13.0));
+        qualita.classifica(dopoIlBuco);
+        assertEquals(List.of(QualitaDato.DUBBIO, QualitaDato.VALIDO), esiti(dopoIlBuco));
+
+        conferma(dopoIlBuco);
+
+        // Anche tra blocchi confermati la sequenza riparte dalla lettura dubbia
+        Rilevazione dopoUnAltroBuco = rilevazione(ogni15, 150, 14.0);
+        qualita.classifica(List.of(dopoUnAltroBuco));
+        assertEquals(QualitaDato.DUBBIO, dopoUnAltroBuco.getQualita());
+        conferma(List.of(dopoUnAltroBuco));
+
+        Rilevazione successiva = rilevazione(ogni15, 165, 15.0);
+        qualita.classifica(List.of(successiva));
+        assertEquals(QualitaDato.VALIDO, successiva.getQualita());
+    }
+
+    // 30 letture tra 19 e 21 °C, una al minuto: media 20, deviazione standard 1
+    private List<Rilevazione> riferimento(int daMinuto) {
+        List<Rilevazione> letture = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            letture.add(rilevazione(sensore, daMinuto + i, i % 2 == 0 ? 19.0 : 21.0));
+        }
+        return letture;
+    }
+
+    private List<Rilevazione> classificate(List<Rilevazione> rilevazioni) {
+        qualita.classifica(rilevazioni);
+        return rilevazioni;
+    }
+
+    private void conferma(List<Rilevazione> rilevazioni) {
+        qualita.suNuoveRilevazioni(new NuoveRilevazioniEvento(List.copyOf(rilevazioni)));
+    }
+
+    private static List<QualitaDato> esiti(List<Rilevazione> rilevazioni) {
+        return rilevazioni.stream().map(Rilevazione::getQualita).toList();
+    }
+
+    private static Rilevazione rilevazione(Sensore sensore, int minuti, double valore) {
+        Rilevazione ril = new Rilevazione();
+        ril.setSensore(sensore);
+        ril.setTimestamp(ISTANTE.plusMinutes(minuti));
+        ril.setValore(valore);
+        return ril;
+    }
+
+    private static Sensore sensore(long id, Integer frequenzaMinuti) {
+        Sensore sensore = new Sensore();
+        sensore.setId(id);
+        sensore.setTipo(TipoSensore.TEMP_AIR);
+        sensore.setFrequenzaMinuti(frequenzaMinuti);
+        return sensore;
+    }
+
+    // Finestre senza dati: le statistiche partono vuote
+    private static FinestreSensoriServizio finestreVuote() {
+        return new FinestreSensoriServizio(StubRepository.di(SensoreRepository.class, Map.of()),
+                StubRepository.di(RilevazioneRepository.class, Map.of("findPuntiRecenti", argomenti -> List.of())),
+                new EsecutoreParallelo(false, 1), 96);
+    }
+}
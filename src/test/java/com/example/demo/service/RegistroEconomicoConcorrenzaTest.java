@@ -0,0 +1,80 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.SaldoEconomicoOrario;
+import com.example.demo.entity.TotaleEconomicoCampo;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoMovimento;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SaldoEconomicoOrarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Primi movimenti concorrenti di un campo nuovo, tutti nella stessa ora: un solo saldo di apertura,
+ * una sola riga oraria e nessun incremento perso.
+ */
+@SpringBootTest
+class RegistroEconomicoConcorrenzaTest {
+
+    private static final int SCRITTORI = 6;
+
+    // Ora lontana da quelle dei movimenti del simulatore
+    private static final LocalDateTime ORA = LocalDateTime.of(2001, 1, 1, 10, 0);
+
+    @Autowired
+    private RegistroEconomicoServizio registro;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SaldoEconomicoOrarioRepository saldoRepo;
+
+    @Test
+    void primiScrittoriConcorrentiDiUnCampoNuovo() throws Exception {
+        Campo campo = campoRepo.save(new Campo(null, "Prova concorrenza", TipoCampo.PIENO, 1.0, StatoCampo.RIPOSO,
+                100.0, 10.0, 50.0));
+
+        ExecutorService esecutore = Executors.newFixedThreadPool(SCRITTORI);
+        CountDownLatch partenza = new CountDownLatch(1);
+        List<Future<?>> esiti = new ArrayList<>();
+        for (int i = 0; i < SCRITTORI; i++) {
+            LocalDateTime istante = ORA.plusMinutes(i);
+            esiti.add(esecutore.submit(() -> {
+                partenza.await();
+                registro.registra(RegistroEconomicoServizio.movimento(campo.getId(), TipoMovimento.PRODUZIONE,
+                        istante, 1.0, 2.0, 3.0, "Prova"));
+                return null;
+            }));
+        }
+        partenza.countDown();
+        try {
+            // Una violazione di chiave primaria o di unicità emergerebbe qui
+            for (Future<?> esito : esiti) {
+                esito.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            esecutore.shutdownNow();
+        }
+
+        TotaleEconomicoCampo totale = registro.totali(List.of(campo.getId())).get(campo.getId());
+        assertEquals(100.0 + SCRITTORI, totale.getProduzioneKg(), 1e-9);
+        assertEquals(10.0 + 2.0 * SCRITTORI, totale.getCosti(), 1e-9);
+        assertEquals(50.0 + 3.0 * SCRITTORI, totale.getRicavi(), 1e-9);
+
+        List<SaldoEconomicoOrario> saldi = saldoRepo.findIntervallo(campo.getId(), ORA, ORA.plusHours(1));
+        assertEquals(1, saldi.size());
+        assertEquals(SCRITTORI, saldi.getFirst().getProduzioneKg(), 1e-9);
+        assertEquals(3.0 * SCRITTORI, saldi.getFirst().getRicavi(), 1e-9);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.TotaleEconomicoCampo;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoMovimento;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SaldoEconomicoOrarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Con un pool di una sola connessione, il primo movimento di un campo nuovo (saldo di apertura
+ * e ore nuove da creare) viene registrato senza attendere una seconda connessione.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=5000"
+})
+class RegistroEconomicoConnessioniTest {
+
+    // Ore lontane da quelle dei movimenti del simulatore
+    private static final LocalDateTime ORA = LocalDateTime.of(2001, 2, 1, 10, 0);
+
+    @Autowired
+    private RegistroEconomicoServizio registro;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SaldoEconomicoOrarioRepository saldoRepo;
+
+    @Test
+    void primoMovimentoConUnaSolaConnessione() {
+        Campo campo = campoRepo.save(new Campo(null, "Prova connessioni", TipoCampo.PIENO, 1.0, StatoCampo.RIPOSO,
+                100.0, 10.0, 50.0));
+
+        registro.registra(List.of(
+                RegistroEconomicoServizio.movimento(campo.getId(), TipoMovimento.PRODUZIONE, ORA, 1.0, 0.0, 3.0, "Prova"),
+                RegistroEconomicoServizio.movimento(campo.getId(), TipoMovimento.COSTO_OPERATIVO, ORA.plusHours(1),
+                        0.0, 2.0, 0.0, "Prova")));
+
+        TotaleEconomicoCampo totale = registro.totali(List.of(campo.getId())).get(campo.getId());
+        assertEquals(101.0, totale.getProduzioneKg(), 1e-9);
+        assertEquals(12.0, totale.getCosti(), 1e-9);
+        assertEquals(53.0, totale.getRicavi(), 1e-9);
+        assertEquals(2, saldoRepo.findIntervallo(campo.getId(), ORA, ORA.plusHours(2)).size());
+    }
+}
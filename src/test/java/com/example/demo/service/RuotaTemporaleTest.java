@@ -0,0 +1,101 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pianificazione sulla ruota temporale: periodi più lunghi di un giro, tick saltati,
+ * ripianificazione e rimozione delle attività.
+ */
+class RuotaTemporaleTest {
+
+    // 8 slot: un giro della ruota copre 8 tick
+    private static final int SLOT = 8;
+
+    @Test
+    void periodoPiuLungoDiUnGiro() {
+        RuotaTemporale ruota = new RuotaTemporale(SLOT, 0);
+        ruota.pianifica(1, 20, 20);
+        ruota.pianifica(2, 3, 1);
+
+        List<String> scatti = avanzaUnoAllaVolta(ruota, 0, 60);
+
+        assertEquals(List.of("20:1", "40:1", "60:1"), filtra(scatti, 1));
+        assertEquals(20, filtra(scatti, 2).size());
+        assertEquals("1:2", filtra(scatti, 2).get(0));
+        assertEquals("58:2", filtra(scatti, 2).get(19));
+    }
+
+    @Test
+    void tickSaltatiNonVengonoRecuperatiMaLaFaseResta() {
+        RuotaTemporale ruota = new RuotaTemporale(SLOT, 0);
+        ruota.pianifica(1, 3, 1);
+        ruota.pianifica(2, 20, 5);
+
+        List<Long> scattati = new ArrayList<>();
+        ruota.avanza(50, scattati::add);
+        assertEquals(List.of(1L, 2L), scattati.stream().sorted().toList());
+
+        // Fase 1 su periodo 3 e fase 5 su periodo 20: prossime scadenze 52 e 65
+        List<String> scatti = avanzaUnoAllaVolta(ruota, 50, 66);
+        assertEquals(List.of("52:1", "55:1", "58:1", "61:1", "64:1"), filtra(scatti, 1));
+        assertEquals(List.of("65:2"), filtra(scatti, 2));
+    }
+
+    @Test
+    void ripianificazioneSostituisceFaseEPeriodo() {
+        RuotaTemporale ruota = new RuotaTemporale(SLOT, 0);
+        ruota.pianifica(1, 10, 10);
+        assertTrue(avanzaUnoAllaVolta(ruota, 0, 5).isEmpty());
+
+        ruota.pianifica(1, 3, 1);
+        assertEquals(3, ruota.periodo(1));
+        assertEquals(1, ruota.dimensione());
+
+        List<String> scatti = avanzaUnoAllaVolta(ruota, 5, 13);
+        assertEquals(List.of("6:1", "9:1", "12:1"), scatti);
+    }
+
+    @Test
+    void rimozioneDaUnoSlotCondiviso() {
+        RuotaTemporale ruota = new RuotaTemporale(SLOT, 0);
+        // Tre attività nello stesso slot: si rimuove quella in mezzo alla lista
+        ruota.pianifica(1, 8, 4);
+        ruota.pianifica(2, 8, 4);
+        ruota.pianifica(3, 8, 4);
+        ruota.rimuovi(2);
+        ruota.rimuovi(99);
+
+        assertEquals(2, ruota.dimensione());
+        assertEquals(0, ruota.periodo(2));
+        List<String> scatti = avanzaUnoAllaVolta(ruota, 0, 12);
+        assertEquals(List.of("4:1", "12:1"), filtra(scatti, 1));
+        assertEquals(List.of("4:3", "12:3"), filtra(scatti, 3));
+        assertEquals(4, scatti.size());
+
+        // La posizione liberata viene riusata da una nuova attività
+        ruota.pianifica(4, 2, 1);
+        ruota.rimuovi(1);
+        ruota.rimuovi(3);
+        assertEquals(1, ruota.dimensione());
+        assertEquals(List.of("13:4", "15:4"), avanzaUnoAllaVolta(ruota, 12, 16));
+    }
+
+    // Avanza un tick alla volta e restituisce gli scatti come "tick:id"
+    private static List<String> avanzaUnoAllaVolta(RuotaTemporale ruota, long da, long finoA) {
+        List<String> scatti = new ArrayList<>();
+        for (long t = da + 1; t <= finoA; t++) {
+            long tick = t;
+            ruota.avanza(t, id -> scatti.add(tick + ":" + id));
+        }
+        return scatti;
+    }
+
+    private static List<String> filtra(List<String> scatti, long id) {
+        return scatti.stream().filter(s -> s.endsWith(":" + id)).toList();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoMovimento;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.supporto.DatiDiProva;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Versione dei dati della dashboard: incrementata dalle scritture confermate di rilevazioni
+ * e di movimenti economici, con un ETag diverso a ogni incremento.
+ */
+@SpringBootTest
+class VersioneDatiServizioTest {
+
+    private static final LocalDateTime ORA = LocalDateTime.of(2001, 7, 1, 8, 0);
+
+    @Autowired
+    private VersioneDatiServizio versioneDati;
+
+    @Autowired
+    private IngestioneServizio ingestione;
+
+    @Autowired
+    private RegistroEconomicoServizio registro;
+
+    @Autowired
+    private CampoRepository campoRepo;
+
+    @Autowired
+    private SensoreRepository sensoreRepo;
+
+    @Test
+    void scrittureConfermateIncrementanoLaVersione() {
+        Sensore sensore = DatiDiProva.nuovoSensore(campoRepo, sensoreRepo);
+        VersioneDatiServizio.Versione iniziale = versioneDati.corrente();
+
+        ingestione.registra(List.of(DatiDiProva.rilevazione(sensore, ORA, 18.0)));
+        VersioneDatiServizio.Versione dopoRilevazioni = versioneDati.corrente();
+        assertTrue(dopoRilevazioni.numero() > iniziale.numero());
+        assertTrue(dopoRilevazioni.ultimaModifica() >= iniziale.ultimaModifica());
+        assertNotEquals(iniziale.etag(null), dopoRilevazioni.etag(null));
+
+        Campo campo = campoRepo.save(new Campo(null, "Prova versione", TipoCampo.PIENO, 1.0, StatoCampo.RIPOSO,
+                0.0, 0.0, 0.0));
+        registro.registra(RegistroEconomicoServizio.movimento(campo.getId(), TipoMovimento.PRODUZIONE,
+                ORA, 1.0, 2.0, 3.0, "Prova"));
+        assertTrue(versioneDati.corrente().numero() > dopoRilevazioni.numero());
+    }
+
+    @Test
+    void versioneMonotonaEdEtagPerRisorsa() {
+        VersioneDatiServizio servizio = new VersioneDatiServizio();
+        VersioneDatiServizio.Versione iniziale = servizio.corrente();
+
+        servizio.suNuoveRilevazioni(null);
+        servizio.suEconomiaAggiornata(null);
+
+        VersioneDatiServizio.Versione corrente = servizio.corrente();
+        assertEquals(iniziale.numero() + 2, corrente.numero());
+        assertTrue(corrente.ultimaModifica() >= iniziale.ultimaModifica());
+        assertEquals("\"" + corrente.numero() + "\"", corrente.etag(null));
+        assertEquals("\"" + corrente.numero() + "-5\"", corrente.etag(5L));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.demo.shard;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.dto.DashboardDTO;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.evento.NuoveRilevazioniEvento;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.service.AggregazioneServizio;
+import com.example.demo.service.DashboardServizio;
+import com.example.demo.service.IngestioneServizio;
+import com.example.demo.supporto.DatiDiProva;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sharding delle rilevazioni per campo su tre DB H2 in memoria, al posto degli shard MySQL:
+ * il principale di Spring Boot e due shard aggiuntivi con lo schema creato all'avvio.
+ * I campi di esempio sono distribuiti con la regola predefinita (campoId mod 3).
+ */
+@SpringBootTest(properties = {
+        "collina.shard.abilitato=true",
+        "collina.shard.sorgenti[0].url=jdbc:h2:mem:collina-shard-1;DB_CLOSE_DELAY=-1",
+        "collina.shard.sorgenti[0].username=sa",
+        "collina.shard.sorgenti[1].url=jdbc:h2:mem:collina-shard-2;DB_CLOSE_DELAY=-1",
+        "collina.shard.sorgenti[1].username=sa",
+        "collina.shard.crea-schema=true",
+        "collina.giornale.abilitato=false",
+        "spring.jpa.open-in-view=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class ShardRilevazioniTest {
+
+    private static final LocalDateTime ISTANTE = LocalDateTime.of(2001, 1, 1, 0, 0);
+
+    @Autowired
+    private DataSourceShard dataSource;
+
+    @Autowired
+    private InstradamentoShard instradamento;
+
+    @Autowired
+    private AnagraficaServizio anagrafica;
+
+    @Autowired
+    private IngestioneServizio ingestione;
+
+    @Autowired
+    private RilevazioneRepository rilevazioneRepo;
+
+    @Autowired
+    private AggregazioneServizio aggregazione;
+
+    @Autowired
+    private DashboardServizio dashboard;
+
+    @Autowired
+    private PlatformTransactionManager gestoreTransazioni;
+
+    @Autowired
+    private Ascoltatore ascoltatore;
+
+    /**
+     * Raccoglie le rilevazioni consegnate ai listener, come fanno allerte, finestre e flusso live.
+     */
+    @TestConfiguration
+    static class Ascoltatore {
+
+        final List<Rilevazione> ricevute = new CopyOnWriteArrayList<>();
+
+        @TransactionalEventListener(fallbackExecution = true)
+        public void suNuoveRilevazioni(NuoveRilevazioniEvento evento) {
+            ricevute.addAll(evento.rilevazioni());
+        }
+    }
+
+    @Test
+    void rilevazioniSulloShardDelCampo() {
+        assertEquals(3, instradamento.numeroShard());
+
+        Map<Long, Integer> attesi = new HashMap<>();
+        List<Rilevazione> blocco = new ArrayList<>();
+        for (Campo campo : anagrafica.campi()) {
+            Sensore sensore = anagrafica.sensoriAttivi(campo.getId()).getFirst();
+            attesi.put(sensore.getId(), instradamento.shardDelCampo(campo.getId()));
+            blocco.add(DatiDiProva.rilevazione(sensore, ISTANTE, 12.5));
+        }
+        assertTrue(attesi.values().stream().distinct().count() > 1, "I campi di esempio devono occupare più shard");
+
+        // Scrittura partizionata: ogni riga solo sullo shard del proprio campo
+        ingestione.registra(blocco);
+        attesi.forEach((sensoreId, shard) -> {
+            for (int i = 0; i < instradamento.numeroShard(); i++) {
+                assertEquals(i == shard ? 1 : 0, righe(i, sensoreId, ISTANTE), "Sensore " + sensoreId + " sullo shard " + i);
+            }
+        });
+
+        // Lettura trasparente tramite repository
+        attesi.keySet().forEach(sensoreId ->
+                assertEquals(ISTANTE, rilevazioneRepo.findPrimoTimestampDa(sensoreId, ISTANTE.minusYears(1))));
+
+        // Job per shard e vista scatter/gather
+        aggregazione.aggiorna();
+        DashboardDTO overview = dashboard.overview();
+        assertEquals(anagrafica.campi().size(), overview.campi().size());
+    }
+
+    @Test
+    void rollbackDelChiamanteNonNascondeLeRigheConfermate() {
+        LocalDateTime istante = ISTANTE.plusDays(7);
+        Map<Long, Integer> attesi = new HashMap<>();
+        List<Rilevazione> blocco = new ArrayList<>();
+        for (Campo campo : anagrafica.campi()) {
+            Sensore sensore = anagrafica.sensoriAttivi(campo.getId()).getFirst();
+            attesi.put(sensore.getId(), instradamento.shardDelCampo(campo.getId()));
+            blocco.add(DatiDiProva.rilevazione(sensore, istante, 7.5));
+        }
+
+        // Il chiamante annulla la propria transazione dopo che gli shard hanno confermato
+        TransactionTemplate chiamante = new TransactionTemplate(gestoreTransazioni);
+        assertThrows(IllegalStateException.class, () -> chiamante.executeWithoutResult(stato -> {
+            ingestione.salvaInBlocchi(blocco);
+            throw new IllegalStateException("rollback del chiamante");
+        }));
+
+        // Le righe restano sugli shard e i listener le hanno ricevute comunque
+        attesi.forEach((sensoreId, shard) ->
+                assertEquals(1, righe(shard, sensoreId, istante), "Sensore " + sensoreId + " sullo shard " + shard));
+        long consegnate = ascoltatore.ricevute.stream().filter(r -> istante.equals(r.getTimestamp())).count();
+        assertEquals(blocco.size(), consegnate);
+    }
+
+    @Test
+    void chiaveEsternaSoloSulloShardPrincipale() {
+        assertEquals(1, vincoli(0));
+        for (int shard = 1; shard < instradamento.numeroShard(); shard++) {
+            assertEquals(0, vincoli(shard), "Shard " + shard);
+        }
+    }
+
+    private long righe(int shard, Long sensoreId, LocalDateTime istante) {
+        return new JdbcTemplate(dataSource.sorgente(shard)).queryForObject(
+                "select count(*) from rilevazione where sensore_id = ? and timestamp = ?", Long.class,
+                sensoreId, istante);
+    }
+
+    private long vincoli(int shard) {
+        return new JdbcTemplate(dataSource.sorgente(shard)).queryForObject(
+                "select count(*) from information_schema.table_constraints where upper(constraint_name) = upper(?)",
+                Long.class, Rilevazione.FK_SENSORE);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.demo.spaziale;
+
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoSensore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Indice a griglia confrontato con la ricerca esaustiva: celle con coordinate negative,
+ * potatura per raggio, casi limite del ray casting e sensori per campo.
+ */
+class IndiceSpazialeTest {
+
+    private static final double LATO_CELLA = 100;
+
+    @Test
+    void entroRaggioComeRicercaEsaustiva() {
+        Random caso = new Random(42);
+        List<Sensore> sensori = sparsi(caso, 45.0, 9.0, 0.03, 400);
+        IndiceSpaziale indice = new IndiceSpaziale(sensori, LATO_CELLA);
+
+        for (int q = 0; q < 300; q++) {
+            double lat = 45.0 + (caso.nextDouble() - 0.5) * 0.04;
+            double lon = 9.0 + (caso.nextDouble() - 0.5) * 0.04;
+            double raggio = 10 + caso.nextDouble() * 3000;
+            assertArrayEquals(esaustivaRaggio(sensori, lat, lon, raggio), indice.entroRaggio(lat, lon, raggio),
+                    "centro " + lat + ", " + lon + " raggio " + raggio);
+        }
+    }
+
+    @Test
+    void coordinateNegativeAttornoAlloZero() {
+        // Sensori a cavallo dell'equatore e del meridiano di Greenwich: righe e colonne negative nella chiave
+        Random caso = new Random(7);
+        List<Sensore> sensori = sparsi(caso, 0.0, 0.0, 0.02, 200);
+        sensori.addAll(sparsi(caso, -33.45, -70.66, 0.02, 200));
+        IndiceSpaziale indice = new IndiceSpaziale(sensori, LATO_CELLA);
+
+        double[][] centri = {{0, 0}, {-0.0001, -0.0001}, {0.005, -0.005}, {-0.005, 0.005}, {-33.45, -70.66}, {-33.44, -70.67}};
+        // Raggi piccoli visitano le celle una per una, quelli grandi scorrono le celle occupate
+        double[] raggi = {5, 80, 150, 700, 2500, 50_000};
+        for (double[] centro : centri) {
+            for (double raggio : raggi) {
+                assertArrayEquals(esaustivaRaggio(sensori, centro[0], centro[1], raggio),
+                        indice.entroRaggio(centro[0], centro[1], raggio),
+                        "centro " + centro[0] + ", " + centro[1] + " raggio " + raggio);
+            }
+        }
+    }
+
+    @Test
+    void sensoreSulBordoDelRaggio() {
+        Sensore sensore = sensore(1L, 1L, 0.001, 0.0);
+        IndiceSpaziale indice = new IndiceSpaziale(List.of(sensore), LATO_CELLA);
+        double distanza = IndiceSpaziale.distanzaMetri(0, 0, 0.001, 0);
+
+        assertArrayEquals(new int[]{0}, indice.entroRaggio(0, 0, distanza));
+        assertArrayEquals(new int[0], indice.entroRaggio(0, 0, distanza - 0.01));
+    }
+
+    @Test
+    void poligonoConcavoComeUnioneDiRettangoli() {
+        // Una "L": rettangolo [0, 0.02] x [0, 0.005] più [0, 0.005] x [0, 0.02] (lat x lon), qui in senso orario
+        double[] lat = {0, 0.02, 0.02, 0.005, 0.005, 0};
+        double[] lon = {0, 0, 0.005, 0.005, 0.02, 0.02};
+        Random caso = new Random(3);
+        List<Sensore> sensori = sparsi(caso, 0.01, 0.01, 0.03, 500);
+        IndiceSpaziale indice = new IndiceSpaziale(sensori, LATO_CELLA);
+
+        int[] attesi = IntStream.range(0, sensori.size()).filter(i -> {
+            double pLat = sensori.get(i).getLatitudine(), pLon = sensori.get(i).getLongitudine();
+            return dentro(pLat, pLon, 0, 0.02, 0, 0.005) || dentro(pLat, pLon, 0, 0.005, 0, 0.02);
+        }).toArray();
+        assertTrue(attesi.length > 0);
+        assertArrayEquals(attesi, indice.entroPoligono(lat, lon));
+
+        // Stesso risultato percorrendo i vertici al contrario
+        assertArrayEquals(attesi, indice.entroPoligono(inverti(lat), inverti(lon)));
+    }
+
+    @Test
+    void rayCastingAllAltezzaDiUnVertice() {
+        // Rombo con vertici alla stessa latitudine dei punti: il parallelo del punto passa per due vertici
+        double[] lat = {0, 0.001, 0.002, 0.001};
+        double[] lon = {0.001, 0.002, 0.001, 0};
+        List<Sensore> sensori = List.of(
+                sensore(1L, 1L, 0.001, 0.0005),   // dentro
+                sensore(2L, 1L, 0.001, -0.0005),  // fuori, a ovest del vertice
+                sensore(3L, 1L, 0.001, 0.0025),   // fuori, a est del vertice
+                sensore(4L, 1L, 0.0015, 0.001),   // dentro
+                sensore(5L, 1L, 0.0019, 0.0002),  // fuori, nell'angolo del rettangolo di ingombro
+                sensore(6L, 1L, 0.0, 0.0005));    // fuori, alla latitudine del vertice sud
+        IndiceSpaziale indice = new IndiceSpaziale(sensori, LATO_CELLA);
+
+        assertArrayEquals(new int[]{0, 3}, indice.entroPoligono(lat, lon));
+    }
+
+    @Test
+    void sensoriPerCampo() {
+        List<Sensore> sensori = List.of(
+                sensore(1L, 10L, 45.0, 9.0),
+                sensore(2L, 20L, 45.001, 9.0),
+                sensore(3L, 10L, 45.002, 9.0),
+                sensore(4L, 10L, 45.003, 9.0));
+        IndiceSpaziale indice = new IndiceSpaziale(sensori, LATO_CELLA);
+
+        assertArrayEquals(new int[]{0, 2, 3}, indice.delCampo(10L));
+        assertArrayEquals(new int[]{1}, indice.delCampo(20L));
+        assertArrayEquals(new int[0], indice.delCampo(30L));
+        assertEquals(4, indice.dimensione());
+    }
+
+    private static int[] esaustivaRaggio(List<Sensore> sensori, double lat, double lon, double raggio) {
+        return IntStream.range(0, sensori.size())
+                .filter(i -> IndiceSpaziale.distanzaMetri(lat, lon,
+                        sensori.get(i).getLatitudine(), sensori.get(i).getLongitudine()) <= raggio)
+                .toArray();
+    }
+
+    private static boolean dentro(double lat, double lon, double latMin, double latMax, double lonMin, double lonMax) {
+        return lat > latMin && lat < latMax && lon > lonMin && lon < lonMax;
+    }
+
+    private static double[] inverti(double[] valori) {
+        double[] invertiti = new double[valori.length];
+        for (int i = 0; i < valori.length; i++) {
+            invertiti[i] = valori[valori.length - 1 - i];
+        }
+        return invertiti;
+    }
+
+    // Sensori distribuiti uniformemente in un quadrato di lato (gradi) attorno al centro
+    private static List<Sensore> sparsi(Random caso, double lat, double lon, double lato, int quanti) {
+        List<Sensore> sensori = new ArrayList<>();
+        for (int i = 0; i < quanti; i++) {
+            sensori.add(sensore((long) i, 1L, lat + (caso.nextDouble() - 0.5) * lato, lon + (caso.nextDouble() - 0.5) * lato));
+        }
+        return sensori;
+    }
+
+    private static Sensore sensore(long id, long campoId, double lat, double lon) {
+        Sensore sensore = new Sensore();
+        sensore.setId(id);
+        sensore.setTipo(TipoSensore.SOIL_MOISTURE);
+        sensore.setCampo(new Campo(campoId, "Campo " + campoId, TipoCampo.PIENO, 1.0, StatoCampo.ATTIVO, 0.0, 0.0, 0.0));
+        sensore.setLatitudine(lat);
+        sensore.setLongitudine(lon);
+        return sensore;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.demo.spaziale;
+
+import com.example.demo.cache.AnagraficaServizio;
+import com.example.demo.cache.FinestreSensoriServizio;
+import com.example.demo.dto.MappaInterpolataDTO;
+import com.example.demo.dto.PuntoRilevazioneDTO;
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.exception.RisorsaNonTrovataEccezione;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.RilevazioneRepository;
+import com.example.demo.repository.SensoreRepository;
+import com.example.demo.service.EsecutoreParallelo;
+import com.example.demo.supporto.StubRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Interpolazione IDW confrontata con il calcolo esaustivo cella per cella: coincidenza con un sensore,
+ * celle senza sensori entro il raggio, bordi dei tile e sensori di altri campi.
+ */
+class MappaInterpolataServizioTest {
+
+    private static final LocalDateTime ISTANTE = LocalDateTime.of(2025, 6, 1, 12, 0);
+    private static final double LAT = 45.0;
+    private static final double LON = 9.0;
+    private static final double METRI_PER_GRADO_LON = IndiceSpaziale.METRI_PER_GRADO * Math.cos(Math.toRadians(LAT));
+
+    private final List<Campo> campi = new ArrayList<>();
+    private final List<Sensore> sensori = new ArrayList<>();
+    private final Map<Long, Double> ultimiValori = new HashMap<>();
+
+    @Test
+    void coincidenzaConUnSensoreECelleSenzaSensori() {
+        Campo campo = campo(1L);
+        // Due sensori a 1000 m in direzione est: con 6 celle da 200 m ciascuno è al centro di una cella di bordo
+        sensore(campo, TipoSensore.SOIL_MOISTURE, 0, 0, 10.0);
+        sensore(campo, TipoSensore.SOIL_MOISTURE, 0, 1000, 20.0);
+        MappaInterpolataServizio mappe = servizio();
+
+        MappaInterpolataDTO tutti = mappe.mappa(1L, TipoSensore.SOIL_MOISTURE, 6, null);
+        assertEquals(1, tutti.righe());
+        assertEquals(6, tutti.colonne());
+        assertEquals(2, tutti.sensori());
+        assertEquals(10.0, tutti.valori()[0], 1e-12);
+        assertEquals(20.0, tutti.valori()[5], 1e-12);
+        // A 400 e 600 m: pesi 1/400² e 1/600²
+        double pesoA = 1 / (400.0 * 400.0), pesoB = 1 / (600.0 * 600.0);
+        assertEquals((10 * pesoA + 20 * pesoB) / (pesoA + pesoB), tutti.valori()[2], 1e-6);
+
+        // Raggio di 250 m: le celle centrali restano indefinite, le vicine prendono il solo sensore in raggio
+        MappaInterpolataDTO entroRaggio = mappe.mappa(1L, TipoSensore.SOIL_MOISTURE, 6, 250.0);
+        assertArrayEquals(new Double[]{10.0, 10.0, null, null, 20.0, 20.0}, arrotonda(entroRaggio.valori()));
+    }
+
+    @Test
+    void comeCalcoloEsaustivoSuPiuTile() {
+        Random caso = new Random(11);
+        Campo campo = campo(1L);
+        Campo vicino = campo(2L);
+        for (int i = 0; i < 60; i++) {
+            // Alcuni sensori senza valore recente: contano per l'estensione ma non per l'interpolazione
+            Double valore = i % 7 == 0 ? null : 10 + caso.nextDouble() * 30;
+            sensore(campo, TipoSensore.SOIL_MOISTURE, caso.nextDouble() * 1500, caso.nextDouble() * 1500, valore);
+        }
+        for (int i = 0; i < 10; i++) {
+            sensore(campo, TipoSensore.TEMP_SOIL, caso.nextDouble() * 1500, caso.nextDouble() * 1500, 100.0);
+        }
+        // Sensori di un altro campo sovrapposti alla stessa area: non devono contribuire
+        for (int i = 0; i < 30; i++) {
+            sensore(vicino, TipoSensore.SOIL_MOISTURE, caso.nextDouble() * 1500, caso.nextDouble() * 1500, 1000.0);
+        }
+        MappaInterpolataServizio mappe = servizio();
+
+        // 50 celle per lato: tre tile interi e uno parziale
+        for (Double raggio : new Double[]{null, 150.0, 400.0}) {
+            MappaInterpolataDTO mappa = mappe.mappa(1L, TipoSensore.SOIL_MOISTURE, 50, raggio);
+            assertEquals(50, Math.max(mappa.righe(), mappa.colonne()));
+            assertTrue(Math.min(mappa.righe(), mappa.colonne()) > MappaInterpolataServizio.LATO_TILE);
+            assertEquals(51, mappa.sensori());
+
+            int indefinite = 0;
+            for (int r = 0; r < mappa.righe(); r++) {
+                for (int c = 0; c < mappa.colonne(); c++) {
+                    Double atteso = esaustiva(mappa, r, c, campo.getId(), raggio);
+                    Double calcolato = mappa.valori()[r * mappa.colonne() + c];
+                    String cella = "raggio " + raggio + " cella " + r + "," + c;
+                    if (atteso == null) {
+                        assertNull(calcolato, cella);
+                        indefinite++;
+                    } else {
+                        assertNotNull(calcolato, cella);
+                        assertEquals(atteso, calcolato, 1e-6, cella);
+                    }
+                }
+            }
+            if (raggio != null && raggio < 200) {
+                assertTrue(indefinite > 0, "con raggio " + raggio + " alcune celle devono restare indefinite");
+            }
+        }
+    }
+
+    @Test
+    void campoSenzaSensoriOInesistente() {
+        campo(1L);
+        Campo conSensori = campo(2L);
+        sensore(conSensori, TipoSensore.SOIL_MOISTURE, 0, 0, 10.0);
+        MappaInterpolataServizio mappe = servizio();
+
+        assertThrows(IllegalArgumentException.class, () -> mappe.mappa(1L, TipoSensore.SOIL_MOISTURE, 8, null));
+        assertThrows(RisorsaNonTrovataEccezione.class, () -> mappe.mappa(3L, TipoSensore.SOIL_MOISTURE, 8, null));
+
+        // Nessun sensore della tipologia con un valore: la mappa esiste ma è tutta indefinita
+        MappaInterpolataDTO vuota = mappe.mappa(2L, TipoSensore.TEMP_SOIL, 8, null);
+        assertEquals(0, vuota.sensori());
+        for (Double valore : vuota.valori()) {
+            assertNull(valore);
+        }
+    }
+
+    // IDW sui soli sensori del campo con un valore, con le stesse distanze in proiezione locale del servizio
+    private Double esaustiva(MappaInterpolataDTO mappa, int r, int c, Long campoId, Double raggio) {
+        double latCella = mappa.latitudineMin() + (r + 0.5) * mappa.passoLatitudine();
+        double lonCella = mappa.longitudineMin() + (c + 0.5) * mappa.passoLongitudine();
+        double latCentro = mappa.latitudineMin() + mappa.righe() * mappa.passoLatitudine() / 2;
+        double metriPerGradoLon = IndiceSpaziale.METRI_PER_GRADO * Math.cos(Math.toRadians(latCentro));
+        double sommaPesi = 0, somma = 0;
+        for (Sensore sensore : sensori) {
+            Double valore = ultimiValori.get(sensore.getId());
+            if (!sensore.getCampo().getId().equals(campoId) || sensore.getTipo() != mappa.tipo() || valore == null) {
+                continue;
+            }
+            double dx = (sensore.getLongitudine() - lonCella) * metriPerGradoLon;
+            double dy = (sensore.getLatitudine() - latCella) * IndiceSpaziale.METRI_PER_GRADO;
+            double d2 = dx * dx + dy * dy;
+            if (d2 <= 0.25) {
+                return valore;
+            }
+            if (raggio == null || d2 <= raggio * raggio) {
+                sommaPesi += 1 / d2;
+                somma += valore / d2;
+            }
+        }
+        return sommaPesi > 0 ? somma / sommaPesi : null;
+    }
+
+    private static Double[] arrotonda(Double[] valori) {
+        Double[] arrotondati = new Double[valori.length];
+        for (int i = 0; i < valori.length; i++) {
+            arrotondati[i] = valori[i] == null ? null : Math.round(valori[i] * 1e9) / 1e9;
+        }
+        return arrotondati;
+    }
+
+    private Campo campo(long id) {
+        Campo campo = new Campo(id, "Campo " + id, TipoCampo.PIENO, 1.0, StatoCampo.ATTIVO, 0.0, 0.0, 0.0);
+        campi.add(campo);
+        return campo;
+    }
+
+    // Posizione in metri a nord e a est di (LAT, LON); valore null = nessuna rilevazione recente
+    private void sensore(Campo campo, TipoSensore tipo, double nordMetri, double estMetri, Double valore) {
+        Sensore sensore = new Sensore();
+        sensore.setId(sensori.size() + 1L);
+        sensore.setCodice("S-" + sensore.getId());
+        sensore.setTipo(tipo);
+        sensore.setCampo(campo);
+        sensore.setLatitudine(LAT + nordMetri / IndiceSpaziale.METRI_PER_GRADO);
+        sensore.setLongitudine(LON + estMetri / METRI_PER_GRADO_LON);
+        sensori.add(sensore);
+        if (valore != null) {
+            ultimiValori.put(sensore.getId(), valore);
+        }
+    }
+
+    private MappaInterpolataServizio servizio() {
+        SimpleMeterRegistry metriche = new SimpleMeterRegistry();
+        CampoRepository campoRepo = StubRepository.di(CampoRepository.class,
+                Map.of("findAll", argomenti -> List.copyOf(campi)));
+        SensoreRepository sensoreRepo = StubRepository.di(SensoreRepository.class,
+                Map.of("findByCampoIdAndAttivoTrue", argomenti -> sensori.stream()
+                        .filter(s -> s.getCampo().getId().equals(argomenti[0])).toList()));
+        RilevazioneRepository rilevazioneRepo = StubRepository.di(RilevazioneRepository.class,
+                Map.of("findPuntiRecenti", argomenti -> {
+                    Double valore = ultimiValori.get((Long) argomenti[0]);
+                    return valore == null ? List.of() : List.of(new PuntoRilevazioneDTO(ISTANTE, valore, QualitaDato.VALIDO));
+                }));
+
+        AnagraficaServizio anagrafica = new AnagraficaServizio(campoRepo, sensoreRepo, metriche, 1024, 20_000);
+        FinestreSensoriServizio finestre = new FinestreSensoriServizio(sensoreRepo, rilevazioneRepo,
+                new EsecutoreParallelo(false, 1), 96);
+        IndiceSensoriServizio indice = new IndiceSensoriServizio(anagrafica, metriche, 100);
+        return new MappaInterpolataServizio(indice, finestre, anagrafica, metriche, 512, 2, 256);
+    }
+}
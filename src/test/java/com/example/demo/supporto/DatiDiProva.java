@@ -0,0 +1,57 @@
+package com.example.demo.supporto;
+
+import com.example.demo.entity.Campo;
+import com.example.demo.entity.Rilevazione;
+import com.example.demo.entity.Sensore;
+import com.example.demo.enums.QualitaDato;
+import com.example.demo.enums.StatoCampo;
+import com.example.demo.enums.TipoCampo;
+import com.example.demo.enums.TipoSensore;
+import com.example.demo.repository.CampoRepository;
+import com.example.demo.repository.SensoreRepository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dati comuni ai test sul database: un sensore isolato dal resto dell'anagrafica e le sue rilevazioni.
+ */
+public final class DatiDiProva {
+
+    private DatiDiProva() {}
+
+    /**
+     * Sensore disattivato su un campo a riposo creato apposta: il simulatore non produce letture
+     * per lui e le sue statistiche di qualità partono vuote. Il codice è univoco a ogni chiamata.
+     */
+    public static Sensore nuovoSensore(CampoRepository campoRepo, SensoreRepository sensoreRepo) {
+        Campo campo = campoRepo.save(new Campo(null, "Campo di prova", TipoCampo.PIENO, 1.0, StatoCampo.RIPOSO,
+                0.0, 0.0, 0.0));
+        Sensore sensore = new Sensore();
+        sensore.setCodice("PROVA-" + System.nanoTime());
+        sensore.setTipo(TipoSensore.TEMP_SOIL);
+        sensore.setCampo(campo);
+        sensore.setAttivo(false);
+        return sensoreRepo.save(sensore);
+    }
+
+    /**
+     * Rilevazione non ancora salvata, con l'unità del tipo di sensore e qualità da classificare.
+     */
+    public static Rilevazione rilevazione(Sensore sensore, LocalDateTime istante, double valore) {
+        Rilevazione ril = new Rilevazione();
+        ril.setSensore(sensore);
+        ril.setTimestamp(istante);
+        ril.setValore(valore);
+        ril.setUnita(sensore.getTipo().getUnita());
+        return ril;
+    }
+
+    /**
+     * Rilevazione già classificata, per i test che salvano senza passare dall'ingestione.
+     */
+    public static Rilevazione rilevazione(Sensore sensore, LocalDateTime istante, double valore, QualitaDato qualita) {
+        Rilevazione ril = rilevazione(sensore, istante, valore);
+        ril.setQualita(qualita);
+        return ril;
+    }
+}
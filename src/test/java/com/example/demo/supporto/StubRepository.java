@@ -0,0 +1,35 @@
+package com.example.demo.supporto;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Implementazione minimale (Stub) di un'interfaccia repository per i test unitari e i benchmark
+ * (profilo {@code benchmark}, che compila src/jmh/java insieme ai sorgenti di test):
+ * risponde solo ai metodi indicati, senza database e senza un framework di mock.
+ */
+public final class StubRepository {
+
+    private StubRepository() {}
+
+    /**
+     * @param tipo L'interfaccia del repository.
+     * @param risposte Per nome di metodo, la funzione che calcola il risultato dagli argomenti.
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> R di(Class<R> tipo, Map<String, Function<Object[], Object>> risposte) {
+        return (R) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, (proxy, metodo, argomenti) -> {
+            Function<Object[], Object> risposta = risposte.get(metodo.getName());
+            if (risposta != null) {
+                return risposta.apply(argomenti);
+            }
+            return switch (metodo.getName()) {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == argomenti[0];
+                case "toString" -> "Stub " + tipo.getSimpleName();
+                default -> throw new UnsupportedOperationException(metodo.getName() + " non previsto dallo stub");
+            };
+        });
+    }
+}